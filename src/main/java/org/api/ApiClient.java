@@ -0,0 +1,67 @@
+package org.api;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+// Small client for the HTTP API (handheld terminals, scripts, local checks against a running server).
+// Paths are relative to /api, e.g. client.post("tables/3/orders", Json.obj("recipeId", 1, "quantity", 2)).
+public class ApiClient {
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String baseUrl;
+    private final Integer branchId;
+    private volatile String token;
+
+    public ApiClient(String baseUrl) {
+        this(baseUrl, null);
+    }
+
+    // Client bound to one branch (sent as X-Branch on every request)
+    public ApiClient(String baseUrl, Integer branchId) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.branchId = branchId;
+    }
+
+    public record Response(int status, String body) {
+        public boolean isOk() { return status >= 200 && status < 300; }
+        public Object json() { return Json.parse(body); }
+    }
+
+    // Open a session; later requests carry its token (needed for every POST/DELETE)
+    public Response login(String username, String password) throws IOException, InterruptedException {
+        Response res = post("session", Json.obj("username", username, "password", password));
+        if (res.isOk() && res.json() instanceof java.util.Map<?, ?> m && m.get("token") != null) token = m.get("token").toString();
+        return res;
+    }
+
+    public Response get(String path) throws IOException, InterruptedException {
+        return send(request(path).GET());
+    }
+
+    public Response post(String path, Object body) throws IOException, InterruptedException {
+        String json = body == null ? "" : Json.write(body);
+        return send(request(path).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8)));
+    }
+
+    public Response delete(String path) throws IOException, InterruptedException {
+        return send(request(path).DELETE());
+    }
+
+    private HttpRequest.Builder request(String path) {
+        String rel = path.startsWith("/") ? path.substring(1) : path;
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(baseUrl + rel)).timeout(Duration.ofSeconds(10));
+        if (branchId != null) b.header("X-Branch", String.valueOf(branchId));
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        return b;
+    }
+
+    private Response send(HttpRequest.Builder b) throws IOException, InterruptedException {
+        HttpResponse<String> res = http.send(b.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        return new Response(res.statusCode(), res.body());
+    }
+}
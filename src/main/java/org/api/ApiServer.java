@@ -0,0 +1,692 @@
+package org.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.db.DatabaseHelper;
+import org.db.UserCache;
+import org.db.UserManager;
+import org.example.BranchRouter;
+import org.example.BranchRuntime;
+import org.exceptions.*;
+import org.models.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// JSON-over-HTTP access to the services of every branch, for waiter handhelds and other remote clients.
+// Built on the JDK HttpServer with one virtual thread per request, so many slow clients do not tie up
+// platform threads. The target branch is taken from the "branch" query parameter (or X-Branch header) and
+// defaults to the first branch. The server listens on the loopback interface unless another address is given.
+// Reads are open; every POST/DELETE needs "Authorization: Bearer <token>" from POST session, and the user's
+// role has to match the area, as in the desktop tabs: waiters handle tables, reservations and the waitlist,
+// chefs the kitchen jobs, stock movements are for admins (who may do everything). Routes (all under /api):
+//   POST session {username, password} -> {token, username, role}    DELETE session (logout)
+//   GET  branches | menu | stock | tables | tables/{id} | tables/{id}/orders | tables/{id}/bill
+//   POST tables/{id}/assign [{version}] | occupy|release|cancel|settle, tables/{id}/orders {recipeId, quantity[, name]}
+//   DELETE tables/{id}/orders/{index}
+//   GET  tables/free?from=...&guests=N[&to=...] (tables with no booking in the slot; to defaults to from + turn)
+//   GET  reservations        POST reservations {customer, guests, when, vip}
+//   POST reservations/{id}/assign [{tableId}] | seat | cancel
+//   POST reservations/plan {from, to[, diningMinutes][, apply]}
+//   GET  waitlist | waitlist/quote?guests=N    POST waitlist {name, guests}, waitlist/{id}/seat [{tableId}]
+//   DELETE waitlist/{id}
+//   GET  jobs | jobs/queue | jobs/mode    POST jobs/{id}/start|finish|cancel, jobs/{id}/rush {rush},
+//        jobs/{id}/extend {minutes}, jobs/mode {autoComplete}
+//   POST stock/{id}/movements {tipo: ENTRADA|SALIDA, cantidad}
+//   GET  feed (text/event-stream, resumes after ?since=<epoch>:<seq> or Last-Event-ID) | feed/head
+// Errors come back as {"error": "..."} with 400 (bad request or quantity), 401 (no session), 403 (role),
+// 404 (unknown id), 409 (not possible now), 413 (body over 64 KB).
+public class ApiServer {
+    private static final Logger LOGGER = Logger.getLogger(ApiServer.class.getName());
+
+    private final BranchRouter router;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile boolean running = true;
+    // Opened on the first login, like LoginDialog does
+    private UserManager userManager;
+    private DatabaseHelper userDb;
+
+    // Listens on loopback only: handhelds reach it through whatever the site puts in front (or use the other
+    // constructor with the address of the floor network)
+    public ApiServer(BranchRouter router, int port) throws IOException {
+        this(router, InetAddress.getLoopbackAddress().getHostAddress(), port);
+    }
+
+    public ApiServer(BranchRouter router, String host, int port) throws IOException {
+        this.router = router;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(host), port), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        LOGGER.log(Level.INFO, "API escuchando en {0}", server.getAddress());
+    }
+
+    public void stop() {
+        running = false;
+        server.stop(1);
+        executor.shutdown();
+        synchronized (this) {
+            if (userManager != null) userManager.close();
+            if (userDb != null) userDb.close();
+            userManager = null;
+            userDb = null;
+        }
+    }
+
+    // Actual port (useful when created with port 0)
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Response ready to be sent: status plus a JSON-serializable body
+    private record Reply(int status, Object body) {
+        static Reply ok(Object body) { return new Reply(200, body); }
+        static Reply created(Object body) { return new Reply(201, body); }
+        static Reply error(int status, String msg) { return new Reply(status, Json.obj("error", msg)); }
+    }
+
+    // Request seen by the route handlers
+    private record Request(String method, String[] path, Map<String, String> query, Map<String, Object> body) {
+        int intAt(int i) {
+            try {
+                return Integer.parseInt(path[i]);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Id inválido: " + path[i]);
+            }
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        Reply reply;
+        try {
+            String rel = ex.getRequestURI().getPath().substring("/api/".length());
+            String[] path = rel.isEmpty() ? new String[0] : rel.split("/");
+            Map<String, String> query = parseQuery(ex.getRequestURI().getRawQuery());
+            String branchParam = query.getOrDefault("branch", ex.getRequestHeaders().getFirst("X-Branch"));
+            Map<String, Object> body = "POST".equals(ex.getRequestMethod()) ? Json.parseObject(readBody(ex)) : Map.of();
+            Request req = new Request(ex.getRequestMethod(), path, query, body);
+            if (path.length == 1 && path[0].equals("session")) {
+                send(ex, session(ex, req));
+                return;
+            }
+            if (!req.method().equals("GET")) {
+                Reply denied = authorize(ex, req);
+                if (denied != null) {
+                    send(ex, denied);
+                    return;
+                }
+            }
+            BranchRuntime branch = branchParam != null ? router.route(Integer.parseInt(branchParam.trim())) : defaultBranch();
+            if (req.method().equals("GET") && path.length == 1 && path[0].equals("feed")) {
+                streamFeed(ex, branch.getChangeFeed(), feedStart(ex, query));
+                return;
+            }
+            // reads are served from snapshots and copies; changes go through the branch's single writer
+            reply = req.method().equals("GET") ? route(branch, req) : branch.call(br -> route(br, req));
+        } catch (BodyTooLargeException e) {
+            reply = Reply.error(413, e.getMessage());
+        } catch (NumberFormatException e) {
+            reply = Reply.error(400, "Número inválido: " + e.getMessage());
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException e) {
+            reply = Reply.error(400, e.getMessage());
+        } catch (TableNotFoundException | ReservationNotFoundException | StockNotFoundException | BranchNotFoundException e) {
+            reply = Reply.error(404, e.getMessage());
+        } catch (InsufficientStockException | MovementNotSupportedException | TableUnavailableException e) {
+            reply = Reply.error(409, e.getMessage());
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error atendiendo {0}: {1}", new Object[]{ex.getRequestURI(), e.toString()});
+            reply = Reply.error(500, "Error interno: " + e.getMessage());
+        }
+        send(ex, reply);
+    }
+
+    // ---------------------------------------------------------------- sessions
+
+    private Reply session(HttpExchange ex, Request r) {
+        if (r.method().equals("DELETE")) {
+            UserCache.shared().closeSession(bearer(ex));
+            return Reply.ok(Json.obj("closed", true));
+        }
+        if (!r.method().equals("POST")) return notFound(r);
+        String username = requireString(r.body(), "username");
+        User user = authenticate(username, requireString(r.body(), "password"));
+        if (user == null) return Reply.error(401, "Usuario o contraseña incorrectos");
+        return Reply.created(Json.obj("token", UserCache.shared().openSession(user), "username", user.getUsername(), "role", role(user)));
+    }
+
+    // Same checks as the login dialog: verified credentials from UserCache, else user_passwords
+    private synchronized User authenticate(String username, String password) {
+        User cached = UserManager.authenticateFromCache(username, password);
+        if (cached != null) return cached;
+        if (userManager == null) {
+            userManager = new UserManager();
+            userManager.initializeDefaultUsers();
+            userDb = new DatabaseHelper();
+        }
+        return userManager.authenticateUser(username, password) ? userDb.getUserByUsername(username) : null;
+    }
+
+    // null when the request may go on, else the 401/403 to send
+    private static Reply authorize(HttpExchange ex, Request r) {
+        User user = UserCache.shared().resumeSession(bearer(ex));
+        if (user == null) return Reply.error(401, "Se requiere sesión: POST /api/session {username, password}");
+        String area = r.path().length > 0 ? r.path()[0] : "";
+        boolean ok = user.isAdmin() || switch (area) {
+            case "tables", "reservations", "waitlist" -> user.isWaiter();
+            case "jobs" -> user.isChef();
+            default -> false;
+        };
+        return ok ? null : Reply.error(403, "El rol " + role(user) + " no puede modificar " + area);
+    }
+
+    private static String bearer(HttpExchange ex) {
+        String h = ex.getRequestHeaders().getFirst("Authorization");
+        if (h == null || !h.regionMatches(true, 0, "Bearer ", 0, 7)) return null;
+        return h.substring(7).trim();
+    }
+
+    private static String role(User u) {
+        return u.isAdmin() ? "ADMIN" : u.isChef() ? "CHEF" : u.isWaiter() ? "WAITER" : "USER";
+    }
+
+    private BranchRuntime defaultBranch() {
+        List<BranchRuntime> all = router.getBranches();
+        if (all.isEmpty()) throw new BranchNotFoundException("No hay sucursales configuradas");
+        return all.get(0);
+    }
+
+    private Reply route(BranchRuntime b, Request r) {
+        String[] p = r.path();
+        if (p.length == 0) return notFound(r);
+        String m = r.method();
+        switch (p[0]) {
+            case "branches":
+                if (m.equals("GET") && p.length == 1) {
+                    List<Object> res = new ArrayList<>();
+                    for (BranchRuntime br : router.getBranches()) res.add(Json.obj("id", br.getId(), "nombre", br.getNombre()));
+                    return Reply.ok(res);
+                }
+                break;
+            case "menu":
+                if (m.equals("GET") && p.length == 1) {
+                    List<Object> res = new ArrayList<>();
+                    for (Recipe rc : b.getMenu().getAll().values()) res.add(recipe(rc));
+                    return Reply.ok(res);
+                }
+                break;
+            case "stock":
+                return stock(b, r);
+            case "tables":
+                return tables(b, r);
+            case "reservations":
+                return reservations(b, r);
+            case "jobs":
+                return jobs(b, r);
+            case "waitlist":
+                return waitlist(b, r);
+            case "feed":
+                if (m.equals("GET") && p.length == 2 && p[1].equals("head")) {
+                    ChangeFeed feed = b.getChangeFeed();
+                    long head = feed.getHead();
+                    return Reply.ok(Json.obj("epoch", feed.getEpoch(), "head", head, "position", feed.getEpoch() + ":" + head));
+                }
+                break;
+            default:
+                break;
+        }
+        return notFound(r);
+    }
+
+    private Reply waitlist(BranchRuntime b, Request r) {
+        String[] p = r.path();
+        String m = r.method();
+        WaitlistService wl = b.getWaitlist();
+        if (p.length == 1 && m.equals("GET")) {
+            List<Object> res = new ArrayList<>();
+            for (WaitlistService.Party party : wl.listParties()) res.add(party(party));
+            return Reply.ok(res);
+        }
+        if (p.length == 2 && m.equals("GET") && p[1].equals("quote")) {
+            String g = r.query().get("guests");
+            if (g == null) throw new IllegalArgumentException("Falta el parámetro guests");
+            return Reply.ok(quote(wl.quote(Integer.parseInt(g))));
+        }
+        if (p.length == 1 && m.equals("POST")) {
+            WaitlistService.Party party = wl.addParty(requireString(r.body(), "name"), requireInt(r.body(), "guests"));
+            return Reply.ok(party(party));
+        }
+        if (p.length < 2) return notFound(r);
+        int id = r.intAt(1);
+        if (wl.findParty(id).isEmpty()) return Reply.error(404, "Grupo " + id + " no está en la lista de espera");
+        if (p.length == 2 && m.equals("DELETE")) {
+            wl.removeParty(id);
+            return Reply.ok(Json.obj("id", id, "removed", true));
+        }
+        if (p.length == 3 && m.equals("POST") && p[2].equals("seat")) {
+            Object t = r.body().get("tableId");
+            Integer mesaId = wl.seatParty(id, t instanceof Number n ? n.intValue() : null);
+            if (mesaId == null) return Reply.error(409, "No hay mesa libre para el grupo " + id + " todavía");
+            return Reply.ok(Json.obj("id", id, "tableId", mesaId));
+        }
+        return notFound(r);
+    }
+
+    private Reply stock(BranchRuntime b, Request r) {
+        String[] p = r.path();
+        StockGeneral stock = b.getStock();
+        if (r.method().equals("GET") && p.length == 1) {
+            InventorySnapshot snap = stock.getSnapshot();
+            List<Object> items = new ArrayList<>();
+            snap.forEach(i -> items.add(stockItem(i)));
+            return Reply.ok(Json.obj("version", snap.getVersion(), "items", items));
+        }
+        if (r.method().equals("POST") && p.length == 3 && p[2].equals("movements")) {
+            int id = r.intAt(1);
+            TipoMovimiento tipo = TipoMovimiento.valueOf(requireString(r.body(), "tipo").toUpperCase());
+            double cantidad = requireNumber(r.body(), "cantidad");
+            stock.modificarStock(id, cantidad, tipo);
+            return Reply.ok(stockItem(stock.getSnapshot().get(id)));
+        }
+        return notFound(r);
+    }
+
+    private Reply tables(BranchRuntime b, Request r) {
+        String[] p = r.path();
+        String m = r.method();
+        TableService ts = b.getTableService();
+        if (p.length == 1 && m.equals("GET")) {
+            List<Object> res = new ArrayList<>();
+            List<Mesa> mesas = new ArrayList<>(ts.getMesas().values());
+            mesas.sort((x, y) -> Integer.compare(x.getId(), y.getId()));
+            for (Mesa mesa : mesas) res.add(mesa(ts, mesa));
+            return Reply.ok(res);
+        }
+        if (p.length == 2 && m.equals("GET") && p[1].equals("free")) {
+            String from = r.query().get("from");
+            if (from == null) throw new IllegalArgumentException("Falta el parámetro from");
+            LocalDateTime start = LocalDateTime.parse(from);
+            String to = r.query().get("to");
+            LocalDateTime end = to != null ? LocalDateTime.parse(to) : start.plusMinutes(b.getReservationService().getTurnMinutes());
+            String g = r.query().get("guests");
+            int guests = g != null ? Integer.parseInt(g) : 1;
+            List<Object> res = new ArrayList<>();
+            for (Mesa mesa : ts.findFreeTables(start, end, guests)) res.add(mesa(ts, mesa));
+            return Reply.ok(res);
+        }
+        if (p.length < 2) return notFound(r);
+        int id = r.intAt(1);
+        Mesa mesa = ts.getMesas().get(id);
+        if (mesa == null) throw new TableNotFoundException("Mesa ID " + id + " no encontrada");
+        if (p.length == 2 && m.equals("GET")) return Reply.ok(mesa(ts, mesa));
+        String action = p[2];
+        if (m.equals("GET") && p.length == 3) {
+            if (action.equals("orders")) return Reply.ok(orderItems(ts.copyOrders(id)));
+            if (action.equals("bill")) {
+                Factura f = ts.getBill(id);
+                return Reply.ok(Json.obj("tableId", id, "subtotal", f.getSubtotal(), "total", f.getTotal(),
+                        "items", orderItems(f.getItems())));
+            }
+        }
+        if (m.equals("POST") && p.length == 3) {
+            switch (action) {
+                case "assign": {
+                    // optional {"version": n}: only assign if the table is still as the terminal last saw it
+                    Object v = r.body().get("version");
+                    boolean ok = v instanceof Number n ? ts.assignTable(id, n.longValue()) : ts.assignTable(id);
+                    if (!ok) return Reply.error(409, "La mesa " + id + " no está libre o cambió");
+                    return Reply.ok(mesa(ts, mesa));
+                }
+                case "occupy":
+                    if (!ts.occupyTable(id)) return Reply.error(409, "La mesa " + id + " tiene una reserva dentro del próximo turno");
+                    return Reply.ok(mesa(ts, mesa));
+                case "release":
+                    ts.releaseTable(id);
+                    b.getReservationService().releaseTableBooking(id);
+                    return Reply.ok(mesa(ts, mesa));
+                case "cancel":
+                    ts.cancelOrdersForTable(id);
+                    return Reply.ok(orderItems(ts.copyOrders(id)));
+                case "settle": {
+                    // same flow as the floor view: record the sale, clear the orders, free the table
+                    Object customer = r.body().get("customerName");
+                    Factura f = ts.settleAndRelease(id, customer != null ? customer.toString() : null);
+                    b.getReservationService().releaseTableBooking(id);
+                    return Reply.ok(Json.obj("tableId", id, "total", f.getTotal()));
+                }
+                case "orders": {
+                    int qty = requireInt(r.body(), "quantity");
+                    if (qty <= 0) throw new IllegalArgumentException("quantity debe ser mayor que 0");
+                    Object rid = r.body().get("recipeId");
+                    Integer recipeId = rid instanceof Number n ? n.intValue() : null;
+                    String name = r.body().get("name") != null ? r.body().get("name").toString() : null;
+                    if (recipeId != null) {
+                        Recipe rc = b.getMenu().getRecipeById(recipeId);
+                        if (rc == null) return Reply.error(404, "Receta ID " + recipeId + " no encontrada");
+                        if (name == null) name = rc.getNombre();
+                    }
+                    if (name == null) throw new IllegalArgumentException("Falta recipeId o name");
+                    OrderItem item = new OrderItem(name, qty, recipeId);
+                    ts.addOrder(id, item);
+                    return Reply.created(orderItem(item));
+                }
+                default:
+                    break;
+            }
+        }
+        if (m.equals("DELETE") && p.length == 4 && action.equals("orders")) {
+            if (!ts.removeOrderItem(id, r.intAt(3))) return Reply.error(404, "Línea " + p[3] + " no encontrada");
+            return Reply.ok(orderItems(ts.copyOrders(id)));
+        }
+        return notFound(r);
+    }
+
+    private Reply reservations(BranchRuntime b, Request r) {
+        String[] p = r.path();
+        String m = r.method();
+        ReservationService rs = b.getReservationService();
+        if (p.length == 1) {
+            if (m.equals("GET")) {
+                List<Object> res = new ArrayList<>();
+                for (Reservation rv : rs.listAll()) res.add(reservation(rv));
+                return Reply.ok(res);
+            }
+            if (m.equals("POST")) {
+                String customer = requireString(r.body(), "customer");
+                int guests = requireInt(r.body(), "guests");
+                LocalDateTime when = LocalDateTime.parse(requireString(r.body(), "when"));
+                boolean vip = Boolean.TRUE.equals(r.body().get("vip"));
+                return Reply.created(reservation(rs.createReservation(customer, guests, when, vip)));
+            }
+        }
+        if (p.length == 2 && m.equals("POST") && p[1].equals("plan")) {
+            LocalDateTime from = LocalDateTime.parse(requireString(r.body(), "from"));
+            LocalDateTime to = LocalDateTime.parse(requireString(r.body(), "to"));
+            Object dm = r.body().get("diningMinutes");
+            // without diningMinutes the plan uses the branch's turn; another length is only a what-if (applying it is a 400)
+            ReservationPlanner.Plan plan = dm instanceof Number n
+                    ? rs.planWindow(from, to, new ReservationPlanner(n.longValue()))
+                    : rs.planWindow(from, to);
+            boolean apply = Boolean.TRUE.equals(r.body().get("apply"));
+            if (apply) rs.applyPlan(plan);
+            Map<String, Object> assignments = new java.util.LinkedHashMap<>();
+            plan.assignments().forEach((res, mesa) -> assignments.put(String.valueOf(res), mesa));
+            return Reply.ok(Json.obj("applied", apply, "assignments", assignments, "unassigned", plan.unassigned(),
+                    "seatedGuests", plan.seatedGuests(), "wastedSeats", plan.wastedSeats()));
+        }
+        if (p.length == 3 && m.equals("POST")) {
+            int id = r.intAt(1);
+            Reservation rv = rs.findById(id).orElseThrow(() -> new ReservationNotFoundException("Reservation ID " + id + " not found"));
+            boolean ok;
+            switch (p[2]) {
+                case "assign" -> {
+                    Object t = r.body().get("tableId");
+                    ok = t instanceof Number n ? rs.assignTableToReservation(id, n.intValue()) : rs.assignTableForReservation(id) != null;
+                }
+                case "seat" -> ok = rs.seatReservation(id);
+                case "cancel" -> ok = rs.cancelReservation(id);
+                default -> { return notFound(r); }
+            }
+            return ok ? Reply.ok(reservation(rv)) : Reply.error(409, "No se pudo " + p[2] + " la reserva " + id);
+        }
+        return notFound(r);
+    }
+
+    private Reply jobs(BranchRuntime b, Request r) {
+        String[] p = r.path();
+        String m = r.method();
+        Pedido pedido = b.getProductionService();
+        if (m.equals("GET") && p.length == 1) {
+            List<Object> res = new ArrayList<>();
+            for (ProductionJob j : pedido.listJobs()) res.add(job(j));
+            return Reply.ok(res);
+        }
+        if (m.equals("GET") && p.length == 2 && p[1].equals("queue")) return Reply.ok(pedido.getQueue());
+        // auto: jobs finish when their time is up; confirm: they are flagged and the kitchen finishes them
+        ProductionScheduler scheduler = b.getScheduler();
+        if (p.length == 2 && p[1].equals("mode")) {
+            if (m.equals("POST")) {
+                Object v = r.body().get("autoComplete");
+                if (!(v instanceof Boolean auto)) throw new IllegalArgumentException("Falta el campo booleano autoComplete");
+                scheduler.setAutoComplete(auto);
+            } else if (!m.equals("GET")) {
+                return notFound(r);
+            }
+            return Reply.ok(Json.obj("autoComplete", scheduler.isAutoComplete(),
+                    "awaitingConfirmation", scheduler.getJobsAwaitingConfirmation().size()));
+        }
+        if (m.equals("POST") && p.length == 3) {
+            int id = r.intAt(1);
+            boolean ok;
+            switch (p[2]) {
+                case "start" -> ok = pedido.startJob(id);
+                case "finish" -> ok = scheduler.finishNow(id);
+                case "extend" -> ok = scheduler.extend(id, requireInt(r.body(), "minutes"));
+                case "cancel" -> ok = pedido.cancelJob(id);
+                case "rush" -> ok = pedido.setRush(id, !Boolean.FALSE.equals(r.body().get("rush")));
+                default -> { return notFound(r); }
+            }
+            if (!ok) return Reply.error(409, "No se pudo " + p[2] + " el job " + id);
+            for (ProductionJob j : pedido.listJobs()) {
+                if (j.getId() == id) return Reply.ok(job(j));
+            }
+            return Reply.ok(Json.obj("id", id));
+        }
+        return notFound(r);
+    }
+
+    // ---------------------------------------------------------------- change feed (server-sent events)
+
+    private static final long FEED_KEEPALIVE_SECONDS = 15L;
+
+    // Where a stream resumes: an epoch (null = none given) and the sequence after which to send
+    private record FeedPosition(String epoch, long seq) {}
+
+    // Position the stream starts after: ?since=<epoch>:<seq>, else the Last-Event-ID of a reconnecting
+    // EventSource, else null (only new changes). A bare number has no epoch and is answered with a reset.
+    private static FeedPosition feedStart(HttpExchange ex, Map<String, String> query) {
+        String since = query.get("since");
+        if (since == null) since = ex.getRequestHeaders().getFirst("Last-Event-ID");
+        if (since == null || since.isBlank()) return null;
+        since = since.trim();
+        int colon = since.lastIndexOf(':');
+        if (colon < 0) return new FeedPosition(null, Long.parseLong(since));
+        return new FeedPosition(since.substring(0, colon), Long.parseLong(since.substring(colon + 1)));
+    }
+
+    // Push every change after 'since' as one event each (id = <epoch>:<seq>) until the client goes away.
+    // A "reset" event means changes were missed, or the server restarted and sequences and line ids began
+    // again: the display reloads jobs and orders through the regular endpoints and keeps reading, the stream
+    // continues from the position given in the event.
+    private void streamFeed(HttpExchange ex, ChangeFeed feed, FeedPosition since) {
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        try (OutputStream out = ex.getResponseBody()) {
+            ex.sendResponseHeaders(200, 0);
+            String epoch = feed.getEpoch();
+            // the first wait uses the client's epoch so a position from an earlier run is reported as a gap
+            String clientEpoch = since != null ? since.epoch() : epoch;
+            long seq = since != null ? since.seq() : feed.getHead();
+            StringBuilder sb = new StringBuilder();
+            sb.append("retry: 2000\n: head ").append(epoch).append(':').append(feed.getHead()).append("\n\n");
+            while (running) {
+                ChangeFeed.Batch batch = feed.awaitSince(clientEpoch, seq, FEED_KEEPALIVE_SECONDS, java.util.concurrent.TimeUnit.SECONDS);
+                clientEpoch = epoch;
+                if (batch.gap()) {
+                    sb.append("id: ").append(epoch).append(':').append(batch.head()).append("\nevent: reset\ndata: ")
+                            .append(Json.write(Json.obj("epoch", epoch, "head", batch.head()))).append("\n\n");
+                } else if (batch.changes().isEmpty()) {
+                    sb.append(": keepalive\n\n");
+                }
+                for (ChangeFeed.Change c : batch.changes()) {
+                    sb.append("id: ").append(epoch).append(':').append(c.seq()).append("\nevent: ").append(c.kind() == ChangeFeed.Kind.JOB ? "job" : "order")
+                            .append("\ndata: ").append(Json.write(change(c))).append("\n\n");
+                }
+                seq = batch.head();
+                out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                sb.setLength(0);
+            }
+        } catch (IOException e) {
+            // client disconnected; it resumes with Last-Event-ID
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Compact delta: only what a display needs to update one row, absent fields left out
+    static Map<String, Object> change(ChangeFeed.Change c) {
+        Map<String, Object> m = Json.obj("seq", c.seq(), "id", c.id());
+        if (c.mesaId() >= 0) m.put("mesa", c.mesaId());
+        m.put("nombre", c.nombre());
+        m.put("qty", c.quantity());
+        m.put("estado", c.estado());
+        if (c.etaMinutes() != null) m.put("eta", c.etaMinutes());
+        if (c.jobId() != null) m.put("job", c.jobId());
+        if (c.rush()) m.put("rush", true);
+        return m;
+    }
+
+    private static Reply notFound(Request r) {
+        return Reply.error(404, "Ruta no encontrada: " + r.method() + " /api/" + String.join("/", r.path()));
+    }
+
+    // ---------------------------------------------------------------- JSON views
+
+    static Map<String, Object> recipe(Recipe r) {
+        return Json.obj("id", r.getId(), "nombre", r.getNombre(), "precio", r.getPrecio(),
+                "tiempoPreparacionMinutos", r.getTiempoPreparacionMinutos());
+    }
+
+    static Map<String, Object> stockItem(InventorySnapshot.Item i) {
+        return Json.obj("id", i.getId(), "nombre", i.getIngrediente().getNombre(),
+                "cantidad", i.getCantidadActual(), "unidad", i.getIngrediente().getUnidadMedida().name(),
+                "cantidadBase", i.getCantidadBase(), "cantidadMinima", i.getCantidadMinima(),
+                "bajoUmbral", i.isBajoUmbral());
+    }
+
+    static Map<String, Object> mesa(TableService ts, Mesa m) {
+        return Json.obj("id", m.getId(), "capacidad", m.getCapacidad(), "estado", m.getEstado().name(),
+                "vip", ts.isVipTable(m.getId()), "tabTotal", ts.getTabTotal(m.getId()), "version", m.getVersion());
+    }
+
+    static Map<String, Object> orderItem(OrderItem oi) {
+        return Json.obj("lineId", oi.getLineId(), "name", oi.getName(), "quantity", oi.getQuantity(), "recipeId", oi.getRecipeId(),
+                "jobId", oi.getProductionJobId(), "estimatedMinutes", oi.getEstimatedMinutes(),
+                "estado", oi.getEstado().name(), "unitPrice", oi.getUnitPrice(), "version", oi.getVersion());
+    }
+
+    static List<Object> orderItems(List<OrderItem> items) {
+        List<Object> res = new ArrayList<>(items.size());
+        for (OrderItem oi : items) res.add(orderItem(oi));
+        return res;
+    }
+
+    static Map<String, Object> reservation(Reservation r) {
+        return Json.obj("id", r.getId(), "customer", r.getCustomerName(), "guests", r.getGuests(),
+                "when", r.getWhen() != null ? r.getWhen().toString() : null, "tableId", r.getTableId(),
+                "status", r.getStatus().name(), "vip", r.isVip(), "version", r.getVersion());
+    }
+
+    static Map<String, Object> quote(WaitlistService.Quote q) {
+        return Json.obj("tableId", q.mesaId(), "readyAt", q.readyAt() != null ? q.readyAt().toString() : null,
+                "waitMinutes", q.mesaId() != null ? q.waitMinutes() : null);
+    }
+
+    static Map<String, Object> party(WaitlistService.Party p) {
+        return Json.obj("id", p.id(), "name", p.nombre(), "guests", p.guests(), "addedAt", p.addedAt().toString(),
+                "quote", p.quote() != null ? quote(p.quote()) : null);
+    }
+
+    static Map<String, Object> job(ProductionJob j) {
+        return Json.obj("id", j.getId(), "recipeId", j.getRecipe().getId(), "recipe", j.getRecipe().getNombre(),
+                "quantity", j.getQuantity(), "batchSize", j.getBatchSize(), "status", j.getStatus().name(),
+                "rush", j.isRush(), "vip", j.isVip(), "awaitingConfirmation", j.isAwaitingConfirmation(),
+                "startedAt", j.getStartedAt() != null ? j.getStartedAt().toString() : null, "note", j.getNote(),
+                "version", j.getVersion());
+    }
+
+    // ---------------------------------------------------------------- plumbing
+
+    private static String requireString(Map<String, Object> body, String key) {
+        Object v = body.get(key);
+        if (v == null) throw new IllegalArgumentException("Falta el campo " + key);
+        return v.toString();
+    }
+
+    private static double requireNumber(Map<String, Object> body, String key) {
+        Object v = body.get(key);
+        if (!(v instanceof Number n)) throw new IllegalArgumentException("Falta el campo numérico " + key);
+        return n.doubleValue();
+    }
+
+    // Whole numbers only: 1.5 units is a client error, not 1
+    private static int requireInt(Map<String, Object> body, String key) {
+        double d = requireNumber(body, key);
+        if (d != Math.rint(d) || d < Integer.MIN_VALUE || d > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("El campo " + key + " debe ser un entero: " + body.get(key));
+        }
+        return (int) d;
+    }
+
+    private static Map<String, String> parseQuery(String raw) {
+        Map<String, String> res = new java.util.HashMap<>();
+        if (raw == null || raw.isEmpty()) return res;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, StandardCharsets.UTF_8);
+            String v = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "";
+            res.put(k, v);
+        }
+        return res;
+    }
+
+    // Requests are small JSON objects; anything bigger is refused before it is buffered
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private static final class BodyTooLargeException extends RuntimeException {
+        BodyTooLargeException() { super("El cuerpo supera " + MAX_BODY_BYTES + " bytes"); }
+    }
+
+    private static String readBody(HttpExchange ex) throws IOException {
+        String len = ex.getRequestHeaders().getFirst("Content-Length");
+        if (len != null) {
+            try {
+                if (Long.parseLong(len.trim()) > MAX_BODY_BYTES) throw new BodyTooLargeException();
+            } catch (NumberFormatException ignored) {
+                // chunked or malformed: the read below enforces the limit
+            }
+        }
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] b = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (b.length > MAX_BODY_BYTES) throw new BodyTooLargeException();
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange ex, Reply reply) throws IOException {
+        byte[] bytes = Json.write(reply.body()).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(reply.status(), bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
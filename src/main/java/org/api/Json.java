@@ -0,0 +1,211 @@
+package org.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal JSON support for the HTTP API (the project has no JSON dependency). write() serializes maps,
+// collections, strings, numbers, booleans and null; parse() returns the same shapes back
+// (objects as LinkedHashMap, arrays as ArrayList, numbers as Double).
+public final class Json {
+    private Json() {}
+
+    public static String write(Object value) {
+        StringBuilder sb = new StringBuilder();
+        write(sb, value);
+        return sb.toString();
+    }
+
+    private static void write(StringBuilder sb, Object v) {
+        if (v == null) {
+            sb.append("null");
+        } else if (v instanceof String s) {
+            quote(sb, s);
+        } else if (v instanceof Number || v instanceof Boolean) {
+            if (v instanceof Double d && (d.isNaN() || d.isInfinite())) sb.append("null");
+            else sb.append(v);
+        } else if (v instanceof Map<?, ?> m) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                quote(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                write(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (v instanceof Collection<?> c) {
+            sb.append('[');
+            boolean first = true;
+            for (Object o : c) {
+                if (!first) sb.append(',');
+                first = false;
+                write(sb, o);
+            }
+            sb.append(']');
+        } else {
+            quote(sb, v.toString());
+        }
+    }
+
+    private static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    // Ordered object builder: Json.obj("id", 1, "nombre", "Pizza")
+    public static Map<String, Object> obj(Object... kv) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < kv.length; i += 2) m.put(String.valueOf(kv[i]), kv[i + 1]);
+        return m;
+    }
+
+    public static Object parse(String text) {
+        Parser p = new Parser(text);
+        p.skipWs();
+        Object v = p.value();
+        p.skipWs();
+        if (p.pos != text.length()) throw new IllegalArgumentException("JSON inválido: datos de más en la posición " + p.pos);
+        return v;
+    }
+
+    // Parse a JSON object (empty body = empty object)
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String text) {
+        if (text == null || text.isBlank()) return new LinkedHashMap<>();
+        Object v = parse(text);
+        if (!(v instanceof Map)) throw new IllegalArgumentException("Se esperaba un objeto JSON");
+        return (Map<String, Object>) v;
+    }
+
+    private static final class Parser {
+        private final String s;
+        private int pos;
+
+        Parser(String s) { this.s = s; }
+
+        void skipWs() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        Object value() {
+            if (pos >= s.length()) throw error("fin inesperado");
+            char c = s.charAt(pos);
+            switch (c) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return string();
+                case 't': expect("true"); return Boolean.TRUE;
+                case 'f': expect("false"); return Boolean.FALSE;
+                case 'n': expect("null"); return null;
+                default: return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            pos++;
+            skipWs();
+            if (peek() == '}') { pos++; return m; }
+            while (true) {
+                skipWs();
+                String key = string();
+                skipWs();
+                if (peek() != ':') throw error("se esperaba ':'");
+                pos++;
+                skipWs();
+                m.put(key, value());
+                skipWs();
+                char c = peek();
+                pos++;
+                if (c == '}') return m;
+                if (c != ',') throw error("se esperaba ',' o '}'");
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> l = new ArrayList<>();
+            pos++;
+            skipWs();
+            if (peek() == ']') { pos++; return l; }
+            while (true) {
+                skipWs();
+                l.add(value());
+                skipWs();
+                char c = peek();
+                pos++;
+                if (c == ']') return l;
+                if (c != ',') throw error("se esperaba ',' o ']'");
+            }
+        }
+
+        private String string() {
+            if (peek() != '"') throw error("se esperaba un string");
+            pos++;
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= s.length()) throw error("string sin cerrar");
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                if (pos >= s.length()) throw error("string sin cerrar");
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > s.length()) throw error("escape \\u incompleto");
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("escape \\u inválido");
+                        }
+                        pos += 4;
+                    }
+                    default -> sb.append(e);
+                }
+            }
+        }
+
+        private Double number() {
+            int start = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+            if (start == pos) throw error("valor inesperado");
+            return Double.parseDouble(s.substring(start, pos));
+        }
+
+        private void expect(String word) {
+            if (!s.startsWith(word, pos)) throw error("se esperaba " + word);
+            pos += word.length();
+        }
+
+        private char peek() {
+            if (pos >= s.length()) throw error("fin inesperado");
+            return s.charAt(pos);
+        }
+
+        private IllegalArgumentException error(String msg) {
+            return new IllegalArgumentException("JSON inválido: " + msg + " en la posición " + pos);
+        }
+    }
+}
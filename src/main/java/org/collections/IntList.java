@@ -0,0 +1,75 @@
+package org.collections;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Growable list of primitive ints (insertion order kept). Not thread-safe.
+public class IntList {
+    private int[] data;
+    private int size;
+
+    public IntList() {
+        this(8);
+    }
+
+    public IntList(int initialCapacity) {
+        data = new int[Math.max(1, initialCapacity)];
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public void add(int v) {
+        if (size == data.length) data = Arrays.copyOf(data, size << 1);
+        data[size++] = v;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        return data[index];
+    }
+
+    public void set(int index, int v) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        data[index] = v;
+    }
+
+    public int indexOf(int v) {
+        for (int i = 0; i < size; i++) {
+            if (data[i] == v) return i;
+        }
+        return -1;
+    }
+
+    public boolean contains(int v) {
+        return indexOf(v) >= 0;
+    }
+
+    // Remove by position keeping order; returns the removed value
+    public int removeAt(int index) {
+        int v = get(index);
+        System.arraycopy(data, index + 1, data, index, size - index - 1);
+        size--;
+        return v;
+    }
+
+    // Remove the first occurrence of a value keeping order; returns true if it was present
+    public boolean removeValue(int v) {
+        int i = indexOf(v);
+        if (i < 0) return false;
+        removeAt(i);
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) action.accept(data[i]);
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
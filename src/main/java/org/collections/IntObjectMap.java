@@ -0,0 +1,249 @@
+package org.collections;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+// Open-addressing hash map from primitive int keys to objects (linear probing, backward-shift deletion).
+// Lookups do not box the key and entries live in two flat arrays instead of one node object each.
+// A null value marks an empty slot, so null values are not allowed (put(k, null) removes k).
+// Not thread-safe: owners guard it with their own lock, as they did with HashMap.
+public class IntObjectMap<V> {
+    private static final int MIN_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private Object[] vals;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    @FunctionalInterface
+    public interface Visitor<V> {
+        void visit(int key, V value);
+    }
+
+    public IntObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        int cap = MIN_CAPACITY;
+        while (cap * LOAD_FACTOR < expectedSize) cap <<= 1;
+        allocate(cap);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        vals = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int indexOf(int key) {
+        int i = mix(key) & mask;
+        while (vals[i] != null) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int i = indexOf(key);
+        return i >= 0 ? (V) vals[i] : null;
+    }
+
+    public V getOrDefault(int key, V defaultValue) {
+        V v = get(key);
+        return v != null ? v : defaultValue;
+    }
+
+    // Returns the previous value, or null
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) return remove(key);
+        int i = mix(key) & mask;
+        while (vals[i] != null) {
+            if (keys[i] == key) {
+                V old = (V) vals[i];
+                vals[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        vals[i] = value;
+        if (++size > resizeAt) rehash(keys.length << 1);
+        return null;
+    }
+
+    public V putIfAbsent(int key, V value) {
+        V v = get(key);
+        if (v == null) put(key, value);
+        return v;
+    }
+
+    public V computeIfAbsent(int key, IntFunction<? extends V> factory) {
+        V v = get(key);
+        if (v == null) {
+            v = factory.apply(key);
+            if (v != null) put(key, v);
+        }
+        return v;
+    }
+
+    // Returns the removed value, or null
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int i = indexOf(key);
+        if (i < 0) return null;
+        V old = (V) vals[i];
+        // backward-shift: pull later entries of the probe chain into the hole so no tombstones are needed
+        int hole = i;
+        int j = (i + 1) & mask;
+        while (vals[j] != null) {
+            int home = mix(keys[j]) & mask;
+            // move j into the hole if its home slot is not in (hole, j] (cyclically)
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                vals[hole] = vals[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        vals[hole] = null;
+        size--;
+        return old;
+    }
+
+    // Remove the key only if it is currently mapped to value (identity or equals)
+    public boolean remove(int key, Object value) {
+        V cur = get(key);
+        if (cur == null || !(cur == value || cur.equals(value))) return false;
+        remove(key);
+        return true;
+    }
+
+    // Independent copy (e.g. to publish it to readers and never modify it again)
+    public IntObjectMap<V> copy() {
+        IntObjectMap<V> c = new IntObjectMap<>(MIN_CAPACITY);
+        c.keys = keys.clone();
+        c.vals = vals.clone();
+        c.size = size;
+        c.mask = mask;
+        c.resizeAt = resizeAt;
+        return c;
+    }
+
+    public void clear() {
+        Arrays.fill(vals, null);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldVals = vals;
+        allocate(capacity);
+        for (int i = 0; i < oldVals.length; i++) {
+            if (oldVals[i] == null) continue;
+            int j = mix(oldKeys[i]) & mask;
+            while (vals[j] != null) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            vals[j] = oldVals[i];
+        }
+    }
+
+    // Visit every entry without allocating (order unspecified; do not modify the map while visiting)
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<? super V> visitor) {
+        Object[] vs = vals;
+        int[] ks = keys;
+        for (int i = 0; i < vs.length; i++) {
+            if (vs[i] != null) visitor.visit(ks[i], (V) vs[i]);
+        }
+    }
+
+    public int[] keys() {
+        int[] res = new int[size];
+        int n = 0;
+        for (int i = 0; i < vals.length; i++) {
+            if (vals[i] != null) res[n++] = keys[i];
+        }
+        return res;
+    }
+
+    // Live, read-only view of the values (iteration allocates only the iterator)
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override public Iterator<V> iterator() { return new SlotIterator<>(i -> valueAt(i)); }
+            @Override public int size() { return size; }
+        };
+    }
+
+    // Live, read-only java.util.Map view for APIs that hand out a Map (boxes keys on access)
+    public Map<Integer, V> asMap() {
+        return new AbstractMap<>() {
+            @Override public V get(Object k) { return k instanceof Integer ? IntObjectMap.this.get((Integer) k) : null; }
+            @Override public boolean containsKey(Object k) { return k instanceof Integer && IntObjectMap.this.containsKey((Integer) k); }
+            @Override public int size() { return size; }
+            @Override public Collection<V> values() { return IntObjectMap.this.values(); }
+            @Override public Set<Map.Entry<Integer, V>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override public Iterator<Map.Entry<Integer, V>> iterator() {
+                        return new SlotIterator<>(i -> new AbstractMap.SimpleImmutableEntry<>(keys[i], valueAt(i)));
+                    }
+                    @Override public int size() { return size; }
+                };
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int slot) {
+        return (V) vals[slot];
+    }
+
+    private class SlotIterator<T> implements Iterator<T> {
+        private final IntFunction<T> at;
+        private int next = -1;
+
+        SlotIterator(IntFunction<T> at) {
+            this.at = at;
+            advance();
+        }
+
+        private void advance() {
+            do { next++; } while (next < vals.length && vals[next] == null);
+        }
+
+        @Override public boolean hasNext() { return next < vals.length; }
+
+        @Override public T next() {
+            if (next >= vals.length) throw new NoSuchElementException();
+            T t = at.apply(next);
+            advance();
+            return t;
+        }
+    }
+}
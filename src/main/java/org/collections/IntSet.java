@@ -0,0 +1,141 @@
+package org.collections;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Open-addressing hash set of primitive ints (linear probing, backward-shift deletion). 0 is the empty
+// slot marker and is tracked with a separate flag. Not thread-safe.
+public class IntSet {
+    private static final int MIN_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] slots;
+    private int size; // excluding the zero key
+    private boolean hasZero;
+    private int mask;
+    private int resizeAt;
+
+    public IntSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntSet(int expectedSize) {
+        int cap = MIN_CAPACITY;
+        while (cap * LOAD_FACTOR < expectedSize) cap <<= 1;
+        allocate(cap);
+    }
+
+    private void allocate(int capacity) {
+        slots = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() { return size + (hasZero ? 1 : 0); }
+    public boolean isEmpty() { return size() == 0; }
+
+    public boolean contains(int v) {
+        if (v == 0) return hasZero;
+        int i = mix(v) & mask;
+        while (slots[i] != 0) {
+            if (slots[i] == v) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    // Returns true if the value was not present
+    public boolean add(int v) {
+        if (v == 0) {
+            boolean added = !hasZero;
+            hasZero = true;
+            return added;
+        }
+        int i = mix(v) & mask;
+        while (slots[i] != 0) {
+            if (slots[i] == v) return false;
+            i = (i + 1) & mask;
+        }
+        slots[i] = v;
+        if (++size > resizeAt) rehash(slots.length << 1);
+        return true;
+    }
+
+    // Returns true if the value was present
+    public boolean remove(int v) {
+        if (v == 0) {
+            boolean removed = hasZero;
+            hasZero = false;
+            return removed;
+        }
+        int i = mix(v) & mask;
+        while (slots[i] != v) {
+            if (slots[i] == 0) return false;
+            i = (i + 1) & mask;
+        }
+        int hole = i;
+        int j = (i + 1) & mask;
+        while (slots[j] != 0) {
+            int home = mix(slots[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                slots[hole] = slots[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        slots[hole] = 0;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, 0);
+        size = 0;
+        hasZero = false;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = slots;
+        allocate(capacity);
+        for (int v : old) {
+            if (v == 0) continue;
+            int j = mix(v) & mask;
+            while (slots[j] != 0) j = (j + 1) & mask;
+            slots[j] = v;
+        }
+    }
+
+    // Visit every value without allocating (order unspecified; do not modify the set while visiting)
+    public void forEach(IntConsumer action) {
+        if (hasZero) action.accept(0);
+        for (int v : slots) {
+            if (v != 0) action.accept(v);
+        }
+    }
+
+    public int[] toArray() {
+        int[] res = new int[size()];
+        int n = 0;
+        if (hasZero) res[n++] = 0;
+        for (int v : slots) {
+            if (v != 0) res[n++] = v;
+        }
+        return res;
+    }
+
+    // Copy of this set (e.g. to publish it to readers)
+    public IntSet copy() {
+        IntSet c = new IntSet(MIN_CAPACITY);
+        c.slots = slots.clone();
+        c.size = size;
+        c.hasZero = hasZero;
+        c.mask = mask;
+        c.resizeAt = resizeAt;
+        return c;
+    }
+}
@@ -0,0 +1,160 @@
+package org.collections;
+
+import java.util.function.IntConsumer;
+
+// Set of half-open intervals [start, end) tagged with an int id, kept in an AVL tree ordered by (start, id).
+// Every node also stores the largest end of its subtree, so "does anything overlap [s, e)?" walks a single
+// path from the root: O(log n). Not thread-safe.
+public class IntervalTree {
+    private static final class Node {
+        final long start, end;
+        final int id;
+        long maxEnd;
+        int height = 1;
+        Node left, right;
+
+        Node(long start, long end, int id) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.maxEnd = end;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    // Add [start, end) for id; the same (start, id) pair is stored only once
+    public void add(long start, long end, int id) {
+        if (end <= start) throw new IllegalArgumentException("Intervalo vacío: [" + start + ", " + end + ")");
+        root = insert(root, start, end, id);
+    }
+
+    // Remove the interval added with this start and id; returns true if it was present
+    public boolean remove(long start, int id) {
+        int before = size;
+        root = delete(root, start, id);
+        return size < before;
+    }
+
+    // True if some interval intersects [start, end)
+    public boolean overlaps(long start, long end) {
+        Node x = root;
+        while (x != null) {
+            if (x.start < end && x.end > start) return true;
+            // if the left side reaches past 'start' and holds no overlap, nothing on the right can either
+            if (x.left != null && x.left.maxEnd > start) x = x.left;
+            else if (x.start < end) x = x.right;
+            else return false;
+        }
+        return false;
+    }
+
+    // Visit the id of every interval intersecting [start, end), in start order
+    public void forEachOverlapping(long start, long end, IntConsumer action) {
+        visit(root, start, end, action);
+    }
+
+    // Number of intervals intersecting [start, end)
+    public int countOverlapping(long start, long end) {
+        int[] n = new int[1];
+        visit(root, start, end, id -> n[0]++);
+        return n[0];
+    }
+
+    private static void visit(Node x, long start, long end, IntConsumer action) {
+        if (x == null || x.maxEnd <= start) return;
+        visit(x.left, start, end, action);
+        if (x.start >= end) return; // everything to the right starts later still
+        if (x.end > start) action.accept(x.id);
+        visit(x.right, start, end, action);
+    }
+
+    private static int compare(long start, int id, Node x) {
+        int c = Long.compare(start, x.start);
+        return c != 0 ? c : Integer.compare(id, x.id);
+    }
+
+    private Node insert(Node x, long start, long end, int id) {
+        if (x == null) {
+            size++;
+            return new Node(start, end, id);
+        }
+        int c = compare(start, id, x);
+        if (c < 0) x.left = insert(x.left, start, end, id);
+        else if (c > 0) x.right = insert(x.right, start, end, id);
+        else return x;
+        return balance(x);
+    }
+
+    private Node delete(Node x, long start, int id) {
+        if (x == null) return null;
+        int c = compare(start, id, x);
+        if (c < 0) x.left = delete(x.left, start, id);
+        else if (c > 0) x.right = delete(x.right, start, id);
+        else {
+            size--;
+            if (x.left == null) return x.right;
+            if (x.right == null) return x.left;
+            // replace by the smallest node of the right subtree
+            Node m = x.right;
+            while (m.left != null) m = m.left;
+            Node repl = new Node(m.start, m.end, m.id);
+            size++; // the recursive delete below counts the moved node again
+            repl.right = delete(x.right, m.start, m.id);
+            repl.left = x.left;
+            x = repl;
+        }
+        return balance(x);
+    }
+
+    private static int height(Node x) { return x == null ? 0 : x.height; }
+
+    private static void update(Node x) {
+        x.height = 1 + Math.max(height(x.left), height(x.right));
+        long max = x.end;
+        if (x.left != null && x.left.maxEnd > max) max = x.left.maxEnd;
+        if (x.right != null && x.right.maxEnd > max) max = x.right.maxEnd;
+        x.maxEnd = max;
+    }
+
+    private static Node balance(Node x) {
+        update(x);
+        int bf = height(x.left) - height(x.right);
+        if (bf > 1) {
+            if (height(x.left.left) < height(x.left.right)) x.left = rotateLeft(x.left);
+            return rotateRight(x);
+        }
+        if (bf < -1) {
+            if (height(x.right.right) < height(x.right.left)) x.right = rotateRight(x.right);
+            return rotateLeft(x);
+        }
+        return x;
+    }
+
+    private static Node rotateRight(Node x) {
+        Node l = x.left;
+        x.left = l.right;
+        l.right = x;
+        update(x);
+        update(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node x) {
+        Node r = x.right;
+        x.right = r.left;
+        r.left = x;
+        update(x);
+        update(r);
+        return r;
+    }
+}
@@ -0,0 +1,571 @@
+package org.db;
+
+import org.models.CommandPipeline;
+import org.models.DetalleIngrediente;
+import org.models.InventorySnapshot;
+import org.models.Magnitud;
+import org.models.Mesa;
+import org.models.Reservation;
+import org.models.ReservationService;
+import org.models.ReservationStatus;
+import org.models.StockGeneral;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Bulk import/export of reservations and stock counts as CSV (first line is the header, one record per line)
+// or JSON lines (one flat object per line). Files are streamed: lines are read in chunks, each chunk is
+// parsed and validated on a small pool, and the chunks are applied in file order by the calling thread,
+// each one written to the database in a single transaction. At most two chunks per pool thread are in
+// flight, so memory stays bounded whatever the size of the file. Exports format chunks the same way.
+// Owns its DatabaseHelper (a connection of its own, like InvoiceWriter); without one nothing is written
+// to the database and only the in-memory services are updated. With a command pipeline (the branch's
+// single writer) each chunk is applied as one command on it; reading and parsing stay off the writer.
+public class BulkTransfer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(BulkTransfer.class.getName());
+    private static final int CHUNK_LINES = 4096;
+    private static final int MAX_ERRORS = 100;
+
+    public static final List<String> RESERVATION_COLUMNS = List.of("id", "customer", "guests", "when", "tableId", "status", "vip");
+    public static final List<String> STOCK_COLUMNS = List.of("ingredienteId", "nombre", "magnitud", "cantidad");
+
+    public enum Format {
+        CSV, JSONL;
+
+        // .jsonl / .ndjson / .json are JSON lines, anything else CSV
+        public static Format of(Path file) {
+            String n = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return n.endsWith(".jsonl") || n.endsWith(".ndjson") || n.endsWith(".json") ? JSONL : CSV;
+        }
+    }
+
+    // Outcome of an import: lines read, rows applied, rows rejected (first MAX_ERRORS reasons kept)
+    public record Result(long rows, long imported, long rejected, List<String> errors, long millis) {}
+
+    private final DatabaseHelper db;
+    private final int threads;
+    private final ExecutorService pool;
+    private volatile CommandPipeline commands = null;
+
+    public BulkTransfer(DatabaseHelper db) {
+        this(db, Math.max(1, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public BulkTransfer(DatabaseHelper db, int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("Se necesita al menos un hilo");
+        this.db = db;
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "bulk-transfer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Apply chunks on this pipeline instead of the calling thread (null: the caller applies them)
+    public void setCommandPipeline(CommandPipeline commands) {
+        this.commands = commands;
+    }
+
+    // ---- reservations ----
+
+    private record ReservationRow(Integer id, String customer, int guests, LocalDateTime when, Integer tableId,
+                                  ReservationStatus status, boolean vip) {}
+
+    // Rows are checked against the tables (id and capacity) and ReservationStatus; ids already in use, in
+    // memory or in the database, are rejected and rows without id get a new one. Each chunk is written to the
+    // database before the service sees it: saved bookings are never overwritten (a row whose id is on file is
+    // rejected), and if the database refuses the chunk its rows are reported as rejected and nothing is registered.
+    public Result importReservations(Path file, ReservationService reservations, Map<Integer, Mesa> mesas) throws IOException {
+        return importFile(file, List.of("customer", "guests", "when"), row -> parseReservation(row, mesas),
+                (rows, reject) -> {
+                    List<Reservation> batch = new ArrayList<>(rows.size());
+                    java.util.Set<Integer> ids = new java.util.HashSet<>();
+                    for (ReservationRow rr : rows) {
+                        if (rr.id() != null && (reservations.findById(rr.id()).isPresent() || !ids.add(rr.id()))) {
+                            reject.accept("id " + rr.id() + " ya existe");
+                            continue;
+                        }
+                        int id = rr.id() != null ? rr.id() : reservations.allocateId();
+                        ids.add(id);
+                        Reservation r = new Reservation(id, rr.customer(), rr.guests(), rr.when());
+                        r.setStatus(rr.status());
+                        r.setVip(rr.vip());
+                        r.setTableId(rr.tableId());
+                        batch.add(r);
+                    }
+                    if (db != null) {
+                        List<Integer> taken = db.insertNewReservations(batch);
+                        if (taken == null) {
+                            for (Reservation r : batch) reject.accept("id " + r.getId() + ": no se pudo guardar en la base de datos");
+                            return 0;
+                        }
+                        if (!taken.isEmpty()) {
+                            java.util.Set<Integer> onFile = new java.util.HashSet<>(taken);
+                            for (Integer id : taken) reject.accept("id " + id + " ya existe en la base de datos");
+                            batch.removeIf(r -> onFile.contains(r.getId()));
+                        }
+                    }
+                    List<Reservation> sinMesa = new ArrayList<>();
+                    for (Reservation r : batch) {
+                        Integer mesa = r.getTableId();
+                        // books the table slot; a clash leaves the booking without table
+                        reservations.restoreReservation(r);
+                        if (mesa != null && r.getTableId() == null) sinMesa.add(r);
+                    }
+                    if (db != null && !db.insertReservations(sinMesa)) {
+                        LOGGER.log(Level.WARNING, "No se pudo quitar la mesa de {0} reservas importadas sin lugar", sinMesa.size());
+                    }
+                    return batch.size();
+                });
+    }
+
+    private static ReservationRow parseReservation(Row row, Map<Integer, Mesa> mesas) {
+        Integer id = optionalInt(row, "id");
+        if (id != null && id <= 0) throw new IllegalArgumentException("id debe ser mayor que 0");
+        String customer = row.get("customer");
+        if (customer == null || customer.isBlank()) throw new IllegalArgumentException("customer es obligatorio");
+        int guests = requireInt(row, "guests");
+        if (guests <= 0) throw new IllegalArgumentException("guests debe ser mayor que 0");
+        LocalDateTime when;
+        try {
+            when = LocalDateTime.parse(row.get("when").trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("when inválido: " + row.get("when"));
+        }
+        Integer tableId = optionalInt(row, "tableId");
+        if (tableId != null) {
+            Mesa m = mesas.get(tableId);
+            if (m == null) throw new IllegalArgumentException("Mesa ID " + tableId + " no encontrada");
+            if (m.getCapacidad() < guests) throw new IllegalArgumentException("Mesa " + tableId + " no tiene lugar para " + guests);
+        }
+        ReservationStatus status = ReservationStatus.PENDING;
+        String st = row.get("status");
+        if (st != null && !st.isBlank()) {
+            try {
+                status = ReservationStatus.valueOf(st.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("status inválido: " + st);
+            }
+        }
+        String vip = row.get("vip");
+        boolean isVip = vip != null && (vip.equalsIgnoreCase("true") || vip.equals("1") || vip.equalsIgnoreCase("si"));
+        return new ReservationRow(id, customer.trim(), guests, when, tableId, status, isVip);
+    }
+
+    public long exportReservations(Path file, Collection<Reservation> reservations) throws IOException {
+        Format format = Format.of(file);
+        return exportFile(file, format == Format.CSV ? String.join(",", RESERVATION_COLUMNS) : null,
+                new ArrayList<>(reservations), r -> format(format, RESERVATION_COLUMNS, r.getId(), r.getCustomerName(),
+                        r.getGuests(), r.getWhen(), r.getTableId(), r.getStatus(), r.isVip()));
+    }
+
+    // ---- stock counts ----
+
+    private record StockRow(int ingredienteId, long cantidadBase) {}
+
+    // A physical count per ingredient: the ingredient has to exist, the quantity is in 'magnitud' (default the
+    // ingredient's own) which must measure the same thing (g, ml or units). The last count of an ingredient
+    // wins. The counts are applied as absolute quantities in one step (StockGeneral.aplicarConteo, which keeps
+    // the per-change persistence quiet) and the changed records saved here in one transaction.
+    public Result importStock(Path file, StockGeneral stock) throws IOException {
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        Result res = importFile(file, List.of("ingredienteId", "cantidad"), row -> parseStock(row, stock),
+                (rows, reject) -> {
+                    for (StockRow sr : rows) counts.put(sr.ingredienteId(), sr.cantidadBase());
+                    return rows.size();
+                });
+        List<DetalleIngrediente> changed = stock.aplicarConteo(counts);
+        if (db != null && !db.insertStock(changed)) {
+            LOGGER.log(Level.WARNING, "No se pudo guardar el conteo de {0} ingredientes", changed.size());
+        }
+        return res;
+    }
+
+    private static StockRow parseStock(Row row, StockGeneral stock) {
+        int id = requireInt(row, "ingredienteId");
+        DetalleIngrediente d = stock.obtenerStockPorId(id);
+        if (d == null) throw new IllegalArgumentException("Ingrediente ID " + id + " no existe en el inventario");
+        Magnitud propia = d.getIngrediente().getUnidadMedida();
+        Magnitud magnitud = propia;
+        String m = row.get("magnitud");
+        if (m != null && !m.isBlank()) {
+            try {
+                magnitud = Magnitud.valueOf(m.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("magnitud inválida: " + m);
+            }
+            if (!magnitud.getSimboloBase().equals(propia.getSimboloBase())) {
+                throw new IllegalArgumentException("magnitud " + magnitud + " no sirve para " + d.getIngrediente().getNombre() + " (" + propia + ")");
+            }
+        }
+        double cantidad;
+        try {
+            cantidad = Double.parseDouble(row.get("cantidad").trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException("cantidad inválida: " + row.get("cantidad"));
+        }
+        if (cantidad < 0 || Double.isNaN(cantidad) || Double.isInfinite(cantidad)) {
+            throw new IllegalArgumentException("cantidad inválida: " + cantidad);
+        }
+        return new StockRow(id, magnitud.toBase(cantidad));
+    }
+
+    public long exportStock(Path file, InventorySnapshot snapshot) throws IOException {
+        Format format = Format.of(file);
+        return exportFile(file, format == Format.CSV ? String.join(",", STOCK_COLUMNS) : null,
+                snapshot.items(), i -> format(format, STOCK_COLUMNS, i.getId(), i.getIngrediente().getNombre(),
+                        i.getIngrediente().getUnidadMedida(), i.getCantidadActual()));
+    }
+
+    // ---- streaming machinery ----
+
+    // A parsed line: value of a column (null when missing or empty)
+    private interface Row {
+        String get(String column);
+    }
+
+    private interface RowParser<T> {
+        T parse(Row row); // IllegalArgumentException rejects the row
+    }
+
+    // Applies the valid rows of a chunk in file order; returns how many were applied
+    private interface ChunkSink<T> {
+        int accept(List<T> rows, Consumer<String> reject);
+    }
+
+    private static final class Chunk<T> {
+        final List<T> rows = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        long read;
+        long rejected;
+    }
+
+    private static final class Totals {
+        long rows, imported, rejected;
+        final List<String> errors = new ArrayList<>();
+
+        void error(String e) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) errors.add(e);
+        }
+    }
+
+    private <T> Result importFile(Path file, List<String> required, RowParser<T> parser, ChunkSink<T> sink) throws IOException {
+        long t0 = System.nanoTime();
+        Format format = Format.of(file);
+        Totals totals = new Totals();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Integer> header = null;
+            long lineNo = 0;
+            if (format == Format.CSV) {
+                String h = in.readLine();
+                lineNo++;
+                if (h == null) return new Result(0, 0, 0, List.of(), 0);
+                if (h.startsWith("﻿")) h = h.substring(1);
+                header = new HashMap<>();
+                List<String> cols = splitCsv(h);
+                for (int i = 0; i < cols.size(); i++) header.put(cols.get(i).trim(), i);
+                List<String> missing = new ArrayList<>();
+                for (String c : required) if (!header.containsKey(c)) missing.add(c);
+                if (!missing.isEmpty()) throw new IllegalArgumentException("Faltan columnas: " + String.join(", ", missing));
+            }
+            Map<String, Integer> cols = header;
+            ArrayDeque<Future<Chunk<T>>> inFlight = new ArrayDeque<>();
+            List<String> lines = new ArrayList<>(CHUNK_LINES);
+            long first = lineNo + 1;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                lines.add(line);
+                if (lines.size() == CHUNK_LINES) {
+                    inFlight.add(submitChunk(lines, first, format, cols, parser));
+                    lines = new ArrayList<>(CHUNK_LINES);
+                    first = lineNo + 1;
+                    while (inFlight.size() >= 2 * threads) apply(inFlight.poll(), sink, totals);
+                }
+            }
+            if (!lines.isEmpty()) inFlight.add(submitChunk(lines, first, format, cols, parser));
+            while (!inFlight.isEmpty()) apply(inFlight.poll(), sink, totals);
+        }
+        long millis = (System.nanoTime() - t0) / 1_000_000L;
+        LOGGER.log(Level.INFO, "Importado {0}: {1} filas, {2} aplicadas, {3} rechazadas en {4} ms",
+                new Object[]{file.getFileName(), totals.rows, totals.imported, totals.rejected, millis});
+        return new Result(totals.rows, totals.imported, totals.rejected, List.copyOf(totals.errors), millis);
+    }
+
+    private <T> Future<Chunk<T>> submitChunk(List<String> lines, long firstLine, Format format,
+                                             Map<String, Integer> header, RowParser<T> parser) {
+        return pool.submit(() -> {
+            Chunk<T> c = new Chunk<>();
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line.isBlank()) continue;
+                c.read++;
+                try {
+                    Row row = format == Format.CSV ? csvRow(splitCsv(line), header) : jsonRow(parseFlatJson(line));
+                    c.rows.add(parser.parse(row));
+                } catch (RuntimeException e) {
+                    c.rejected++;
+                    if (c.errors.size() < MAX_ERRORS) c.errors.add("línea " + (firstLine + i) + ": " + e.getMessage());
+                }
+            }
+            return c;
+        });
+    }
+
+    private <T> void apply(Future<Chunk<T>> f, ChunkSink<T> sink, Totals totals) throws IOException {
+        Chunk<T> c = await(f);
+        totals.rows += c.read;
+        totals.rejected += c.rejected;
+        for (String e : c.errors) if (totals.errors.size() < MAX_ERRORS) totals.errors.add(e);
+        CommandPipeline writer = commands;
+        totals.imported += writer != null ? writer.call(() -> sink.accept(c.rows, totals::error)) : sink.accept(c.rows, totals::error);
+    }
+
+    private <T> long exportFile(Path file, String header, List<T> items, Function<T, String> formatter) throws IOException {
+        long t0 = System.nanoTime();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (header != null) {
+                out.write(header);
+                out.newLine();
+            }
+            ArrayDeque<Future<String>> inFlight = new ArrayDeque<>();
+            for (int from = 0; from < items.size(); from += CHUNK_LINES) {
+                List<T> part = items.subList(from, Math.min(items.size(), from + CHUNK_LINES));
+                inFlight.add(pool.submit(() -> {
+                    StringBuilder sb = new StringBuilder(part.size() * 64);
+                    for (T item : part) sb.append(formatter.apply(item)).append(System.lineSeparator());
+                    return sb.toString();
+                }));
+                while (inFlight.size() >= 2 * threads) out.write(await(inFlight.poll()));
+            }
+            while (!inFlight.isEmpty()) out.write(await(inFlight.poll()));
+        }
+        LOGGER.log(Level.INFO, "Exportado {0}: {1} filas en {2} ms",
+                new Object[]{file.getFileName(), items.size(), (System.nanoTime() - t0) / 1_000_000L});
+        return items.size();
+    }
+
+    private static <V> V await(Future<V> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Transferencia interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        if (db != null) db.close();
+    }
+
+    // ---- formats ----
+
+    private static Row csvRow(List<String> fields, Map<String, Integer> header) {
+        return column -> {
+            Integer i = header.get(column);
+            if (i == null || i >= fields.size()) return null;
+            String v = fields.get(i);
+            return v.isEmpty() ? null : v;
+        };
+    }
+
+    private static Row jsonRow(Map<String, String> values) {
+        return column -> {
+            String v = values.get(column);
+            return v == null || v.isEmpty() ? null : v;
+        };
+    }
+
+    private static Integer optionalInt(Row row, String column) {
+        String v = row.get(column);
+        if (v == null || v.isBlank()) return null;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " no es un número: " + v);
+        }
+    }
+
+    private static int requireInt(Row row, String column) {
+        Integer v = optionalInt(row, column);
+        if (v == null) throw new IllegalArgumentException(column + " es obligatorio");
+        return v;
+    }
+
+    // One CSV record (RFC 4180 quoting: "a ""b"", c" -> a "b", c); records do not span lines
+    static List<String> splitCsv(String line) {
+        List<String> res = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') { sb.append('"'); i++; }
+                    else quoted = false;
+                } else {
+                    sb.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                res.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Comillas sin cerrar");
+        res.add(sb.toString());
+        return res;
+    }
+
+    // Flat JSON object -> column values as text (strings unescaped, numbers and booleans as written, null -> null)
+    static Map<String, String> parseFlatJson(String line) {
+        Map<String, String> res = new HashMap<>();
+        int[] pos = {skipWs(line, 0)};
+        expect(line, pos, '{');
+        if (peek(line, pos) == '}') { pos[0]++; return res; }
+        while (true) {
+            String key = jsonString(line, pos);
+            expect(line, pos, ':');
+            char c = peek(line, pos);
+            String value;
+            if (c == '"') {
+                value = jsonString(line, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < line.length() && ",} \t".indexOf(line.charAt(pos[0])) < 0) pos[0]++;
+                value = line.substring(start, pos[0]);
+                if (value.isEmpty() || value.startsWith("{") || value.startsWith("[")) {
+                    throw new IllegalArgumentException("Valor no soportado para " + key);
+                }
+                if (value.equals("null")) value = null;
+            }
+            res.put(key, value);
+            char sep = peek(line, pos);
+            pos[0]++;
+            if (sep == '}') return res;
+            if (sep != ',') throw new IllegalArgumentException("JSON inválido cerca de la posición " + pos[0]);
+        }
+    }
+
+    private static int skipWs(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static char peek(String s, int[] pos) {
+        pos[0] = skipWs(s, pos[0]);
+        if (pos[0] >= s.length()) throw new IllegalArgumentException("JSON incompleto");
+        return s.charAt(pos[0]);
+    }
+
+    private static void expect(String s, int[] pos, char c) {
+        if (peek(s, pos) != c) throw new IllegalArgumentException("Se esperaba '" + c + "' en la posición " + pos[0]);
+        pos[0]++;
+    }
+
+    private static String jsonString(String s, int[] pos) {
+        expect(s, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (pos[0] < s.length()) {
+            char c = s.charAt(pos[0]++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') { sb.append(c); continue; }
+            if (pos[0] >= s.length()) break;
+            char e = s.charAt(pos[0]++);
+            switch (e) {
+                case 'n' -> sb.append('\n');
+                case 't' -> sb.append('\t');
+                case 'r' -> sb.append('\r');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'u' -> {
+                    if (pos[0] + 4 > s.length()) throw new IllegalArgumentException("Escape \\u incompleto");
+                    sb.append((char) Integer.parseInt(s.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                }
+                default -> sb.append(e);
+            }
+        }
+        throw new IllegalArgumentException("Texto sin cerrar");
+    }
+
+    // One record with the values in column order
+    private static String format(Format format, List<String> columns, Object... values) {
+        StringBuilder sb = new StringBuilder(64);
+        if (format == Format.CSV) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(',');
+                Object v = values[i];
+                if (v == null) continue;
+                String s = v.toString();
+                if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0) {
+                    sb.append('"').append(s.replace("\"", "\"\"").replace("\n", " ")).append('"');
+                } else {
+                    sb.append(s);
+                }
+            }
+            return sb.toString();
+        }
+        sb.append('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(columns.get(i)).append("\":");
+            Object v = values[i];
+            if (v == null) sb.append("null");
+            else if (v instanceof Number || v instanceof Boolean) sb.append(v);
+            else escapeJson(sb, v.toString());
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void escapeJson(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
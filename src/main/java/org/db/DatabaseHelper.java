@@ -1,5 +1,7 @@
 package org.db;
 
+import org.exceptions.InvalidQuantityException;
+import org.exceptions.SchemaMigrationException;
 import org.models.*;
 import java.sql.*;
 import java.util.ArrayList;
@@ -9,184 +11,44 @@ import java.util.HashMap;
 
 public class DatabaseHelper {
     private static final String DB_URL = "jdbc:sqlite:./restaurant.db";
+    private final String dbUrl;
     private Connection connection;
 
     public DatabaseHelper() {
+        this(DB_URL);
+    }
+
+    // Database at another location (e.g. one file per branch): a JDBC URL or a plain file path.
+    // Throws SchemaMigrationException if the schema cannot be brought up to date: running on a database
+    // the code does not match would fail later, on the first query that touches what is missing.
+    public DatabaseHelper(String db) {
+        this.dbUrl = db.startsWith("jdbc:") ? db : "jdbc:sqlite:" + db;
         try {
             // Cargar driver JDBC de SQLite
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection(DB_URL);
-            initializeTables();
+            connection = DriverManager.getConnection(dbUrl);
+            // Tables, columns and indexes come from the versioned migrations (once per process and database)
+            SchemaMigrator.ensureMigrated(connection, dbUrl);
         } catch (SQLException e) {
             System.err.println("Error conectando a la base de datos: " + e.getMessage());
+        } catch (SchemaMigrationException e) {
+            System.err.println("Error migrando la base de datos: " + e.getMessage());
+            close();
+            throw e;
         } catch (ClassNotFoundException e) {
             System.err.println("Driver JDBC de SQLite no encontrado: " + e.getMessage());
         }
     }
 
-    private void initializeTables() {
-        createUsersTable();
-        // Ensure older DBs get the 'role' column if it was missing
-        ensureUserRoleColumnExists();
-        createMesasTable();
-        createIngredientesTable();
-        createRecipesTable();
-        createRecipeIngredientsTable();
-        createStockTable();
-        createReservationsTable();
-    }
-
-    // Migration: add 'role' column to users table if missing (keeps default 'WAITER')
-    private void ensureUserRoleColumnExists() {
-        try (Statement stmt = connection.createStatement()) {
-            // Check if 'role' exists in users table
-            ResultSet rs = stmt.executeQuery("PRAGMA table_info(users);");
-            boolean hasRole = false;
-            while (rs.next()) {
-                String colName = rs.getString("name");
-                if ("role".equalsIgnoreCase(colName)) {
-                    hasRole = true;
-                    break;
-                }
-            }
-
-            if (!hasRole) {
-                // Add column with default to avoid breaking existing code
-                stmt.execute("ALTER TABLE users ADD COLUMN role TEXT NOT NULL DEFAULT 'WAITER';");
-                System.out.println("Migrated users table: added 'role' column with default 'WAITER'");
-            }
-        } catch (SQLException e) {
-            System.err.println("Error ensuring role column in users table: " + e.getMessage());
-        }
-    }
-
-    private void createUsersTable() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS users (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                username TEXT NOT NULL UNIQUE,
-                admin BOOLEAN NOT NULL DEFAULT 0,
-                role TEXT NOT NULL DEFAULT 'WAITER'
-            )
-            """;
-        
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
-            System.out.println("Tabla de usuarios creada exitosamente");
-        } catch (SQLException e) {
-            System.err.println("Error creando tabla de usuarios: " + e.getMessage());
-        }
-    }
-
-    private void createMesasTable() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS mesas (
-                id INTEGER PRIMARY KEY,
-                capacidad INTEGER NOT NULL,
-                estado TEXT NOT NULL DEFAULT 'LIBRE'
-            )
-            """;
-        
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
-            System.out.println("Tabla de mesas creada exitosamente");
-        } catch (SQLException e) {
-            System.err.println("Error creando tabla de mesas: " + e.getMessage());
-        }
-    }
-
-    private void createIngredientesTable() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS ingredientes (
-                id INTEGER PRIMARY KEY,
-                nombre TEXT NOT NULL UNIQUE,
-                unidad_medida TEXT NOT NULL
-            )
-            """;
-        
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
-            System.out.println("Tabla de ingredientes creada exitosamente");
-        } catch (SQLException e) {
-            System.err.println("Error creando tabla de ingredientes: " + e.getMessage());
-        }
-    }
+    public String getDbUrl() { return dbUrl; }
 
-    private void createRecipesTable() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS recipes (
-                id INTEGER PRIMARY KEY,
-                nombre TEXT NOT NULL,
-                tiempo_preparacion_minutos INTEGER NOT NULL
-            )
-            """;
-        
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
-            System.out.println("Tabla de recetas creada exitosamente");
-        } catch (SQLException e) {
-            System.err.println("Error creando tabla de recetas: " + e.getMessage());
-        }
-    }
-
-    private void createRecipeIngredientsTable() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS recipe_ingredients (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                recipe_id INTEGER NOT NULL,
-                ingrediente_id INTEGER NOT NULL,
-                cantidad REAL NOT NULL,
-                FOREIGN KEY (recipe_id) REFERENCES recipes(id),
-                FOREIGN KEY (ingrediente_id) REFERENCES ingredientes(id),
-                UNIQUE(recipe_id, ingrediente_id)
-            )
-            """;
-        
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
-            System.out.println("Tabla de ingredientes de recetas creada exitosamente");
-        } catch (SQLException e) {
-            System.err.println("Error creando tabla recipe_ingredients: " + e.getMessage());
-        }
-    }
-
-    private void createStockTable() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS stock (
-                ingrediente_id INTEGER PRIMARY KEY,
-                cantidad_actual REAL NOT NULL DEFAULT 0,
-                cantidad_minima INTEGER NOT NULL DEFAULT 0,
-                FOREIGN KEY (ingrediente_id) REFERENCES ingredientes(id)
-            )
-            """;
-        
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
-            System.out.println("Tabla de inventario creada exitosamente");
-        } catch (SQLException e) {
-            System.err.println("Error creando tabla de inventario: " + e.getMessage());
-        }
-    }
-
-    private void createReservationsTable() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS reservations (
-                id INTEGER PRIMARY KEY,
-                customer_name TEXT NOT NULL,
-                guests INTEGER NOT NULL,
-                reservation_time TEXT NOT NULL,
-                table_id INTEGER,
-                status TEXT NOT NULL DEFAULT 'PENDING',
-                FOREIGN KEY (table_id) REFERENCES mesas(id)
-            )
-            """;
-        
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
-            System.out.println("Tabla de reservas creada exitosamente");
-        } catch (SQLException e) {
-            System.err.println("Error creando tabla de reservas: " + e.getMessage());
+    // SQL expression: base units per unit of the ingredient referenced by <alias>.ingrediente_id
+    static String baseFactorSql(String alias) {
+        StringBuilder factor = new StringBuilder("(SELECT CASE unidad_medida");
+        for (Magnitud m : Magnitud.values()) {
+            factor.append(" WHEN '").append(m.name()).append("' THEN ").append(m.getFactorBase());
         }
+        return factor.append(" ELSE 1 END FROM ingredientes i WHERE i.id = ").append(alias).append(".ingrediente_id)").toString();
     }
 
     // User CRUD operations
@@ -203,6 +65,8 @@ public class DatabaseHelper {
             pstmt.setString(3, role);
 
             int rowsAffected = pstmt.executeUpdate();
+            // role may have changed underneath a cached record
+            UserCache.shared().invalidate(user.getUsername());
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error insertando usuario: " + e.getMessage());
@@ -231,6 +95,10 @@ public class DatabaseHelper {
     }
 
     public User getUserByUsername(String username) {
+        // Read-through: repeated logins on a shared terminal are served from memory
+        User cached = UserCache.shared().getUser(username);
+        if (cached != null) return cached;
+
         String sql = "SELECT username, admin, role FROM users WHERE username = ?";
 
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
@@ -240,7 +108,9 @@ public class DatabaseHelper {
                 if (rs.next()) {
                     boolean admin = rs.getBoolean("admin");
                     String role = rs.getString("role");
-                    return createUserFromDb(username, admin, role);
+                    User user = createUserFromDb(username, admin, role);
+                    UserCache.shared().putUser(user);
+                    return user;
                 }
             }
         } catch (SQLException e) {
@@ -367,7 +237,7 @@ public class DatabaseHelper {
     // Recipe CRUD operations
     public boolean insertRecipe(Recipe recipe) {
         String sqlRecipe = "INSERT INTO recipes (id, nombre, tiempo_preparacion_minutos) VALUES (?, ?, ?)";
-        String sqlIngredients = "INSERT INTO recipe_ingredients (recipe_id, ingrediente_id, cantidad) VALUES (?, ?, ?)";
+        String sqlIngredients = "INSERT INTO recipe_ingredients (recipe_id, ingrediente_id, cantidad, cantidad_base) VALUES (?, ?, ?, ?)";
         
         try {
             connection.setAutoCommit(false);
@@ -386,6 +256,7 @@ public class DatabaseHelper {
                     pstmt.setInt(1, recipe.getId());
                     pstmt.setInt(2, ri.getIngrediente().getId());
                     pstmt.setDouble(3, ri.getCantidad());
+                    pstmt.setLong(4, ri.getCantidadBase());
                     pstmt.executeUpdate();
                 }
             }
@@ -409,7 +280,7 @@ public class DatabaseHelper {
         List<Recipe> recipes = new ArrayList<>();
         String sql = """
             SELECT r.id, r.nombre, r.tiempo_preparacion_minutos,
-                   ri.ingrediente_id, ri.cantidad,
+                   ri.ingrediente_id, ri.cantidad, ri.cantidad_base,
                    i.nombre as ingrediente_nombre, i.unidad_medida
             FROM recipes r
             LEFT JOIN recipe_ingredients ri ON r.id = ri.recipe_id
@@ -438,12 +309,19 @@ public class DatabaseHelper {
                 int ingredienteId = rs.getInt("ingrediente_id");
                 if (!rs.wasNull()) {
                     double cantidad = rs.getDouble("cantidad");
+                    long cantidadBase = rs.getLong("cantidad_base");
+                    boolean hasBase = !rs.wasNull();
                     String ingredienteNombre = rs.getString("ingrediente_nombre");
                     String unidadMedida = rs.getString("unidad_medida");
                     
                     Ingrediente ingrediente = new Ingrediente(ingredienteId, ingredienteNombre, Magnitud.valueOf(unidadMedida));
-                    RecipeIngredient ri = new RecipeIngredient(ingrediente, cantidad);
-                    recipe.getIngredientes().add(ri);
+                    // the exact base-unit column wins over the legacy REAL one
+                    if (hasBase) cantidad = ingrediente.getUnidadMedida().fromBase(cantidadBase);
+                    try {
+                        recipe.getIngredientes().add(new RecipeIngredient(ingrediente, cantidad));
+                    } catch (InvalidQuantityException e) {
+                        System.err.println("Ingrediente omitido en la receta " + recipeId + ": " + e.getMessage());
+                    }
                 }
             }
             
@@ -457,12 +335,13 @@ public class DatabaseHelper {
 
     // Stock CRUD operations
     public boolean insertStock(DetalleIngrediente stock) {
-        String sql = "INSERT OR REPLACE INTO stock (ingrediente_id, cantidad_actual, cantidad_minima) VALUES (?, ?, ?)";
+        String sql = "INSERT OR REPLACE INTO stock (ingrediente_id, cantidad_actual, cantidad_minima, cantidad_base) VALUES (?, ?, ?, ?)";
 
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setInt(1, stock.getIngrediente().getId());
             pstmt.setDouble(2, stock.getCantidadActual());
             pstmt.setInt(3, stock.getCantidadMinima());
+            pstmt.setLong(4, stock.getCantidadBase());
 
             int rowsAffected = pstmt.executeUpdate();
             return rowsAffected > 0;
@@ -472,10 +351,41 @@ public class DatabaseHelper {
         }
     }
 
+    // Insert or replace the stock records of several ingredients in one transaction
+    public boolean insertStock(List<DetalleIngrediente> stockList) {
+        if (stockList == null || stockList.isEmpty()) return true;
+        String sql = "INSERT OR REPLACE INTO stock (ingrediente_id, cantidad_actual, cantidad_minima, cantidad_base) VALUES (?, ?, ?, ?)";
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                for (DetalleIngrediente stock : stockList) {
+                    pstmt.setInt(1, stock.getIngrediente().getId());
+                    pstmt.setDouble(2, stock.getCantidadActual());
+                    pstmt.setInt(3, stock.getCantidadMinima());
+                    pstmt.setLong(4, stock.getCantidadBase());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+            return true;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } catch (SQLException ex) {
+                System.err.println("Error rolling back transaction: " + ex.getMessage());
+            }
+            System.err.println("Error insertando inventario: " + e.getMessage());
+            return false;
+        }
+    }
+
     public List<DetalleIngrediente> getAllStock() {
         List<DetalleIngrediente> stockList = new ArrayList<>();
         String sql = """
-            SELECT s.cantidad_actual, s.cantidad_minima,
+            SELECT s.cantidad_actual, s.cantidad_minima, s.cantidad_base,
                    i.id, i.nombre, i.unidad_medida
             FROM stock s
             JOIN ingredientes i ON s.ingrediente_id = i.id
@@ -490,9 +400,13 @@ public class DatabaseHelper {
                 String unidadMedida = rs.getString("unidad_medida");
                 double cantidadActual = rs.getDouble("cantidad_actual");
                 int cantidadMinima = rs.getInt("cantidad_minima");
+                long cantidadBase = rs.getLong("cantidad_base");
+                boolean hasBase = !rs.wasNull();
 
                 Ingrediente ingrediente = new Ingrediente(id, nombre, Magnitud.valueOf(unidadMedida));
-                DetalleIngrediente stock = new DetalleIngrediente(ingrediente, cantidadActual, cantidadMinima);
+                DetalleIngrediente stock = hasBase
+                        ? DetalleIngrediente.enBase(ingrediente, cantidadBase, cantidadMinima)
+                        : new DetalleIngrediente(ingrediente, cantidadActual, cantidadMinima);
                 stockList.add(stock);
             }
         } catch (SQLException e) {
@@ -502,12 +416,16 @@ public class DatabaseHelper {
         return stockList;
     }
 
-    public boolean updateStock(int ingredienteId, double nuevaCantidad) {
-        String sql = "UPDATE stock SET cantidad_actual = ? WHERE ingrediente_id = ?";
+    // cantidadBase is in base units (g, ml, units) and is stored as given; the legacy cantidad_actual column
+    // is derived from it, never the other way round, so no rounding creeps into the base quantity
+    public boolean updateStock(int ingredienteId, long cantidadBase) {
+        String sql = "UPDATE stock SET cantidad_base = ?, cantidad_actual = CAST(? AS REAL) / " + baseFactorSql("stock")
+                + " WHERE ingrediente_id = ?";
 
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setDouble(1, nuevaCantidad);
-            pstmt.setInt(2, ingredienteId);
+            pstmt.setLong(1, cantidadBase);
+            pstmt.setLong(2, cantidadBase);
+            pstmt.setInt(3, ingredienteId);
 
             int rowsAffected = pstmt.executeUpdate();
             return rowsAffected > 0;
@@ -517,6 +435,41 @@ public class DatabaseHelper {
         }
     }
 
+    // Table turn history (seat-to-release times feeding the waitlist's averages)
+    public boolean insertTableTurn(WaitlistService.Turn turn) {
+        String sql = "INSERT INTO table_turns (capacidad, minutes, released_at) VALUES (?, ?, ?)";
+
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setInt(1, turn.capacidad());
+            pstmt.setDouble(2, turn.minutes());
+            pstmt.setString(3, turn.releasedAt().toString());
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("Error guardando turno de mesa: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The last 'limit' turns, oldest first (the order they have to be folded into a moving average)
+    public List<WaitlistService.Turn> getRecentTableTurns(int limit) {
+        List<WaitlistService.Turn> turns = new ArrayList<>();
+        String sql = "SELECT capacidad, minutes, released_at FROM (SELECT id, capacidad, minutes, released_at FROM table_turns"
+                + " ORDER BY id DESC LIMIT ?) ORDER BY id";
+
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setInt(1, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    turns.add(new WaitlistService.Turn(rs.getInt("capacidad"), rs.getDouble("minutes"),
+                            java.time.LocalDateTime.parse(rs.getString("released_at"))));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error obteniendo turnos de mesa: " + e.getMessage());
+        }
+        return turns;
+    }
+
     // Reservation CRUD operations
     public boolean insertReservation(Reservation reservation) {
         String sql = "INSERT INTO reservations (id, customer_name, guests, reservation_time, table_id, status) VALUES (?, ?, ?, ?, ?, ?)";
@@ -541,6 +494,81 @@ public class DatabaseHelper {
         }
     }
 
+    // Insert a batch of new reservations in one transaction without touching the ones already saved: a row
+    // whose id is taken is skipped (ON CONFLICT DO NOTHING, so other constraint failures still fail the batch).
+    // Returns the ids that were skipped, or null if the batch could not be written at all.
+    public List<Integer> insertNewReservations(List<Reservation> reservations) {
+        List<Integer> taken = new ArrayList<>();
+        if (reservations == null || reservations.isEmpty()) return taken;
+        String sql = "INSERT INTO reservations (id, customer_name, guests, reservation_time, table_id, status) VALUES (?, ?, ?, ?, ?, ?)"
+                + " ON CONFLICT(id) DO NOTHING";
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                for (Reservation r : reservations) {
+                    pstmt.setInt(1, r.getId());
+                    pstmt.setString(2, r.getCustomerName());
+                    pstmt.setInt(3, r.getGuests());
+                    pstmt.setString(4, r.getWhen().toString());
+                    if (r.getTableId() != null) pstmt.setInt(5, r.getTableId());
+                    else pstmt.setNull(5, java.sql.Types.INTEGER);
+                    pstmt.setString(6, r.getStatus().toString());
+                    pstmt.addBatch();
+                }
+                int[] counts = pstmt.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) taken.add(reservations.get(i).getId());
+                }
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+            return taken;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } catch (SQLException ex) {
+                System.err.println("Error rolling back transaction: " + ex.getMessage());
+            }
+            System.err.println("Error insertando reservas: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Insert (or replace by id) a batch of reservations in one transaction
+    public boolean insertReservations(List<Reservation> reservations) {
+        if (reservations == null || reservations.isEmpty()) return true;
+        String sql = "INSERT OR REPLACE INTO reservations (id, customer_name, guests, reservation_time, table_id, status) VALUES (?, ?, ?, ?, ?, ?)";
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                for (Reservation r : reservations) {
+                    pstmt.setInt(1, r.getId());
+                    pstmt.setString(2, r.getCustomerName());
+                    pstmt.setInt(3, r.getGuests());
+                    pstmt.setString(4, r.getWhen().toString());
+                    if (r.getTableId() != null) pstmt.setInt(5, r.getTableId());
+                    else pstmt.setNull(5, java.sql.Types.INTEGER);
+                    pstmt.setString(6, r.getStatus().toString());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+            return true;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } catch (SQLException ex) {
+                System.err.println("Error rolling back transaction: " + ex.getMessage());
+            }
+            System.err.println("Error insertando reservas: " + e.getMessage());
+            return false;
+        }
+    }
+
     public List<Reservation> getAllReservations() {
         List<Reservation> reservations = new ArrayList<>();
         String sql = "SELECT id, customer_name, guests, reservation_time, table_id, status FROM reservations";
@@ -570,6 +598,136 @@ public class DatabaseHelper {
         return reservations;
     }
 
+    // Invoice operations
+    // Accumulator for one rollup row while a batch is being folded
+    private static class RollupRow {
+        String nombre;
+        int invoices;
+        int items;
+        double revenue;
+    }
+
+    // Insert a batch of invoices with their lines in one transaction and fold them into the rollup tables.
+    // Rollups are pre-aggregated in memory first so each touched hour/day/recipe row is upserted only once.
+    public boolean insertInvoices(List<Factura> facturas) {
+        if (facturas == null || facturas.isEmpty()) return true;
+        String sqlInvoice = "INSERT INTO invoices (table_id, customer_name, issued_at, subtotal, total) VALUES (?, ?, ?, ?, ?)";
+        String sqlLine = "INSERT INTO invoice_lines (invoice_id, recipe_id, nombre, quantity, unit_price, line_total) VALUES (?, ?, ?, ?, ?, ?)";
+        String sqlHourly = """
+            INSERT INTO sales_hourly (hour, invoices, items, revenue) VALUES (?, ?, ?, ?)
+            ON CONFLICT(hour) DO UPDATE SET invoices = invoices + excluded.invoices,
+                items = items + excluded.items, revenue = revenue + excluded.revenue
+            """;
+        String sqlDaily = """
+            INSERT INTO sales_daily (day, invoices, items, revenue) VALUES (?, ?, ?, ?)
+            ON CONFLICT(day) DO UPDATE SET invoices = invoices + excluded.invoices,
+                items = items + excluded.items, revenue = revenue + excluded.revenue
+            """;
+        String sqlRecipe = """
+            INSERT INTO sales_by_recipe (day, recipe_id, nombre, quantity, revenue) VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT(day, recipe_id) DO UPDATE SET quantity = quantity + excluded.quantity,
+                revenue = revenue + excluded.revenue
+            """;
+
+        Map<String, RollupRow> hourly = new HashMap<>();
+        Map<String, RollupRow> daily = new HashMap<>();
+        Map<String, RollupRow> byRecipe = new HashMap<>(); // key: day|recipeId
+
+        try {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement pInvoice = connection.prepareStatement(sqlInvoice);
+                 PreparedStatement pLastId = connection.prepareStatement("SELECT last_insert_rowid()");
+                 PreparedStatement pLine = connection.prepareStatement(sqlLine)) {
+                for (Factura f : facturas) {
+                    String issued = f.getIssuedAt().withNano(0).toString();
+                    pInvoice.setInt(1, f.getTableId());
+                    pInvoice.setString(2, f.getCustomerName());
+                    pInvoice.setString(3, issued);
+                    pInvoice.setDouble(4, f.getSubtotal());
+                    pInvoice.setDouble(5, f.getTotal());
+                    pInvoice.executeUpdate();
+                    long invoiceId;
+                    try (ResultSet keys = pLastId.executeQuery()) {
+                        if (!keys.next()) throw new SQLException("No id generated for invoice");
+                        invoiceId = keys.getLong(1);
+                    }
+
+                    String day = f.getIssuedAt().toLocalDate().toString();
+                    String hour = day + "T" + String.format("%02d", f.getIssuedAt().getHour());
+                    RollupRow h = hourly.computeIfAbsent(hour, k -> new RollupRow());
+                    RollupRow d = daily.computeIfAbsent(day, k -> new RollupRow());
+                    h.invoices++; d.invoices++;
+                    h.revenue += f.getTotal(); d.revenue += f.getTotal();
+
+                    for (OrderItem oi : f.getItems()) {
+                        double lineTotal = oi.getUnitPrice() * oi.getQuantity();
+                        pLine.setLong(1, invoiceId);
+                        if (oi.getRecipeId() != null) pLine.setInt(2, oi.getRecipeId());
+                        else pLine.setNull(2, java.sql.Types.INTEGER);
+                        pLine.setString(3, oi.getName());
+                        pLine.setInt(4, oi.getQuantity());
+                        pLine.setDouble(5, oi.getUnitPrice());
+                        pLine.setDouble(6, lineTotal);
+                        pLine.addBatch();
+
+                        h.items += oi.getQuantity(); d.items += oi.getQuantity();
+                        int rid = oi.getRecipeId() != null ? oi.getRecipeId() : 0;
+                        RollupRow r = byRecipe.computeIfAbsent(day + "|" + rid, k -> new RollupRow());
+                        r.nombre = oi.getName();
+                        r.items += oi.getQuantity();
+                        r.revenue += lineTotal;
+                    }
+                }
+                pLine.executeBatch();
+            }
+
+            try (PreparedStatement pHourly = connection.prepareStatement(sqlHourly);
+                 PreparedStatement pDaily = connection.prepareStatement(sqlDaily);
+                 PreparedStatement pRecipe = connection.prepareStatement(sqlRecipe)) {
+                for (Map.Entry<String, RollupRow> e : hourly.entrySet()) {
+                    pHourly.setString(1, e.getKey());
+                    pHourly.setInt(2, e.getValue().invoices);
+                    pHourly.setInt(3, e.getValue().items);
+                    pHourly.setDouble(4, e.getValue().revenue);
+                    pHourly.addBatch();
+                }
+                for (Map.Entry<String, RollupRow> e : daily.entrySet()) {
+                    pDaily.setString(1, e.getKey());
+                    pDaily.setInt(2, e.getValue().invoices);
+                    pDaily.setInt(3, e.getValue().items);
+                    pDaily.setDouble(4, e.getValue().revenue);
+                    pDaily.addBatch();
+                }
+                for (Map.Entry<String, RollupRow> e : byRecipe.entrySet()) {
+                    String[] parts = e.getKey().split("\\|");
+                    pRecipe.setString(1, parts[0]);
+                    pRecipe.setInt(2, Integer.parseInt(parts[1]));
+                    pRecipe.setString(3, e.getValue().nombre);
+                    pRecipe.setInt(4, e.getValue().items);
+                    pRecipe.setDouble(5, e.getValue().revenue);
+                    pRecipe.addBatch();
+                }
+                pHourly.executeBatch();
+                pDaily.executeBatch();
+                pRecipe.executeBatch();
+            }
+
+            connection.commit();
+            connection.setAutoCommit(true);
+            return true;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } catch (SQLException ex) {
+                System.err.println("Error rolling back transaction: " + ex.getMessage());
+            }
+            System.err.println("Error insertando facturas: " + e.getMessage());
+            return false;
+        }
+    }
+
     public Connection getConnection() {
         return connection;
     }
@@ -144,8 +144,9 @@ public class DatabaseTest {
             DetalleIngrediente firstStock = stockList.get(0);
             int ingredienteId = firstStock.getIngrediente().getId();
             double newAmount = 1.5; // Update to low amount
+            long newAmountBase = firstStock.getIngrediente().getUnidadMedida().toBase(newAmount);
             
-            if (db.updateStock(ingredienteId, newAmount)) {
+            if (db.updateStock(ingredienteId, newAmountBase)) {
                 System.out.println("✓ Updated stock for " + firstStock.getIngrediente().getNombre() + 
                                  " to " + newAmount);
             }
@@ -0,0 +1,94 @@
+package org.db;
+
+import org.models.Factura;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Asynchronous, batched writer for settled invoices. Callers (TableService settle listeners on the EDT)
+// only enqueue; a single background thread drains the queue and writes whole batches in one transaction
+// through DatabaseHelper.insertInvoices, which also folds them into the sales rollup tables.
+public class InvoiceWriter {
+    private static final Logger LOGGER = Logger.getLogger(InvoiceWriter.class.getName());
+    private static final int MAX_BATCH = 100;
+    private static final long MAX_WAIT_MILLIS = 500; // how long a partial batch may wait for more invoices
+
+    private final DatabaseHelper db;
+    private final BlockingQueue<Factura> pending = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public InvoiceWriter() {
+        this(new DatabaseHelper());
+    }
+
+    public InvoiceWriter(DatabaseHelper db) {
+        this.db = db;
+        this.worker = new Thread(this::drainLoop, "invoice-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // Queue an invoice for persistence; never blocks the caller
+    public void submit(Factura factura) {
+        if (factura == null) return;
+        if (!running) {
+            LOGGER.log(Level.WARNING, "Invoice writer closed; dropping invoice for table {0}", factura.getTableId());
+            return;
+        }
+        pending.offer(factura);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void drainLoop() {
+        List<Factura> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !pending.isEmpty()) {
+            try {
+                Factura first = pending.poll(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                pending.drainTo(batch, MAX_BATCH - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                // close() interrupts to stop waiting; remaining invoices are flushed below
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        // flush whatever arrived before close()
+        while (!pending.isEmpty()) {
+            pending.drainTo(batch, MAX_BATCH);
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Factura> batch) {
+        if (batch.isEmpty()) return;
+        if (!db.insertInvoices(batch)) {
+            LOGGER.log(Level.SEVERE, "Failed to persist {0} invoices", batch.size());
+        }
+    }
+
+    // Stop accepting invoices, flush the queue and close the connection
+    public void close() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        db.close();
+    }
+}
@@ -0,0 +1,123 @@
+package org.db;
+
+import org.exceptions.SalesReportException;
+import org.models.Factura;
+import org.models.SalesSummary;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+// Sales reporting over the invoice history. The requested range is split by day and every day is
+// aggregated independently (own SQLite read connection per worker thread) into a SalesSummary;
+// the partial summaries are then merged. SQLite allows concurrent readers, so a quarter-long
+// report scales with the number of cores instead of being a single-threaded pass. A day that cannot be
+// read fails the whole report with SalesReportException: a partial total would pass for a slow day.
+public class SalesReportEngine {
+    private static final String DB_URL = "jdbc:sqlite:./restaurant.db";
+
+    private static final String DAY_QUERY = """
+        SELECT i.id, i.table_id, i.issued_at, i.total,
+               l.recipe_id, l.nombre, l.quantity, l.line_total
+        FROM invoices i
+        LEFT JOIN invoice_lines l ON l.invoice_id = i.id
+        WHERE i.issued_at >= ? AND i.issued_at < ?
+        ORDER BY i.id
+        """;
+
+    private final String dbUrl;
+    private final int parallelism;
+
+    public SalesReportEngine() {
+        this(DB_URL, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SalesReportEngine(String dbUrl, int parallelism) {
+        this.dbUrl = dbUrl;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Aggregate every invoice issued between from and to (both inclusive).
+    // Throws SalesReportException if any day could not be aggregated.
+    public SalesSummary report(LocalDate from, LocalDate to) {
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) days.add(d);
+        if (days.isEmpty()) return new SalesSummary();
+
+        // One connection per worker thread, closed once the report is done
+        ConcurrentLinkedQueue<Connection> opened = new ConcurrentLinkedQueue<>();
+        ThreadLocal<Connection> connections = ThreadLocal.withInitial(() -> {
+            try {
+                Connection c = DriverManager.getConnection(dbUrl);
+                opened.add(c);
+                return c;
+            } catch (SQLException e) {
+                throw new IllegalStateException("No se pudo abrir conexión de reportes: " + e.getMessage(), e);
+            }
+        });
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> days.parallelStream()
+                    .map(day -> aggregateDay(connections.get(), day))
+                    .reduce(SalesSummary::merge)
+                    .orElseGet(SalesSummary::new)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SalesReportException("Reporte de ventas interrumpido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SalesReportException sre) throw sre;
+            throw new SalesReportException("Error generando reporte de ventas: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+            for (Connection c : opened) {
+                try { c.close(); } catch (SQLException ignored) {}
+            }
+        }
+    }
+
+    // Aggregate in-memory history (e.g. invoices not yet flushed) with the same mergeable partials
+    public SalesSummary summarize(Collection<Factura> facturas) {
+        return facturas.parallelStream()
+                .map(SalesSummary::of)
+                .reduce(SalesSummary::merge)
+                .orElseGet(SalesSummary::new);
+    }
+
+    private SalesSummary aggregateDay(Connection connection, LocalDate day) {
+        SalesSummary summary = new SalesSummary();
+        try (PreparedStatement pstmt = connection.prepareStatement(DAY_QUERY)) {
+            pstmt.setString(1, day.atStartOfDay().toString());
+            pstmt.setString(2, day.plusDays(1).atStartOfDay().toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                long lastInvoice = -1;
+                while (rs.next()) {
+                    long invoiceId = rs.getLong("id");
+                    if (invoiceId != lastInvoice) {
+                        LocalDateTime issued = LocalDateTime.parse(rs.getString("issued_at"));
+                        summary.addTicket(day, issued.getHour(), rs.getInt("table_id"), rs.getDouble("total"));
+                        lastInvoice = invoiceId;
+                    }
+                    String nombre = rs.getString("nombre");
+                    if (nombre == null) continue; // invoice without lines
+                    int recipeId = rs.getInt("recipe_id");
+                    if (rs.wasNull()) recipeId = 0;
+                    summary.addLine(recipeId, nombre, rs.getInt("quantity"), rs.getDouble("line_total"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SalesReportException("Error agregando ventas del día " + day + ": " + e.getMessage(), e);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,301 @@
+package org.db;
+
+import org.exceptions.SchemaMigrationException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Versioned schema: migrations are applied in order, each one in its own transaction together with its row
+// in schema_version (version, description, checksum, applied_at). A migration that is already recorded is
+// not run again; if its checksum no longer matches, the code and the database disagree about the schema
+// and nothing newer is applied. Migrations are never edited once shipped: schema changes go in a new one.
+// A database is migrated once per process (the first DatabaseHelper opened on it); other processes on the
+// same file are safe because the version row is written first and holds SQLite's write lock until commit.
+// The connection waits up to BUSY_TIMEOUT_MILLIS for that lock instead of failing at once with SQLITE_BUSY.
+public final class SchemaMigrator {
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrator.class.getName());
+    static final int BUSY_TIMEOUT_MILLIS = 10_000;
+
+    // Database URLs already migrated by this process
+    private static final Set<String> MIGRATED = ConcurrentHashMap.newKeySet();
+
+    @FunctionalInterface
+    interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    // 'definition' is what the checksum covers: the SQL itself, or a description of what a Java step does
+    record Migration(int version, String description, String definition, Step step) {
+        static Migration sql(int version, String description, String... statements) {
+            return new Migration(version, description, String.join(";\n", statements), c -> {
+                try (Statement stmt = c.createStatement()) {
+                    for (String s : statements) stmt.execute(s);
+                }
+            });
+        }
+
+        String checksum() {
+            try {
+                byte[] d = MessageDigest.getInstance("SHA-256").digest(
+                        (version + "\n" + definition.strip().replaceAll("\\s+", " ")).getBytes(StandardCharsets.UTF_8));
+                StringBuilder sb = new StringBuilder();
+                for (byte b : d) sb.append(String.format("%02x", b));
+                return sb.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+
+    static final List<Migration> MIGRATIONS = List.of(
+            // Tables as they were before versioning; IF NOT EXISTS so existing databases take it as a no-op
+            Migration.sql(1, "esquema base",
+                    """
+                    CREATE TABLE IF NOT EXISTS users (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        username TEXT NOT NULL UNIQUE,
+                        admin BOOLEAN NOT NULL DEFAULT 0,
+                        role TEXT NOT NULL DEFAULT 'WAITER'
+                    )""",
+                    """
+                    CREATE TABLE IF NOT EXISTS mesas (
+                        id INTEGER PRIMARY KEY,
+                        capacidad INTEGER NOT NULL,
+                        estado TEXT NOT NULL DEFAULT 'LIBRE'
+                    )""",
+                    """
+                    CREATE TABLE IF NOT EXISTS ingredientes (
+                        id INTEGER PRIMARY KEY,
+                        nombre TEXT NOT NULL UNIQUE,
+                        unidad_medida TEXT NOT NULL
+                    )""",
+                    """
+                    CREATE TABLE IF NOT EXISTS recipes (
+                        id INTEGER PRIMARY KEY,
+                        nombre TEXT NOT NULL,
+                        tiempo_preparacion_minutos INTEGER NOT NULL
+                    )""",
+                    """
+                    CREATE TABLE IF NOT EXISTS recipe_ingredients (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        recipe_id INTEGER NOT NULL,
+                        ingrediente_id INTEGER NOT NULL,
+                        cantidad REAL NOT NULL,
+                        cantidad_base INTEGER,
+                        FOREIGN KEY (recipe_id) REFERENCES recipes(id),
+                        FOREIGN KEY (ingrediente_id) REFERENCES ingredientes(id),
+                        UNIQUE(recipe_id, ingrediente_id)
+                    )""",
+                    """
+                    CREATE TABLE IF NOT EXISTS stock (
+                        ingrediente_id INTEGER PRIMARY KEY,
+                        cantidad_actual REAL NOT NULL DEFAULT 0,
+                        cantidad_minima INTEGER NOT NULL DEFAULT 0,
+                        cantidad_base INTEGER,
+                        FOREIGN KEY (ingrediente_id) REFERENCES ingredientes(id)
+                    )""",
+                    """
+                    CREATE TABLE IF NOT EXISTS reservations (
+                        id INTEGER PRIMARY KEY,
+                        customer_name TEXT NOT NULL,
+                        guests INTEGER NOT NULL,
+                        reservation_time TEXT NOT NULL,
+                        table_id INTEGER,
+                        status TEXT NOT NULL DEFAULT 'PENDING',
+                        FOREIGN KEY (table_id) REFERENCES mesas(id)
+                    )""",
+                    """
+                    CREATE TABLE IF NOT EXISTS invoices (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        table_id INTEGER NOT NULL,
+                        customer_name TEXT,
+                        issued_at TEXT NOT NULL,
+                        subtotal REAL NOT NULL,
+                        total REAL NOT NULL
+                    )""",
+                    """
+                    CREATE TABLE IF NOT EXISTS invoice_lines (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        invoice_id INTEGER NOT NULL,
+                        recipe_id INTEGER,
+                        nombre TEXT NOT NULL,
+                        quantity INTEGER NOT NULL,
+                        unit_price REAL NOT NULL,
+                        line_total REAL NOT NULL,
+                        FOREIGN KEY (invoice_id) REFERENCES invoices(id)
+                    )""",
+                    // day-range scans by the sales report engine and line lookups per invoice
+                    "CREATE INDEX IF NOT EXISTS idx_invoices_issued_at ON invoices(issued_at)",
+                    "CREATE INDEX IF NOT EXISTS idx_invoice_lines_invoice ON invoice_lines(invoice_id)",
+                    // pre-aggregated sales, updated incrementally on every invoice insert
+                    """
+                    CREATE TABLE IF NOT EXISTS sales_hourly (
+                        hour TEXT PRIMARY KEY,
+                        invoices INTEGER NOT NULL DEFAULT 0,
+                        items INTEGER NOT NULL DEFAULT 0,
+                        revenue REAL NOT NULL DEFAULT 0
+                    )""",
+                    """
+                    CREATE TABLE IF NOT EXISTS sales_daily (
+                        day TEXT PRIMARY KEY,
+                        invoices INTEGER NOT NULL DEFAULT 0,
+                        items INTEGER NOT NULL DEFAULT 0,
+                        revenue REAL NOT NULL DEFAULT 0
+                    )""",
+                    """
+                    CREATE TABLE IF NOT EXISTS sales_by_recipe (
+                        day TEXT NOT NULL,
+                        recipe_id INTEGER NOT NULL,
+                        nombre TEXT NOT NULL,
+                        quantity INTEGER NOT NULL DEFAULT 0,
+                        revenue REAL NOT NULL DEFAULT 0,
+                        PRIMARY KEY (day, recipe_id)
+                    )"""),
+            // Older databases have users without 'role' (existing users keep the default 'WAITER')
+            new Migration(2, "users.role", "ALTER TABLE users ADD COLUMN role TEXT NOT NULL DEFAULT 'WAITER' (if missing)",
+                    c -> addColumnIfMissing(c, "users", "role", "TEXT NOT NULL DEFAULT 'WAITER'")),
+            // Older databases only have REAL quantities: add the fixed-point base-unit columns (INTEGER, base
+            // units of the ingredient's Magnitud) and backfill them from the REAL ones
+            new Migration(3, "cantidad_base en stock y recipe_ingredients",
+                    "ALTER TABLE stock/recipe_ingredients ADD COLUMN cantidad_base INTEGER (if missing); "
+                            + "backfill from cantidad_actual/cantidad times the Magnitud base factor",
+                    c -> {
+                        String[][] columns = { {"stock", "cantidad_actual"}, {"recipe_ingredients", "cantidad"} };
+                        try (Statement stmt = c.createStatement()) {
+                            for (String[] col : columns) {
+                                addColumnIfMissing(c, col[0], "cantidad_base", "INTEGER");
+                                stmt.execute("UPDATE " + col[0] + " SET cantidad_base = CAST(ROUND(" + col[1] + " * "
+                                        + DatabaseHelper.baseFactorSql(col[0]) + ") AS INTEGER) WHERE cantidad_base IS NULL");
+                            }
+                        }
+                    }),
+            // Reservation lookups by day, table and status, and "which recipes use this ingredient"
+            Migration.sql(4, "índices de reservas y recipe_ingredients",
+                    "CREATE INDEX IF NOT EXISTS idx_reservations_time ON reservations(reservation_time)",
+                    "CREATE INDEX IF NOT EXISTS idx_reservations_table ON reservations(table_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_reservations_status ON reservations(status)",
+                    "CREATE INDEX IF NOT EXISTS idx_recipe_ingredients_ingrediente ON recipe_ingredients(ingrediente_id)"),
+            // Seat-to-release times of the tables, so the waitlist's turn averages survive a restart
+            Migration.sql(5, "table_turns",
+                    """
+                    CREATE TABLE IF NOT EXISTS table_turns (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        capacidad INTEGER NOT NULL,
+                        minutes REAL NOT NULL,
+                        released_at TEXT NOT NULL
+                    )""")
+    );
+
+    private SchemaMigrator() {}
+
+    // Migrate the database behind 'connection' unless this process already did; returns the schema version
+    public static int ensureMigrated(Connection connection, String dbUrl) {
+        if (MIGRATED.contains(dbUrl)) return latestVersion();
+        synchronized (SchemaMigrator.class) {
+            if (MIGRATED.contains(dbUrl)) return latestVersion();
+            int v = migrate(connection, MIGRATIONS);
+            MIGRATED.add(dbUrl);
+            return v;
+        }
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    static int migrate(Connection connection, List<Migration> migrations) {
+        try {
+            try (Statement stmt = connection.createStatement()) {
+                // another process may be migrating the same file and hold the write lock for a while
+                stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        version INTEGER PRIMARY KEY,
+                        description TEXT NOT NULL,
+                        checksum TEXT NOT NULL,
+                        applied_at TEXT NOT NULL
+                    )""");
+            }
+            Map<Integer, String> applied = appliedChecksums(connection);
+            int current = 0;
+            for (Migration m : migrations) {
+                String checksum = m.checksum();
+                String recorded = applied.get(m.version());
+                if (recorded == null) {
+                    if (apply(connection, m, checksum)) {
+                        LOGGER.log(Level.INFO, "Migración {0} aplicada: {1}", new Object[]{m.version(), m.description()});
+                    }
+                } else if (!recorded.equals(checksum)) {
+                    throw new SchemaMigrationException("La migración " + m.version() + " (" + m.description()
+                            + ") aplicada en la base no coincide con la del código");
+                }
+                current = m.version();
+            }
+            return current;
+        } catch (SQLException e) {
+            throw new SchemaMigrationException("Error migrando el esquema: " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<Integer, String> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, String> res = new HashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) res.put(rs.getInt(1), rs.getString(2));
+        }
+        return res;
+    }
+
+    // One transaction: the version row first (takes the write lock; if another process got there first the
+    // insert is ignored and this one backs off), then the migration itself
+    private static boolean apply(Connection connection, Migration m, String checksum) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "INSERT OR IGNORE INTO schema_version (version, description, checksum, applied_at) VALUES (?, ?, ?, ?)")) {
+                pstmt.setInt(1, m.version());
+                pstmt.setString(2, m.description());
+                pstmt.setString(3, checksum);
+                pstmt.setString(4, LocalDateTime.now().toString());
+                if (pstmt.executeUpdate() == 0) {
+                    connection.rollback();
+                    return false;
+                }
+            }
+            m.step().apply(connection);
+            connection.commit();
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw new SchemaMigrationException("La migración " + m.version() + " (" + m.description() + ") falló: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void addColumnIfMissing(Connection c, String table, String column, String definition) throws SQLException {
+        try (Statement stmt = c.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("name"))) return;
+                }
+            }
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+}
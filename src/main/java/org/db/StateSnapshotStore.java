@@ -0,0 +1,481 @@
+package org.db;
+
+import org.models.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+// Binary image of the in-memory state (stock, menu, tables, reservations, open orders and production jobs)
+// for fast warm restarts. It is written periodically on a background thread (to a temp file that then
+// replaces the previous image) and read at boot through a memory-mapped FileChannel, so a restart does not
+// go through the database row by row. The database stays the system of record; when the image is missing,
+// damaged or from another format version, startup falls back to the database. A usable image is still
+// checked against the database on restore: stock is persisted on every change and imported reservations
+// are written there too, so for those rows the database is never older than the image and wins.
+//
+// Layout (big-endian): magic, format version, written-at millis, then one section per service, and a
+// CRC32 of everything before it. Strings are int length + UTF-8 bytes; absent times/ids are NONE/-1.
+public class StateSnapshotStore {
+    private static final Logger LOGGER = Logger.getLogger(StateSnapshotStore.class.getName());
+    private static final int MAGIC = 0x52534E50; // "RSNP"
+    private static final int FORMAT_VERSION = 1;
+    private static final long NONE = Long.MIN_VALUE;
+    public static final String DEFAULT_FILE = "./restaurant.snapshot";
+
+    private final Path file;
+    private ScheduledExecutorService writer;
+
+    public StateSnapshotStore() {
+        this(Paths.get(DEFAULT_FILE));
+    }
+
+    public StateSnapshotStore(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() { return file; }
+
+    // ---------------------------------------------------------------- writing
+
+    // Write a snapshot every periodMillis on a background thread (and once more on stop())
+    public synchronized void startPeriodic(StockGeneral stock, Menu menu, TableService tables,
+                                           ReservationService reservations, Pedido pedido, long periodMillis) {
+        if (writer != null) return;
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "state-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                write(stock, menu, tables, reservations, pedido);
+            } catch (Exception ex) {
+                LOGGER.log(Level.WARNING, "Failed to write state snapshot: {0}", ex.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Stop the periodic writer and write a final snapshot (e.g. from a shutdown hook)
+    public void stop(StockGeneral stock, Menu menu, TableService tables, ReservationService reservations, Pedido pedido) {
+        ScheduledExecutorService w;
+        synchronized (this) {
+            w = writer;
+            writer = null;
+        }
+        if (w != null) {
+            w.shutdown();
+            try { w.awaitTermination(5, TimeUnit.SECONDS); } catch (InterruptedException ignored) { Thread.currentThread().interrupt(); }
+        }
+        try {
+            write(stock, menu, tables, reservations, pedido);
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Failed to write final state snapshot: {0}", ex.getMessage());
+        }
+    }
+
+    // Serialize the current state and atomically replace the snapshot file. All sections come from one
+    // cut: the image is encoded in memory while every service lock is held, taken in the order the services
+    // already nest them (Pedido -> ReservationService -> TableService -> StockGeneral), so a job start can
+    // not land between the stock and the job sections. Only the file write happens outside the locks.
+    public synchronized void write(StockGeneral stock, Menu menu, TableService tables,
+                                   ReservationService reservations, Pedido pedido) throws IOException {
+        byte[] image;
+        synchronized (pedido) {
+            synchronized (reservations) {
+                synchronized (tables) {
+                    synchronized (stock) {
+                        image = encode(stock, menu, tables, reservations, pedido);
+                    }
+                }
+            }
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, "restaurant", ".snapshot.tmp");
+        try {
+            Files.write(tmp, image);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (java.nio.file.AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private byte[] encode(StockGeneral stock, Menu menu, TableService tables,
+                          ReservationService reservations, Pedido pedido) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(System.currentTimeMillis());
+
+        // stock (ingredients included)
+        InventorySnapshot inv = stock.getSnapshot();
+        out.writeInt(inv.size());
+        for (InventorySnapshot.Item item : inv.items()) {
+            writeIngrediente(out, item.getIngrediente());
+            out.writeLong(item.getCantidadBase());
+            out.writeInt(item.getCantidadMinima());
+        }
+
+        // menu
+        List<Recipe> recipes = new ArrayList<>(menu.getAll().values());
+        out.writeInt(recipes.size());
+        for (Recipe r : recipes) {
+            out.writeInt(r.getId());
+            writeString(out, r.getNombre());
+            out.writeInt(r.getTiempoPreparacionMinutos());
+            out.writeInt(r.getPrecio());
+            out.writeInt(r.getIngredientes().size());
+            for (RecipeIngredient ri : r.getIngredientes()) {
+                writeIngrediente(out, ri.getIngrediente());
+                out.writeDouble(ri.getCantidad());
+            }
+        }
+
+        // tables
+        List<Mesa> mesas = new ArrayList<>(tables.getMesas().values());
+        out.writeInt(mesas.size());
+        for (Mesa m : mesas) {
+            out.writeInt(m.getId());
+            out.writeInt(m.getCapacidad());
+            writeString(out, m.getEstado().name());
+            out.writeBoolean(tables.isVipTable(m.getId()));
+        }
+
+        // reservations
+        List<Reservation> res = reservations.listAll();
+        out.writeInt(res.size());
+        for (Reservation r : res) {
+            out.writeInt(r.getId());
+            writeString(out, r.getCustomerName());
+            out.writeInt(r.getGuests());
+            out.writeLong(toMillis(r.getWhen()));
+            out.writeInt(r.getTableId() != null ? r.getTableId() : -1);
+            writeString(out, r.getStatus().name());
+            out.writeBoolean(r.isVip());
+        }
+
+        // production jobs
+        List<ProductionJob> jobs = pedido.listJobs();
+        out.writeInt(jobs.size());
+        for (ProductionJob j : jobs) {
+            out.writeInt(j.getId());
+            out.writeInt(j.getRecipe().getId());
+            out.writeInt(j.getQuantity());
+            out.writeInt(j.getBaseQuantity());
+            out.writeInt(j.getBatchSize());
+            writeString(out, j.getStatus().name());
+            out.writeLong(toMillis(j.getCreatedAt()));
+            out.writeLong(toMillis(j.getStartedAt()));
+            out.writeLong(toMillis(j.getFinishedAt()));
+            out.writeLong(toMillis(j.getWaitingSince()));
+            out.writeBoolean(j.isVip());
+            out.writeBoolean(j.isRush());
+            out.writeBoolean(j.isAwaitingConfirmation());
+            writeString(out, j.getNote());
+        }
+
+        // open orders per table
+        Map<Integer, List<OrderItem>> orders = tables.copyOrders();
+        out.writeInt(orders.size());
+        for (Map.Entry<Integer, List<OrderItem>> e : orders.entrySet()) {
+            out.writeInt(e.getKey());
+            out.writeLong(toMillis(tables.getWaitingSince(e.getKey())));
+            out.writeInt(e.getValue().size());
+            for (OrderItem oi : e.getValue()) {
+                writeString(out, oi.getName());
+                out.writeInt(oi.getQuantity());
+                out.writeInt(oi.getRecipeId() != null ? oi.getRecipeId() : -1);
+                out.writeInt(oi.getProductionJobId() != null ? oi.getProductionJobId() : -1);
+                out.writeLong(oi.getEstimatedMinutes() != null ? oi.getEstimatedMinutes() : NONE);
+                writeString(out, oi.getEstado().name());
+                out.writeDouble(oi.getUnitPrice());
+            }
+        }
+
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeIngrediente(DataOutputStream out, Ingrediente i) throws IOException {
+        out.writeInt(i.getId());
+        writeString(out, i.getNombre());
+        writeString(out, i.getUnidadMedida().name());
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static long toMillis(LocalDateTime t) {
+        return t != null ? t.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : NONE;
+    }
+
+    // ---------------------------------------------------------------- loading
+
+    // Load the snapshot into empty services. Returns false (leaving the services untouched) when there is
+    // no snapshot or it cannot be used, so the caller falls back to the database. Queued jobs are not
+    // started here: call Pedido.resumeQueued() once listeners (TableService, scheduler) are wired.
+    public boolean restore(StockGeneral stock, Menu menu, TableService tables,
+                           ReservationService reservations, Pedido pedido) {
+        return restore(stock, menu, tables, reservations, pedido, null);
+    }
+
+    // Same, checking stock and reservations against the database first (db may be null to skip it)
+    public boolean restore(StockGeneral stock, Menu menu, TableService tables,
+                           ReservationService reservations, Pedido pedido, DatabaseHelper db) {
+        if (!Files.isRegularFile(file)) return false;
+        long t0 = System.nanoTime();
+        State state;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            state = parse(buf);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "State snapshot {0} unusable: {1}", new Object[]{file, ex.getMessage()});
+            return false;
+        }
+        if (state == null) return false;
+        if (db != null) reconcile(state, db);
+
+        // stock and menu first: jobs and orders refer to recipes, tables before reservations and orders
+        for (DetalleIngrediente d : state.stock) stock.agregarStock(d);
+        for (Recipe r : state.recipes) menu.addRecipe(r);
+        for (Mesa m : state.mesas) tables.addMesa(m);
+        for (Integer vip : state.vipTables) tables.setVipTable(vip, true);
+        for (Reservation r : state.reservations) reservations.restoreReservation(r);
+        for (ProductionJob j : state.jobs) pedido.restoreJob(j);
+        for (Map.Entry<Integer, List<OrderItem>> e : state.orders.entrySet()) {
+            tables.restoreOrders(e.getKey(), e.getValue(), state.waitingSince.get(e.getKey()));
+        }
+        LOGGER.log(Level.INFO, "State restored from {0} in {1} ms", new Object[]{file, (System.nanoTime() - t0) / 1_000_000});
+        return true;
+    }
+
+    // The image can be up to one write period older than the database. Stock rows are replaced by the
+    // database quantities (keeping the image's Ingrediente so recipes still share it) and reservations
+    // the image does not know about are added; jobs, orders and table states only live in memory.
+    private void reconcile(State st, DatabaseHelper db) {
+        Map<Integer, DetalleIngrediente> persisted = new HashMap<>();
+        for (DetalleIngrediente d : db.getAllStock()) persisted.put(d.getIngrediente().getId(), d);
+        int corrected = 0;
+        for (int i = 0; i < st.stock.size(); i++) {
+            DetalleIngrediente mine = st.stock.get(i);
+            DetalleIngrediente theirs = persisted.remove(mine.getIngrediente().getId());
+            if (theirs == null) continue;
+            if (theirs.getCantidadBase() != mine.getCantidadBase() || theirs.getCantidadMinima() != mine.getCantidadMinima()) {
+                st.stock.set(i, DetalleIngrediente.enBase(mine.getIngrediente(), theirs.getCantidadBase(), theirs.getCantidadMinima()));
+                corrected++;
+            }
+        }
+        st.stock.addAll(persisted.values());
+        corrected += persisted.size();
+
+        java.util.Set<Integer> known = new java.util.HashSet<>();
+        for (Reservation r : st.reservations) known.add(r.getId());
+        int added = 0;
+        for (Reservation r : db.getAllReservations()) {
+            if (known.add(r.getId())) {
+                st.reservations.add(r);
+                added++;
+            }
+        }
+        if (corrected > 0 || added > 0) {
+            LOGGER.log(Level.INFO, "State snapshot {0} behind the database: {1} stock rows and {2} reservations taken from it",
+                    new Object[]{file, corrected, added});
+        }
+    }
+
+    // Decoded content; built completely before any service is touched
+    private static class State {
+        final List<DetalleIngrediente> stock = new ArrayList<>();
+        final List<Recipe> recipes = new ArrayList<>();
+        final List<Mesa> mesas = new ArrayList<>();
+        final List<Integer> vipTables = new ArrayList<>();
+        final List<Reservation> reservations = new ArrayList<>();
+        final List<ProductionJob> jobs = new ArrayList<>();
+        final Map<Integer, List<OrderItem>> orders = new HashMap<>();
+        final Map<Integer, LocalDateTime> waitingSince = new HashMap<>();
+    }
+
+    private State parse(ByteBuffer buf) {
+        if (buf.remaining() < 16 + Long.BYTES) return null;
+        // checksum over everything but the trailing CRC
+        int bodyLen = buf.limit() - Long.BYTES;
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buf.duplicate();
+        body.limit(bodyLen);
+        crc.update(body);
+        if (crc.getValue() != buf.getLong(bodyLen)) {
+            LOGGER.log(Level.WARNING, "State snapshot {0} failed its checksum", file);
+            return null;
+        }
+        if (buf.getInt() != MAGIC) return null;
+        int version = buf.getInt();
+        if (version != FORMAT_VERSION) {
+            LOGGER.log(Level.INFO, "State snapshot format {0} not supported (expected {1})", new Object[]{version, FORMAT_VERSION});
+            return null;
+        }
+        buf.getLong(); // written at
+
+        State st = new State();
+        // ingredients are shared by stock and recipes
+        Map<Integer, Ingrediente> ingredientes = new HashMap<>();
+
+        int n = buf.getInt();
+        for (int i = 0; i < n; i++) {
+            Ingrediente ing = readIngrediente(buf, ingredientes);
+            long cantidadBase = buf.getLong();
+            int minima = buf.getInt();
+            st.stock.add(DetalleIngrediente.enBase(ing, cantidadBase, minima));
+        }
+
+        Map<Integer, Recipe> recipes = new HashMap<>();
+        n = buf.getInt();
+        for (int i = 0; i < n; i++) {
+            int id = buf.getInt();
+            String nombre = readString(buf);
+            int tiempo = buf.getInt();
+            int precio = buf.getInt();
+            int k = buf.getInt();
+            List<RecipeIngredient> ris = new ArrayList<>(k);
+            for (int j = 0; j < k; j++) {
+                Ingrediente ing = readIngrediente(buf, ingredientes);
+                ris.add(new RecipeIngredient(ing, buf.getDouble()));
+            }
+            Recipe r = new Recipe(id, nombre, List.copyOf(ris), tiempo, precio);
+            recipes.put(id, r);
+            st.recipes.add(r);
+        }
+
+        n = buf.getInt();
+        for (int i = 0; i < n; i++) {
+            Mesa m = new Mesa(buf.getInt(), buf.getInt());
+            m.setEstado(TableStatus.valueOf(readString(buf)));
+            if (buf.get() != 0) st.vipTables.add(m.getId());
+            st.mesas.add(m);
+        }
+
+        n = buf.getInt();
+        for (int i = 0; i < n; i++) {
+            int id = buf.getInt();
+            String customer = readString(buf);
+            int guests = buf.getInt();
+            LocalDateTime when = fromMillis(buf.getLong());
+            int tableId = buf.getInt();
+            Reservation r = new Reservation(id, customer, guests, when);
+            r.setTableId(tableId >= 0 ? tableId : null);
+            r.setStatus(ReservationStatus.valueOf(readString(buf)));
+            r.setVip(buf.get() != 0);
+            st.reservations.add(r);
+        }
+
+        n = buf.getInt();
+        for (int i = 0; i < n; i++) {
+            int id = buf.getInt();
+            Recipe recipe = recipes.get(buf.getInt());
+            int qty = buf.getInt();
+            int baseQty = buf.getInt();
+            int batchSize = buf.getInt();
+            ProductionJob.Status status = ProductionJob.Status.valueOf(readString(buf));
+            LocalDateTime created = fromMillis(buf.getLong());
+            LocalDateTime started = fromMillis(buf.getLong());
+            LocalDateTime finished = fromMillis(buf.getLong());
+            LocalDateTime waiting = fromMillis(buf.getLong());
+            boolean vip = buf.get() != 0;
+            boolean rush = buf.get() != 0;
+            boolean awaiting = buf.get() != 0;
+            String note = readString(buf);
+            if (recipe == null) continue; // recipe no longer on the menu
+            ProductionJob j = ProductionJob.restore(id, recipe, qty, baseQty, batchSize, created);
+            j.setStatus(status);
+            j.setStartedAt(started);
+            j.setFinishedAt(finished);
+            j.setWaitingSince(waiting);
+            j.setVip(vip);
+            j.setRush(rush);
+            j.setAwaitingConfirmation(awaiting);
+            j.setNote(note);
+            st.jobs.add(j);
+        }
+
+        n = buf.getInt();
+        for (int i = 0; i < n; i++) {
+            int mesaId = buf.getInt();
+            LocalDateTime since = fromMillis(buf.getLong());
+            if (since != null) st.waitingSince.put(mesaId, since);
+            int k = buf.getInt();
+            List<OrderItem> items = new ArrayList<>(k);
+            for (int j = 0; j < k; j++) {
+                String name = readString(buf);
+                int qty = buf.getInt();
+                int recipeId = buf.getInt();
+                int jobId = buf.getInt();
+                long eta = buf.getLong();
+                OrderItem oi = new OrderItem(name, qty, recipeId >= 0 ? recipeId : null);
+                oi.setProductionJobId(jobId >= 0 ? jobId : null);
+                oi.setEstimatedMinutes(eta != NONE ? eta : null);
+                oi.setEstado(EstadoPedido.valueOf(readString(buf)));
+                oi.setUnitPrice(buf.getDouble());
+                items.add(oi);
+            }
+            st.orders.put(mesaId, items);
+        }
+        return st;
+    }
+
+    private static Ingrediente readIngrediente(ByteBuffer buf, Map<Integer, Ingrediente> known) {
+        int id = buf.getInt();
+        String nombre = readString(buf);
+        Magnitud magnitud = Magnitud.valueOf(readString(buf));
+        return known.computeIfAbsent(id, k -> new Ingrediente(k, nombre, magnitud));
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return millis != NONE ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()) : null;
+    }
+}
@@ -0,0 +1,151 @@
+package org.db;
+
+import org.models.User;
+
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Process-wide read-through cache for user records and verified credentials.
+// LoginDialog builds a fresh DatabaseHelper/UserManager on every login, so the cache
+// is shared statically: repeated logins on the same terminal are answered from memory
+// until the entry expires or is invalidated by insertUser/changePassword.
+public class UserCache {
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+    private static final long DEFAULT_TTL_MILLIS = 15 * 60 * 1000L; // 15 minutes
+    private static final long DEFAULT_SESSION_TTL_MILLIS = 12 * 60 * 60 * 1000L; // one long shift
+
+    private static final UserCache SHARED = new UserCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_SESSION_TTL_MILLIS);
+
+    public static UserCache shared() { return SHARED; }
+
+    private static class Entry<V> {
+        final V value;
+        final long expiresAt;
+        Entry(V value, long expiresAt) { this.value = value; this.expiresAt = expiresAt; }
+    }
+
+    // Active session: the user it belongs to and when it stops being accepted
+    private static class Session {
+        final User user;
+        final long expiresAt;
+        Session(User user, long expiresAt) { this.user = user; this.expiresAt = expiresAt; }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long sessionTtlMillis;
+    private final LruMap<String, Entry<User>> users;
+    private final LruMap<String, Entry<String>> credentials; // username -> stored password hash
+    private final Map<String, Session> sessions = new HashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    public UserCache(int maxEntries, long ttlMillis, long sessionTtlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.sessionTtlMillis = sessionTtlMillis;
+        this.users = new LruMap<>(maxEntries);
+        this.credentials = new LruMap<>(maxEntries);
+    }
+
+    // Access-ordered LinkedHashMap that drops its eldest entry once over capacity
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private final int maxEntries;
+        LruMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private static String key(String username) {
+        return username == null ? "" : username;
+    }
+
+    private static <V> V getLive(LruMap<String, Entry<V>> map, String key) {
+        Entry<V> e = map.get(key);
+        if (e == null) return null;
+        if (e.expiresAt < System.currentTimeMillis()) {
+            map.remove(key);
+            return null;
+        }
+        return e.value;
+    }
+
+    // User records
+    public synchronized User getUser(String username) {
+        return getLive(users, key(username));
+    }
+
+    public synchronized void putUser(User user) {
+        if (user == null) return;
+        users.put(key(user.getUsername()), new Entry<>(user, System.currentTimeMillis() + ttlMillis));
+    }
+
+    // Verified credentials (stored hash as read from user_passwords)
+    public synchronized String getPasswordHash(String username) {
+        return getLive(credentials, key(username));
+    }
+
+    public synchronized void putPasswordHash(String username, String passwordHash) {
+        if (passwordHash == null) return;
+        credentials.put(key(username), new Entry<>(passwordHash, System.currentTimeMillis() + ttlMillis));
+    }
+
+    // Drop everything known about a user, including open sessions (password or role changed)
+    public synchronized void invalidate(String username) {
+        String k = key(username);
+        users.remove(k);
+        credentials.remove(k);
+        sessions.values().removeIf(s -> k.equals(key(s.user.getUsername())));
+    }
+
+    public synchronized void invalidateAll() {
+        users.clear();
+        credentials.clear();
+        sessions.clear();
+    }
+
+    // Sessions: opened after a successful login so shift changes and logouts can be handled in memory
+    public synchronized String openSession(User user) {
+        if (user == null) return null;
+        purgeExpiredSessions();
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) sb.append(String.format("%02x", b));
+        String token = sb.toString();
+        sessions.put(token, new Session(user, System.currentTimeMillis() + sessionTtlMillis));
+        return token;
+    }
+
+    // Returns the user for a still-valid session token, or null if unknown/expired
+    public synchronized User resumeSession(String token) {
+        if (token == null) return null;
+        Session s = sessions.get(token);
+        if (s == null) return null;
+        if (s.expiresAt < System.currentTimeMillis()) {
+            sessions.remove(token);
+            return null;
+        }
+        return s.user;
+    }
+
+    public synchronized void closeSession(String token) {
+        if (token != null) sessions.remove(token);
+    }
+
+    private void purgeExpiredSessions() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Session> it = sessions.values().iterator(); it.hasNext(); ) {
+            if (it.next().expiresAt < now) it.remove();
+        }
+    }
+
+    public int getMaxEntries() { return maxEntries; }
+}
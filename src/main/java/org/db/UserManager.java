@@ -36,7 +36,7 @@ public class UserManager {
         }
     }
     
-    private String hashPassword(String password) {
+    private static String hashPassword(String password) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
             byte[] hashedBytes = md.digest(password.getBytes());
@@ -76,6 +76,7 @@ public class UserManager {
 
             connection.commit();
             connection.setAutoCommit(true);
+            UserCache.shared().invalidate(username);
             return true;
         } catch (SQLException e) {
             try {
@@ -90,6 +91,12 @@ public class UserManager {
     }
 
     public boolean authenticateUser(String username, String password) {
+        // Verified credentials are cached so re-logins do not touch disk
+        String cachedHash = UserCache.shared().getPasswordHash(username);
+        if (cachedHash != null) {
+            return cachedHash.equals(hashPassword(password));
+        }
+
         String sql = "SELECT password_hash FROM user_passwords WHERE username = ?";
 
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
@@ -99,7 +106,10 @@ public class UserManager {
                 if (rs.next()) {
                     String storedHash = rs.getString("password_hash");
                     String inputHash = hashPassword(password);
-                    return storedHash.equals(inputHash);
+                    boolean ok = storedHash.equals(inputHash);
+                    // only cache hashes that have been verified by a successful login
+                    if (ok) UserCache.shared().putPasswordHash(username, storedHash);
+                    return ok;
                 }
             }
         } catch (SQLException e) {
@@ -109,6 +119,16 @@ public class UserManager {
         return false;
     }
     
+    // Authenticate purely from UserCache (no connection needed). Returns the cached user when both the
+    // verified credential and the user record are still cached, or null so the caller falls back to the DB.
+    public static User authenticateFromCache(String username, String password) {
+        UserCache cache = UserCache.shared();
+        String cachedHash = cache.getPasswordHash(username);
+        if (cachedHash == null || password == null) return null;
+        if (!cachedHash.equals(hashPassword(password))) return null;
+        return cache.getUser(username);
+    }
+
     public boolean changePassword(String username, String oldPassword, String newPassword) {
         if (!authenticateUser(username, oldPassword)) {
             return false;
@@ -121,6 +141,7 @@ public class UserManager {
             pstmt.setString(2, username);
             
             int rowsAffected = pstmt.executeUpdate();
+            UserCache.shared().invalidate(username);
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error changing password: " + e.getMessage());
@@ -0,0 +1,92 @@
+package org.example;
+
+import org.collections.IntObjectMap;
+import org.exceptions.BranchNotFoundException;
+import org.models.SalesSummary;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+// Routes work to branches by branch id. Each command runs on the pipeline of its branch, so commands of one
+// branch are serialized while different branches run in parallel on different cores. Cross-branch
+// queries fan out to every branch at once and are merged when all branches answered.
+public class BranchRouter implements AutoCloseable {
+    // copy-on-write: branches are added at startup, lookups happen on every routed command without a lock
+    private volatile IntObjectMap<BranchRuntime> branches = new IntObjectMap<>();
+
+    // Ids are unique: replacing a branch would leave the old one running but unreachable (never closed)
+    public synchronized BranchRuntime add(BranchRuntime branch) {
+        if (branches.get(branch.getId()) != null) {
+            throw new IllegalArgumentException("Sucursal ID " + branch.getId() + " ya registrada");
+        }
+        IntObjectMap<BranchRuntime> copy = branches.copy();
+        copy.put(branch.getId(), branch);
+        branches = copy;
+        return branch;
+    }
+
+    public boolean contains(int branchId) {
+        return branches.get(branchId) != null;
+    }
+
+    public BranchRuntime route(int branchId) {
+        BranchRuntime b = branches.get(branchId);
+        if (b == null) throw new BranchNotFoundException("Sucursal ID " + branchId + " no encontrada");
+        return b;
+    }
+
+    // Branches ordered by id
+    public List<BranchRuntime> getBranches() {
+        List<BranchRuntime> res = new ArrayList<>(branches.values());
+        res.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        return res;
+    }
+
+    // Run a command on the pipeline of one branch
+    public <T> CompletableFuture<T> submit(int branchId, Function<BranchRuntime, T> command) {
+        return route(branchId).submit(command);
+    }
+
+    // Run the same query on every branch in parallel; results by branch id (in id order)
+    public <T> Map<Integer, T> fanOut(Function<BranchRuntime, T> query) {
+        Map<Integer, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (BranchRuntime b : getBranches()) futures.put(b.getId(), b.submit(query));
+        Map<Integer, T> res = new LinkedHashMap<>();
+        futures.forEach((id, f) -> res.put(id, f.join()));
+        return res;
+    }
+
+    // Sales of the whole group: every branch reports on its own database at the same time. Reports only
+    // read the database, so they run beside the pipelines instead of holding up their writers. A branch
+    // whose report fails fails the group report (SalesReportException) instead of leaving it short.
+    public SalesSummary salesReport(LocalDate from, LocalDate to) {
+        List<CompletableFuture<SalesSummary>> parts = new ArrayList<>();
+        for (BranchRuntime b : getBranches()) {
+            parts.add(CompletableFuture.supplyAsync(() -> b.getSalesReports().report(from, to)));
+        }
+        SalesSummary total = new SalesSummary();
+        for (CompletableFuture<SalesSummary> f : parts) {
+            try {
+                total.merge(f.join());
+            } catch (java.util.concurrent.CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw e;
+            }
+        }
+        return total;
+    }
+
+    public void startAll() {
+        for (BranchRuntime b : getBranches()) b.start();
+    }
+
+    @Override
+    public void close() {
+        for (BranchRuntime b : getBranches()) b.close();
+    }
+}
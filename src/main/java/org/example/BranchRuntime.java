@@ -0,0 +1,288 @@
+package org.example;
+
+import org.db.BulkTransfer;
+import org.db.DatabaseHelper;
+import org.db.InvoiceWriter;
+import org.db.SalesReportEngine;
+import org.db.StateSnapshotStore;
+import org.models.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// The complete service graph of one branch: its own stock, menu, tables, reservations, production,
+// purchasing and forecasting, backed by its own database file and state snapshot. Nothing is shared with
+// other branches, so branches never contend on each other's locks. Each branch also has a command pipeline
+// (a single writer thread, see CommandPipeline) where commands routed to it, the changes made from the Swing
+// panels, bulk imports, production and hold timers and supplier deliveries are applied one after another;
+// see BranchRouter.
+public class BranchRuntime implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(BranchRuntime.class.getName());
+    private static final long SNAPSHOT_PERIOD_MILLIS = 30_000L;
+    // Released table turns read back at start to seed the waitlist's averages (older ones barely weigh in)
+    private static final int TURN_HISTORY = 500;
+
+    private final int id;
+    private final String nombre;
+    private final DatabaseHelper db;
+    private final StateSnapshotStore snapshotStore;
+    private final SalesReportEngine salesReports;
+
+    private final StockGeneral stock = new StockGeneral();
+    private final Menu menu = new Menu();
+    private final TableService tableService = new TableService();
+    private final ReservationService reservationService = new ReservationService(tableService);
+    private final Pedido productionService = new Pedido(stock);
+    private final ProcurementService procurement = new ProcurementService(stock);
+    private final ConsumptionForecaster forecaster = new ConsumptionForecaster();
+    private final ChangeFeed changeFeed = new ChangeFeed();
+    private final ProductionScheduler scheduler;
+    private final WaitlistService waitlist;
+    private final InvoiceWriter invoiceWriter;
+    private final BulkTransfer bulk;
+    private final CommandPipeline pipeline;
+    private final boolean warm;
+    private volatile boolean started = false;
+
+    // Branch with its files in a directory: restaurant-<id>.db and restaurant-<id>.snapshot
+    public static BranchRuntime inDirectory(int id, String nombre, Path dir) {
+        return new BranchRuntime(id, nombre,
+                dir.resolve("restaurant-" + id + ".db").toString(),
+                dir.resolve("restaurant-" + id + ".snapshot"));
+    }
+
+    public BranchRuntime(int id, String nombre, String dbFile, Path snapshotFile) {
+        this.id = id;
+        this.nombre = nombre;
+        this.db = new DatabaseHelper(dbFile);
+        this.snapshotStore = new StateSnapshotStore(snapshotFile);
+        this.salesReports = new SalesReportEngine(db.getDbUrl(), Runtime.getRuntime().availableProcessors());
+        this.pipeline = new CommandPipeline("branch-" + id);
+
+        // Warm restart: the whole in-memory state comes back from the binary snapshot. Without a usable
+        // snapshot, stock is loaded from the database and the menu and tables are built as before. Stock and
+        // reservations in the image are checked against the database, which the listener below keeps current.
+        this.warm = snapshotStore.restore(stock, menu, tableService, reservationService, productionService, db);
+        if (!warm) {
+            // initialize stock and get ingredient references
+            StockInitResult init = loadOrSeedStock(db, stock);
+            buildMenu(menu, init);
+            addTables(tableService);
+            // bookings on file come back too, so new and imported ones never reuse (and overwrite) their ids
+            for (Reservation r : db.getAllReservations()) reservationService.restoreReservation(r);
+        }
+
+        // Persist stock changes to DB whenever StockGeneral is updated
+        stock.addStockListener(stockItem -> {
+            // a batch (physical count import) is saved in one transaction by whoever applied it
+            if (stock.isEnLote()) return;
+            // insert or replace the stock record for this ingredient
+            try {
+                db.insertStock(stockItem);
+            } catch (Exception ex) {
+                LOGGER.log(Level.WARNING, "Failed to persist stock for ingredient {0}: {1}", new Object[] { stockItem.getIngrediente().getNombre(), ex.getMessage() });
+            }
+        });
+
+        // Purchasing: low-stock signals become supplier orders; stock goes up when deliveries arrive
+        procurement.addProveedor(new Proveedor(1, "Molino San José", 120).agregarIngrediente(101).agregarIngrediente(404));
+        procurement.addProveedor(new Proveedor(2, "Distribuidora Central", 30));
+        // Consumption forecast: dynamic reorder points based on how fast each ingredient is being used
+        forecaster.setLeadTimes(procurement::getLeadTimeMinutes);
+        forecaster.attach(stock);
+        procurement.setForecaster(forecaster);
+
+        // Wire production integration so orders create production jobs and ETAs
+        tableService.setProductionIntegration(productionService, menu);
+
+        // Job and order line changes, numbered, for kitchen displays following the branch remotely
+        changeFeed.attach(productionService);
+        tableService.setChangeFeed(changeFeed);
+
+        // Walk-ins are quoted a wait from predicted table turns, order ETAs and bookings
+        waitlist = new WaitlistService(tableService, reservationService);
+        // turn averages start from the stored history and every released turn is added to it
+        for (WaitlistService.Turn t : db.getRecentTableTurns(TURN_HISTORY)) waitlist.recordTurn(t.capacidad(), t.minutes());
+        waitlist.addTurnListener(t -> {
+            try {
+                db.insertTableTurn(t);
+            } catch (Exception ex) {
+                LOGGER.log(Level.WARNING, "Failed to persist table turn: {0}", ex.getMessage());
+            }
+        });
+
+        // Orders of the same dish placed within 10 s are cooked together (up to 6 units per batch); with
+        // the kitchen idle an order starts at once instead of waiting for company
+        productionService.setBatching(10_000L, 6);
+
+        // Time-driven production: jobs finish when their cooking time is up and order ETAs count down
+        scheduler = new ProductionScheduler(productionService, tableService, true);
+        // timer-driven changes and supplier deliveries are applied by the branch's single writer
+        scheduler.setCommandExecutor(pipeline);
+        procurement.setCommandExecutor(pipeline);
+        // tables are held for bookings when they come within a turn, on the same wheel and writer
+        reservationService.setHoldTimer(scheduler::after);
+
+        // Persist settled bills (and their sales rollups) off the UI thread, on a connection of its own
+        invoiceWriter = new InvoiceWriter(new DatabaseHelper(dbFile));
+        tableService.addSettleListener(invoiceWriter::submit);
+
+        // Bulk import/export of reservations and stock counts, also on a connection of its own; imported
+        // chunks are applied by the branch's single writer like any other change
+        bulk = new BulkTransfer(new DatabaseHelper(dbFile));
+        bulk.setCommandPipeline(pipeline);
+    }
+
+    // Start the background work of the branch (purchasing, production timers, periodic snapshots)
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        procurement.start();
+        scheduler.start();
+        // jobs restored from the snapshot that were still queued start now that listeners are wired
+        if (warm) productionService.resumeQueued();
+        // holds of the bookings already on file (restored or made before start) get their timers
+        reservationService.refreshHolds();
+        // Write the in-memory state periodically (and on close) for the next warm restart
+        snapshotStore.startPeriodic(stock, menu, tableService, reservationService, productionService, SNAPSHOT_PERIOD_MILLIS);
+        LOGGER.log(Level.INFO, "Sucursal {0} ({1}) iniciada{2}", new Object[]{id, nombre, warm ? " desde snapshot" : ""});
+    }
+
+    // Stop background work, write a final snapshot and flush pending invoices
+    @Override
+    public synchronized void close() {
+        if (started) {
+            started = false;
+            scheduler.stop();
+            procurement.stop();
+            snapshotStore.stop(stock, menu, tableService, reservationService, productionService);
+        }
+        invoiceWriter.close();
+        bulk.close();
+        pipeline.close();
+        db.close();
+    }
+
+    // Post a command to this branch's pipeline
+    public <T> CompletableFuture<T> submit(Function<BranchRuntime, T> command) {
+        return pipeline.submit(() -> command.apply(this));
+    }
+
+    // Run a command on this branch's pipeline and wait for its result (exceptions are rethrown)
+    public <T> T call(Function<BranchRuntime, T> command) {
+        return pipeline.call(() -> command.apply(this));
+    }
+
+    public int getId() { return id; }
+    public String getNombre() { return nombre; }
+    public boolean isWarmStart() { return warm; }
+    public DatabaseHelper getDatabase() { return db; }
+    public StockGeneral getStock() { return stock; }
+    public Menu getMenu() { return menu; }
+    public TableService getTableService() { return tableService; }
+    public ReservationService getReservationService() { return reservationService; }
+    public Pedido getProductionService() { return productionService; }
+    public ProcurementService getProcurement() { return procurement; }
+    public ConsumptionForecaster getForecaster() { return forecaster; }
+    public ProductionScheduler getScheduler() { return scheduler; }
+    public SalesReportEngine getSalesReports() { return salesReports; }
+    public ChangeFeed getChangeFeed() { return changeFeed; }
+    public WaitlistService getWaitlist() { return waitlist; }
+    public BulkTransfer getBulkTransfer() { return bulk; }
+    public CommandPipeline getPipeline() { return pipeline; }
+
+    // Menu / recipes (cold start)
+    private static void buildMenu(Menu menu, StockInitResult init) {
+        Recipe pizza = new Recipe(
+                1,
+                "Pizza Margarita",
+                List.of(
+                        new RecipeIngredient(init.harina, 0.3),
+                        new RecipeIngredient(init.levadura, 5.0),
+                        new RecipeIngredient(init.tomate, 0.2),
+                        new RecipeIngredient(init.queso, 0.25)
+                ),
+                20,
+                15
+        );
+
+        Recipe pan = new Recipe(
+                2,
+                "Pan Casero",
+                List.of(
+                        new RecipeIngredient(init.harina, 0.5),
+                        new RecipeIngredient(init.levadura, 7.0)
+                ),
+                40,
+                8
+        );
+
+        menu.addRecipe(pizza);
+        menu.addRecipe(pan);
+    }
+
+    // Tables (cold start)
+    private static void addTables(TableService tableService) {
+        tableService.addMesa(new Mesa(1, 2));
+        tableService.addMesa(new Mesa(2, 4));
+        tableService.addMesa(new Mesa(3, 4));
+        tableService.addMesa(new Mesa(4, 6));
+        // Additional tables
+        tableService.addMesa(new Mesa(5, 2));
+        tableService.addMesa(new Mesa(6, 2));
+        tableService.addMesa(new Mesa(7, 4));
+        tableService.addMesa(new Mesa(8, 6));
+    }
+
+    // Helper container
+    private static class StockInitResult {
+        final Ingrediente harina, queso, tomate, levadura;
+        StockInitResult(Ingrediente harina, Ingrediente queso, Ingrediente tomate, Ingrediente levadura) {
+            this.harina = harina; this.queso = queso; this.tomate = tomate; this.levadura = levadura;
+        }
+    }
+
+    // Load stock from DB or seed defaults into the branch stock. Returns the ingredient references used by recipes.
+    private static StockInitResult loadOrSeedStock(DatabaseHelper db, StockGeneral sistemaStock) {
+        Ingrediente harina = null, queso = null, tomate = null, levadura = null;
+
+        java.util.List<DetalleIngrediente> persisted = db.getAllStock();
+        if (persisted != null && !persisted.isEmpty()) {
+            for (DetalleIngrediente si : persisted) sistemaStock.agregarStock(si);
+            java.util.Map<Integer, Ingrediente> ingrMap = new java.util.HashMap<>();
+            for (DetalleIngrediente si : persisted) {
+                Ingrediente i = si.getIngrediente(); if (i != null) ingrMap.put(i.getId(), i);
+            }
+            harina = ingrMap.get(101); queso = ingrMap.get(202); tomate = ingrMap.get(303); levadura = ingrMap.get(404);
+        }
+
+        if (harina == null) harina = new Ingrediente(101, "Harina de Trigo", Magnitud.KILOGRAMO);
+        if (queso == null) queso = new Ingrediente(202, "Queso Mozzarella", Magnitud.KILOGRAMO);
+        if (tomate == null) tomate = new Ingrediente(303, "Tomate", Magnitud.KILOGRAMO);
+        if (levadura == null) levadura = new Ingrediente(404, "Levadura", Magnitud.GRAMO);
+
+        if (persisted == null || persisted.isEmpty()) {
+            DetalleIngrediente stockHarina = new DetalleIngrediente(harina, 50.0, 10);
+            DetalleIngrediente stockQueso = new DetalleIngrediente(queso, 25.0, 5);
+            DetalleIngrediente stockTomate = new DetalleIngrediente(tomate, 20.0, 5);
+            DetalleIngrediente stockLevadura = new DetalleIngrediente(levadura, 1000.0, 200);
+            sistemaStock.agregarStock(stockHarina); sistemaStock.agregarStock(stockQueso); sistemaStock.agregarStock(stockTomate); sistemaStock.agregarStock(stockLevadura);
+            // persist seeded ingredients and stock
+            try { db.insertIngrediente(harina); db.insertIngrediente(queso); db.insertIngrediente(tomate); db.insertIngrediente(levadura);
+                  db.insertStock(stockHarina); db.insertStock(stockQueso); db.insertStock(stockTomate); db.insertStock(stockLevadura);
+            } catch (Exception ex) { LOGGER.log(Level.WARNING, "Failed to persist seeded stock: {0}", ex.getMessage()); }
+        }
+
+        return new StockInitResult(harina, queso, tomate, levadura);
+    }
+
+    // Default branch: the historical single-restaurant files in the working directory
+    public static BranchRuntime principal() {
+        return new BranchRuntime(1, "Casa central", "./restaurant.db", Paths.get(StateSnapshotStore.DEFAULT_FILE));
+    }
+}
@@ -1,12 +1,15 @@
 package org.example;
 
+import org.api.ApiServer;
+import org.db.BulkTransfer;
+import org.exceptions.SchemaMigrationException;
 import org.gui.LoginDialog;
 import org.gui.MainGui;
 import org.models.*;
-import org.db.DatabaseHelper;
 
 import javax.swing.SwingUtilities;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,76 +17,73 @@ public class Main {
     private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
 
     public static void main(String[] args) {
-        // Build initial model data and load/persist inventory via database
-        DatabaseHelper db = new DatabaseHelper();
-
-        // initialize stock and get ingredient references
-        StockInitResult init = loadOrSeedStock(db);
-        StockGeneral sistemaStock = init.stock;
-        Ingrediente harina = init.harina;
-        Ingrediente queso = init.queso;
-        Ingrediente tomate = init.tomate;
-        Ingrediente levadura = init.levadura;
-
-        // Persist stock changes to DB whenever StockGeneral is updated
-        sistemaStock.addStockListener(stockItem -> {
-            // insert or replace the stock record for this ingredient
+        // Every branch gets its own service graph, database file and command pipeline. Branch 1 keeps the
+        // historical restaurant.db / restaurant.snapshot; more branches can be added with --branch=<id>:<name>
+        // (their files go to the working directory as restaurant-<id>.db / .snapshot).
+        BranchRouter router = new BranchRouter();
+        BranchRuntime principal;
+        try {
+            principal = router.add(BranchRuntime.principal());
+        } catch (SchemaMigrationException ex) {
+            LOGGER.log(Level.SEVERE, "No se pudo migrar la base de datos: {0}", ex.getMessage());
+            router.close();
+            System.exit(1);
+            return;
+        }
+        boolean headless = false;
+        // --confirm-jobs: cooked jobs wait for the kitchen to confirm them instead of finishing on their own
+        boolean confirmJobs = false;
+        int port = 8080;
+        // --bind=<address>: interface the API listens on (loopback unless given, e.g. 0.0.0.0 for the floor network)
+        String bind = null;
+        for (String arg : args) {
+            if (arg.equals("--headless")) { headless = true; continue; }
+            if (arg.equals("--confirm-jobs")) { confirmJobs = true; continue; }
+            if (arg.startsWith("--bind=")) { bind = arg.substring("--bind=".length()).trim(); continue; }
+            if (arg.startsWith("--port=")) {
+                try { port = Integer.parseInt(arg.substring("--port=".length()).trim()); }
+                catch (NumberFormatException ex) { LOGGER.log(Level.WARNING, "Puerto inválido: {0}", arg); }
+                continue;
+            }
+            if (!arg.startsWith("--branch=")) continue;
+            String[] parts = arg.substring("--branch=".length()).split(":", 2);
             try {
-                db.insertStock(stockItem);
-            } catch (Exception ex) {
-                LOGGER.log(Level.WARNING, "Failed to persist stock for ingredient {0}: {1}", new Object[] { stockItem.getIngrediente().getNombre(), ex.getMessage() });
+                int id = Integer.parseInt(parts[0].trim());
+                String nombre = parts.length > 1 ? parts[1].trim() : "Sucursal " + id;
+                // checked before the branch opens its database; a repeated id is a configuration error
+                if (router.contains(id)) {
+                    LOGGER.log(Level.SEVERE, "Sucursal ID {0} repetida en {1} (la 1 es la casa central)", new Object[]{id, arg});
+                    router.close();
+                    System.exit(1);
+                }
+                router.add(BranchRuntime.inDirectory(id, nombre, Paths.get(".")));
+            } catch (NumberFormatException ex) {
+                LOGGER.log(Level.WARNING, "Argumento de sucursal inválido: {0}", arg);
+            } catch (SchemaMigrationException ex) {
+                LOGGER.log(Level.SEVERE, "No se pudo migrar la base de datos de {0}: {1}", new Object[]{arg, ex.getMessage()});
+                router.close();
+                System.exit(1);
             }
-        });
-
-        // Build menu / recipes
-        Menu menu = new Menu();
-
-        Recipe pizza = new Recipe(
-                1,
-                "Pizza Margarita",
-                List.of(
-                        new RecipeIngredient(harina, 0.3),
-                        new RecipeIngredient(levadura, 5.0),
-                        new RecipeIngredient(tomate, 0.2),
-                        new RecipeIngredient(queso, 0.25)
-                ),
-                20,
-                15
-        );
-
-        Recipe pan = new Recipe(
-                2,
-                "Pan Casero",
-                List.of(
-                        new RecipeIngredient(harina, 0.5),
-                        new RecipeIngredient(levadura, 7.0)
-                ),
-                40,
-                8
-        );
-
-        menu.addRecipe(pizza);
-        menu.addRecipe(pan);
-
-        // Tables and reservations
-        TableService tableService = new TableService();
-        tableService.addMesa(new Mesa(1, 2));
-        tableService.addMesa(new Mesa(2, 4));
-        tableService.addMesa(new Mesa(3, 4));
-        tableService.addMesa(new Mesa(4, 6));
-        // Additional tables
-        tableService.addMesa(new Mesa(5, 2));
-        tableService.addMesa(new Mesa(6, 2));
-        tableService.addMesa(new Mesa(7, 4));
-        tableService.addMesa(new Mesa(8, 6));
-
-        ReservationService reservationService = new ReservationService(tableService);
-
-        // Production service
-        Pedido productionService = new Pedido(sistemaStock);
+        }
+        if (confirmJobs) {
+            for (BranchRuntime b : router.getBranches()) b.getScheduler().setAutoComplete(false);
+        }
+        router.startAll();
+        Runtime.getRuntime().addShutdownHook(new Thread(router::close, "branches-shutdown"));
 
-        // Wire production integration so orders create production jobs and ETAs
-        tableService.setProductionIntegration(productionService, menu);
+        // Headless mode: no Swing, the branches are served over HTTP for handheld terminals (--port, default 8080)
+        if (headless) {
+            try {
+                ApiServer api = bind != null ? new ApiServer(router, bind, port) : new ApiServer(router, port);
+                api.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(api::stop, "api-shutdown"));
+                System.out.println("API disponible en http://" + (bind != null ? bind : "localhost") + ":" + api.getPort() + "/api/");
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, "No se pudo iniciar la API: {0}", ex.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
 
         // Start Swing UI on EDT after prompting for login
         SwingUtilities.invokeLater(() -> {
@@ -94,53 +94,9 @@ public class Main {
                 System.exit(0);
             }
 
-            MainGui gui = new MainGui(sistemaStock, menu, reservationService, tableService, productionService, user);
+            // the panels change the principal branch through its command pipeline, like the API does
+            MainGui gui = new MainGui(principal, user);
             gui.setVisible(true);
         });
     }
-
-    // Helper container
-    private static class StockInitResult {
-        final StockGeneral stock;
-        final Ingrediente harina, queso, tomate, levadura;
-        StockInitResult(StockGeneral stock, Ingrediente harina, Ingrediente queso, Ingrediente tomate, Ingrediente levadura) {
-            this.stock = stock; this.harina = harina; this.queso = queso; this.tomate = tomate; this.levadura = levadura;
-        }
-    }
-
-    // Load stock from DB or seed defaults. Returns the StockGeneral plus ingredient references used by recipes.
-    private static StockInitResult loadOrSeedStock(DatabaseHelper db) {
-        StockGeneral sistemaStock = new StockGeneral();
-
-        Ingrediente harina = null, queso = null, tomate = null, levadura = null;
-
-        java.util.List<DetalleIngrediente> persisted = db.getAllStock();
-        if (persisted != null && !persisted.isEmpty()) {
-            for (DetalleIngrediente si : persisted) sistemaStock.agregarStock(si);
-            java.util.Map<Integer, Ingrediente> ingrMap = new java.util.HashMap<>();
-            for (DetalleIngrediente si : persisted) {
-                Ingrediente i = si.getIngrediente(); if (i != null) ingrMap.put(i.getId(), i);
-            }
-            harina = ingrMap.get(101); queso = ingrMap.get(202); tomate = ingrMap.get(303); levadura = ingrMap.get(404);
-        }
-
-        if (harina == null) harina = new Ingrediente(101, "Harina de Trigo", Magnitud.KILOGRAMO);
-        if (queso == null) queso = new Ingrediente(202, "Queso Mozzarella", Magnitud.KILOGRAMO);
-        if (tomate == null) tomate = new Ingrediente(303, "Tomate", Magnitud.KILOGRAMO);
-        if (levadura == null) levadura = new Ingrediente(404, "Levadura", Magnitud.GRAMO);
-
-        if (persisted == null || persisted.isEmpty()) {
-            DetalleIngrediente stockHarina = new DetalleIngrediente(harina, 50.0, 10);
-            DetalleIngrediente stockQueso = new DetalleIngrediente(queso, 25.0, 5);
-            DetalleIngrediente stockTomate = new DetalleIngrediente(tomate, 20.0, 5);
-            DetalleIngrediente stockLevadura = new DetalleIngrediente(levadura, 1000.0, 200);
-            sistemaStock.agregarStock(stockHarina); sistemaStock.agregarStock(stockQueso); sistemaStock.agregarStock(stockTomate); sistemaStock.agregarStock(stockLevadura);
-            // persist seeded ingredients and stock
-            try { db.insertIngrediente(harina); db.insertIngrediente(queso); db.insertIngrediente(tomate); db.insertIngrediente(levadura);
-                  db.insertStock(stockHarina); db.insertStock(stockQueso); db.insertStock(stockTomate); db.insertStock(stockLevadura);
-            } catch (Exception ex) { LOGGER.log(Level.WARNING, "Failed to persist seeded stock: {0}", ex.getMessage()); }
-        }
-
-        return new StockInitResult(sistemaStock, harina, queso, tomate, levadura);
-    }
 }
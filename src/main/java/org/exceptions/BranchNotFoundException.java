@@ -0,0 +1,6 @@
+package org.exceptions;
+
+public class BranchNotFoundException extends RuntimeException {
+    public BranchNotFoundException(String message) { super(message); }
+    public BranchNotFoundException(String message, Throwable cause) { super(message, cause); }
+}
@@ -0,0 +1,6 @@
+package org.exceptions;
+
+public class SalesReportException extends RuntimeException {
+    public SalesReportException(String message) { super(message); }
+    public SalesReportException(String message, Throwable cause) { super(message, cause); }
+}
@@ -0,0 +1,6 @@
+package org.exceptions;
+
+public class SchemaMigrationException extends RuntimeException {
+    public SchemaMigrationException(String message) { super(message); }
+    public SchemaMigrationException(String message, Throwable cause) { super(message, cause); }
+}
@@ -0,0 +1,6 @@
+package org.exceptions;
+
+public class TableUnavailableException extends RuntimeException {
+    public TableUnavailableException(String message) { super(message); }
+    public TableUnavailableException(String message, Throwable cause) { super(message, cause); }
+}
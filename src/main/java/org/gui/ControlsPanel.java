@@ -2,6 +2,8 @@
 // ...existing code...
 package org.gui;
 
+import org.db.BulkTransfer;
+import org.models.CommandPipeline;
 import org.models.DetalleIngrediente;
 import org.models.StockGeneral;
 import org.models.TipoMovimiento;
@@ -12,6 +14,7 @@ import org.exceptions.MovementNotSupportedException;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
 
 public class ControlsPanel extends JPanel {
     private final StockGeneral sistemaStock;
@@ -26,12 +29,28 @@ public class ControlsPanel extends JPanel {
     private final JButton btnSalidaQuick;
     private final JLabel lblName;
     private final JLabel lblUnit;
+    private final JButton btnImportar;
+    private final JButton btnExportar;
+    private final BulkTransfer bulk;
+    private final GuiCommands commands;
 
     public ControlsPanel(StockGeneral sistemaStock, InventoryPanel inventoryPanel, boolean isAdmin) {
+        this(sistemaStock, inventoryPanel, isAdmin, null);
+    }
+
+    public ControlsPanel(StockGeneral sistemaStock, InventoryPanel inventoryPanel, boolean isAdmin, BulkTransfer bulk) {
+        this(sistemaStock, inventoryPanel, isAdmin, bulk, null);
+    }
+
+    // Movements go through the branch's writer (see GuiCommands; counts are applied there by BulkTransfer
+    // itself); null runs them on the EDT
+    public ControlsPanel(StockGeneral sistemaStock, InventoryPanel inventoryPanel, boolean isAdmin, BulkTransfer bulk, CommandPipeline writer) {
         super(new GridBagLayout());
         this.sistemaStock = sistemaStock;
         this.inventoryPanel = inventoryPanel;
         this.isAdmin = isAdmin;
+        this.bulk = bulk;
+        this.commands = new GuiCommands(writer);
 
         GridBagConstraints c = new GridBagConstraints();
         c.insets = new Insets(4,4,4,4);
@@ -45,6 +64,8 @@ public class ControlsPanel extends JPanel {
         btnSalidaQuick = new JButton("Salida 1");
         lblName = new JLabel("Nombre: -");
         lblUnit = new JLabel("Unidad: -");
+        btnImportar = new JButton("Importar conteo...");
+        btnExportar = new JButton("Exportar stock...");
 
         c.gridx = 0; c.gridy = 0; add(new JLabel("Ingrediente ID:"), c);
         c.gridx = 1; add(txtId, c);
@@ -57,6 +78,11 @@ public class ControlsPanel extends JPanel {
         c.gridx = 0; c.gridy = 2; c.gridwidth = 2; add(btnRegistrar, c);
         c.gridwidth = 1; c.gridx = 2; add(btnEntradaQuick, c);
         c.gridx = 3; add(btnSalidaQuick, c);
+        if (bulk != null) {
+            c.gridx = 0; c.gridy = 3; c.gridwidth = 2; add(btnImportar, c);
+            c.gridx = 2; add(btnExportar, c);
+            c.gridwidth = 1;
+        }
 
         // Wire inventory selection to autocomplete the ID field
         inventoryPanel.setSelectionListener(id -> {
@@ -85,6 +111,7 @@ public class ControlsPanel extends JPanel {
             btnRegistrar.setEnabled(false);
             btnEntradaQuick.setEnabled(false);
             btnSalidaQuick.setEnabled(false);
+            btnImportar.setEnabled(false);
         }
 
         // Handle popup/context menu actions from the inventory panel
@@ -151,6 +178,55 @@ public class ControlsPanel extends JPanel {
         });
 
         btnRegistrar.addActionListener(e -> onRegistrar());
+        btnImportar.addActionListener(e -> onImportar());
+        btnExportar.addActionListener(e -> onExportar());
+    }
+
+    // Conteo físico desde CSV (ingredienteId,nombre,magnitud,cantidad) o .jsonl, fuera del EDT
+    private void onImportar() {
+        if (!isAdmin) { JOptionPane.showMessageDialog(this, "Only admins can modify stock.", "Permission denied", JOptionPane.ERROR_MESSAGE); return; }
+        JFileChooser fc = new JFileChooser();
+        if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = fc.getSelectedFile();
+        btnImportar.setEnabled(false);
+        new SwingWorker<BulkTransfer.Result, Void>() {
+            @Override protected BulkTransfer.Result doInBackground() throws Exception {
+                return bulk.importStock(file.toPath(), sistemaStock);
+            }
+            @Override protected void done() {
+                btnImportar.setEnabled(true);
+                inventoryPanel.refreshTable();
+                try {
+                    BulkTransfer.Result r = get();
+                    String msg = r.imported() + " filas aplicadas, " + r.rejected() + " rechazadas (" + r.millis() + " ms)";
+                    if (!r.errors().isEmpty()) msg += "\n\n" + String.join("\n", r.errors().subList(0, Math.min(10, r.errors().size())));
+                    JOptionPane.showMessageDialog(ControlsPanel.this, msg, "Importar conteo", r.rejected() > 0 ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(ControlsPanel.this, "No se pudo importar: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void onExportar() {
+        JFileChooser fc = new JFileChooser();
+        fc.setSelectedFile(new File("stock.csv"));
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = fc.getSelectedFile();
+        new SwingWorker<Long, Void>() {
+            @Override protected Long doInBackground() throws Exception {
+                return bulk.exportStock(file.toPath(), sistemaStock.getSnapshot());
+            }
+            @Override protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(ControlsPanel.this, get() + " ingredientes exportados a " + file.getName());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(ControlsPanel.this, "No se pudo exportar: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
     }
 
     private void onRegistrar() {
@@ -178,7 +254,7 @@ public class ControlsPanel extends JPanel {
             }
 
             try {
-                Double nuevo = sistemaStock.registrarMovimiento(id, cantidad, tipo);
+                Double nuevo = commands.call(() -> sistemaStock.registrarMovimiento(id, cantidad, tipo));
                 if (nuevo != null) {
                     inventoryPanel.refreshTable();
                     inventoryPanel.getTable().revalidate();
@@ -0,0 +1,29 @@
+package org.gui;
+
+import org.models.CommandPipeline;
+
+import java.util.function.Supplier;
+
+// How the panels change the services: every mutation is posted to the branch's single writer (see
+// CommandPipeline) and the EDT waits for its result, so a button does the same as an API call or a timer
+// and in the same order. Only the service calls go in a command: dialogs and table refreshes stay on the
+// EDT. Without a pipeline (panels built on bare services) commands run inline, as before.
+final class GuiCommands {
+    private final CommandPipeline pipeline;
+
+    GuiCommands(CommandPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    // Exceptions of the command reach the caller as they are
+    <T> T call(Supplier<T> command) {
+        return pipeline != null ? pipeline.call(command) : command.get();
+    }
+
+    void run(Runnable command) {
+        call(() -> {
+            command.run();
+            return null;
+        });
+    }
+}
@@ -1,6 +1,6 @@
 package org.gui;
 
-import org.models.DetalleIngrediente;
+import org.models.InventorySnapshot;
 import org.models.StockGeneral;
 
 import javax.swing.*;
@@ -10,7 +10,6 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.BiConsumer;
 
@@ -22,6 +21,10 @@ public class InventoryPanel extends JPanel {
     private Consumer<Integer> selectionListener;
     // Optional listener to notify when a row action is requested (id, actionKey)
     private BiConsumer<Integer,String> rowActionListener;
+    // Version of the inventory snapshot currently shown (-1 = nothing yet)
+    private long shownVersion = -1L;
+    // Per model row: at or below the reorder point (precomputed by StockGeneral, read by the renderer)
+    private boolean[] rowBajoUmbral = new boolean[0];
 
     public InventoryPanel(StockGeneral sistemaStock) {
         super(new BorderLayout());
@@ -42,15 +45,10 @@ public class InventoryPanel extends JPanel {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int col) {
                 Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, col);
-                try {
-                    Double cantidad = Double.parseDouble(String.valueOf(table.getModel().getValueAt(row, 2)));
-                    Integer punto = Integer.parseInt(String.valueOf(table.getModel().getValueAt(row, 4)));
-                    if (cantidad <= punto) {
-                        c.setBackground(new Color(255, 220, 220));
-                    } else {
-                        c.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
-                    }
-                } catch (Exception ex) {
+                int modelRow = table.convertRowIndexToModel(row);
+                if (modelRow < rowBajoUmbral.length && rowBajoUmbral[modelRow]) {
+                    c.setBackground(new Color(255, 220, 220));
+                } else {
                     c.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
                 }
                 return c;
@@ -152,9 +150,13 @@ public class InventoryPanel extends JPanel {
     }
 
     public void refreshTable() {
+        InventorySnapshot snap = sistemaStock.getSnapshot();
+        if (snap.getVersion() == shownVersion) return; // nothing changed since the last refresh
+        shownVersion = snap.getVersion();
         tableModel.setRowCount(0);
-        for (Map.Entry<Integer, DetalleIngrediente> e : sistemaStock.getInventario().entrySet()) {
-            DetalleIngrediente s = e.getValue();
+        rowBajoUmbral = new boolean[snap.size()];
+        for (InventorySnapshot.Item s : snap.items()) {
+            rowBajoUmbral[tableModel.getRowCount()] = s.isBajoUmbral();
             Object[] row = new Object[] {
                 s.getIngrediente().getId(),
                 s.getIngrediente().getNombre(),
@@ -1,7 +1,12 @@
 package org.gui;
 
+import org.models.CommandPipeline;
+import org.models.ConsumptionForecaster;
+import org.models.DetalleIngrediente;
+import org.models.InventorySnapshot;
 import org.models.Pedido;
 import org.models.ProductionJob;
+import org.models.ProductionScheduler;
 import org.models.StockGeneral;
 
 import javax.swing.*;
@@ -13,6 +18,9 @@ import java.util.List;
 public class KitchenPanel extends JPanel {
     private final Pedido productionService;
     private final StockGeneral stock;
+    private final ConsumptionForecaster forecaster; // optional: dynamic reorder points and stock-out ETA
+    private final ProductionScheduler scheduler;    // optional: auto/confirm mode and timer overrides
+    private final GuiCommands commands;
 
     private final DefaultTableModel jobsModel;
     private final JTable jobsTable;
@@ -21,13 +29,37 @@ public class KitchenPanel extends JPanel {
     private final JButton btnRefresh;
     private final JButton btnStart;
     private final JButton btnFinish;
+    private final JButton btnRush;
+    private final JButton btnExtend;
+    private final JCheckBox chkAuto;
+
+    // id and version of the job shown on each row, to repaint only the rows whose job changed
+    private int[] rowIds = new int[0];
+    private long[] rowVersions = new long[0];
 
     private static final DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     public KitchenPanel(Pedido productionService, StockGeneral stock) {
+        this(productionService, stock, null);
+    }
+
+    public KitchenPanel(Pedido productionService, StockGeneral stock, ConsumptionForecaster forecaster) {
+        this(productionService, stock, forecaster, null);
+    }
+
+    public KitchenPanel(Pedido productionService, StockGeneral stock, ConsumptionForecaster forecaster, ProductionScheduler scheduler) {
+        this(productionService, stock, forecaster, scheduler, null);
+    }
+
+    // Changes go through the branch's writer (see GuiCommands); null runs them on the EDT
+    public KitchenPanel(Pedido productionService, StockGeneral stock, ConsumptionForecaster forecaster, ProductionScheduler scheduler,
+                        CommandPipeline writer) {
         super(new BorderLayout());
         this.productionService = productionService;
         this.stock = stock;
+        this.forecaster = forecaster;
+        this.scheduler = scheduler;
+        this.commands = new GuiCommands(writer);
 
         // Jobs table
         String[] cols = {"ID", "Recipe", "Qty", "Status", "Created", "Started"};
@@ -43,7 +75,11 @@ public class KitchenPanel extends JPanel {
         btnRefresh = new JButton("Refresh");
         btnStart = new JButton("Start Selected");
         btnFinish = new JButton("Finish Selected");
-        top.add(btnRefresh); top.add(btnStart); top.add(btnFinish);
+        btnRush = new JButton("Rush / Unrush");
+        btnExtend = new JButton("+5 min");
+        chkAuto = new JCheckBox("Auto-finish", scheduler == null || scheduler.isAutoComplete());
+        top.add(btnRefresh); top.add(btnStart); top.add(btnFinish); top.add(btnRush);
+        if (scheduler != null) { top.add(btnExtend); top.add(chkAuto); }
 
         JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
         split.setTopComponent(new JScrollPane(jobsTable));
@@ -60,11 +96,20 @@ public class KitchenPanel extends JPanel {
         btnRefresh.addActionListener(e -> refreshAll());
         btnStart.addActionListener(e -> startSelected());
         btnFinish.addActionListener(e -> finishSelected());
+        btnRush.addActionListener(e -> toggleRushSelected());
+        btnExtend.addActionListener(e -> extendSelected());
+        // unchecked: jobs whose time is up are flagged READY? and wait for Finish Selected
+        chkAuto.addActionListener(e -> { if (scheduler != null) scheduler.setAutoComplete(chkAuto.isSelected()); });
 
         refreshAll();
 
         // Subscribe to productionService updates so the kitchen view updates live
         productionService.addJobListener(job -> SwingUtilities.invokeLater(this::refreshAll));
+        // ...and the low-stock list as soon as an ingredient crosses its reorder point
+        stock.addUmbralListener(new StockGeneral.UmbralListener() {
+            @Override public void onBajoUmbral(DetalleIngrediente s) { SwingUtilities.invokeLater(KitchenPanel.this::refreshLowStock); }
+            @Override public void onRecuperado(DetalleIngrediente s) { SwingUtilities.invokeLater(KitchenPanel.this::refreshLowStock); }
+        });
     }
 
     private Integer getSelectedJobId() {
@@ -80,7 +125,7 @@ public class KitchenPanel extends JPanel {
             JOptionPane.showMessageDialog(this, "Select a job first.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
-        boolean ok = productionService.startJob(id);
+        boolean ok = commands.call(() -> productionService.startJob(id));
         if (ok) JOptionPane.showMessageDialog(this, "Job started."); else JOptionPane.showMessageDialog(this, "Failed to start job.", "Error", JOptionPane.ERROR_MESSAGE);
         refreshAll();
     }
@@ -91,35 +136,90 @@ public class KitchenPanel extends JPanel {
             JOptionPane.showMessageDialog(this, "Select a job first.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
-        boolean ok = productionService.finishJob(id, true);
+        boolean ok = commands.call(() -> scheduler != null ? scheduler.finishNow(id) : productionService.finishJob(id, true));
         if (ok) JOptionPane.showMessageDialog(this, "Job finished."); else JOptionPane.showMessageDialog(this, "Failed to finish job.", "Error", JOptionPane.ERROR_MESSAGE);
         refreshAll();
     }
 
+    // The selected job needs more time: its completion timer moves to 5 minutes from now
+    private void extendSelected() {
+        Integer id = getSelectedJobId();
+        if (id == null) {
+            JOptionPane.showMessageDialog(this, "Select a job first.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (!commands.call(() -> scheduler.extend(id, 5))) JOptionPane.showMessageDialog(this, "Only jobs in progress can be extended.", "Error", JOptionPane.ERROR_MESSAGE);
+        refreshAll();
+    }
+
+    // Toggle the rush flag so the job jumps ahead of the queue (or returns to its normal place)
+    private void toggleRushSelected() {
+        Integer id = getSelectedJobId();
+        if (id == null) {
+            JOptionPane.showMessageDialog(this, "Select a job first.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        ProductionJob job = productionService.listJobs().stream().filter(j -> j.getId() == id).findFirst().orElse(null);
+        if (job == null) return;
+        commands.run(() -> productionService.setRush(id, !job.isRush()));
+        refreshAll();
+    }
+
     public void refreshAll() {
         refreshJobs();
         refreshLowStock();
     }
 
     private void refreshJobs() {
-        jobsModel.setRowCount(0);
         List<ProductionJob> jobs = productionService.listJobs();
-        for (ProductionJob j : jobs) {
-            Object[] row = new Object[]{
-                    j.getId(), j.getRecipe().getNombre(), j.getQuantity(), j.getStatus(),
-                    j.getCreatedAt()!=null?j.getCreatedAt().format(dtf):"-",
-                    j.getStartedAt()!=null?j.getStartedAt().format(dtf):"-"
-            };
-            jobsModel.addRow(row);
+        boolean sameRows = jobs.size() == rowIds.length;
+        for (int i = 0; sameRows && i < jobs.size(); i++) sameRows = jobs.get(i).getId() == rowIds[i];
+        if (sameRows) {
+            // same jobs in the same order: only rows whose version moved are rewritten
+            for (int i = 0; i < jobs.size(); i++) {
+                ProductionJob j = jobs.get(i);
+                long v = j.getVersion();
+                if (v == rowVersions[i]) continue;
+                Object[] row = jobRow(j);
+                for (int c = 0; c < row.length; c++) jobsModel.setValueAt(row[c], i, c);
+                rowVersions[i] = v;
+            }
+            return;
+        }
+        jobsModel.setRowCount(0);
+        rowIds = new int[jobs.size()];
+        rowVersions = new long[jobs.size()];
+        for (int i = 0; i < jobs.size(); i++) {
+            ProductionJob j = jobs.get(i);
+            rowIds[i] = j.getId();
+            rowVersions[i] = j.getVersion();
+            jobsModel.addRow(jobRow(j));
         }
     }
 
+    private static Object[] jobRow(ProductionJob j) {
+        return new Object[]{
+                j.getId(), j.getRecipe().getNombre() + (j.getBatchSize() > 1 ? " (batch x" + j.getBatchSize() + ")" : ""), j.getQuantity(),
+                j.getStatus() + (j.isAwaitingConfirmation() ? " (READY?)" : "") + (j.isRush() ? " (RUSH)" : j.isVip() ? " (VIP)" : ""),
+                j.getCreatedAt()!=null?j.getCreatedAt().format(dtf):"-",
+                j.getStartedAt()!=null?j.getStartedAt().format(dtf):"-"
+        };
+    }
+
     private void refreshLowStock() {
         lowStockModel.clear();
-        stock.getInventario().forEach((id, s) -> {
-            if (s.getCantidadActual() <= s.getCantidadMinima()) {
-                lowStockModel.addElement(s.getIngrediente().getNombre() + " - " + s.getCantidadActual() + " " + s.getIngrediente().getUnidadMedida());
+        // below the reorder point (which follows consumption when a forecaster is attached): only the
+        // ingredients StockGeneral keeps in its low-stock set are visited, not the whole catalog
+        InventorySnapshot snap = stock.getSnapshot();
+        for (int id : stock.getBajoUmbral()) {
+            InventorySnapshot.Item s = snap.get(id);
+            if (s == null) continue;
+            String line = s.getIngrediente().getNombre() + " - " + s.getCantidadActual() + " " + s.getIngrediente().getUnidadMedida();
+            if (forecaster != null) {
+                long eta = forecaster.getStockOutMinutes(s.getDetalle());
+                if (eta >= 0) line += " (runs out in ~" + eta + " min)";
             }
-        });
+            lowStockModel.addElement(line);
+        }
     }
 }
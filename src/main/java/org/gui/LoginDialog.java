@@ -9,15 +9,14 @@ import java.awt.*;
 
 public class LoginDialog extends JDialog {
     private User result = null;
+    // Opened lazily: logins answered by UserCache never touch the database
     private DatabaseHelper db;
     private UserManager userManager;
+    // Default users only need to be seeded once per process, not on every login
+    private static boolean defaultUsersInitialized = false;
 
     public LoginDialog(Frame owner) {
         super(owner, "Inicio de Sesión - Restaurante", true);
-        this.db = new DatabaseHelper();
-        this.userManager = new UserManager();
-        // Ensure the default demo users and their password hashes exist in the database
-        this.userManager.initializeDefaultUsers();
 
         setLayout(new GridBagLayout());
         GridBagConstraints c = new GridBagConstraints();
@@ -101,8 +100,28 @@ public class LoginDialog extends JDialog {
         SwingUtilities.invokeLater(() -> txtUser.requestFocus());
     }
 
+    private void ensureConnections() {
+        if (db == null) db = new DatabaseHelper();
+        if (userManager == null) userManager = new UserManager();
+        synchronized (LoginDialog.class) {
+            if (!defaultUsersInitialized) {
+                // Ensure the default demo users and their password hashes exist in the database
+                userManager.initializeDefaultUsers();
+                defaultUsersInitialized = true;
+            }
+        }
+    }
+
     private User authenticateUser(String username, String password) {
         try {
+            // Fast path: credentials already verified in this process (shift changes, re-logins)
+            User cached = UserManager.authenticateFromCache(username, password);
+            if (cached != null) {
+                System.out.println("✓ Usuario '" + username + "' autenticado exitosamente");
+                return cached;
+            }
+
+            ensureConnections();
             // Check credentials with UserManager
             if (userManager.authenticateUser(username, password)) {
                 // Get user details from database
@@ -1,5 +1,8 @@
 package org.gui;
 
+import org.db.BulkTransfer;
+import org.db.UserCache;
+import org.example.BranchRuntime;
 import org.models.*;
 import org.models.Menu;
 
@@ -12,17 +15,57 @@ public class MainGui extends JFrame {
     private final ReservationService reservationService;
     private final TableService tableService;
     private final Pedido productionService;
+    private final ConsumptionForecaster forecaster;
+    private final WaitlistService waitlist;
+    private final BulkTransfer bulk;
+    private final ProductionScheduler scheduler;
+    // the branch's single writer: every change made from the panels is applied on it (null: on the EDT)
+    private final CommandPipeline writer;
     private User currentUser;
+    // In-memory session for the logged user; closed on logout, kept across a same-user re-login
+    private String sessionToken;
     private final org.gui.InventoryPanel inventoryPanel;
 
     public MainGui(StockGeneral sistemaStock, Menu menu, ReservationService reservationService, TableService tableService, Pedido productionService, User user) {
+        this(sistemaStock, menu, reservationService, tableService, productionService, null, user);
+    }
+
+    public MainGui(StockGeneral sistemaStock, Menu menu, ReservationService reservationService, TableService tableService, Pedido productionService, ConsumptionForecaster forecaster, User user) {
+        this(sistemaStock, menu, reservationService, tableService, productionService, forecaster, null, user);
+    }
+
+    public MainGui(StockGeneral sistemaStock, Menu menu, ReservationService reservationService, TableService tableService, Pedido productionService, ConsumptionForecaster forecaster, WaitlistService waitlist, User user) {
+        this(sistemaStock, menu, reservationService, tableService, productionService, forecaster, waitlist, null, user);
+    }
+
+    public MainGui(StockGeneral sistemaStock, Menu menu, ReservationService reservationService, TableService tableService, Pedido productionService, ConsumptionForecaster forecaster, WaitlistService waitlist, BulkTransfer bulk, User user) {
+        this(sistemaStock, menu, reservationService, tableService, productionService, forecaster, waitlist, bulk, null, user);
+    }
+
+    public MainGui(StockGeneral sistemaStock, Menu menu, ReservationService reservationService, TableService tableService, Pedido productionService, ConsumptionForecaster forecaster, WaitlistService waitlist, BulkTransfer bulk, ProductionScheduler scheduler, User user) {
+        this(sistemaStock, menu, reservationService, tableService, productionService, forecaster, waitlist, bulk, scheduler, null, user);
+    }
+
+    // The services of one branch, changed through its command pipeline like API calls and timers are
+    public MainGui(BranchRuntime branch, User user) {
+        this(branch.getStock(), branch.getMenu(), branch.getReservationService(), branch.getTableService(), branch.getProductionService(),
+                branch.getForecaster(), branch.getWaitlist(), branch.getBulkTransfer(), branch.getScheduler(), branch.getPipeline(), user);
+    }
+
+    public MainGui(StockGeneral sistemaStock, Menu menu, ReservationService reservationService, TableService tableService, Pedido productionService, ConsumptionForecaster forecaster, WaitlistService waitlist, BulkTransfer bulk, ProductionScheduler scheduler, CommandPipeline writer, User user) {
         super("Sistema de Gestión Gastronómica");
         this.sistemaStock = sistemaStock;
         this.menu = menu;
         this.reservationService = reservationService;
         this.tableService = tableService;
         this.productionService = productionService;
+        this.forecaster = forecaster;
+        this.waitlist = waitlist;
+        this.bulk = bulk;
+        this.scheduler = scheduler;
+        this.writer = writer;
         this.currentUser = user;
+        this.sessionToken = UserCache.shared().openSession(user);
 
         // Apply global styles/look-and-feel before creating components
         Styles.apply();
@@ -52,24 +95,27 @@ public class MainGui extends JFrame {
             inventoryPanel.getTable().revalidate();
             inventoryPanel.getTable().repaint();
         }));
-        org.gui.ControlsPanel controls = new org.gui.ControlsPanel(sistemaStock, inventoryPanel, user != null && user.isAdmin());
+        org.gui.ControlsPanel controls = new org.gui.ControlsPanel(sistemaStock, inventoryPanel, user != null && user.isAdmin(), bulk, writer);
         JPanel inventoryTab = new JPanel(new BorderLayout());
         inventoryTab.add(inventoryPanel, BorderLayout.CENTER);
         inventoryTab.add(controls, BorderLayout.SOUTH);
 
         // Menu panel
-        MenuPanel menuPanel = new MenuPanel(menu, sistemaStock, tableService);
+        MenuPanel menuPanel = new MenuPanel(menu, sistemaStock, tableService, writer);
 
         // Reservations panel
-        org.gui.ReservationsPanel reservationsPanel = new org.gui.ReservationsPanel(reservationService, tableService);
+        org.gui.ReservationsPanel reservationsPanel = new org.gui.ReservationsPanel(reservationService, tableService, bulk, writer);
 
         // Tables panel
-        TablesPanel tablesPanel = new TablesPanel(tableService, reservationService, menu);
+        TablesPanel tablesPanel = new TablesPanel(tableService, reservationService, menu, writer);
+
+        // Walk-in waitlist (only when the branch has one)
+        WaitlistPanel waitlistPanel = waitlist != null ? new WaitlistPanel(waitlist, tableService, writer) : null;
 
         // Production panel
-        org.gui.ProductionPanel productionPanel = new org.gui.ProductionPanel(productionService, menu, sistemaStock);
+        org.gui.ProductionPanel productionPanel = new org.gui.ProductionPanel(productionService, menu, sistemaStock, writer);
         // Kitchen panel (compact view for staff)
-        org.gui.KitchenPanel kitchenPanel = new KitchenPanel(productionService, sistemaStock);
+        org.gui.KitchenPanel kitchenPanel = new KitchenPanel(productionService, sistemaStock, forecaster, scheduler, writer);
 
         // Tabbed pane
         JTabbedPane tabs = new JTabbedPane();
@@ -85,12 +131,14 @@ public class MainGui extends JFrame {
             tabs.addTab("Menú", menuPanel);
             tabs.addTab("Mesas", tablesPanel);
             tabs.addTab("Reservas", reservationsPanel);
+            if (waitlistPanel != null) tabs.addTab("Espera", waitlistPanel);
             tabs.addTab("Producción", productionPanel);
             tabs.addTab("Cocina", kitchenPanel);
         } else if (isWaiter) {
             // Waiter: hide Cocina, Inventario, Menú
             tabs.addTab("Mesas", tablesPanel);
             tabs.addTab("Reservas", reservationsPanel);
+            if (waitlistPanel != null) tabs.addTab("Espera", waitlistPanel);
             tabs.addTab("Producción", productionPanel);
         } else if (isChef) {
             // Chef: only Cocina and Menú
@@ -100,6 +148,7 @@ public class MainGui extends JFrame {
             // Default fallback: minimal access (Mesas and Reservas)
             tabs.addTab("Mesas", tablesPanel);
             tabs.addTab("Reservas", reservationsPanel);
+            if (waitlistPanel != null) tabs.addTab("Espera", waitlistPanel);
         }
 
         // Refresh relevant panels when switching tabs so updates appear immediately
@@ -115,6 +164,8 @@ public class MainGui extends JFrame {
                 inventoryPanel.refreshTable();
             } else if ("Mesas".equals(title)) {
                 tablesPanel.refreshTable();
+            } else if ("Espera".equals(title) && waitlistPanel != null) {
+                waitlistPanel.refreshTable();
             }
         });
 
@@ -126,13 +177,22 @@ public class MainGui extends JFrame {
             User newUser = LoginDialog.showLogin(this);
             if (newUser == null) {
                 // user cancelled -> exit app
+                UserCache.shared().closeSession(sessionToken);
                 System.out.println("No user logged in after logout. Exiting.");
                 System.exit(0);
             }
 
+            // Same user re-authenticated (e.g. screen handed back after a break): keep the session and this window
+            User sessionUser = UserCache.shared().resumeSession(sessionToken);
+            if (sessionUser != null && sessionUser.getUsername().equals(newUser.getUsername())) {
+                return;
+            }
+            UserCache.shared().closeSession(sessionToken);
+            sessionToken = null;
+
             // Open a new MainGui for the newly logged user and dispose this one
             SwingUtilities.invokeLater(() -> {
-                MainGui newGui = new MainGui(this.sistemaStock, this.menu, this.reservationService, this.tableService, this.productionService, newUser);
+                MainGui newGui = new MainGui(this.sistemaStock, this.menu, this.reservationService, this.tableService, this.productionService, this.forecaster, this.waitlist, this.bulk, this.scheduler, this.writer, newUser);
                 newGui.setVisible(true);
                 this.dispose();
             });
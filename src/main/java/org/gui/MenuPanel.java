@@ -12,6 +12,7 @@ public class MenuPanel extends JPanel {
     private final Menu menu;
     private final StockGeneral stock;
     private final TableService tableService;
+    private final GuiCommands commands;
     private final JList<Recipe> lstRecipes;
     private final DefaultListModel<Recipe> listModel;
     private final JTextArea txtDetails;
@@ -19,11 +20,13 @@ public class MenuPanel extends JPanel {
     private final JButton btnProduce;
     private final JButton btnAddToTable;
 
-    public MenuPanel(Menu menu, StockGeneral stock, TableService tableService) {
+    // Changes go through the branch's writer (see GuiCommands); null runs them on the EDT
+    public MenuPanel(Menu menu, StockGeneral stock, TableService tableService, CommandPipeline writer) {
         super(new BorderLayout());
         this.menu = menu;
         this.stock = stock;
         this.tableService = tableService;
+        this.commands = new GuiCommands(writer);
 
         listModel = new DefaultListModel<>();
         for (Recipe r : menu.getAll().values()) listModel.addElement(r);
@@ -86,7 +89,7 @@ public class MenuPanel extends JPanel {
         int qty = (Integer) qtySpinner.getValue();
         try {
             // include recipe id so production jobs can be created automatically
-            tableService.addOrder(tableId, new OrderItem(r.getNombre(), qty, r.getId()));
+            commands.run(() -> tableService.addOrder(tableId, new OrderItem(r.getNombre(), qty, r.getId())));
             JOptionPane.showMessageDialog(this, "Added " + qty + " x " + r.getNombre() + " to table " + tableId);
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Failed to add order: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
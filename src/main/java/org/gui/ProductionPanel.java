@@ -14,6 +14,7 @@ public class ProductionPanel extends JPanel {
     private final Pedido productionService;
     private final Menu menu;
     private final StockGeneral stock;
+    private final GuiCommands commands;
 
     private final DefaultTableModel tableModel;
     private final JTable table;
@@ -25,11 +26,13 @@ public class ProductionPanel extends JPanel {
 
     private static final DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
-    public ProductionPanel(Pedido productionService, Menu menu, StockGeneral stock) {
+    // Changes go through the branch's writer (see GuiCommands); null runs them on the EDT
+    public ProductionPanel(Pedido productionService, Menu menu, StockGeneral stock, CommandPipeline writer) {
         super(new BorderLayout());
         this.productionService = productionService;
         this.menu = menu;
         this.stock = stock;
+        this.commands = new GuiCommands(writer);
 
         // include ETA (minutes) column
         String[] cols = {"ID", "Recipe", "Qty", "Status", "ETA (min)", "Created", "Started", "Finished"};
@@ -72,7 +75,7 @@ public class ProductionPanel extends JPanel {
         Recipe r = (Recipe) cmbRecipes.getSelectedItem();
         if (r == null) return;
         int qty = (Integer) spQty.getValue();
-        productionService.createJob(r, qty);
+        commands.run(() -> productionService.createJob(r, qty));
         refreshTable();
         JOptionPane.showMessageDialog(this, "Job created for " + r.getNombre() + " x" + qty);
     }
@@ -80,7 +83,7 @@ public class ProductionPanel extends JPanel {
     private void onStart() {
         Integer id = getSelectedJobId();
         if (id == null) { JOptionPane.showMessageDialog(this, "Select job.", "Error", JOptionPane.ERROR_MESSAGE); return; }
-        boolean ok = productionService.startJob(id);
+        boolean ok = commands.call(() -> productionService.startJob(id));
         if (ok) JOptionPane.showMessageDialog(this, "Job started."); else JOptionPane.showMessageDialog(this, "Failed to start job (insufficient stock or invalid state).", "Error", JOptionPane.ERROR_MESSAGE);
         refreshTable();
     }
@@ -88,7 +91,7 @@ public class ProductionPanel extends JPanel {
     private void onFinish() {
         Integer id = getSelectedJobId();
         if (id == null) { JOptionPane.showMessageDialog(this, "Select job.", "Error", JOptionPane.ERROR_MESSAGE); return; }
-        boolean ok = productionService.finishJob(id, true);
+        boolean ok = commands.call(() -> productionService.finishJob(id, true));
         if (ok) JOptionPane.showMessageDialog(this, "Job finished."); else JOptionPane.showMessageDialog(this, "Failed to finish job.", "Error", JOptionPane.ERROR_MESSAGE);
         refreshTable();
     }
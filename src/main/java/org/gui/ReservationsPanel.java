@@ -1,7 +1,10 @@
 package org.gui;
 
+import org.db.BulkTransfer;
+import org.models.CommandPipeline;
 import org.models.Mesa;
 import org.models.Reservation;
+import org.models.ReservationPlanner;
 import org.models.ReservationService;
 import org.models.ReservationStatus;
 import org.models.TableService;
@@ -9,6 +12,7 @@ import org.models.TableService;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.File;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -25,17 +29,35 @@ public class ReservationsPanel extends JPanel {
     private final JTextField txtCustomer;
     private final JSpinner spGuests;
     private final JSpinner spDate;
+    private final JCheckBox chkVip;
     private final JButton btnCreate;
     private final JButton btnAssign;
     private final JButton btnSeat;
     private final JButton btnCancel;
+    private final JButton btnPlan;
+    private final JButton btnImport;
+    private final JButton btnExport;
+    private final BulkTransfer bulk;
+    private final GuiCommands commands;
 
     private static final DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     public ReservationsPanel(ReservationService reservationService, TableService tableService) {
+        this(reservationService, tableService, null);
+    }
+
+    public ReservationsPanel(ReservationService reservationService, TableService tableService, BulkTransfer bulk) {
+        this(reservationService, tableService, bulk, null);
+    }
+
+    // Changes go through the branch's writer (see GuiCommands; imports are applied there by BulkTransfer
+    // itself); null runs them on the EDT
+    public ReservationsPanel(ReservationService reservationService, TableService tableService, BulkTransfer bulk, CommandPipeline writer) {
         super(new BorderLayout());
         this.reservationService = reservationService;
         this.tableService = tableService;
+        this.bulk = bulk;
+        this.commands = new GuiCommands(writer);
 
         String[] cols = {"ID", "Customer", "Guests", "When", "Table", "Status"};
         tableModel = new DefaultTableModel(cols, 0) {
@@ -54,10 +76,14 @@ public class ReservationsPanel extends JPanel {
         JSpinner.DateEditor de = new JSpinner.DateEditor(spDate, "yyyy-MM-dd HH:mm");
         spDate.setEditor(de);
 
+        chkVip = new JCheckBox("VIP");
         btnCreate = new JButton("Create Reservation");
         btnAssign = new JButton("Assign Table");
         btnSeat = new JButton("Seat");
         btnCancel = new JButton("Cancel");
+        btnPlan = new JButton("Plan Day");
+        btnImport = new JButton("Import...");
+        btnExport = new JButton("Export...");
 
         c.gridx=0; c.gridy=0; top.add(new JLabel("Customer:"), c);
         c.gridx=1; top.add(txtCustomer, c);
@@ -65,10 +91,12 @@ public class ReservationsPanel extends JPanel {
         c.gridx=3; top.add(spGuests, c);
         c.gridx=0; c.gridy=1; top.add(new JLabel("When:"), c);
         c.gridx=1; c.gridwidth=2; top.add(spDate, c);
-        c.gridwidth=1; c.gridx=3; top.add(btnCreate, c);
+        c.gridwidth=1; c.gridx=3; top.add(chkVip, c);
+        c.gridx=4; top.add(btnCreate, c);
 
         JPanel actions = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        actions.add(btnAssign); actions.add(btnSeat); actions.add(btnCancel);
+        actions.add(btnAssign); actions.add(btnSeat); actions.add(btnCancel); actions.add(btnPlan);
+        if (bulk != null) { actions.add(btnImport); actions.add(btnExport); }
 
         add(top, BorderLayout.NORTH);
         add(new JScrollPane(table), BorderLayout.CENTER);
@@ -78,6 +106,9 @@ public class ReservationsPanel extends JPanel {
         btnAssign.addActionListener(e -> onAssign());
         btnSeat.addActionListener(e -> onSeat());
         btnCancel.addActionListener(e -> onCancel());
+        btnPlan.addActionListener(e -> onPlan());
+        btnImport.addActionListener(e -> onImport());
+        btnExport.addActionListener(e -> onExport());
 
         refreshTable();
     }
@@ -92,7 +123,8 @@ public class ReservationsPanel extends JPanel {
         int guests = (Integer) spGuests.getValue();
         if (customer.isEmpty()) { JOptionPane.showMessageDialog(this, "Enter customer name.", "Error", JOptionPane.ERROR_MESSAGE); return; }
         LocalDateTime when = getSelectedDateTime();
-        Reservation r = reservationService.createReservation(customer, guests, when);
+        boolean vip = chkVip.isSelected();
+        Reservation r = commands.call(() -> reservationService.createReservation(customer, guests, when, vip));
         refreshTable();
         JOptionPane.showMessageDialog(this, "Reservation created: " + r.getId());
     }
@@ -107,7 +139,7 @@ public class ReservationsPanel extends JPanel {
     private void onAssign() {
         Integer id = getSelectedReservationId();
         if (id == null) { JOptionPane.showMessageDialog(this, "Select reservation.", "Error", JOptionPane.ERROR_MESSAGE); return; }
-        Integer mesa = reservationService.assignTableForReservation(id);
+        Integer mesa = commands.call(() -> reservationService.assignTableForReservation(id));
         if (mesa != null) {
             refreshTable();
             JOptionPane.showMessageDialog(this, "Assigned table " + mesa);
@@ -119,7 +151,7 @@ public class ReservationsPanel extends JPanel {
     private void onSeat() {
         Integer id = getSelectedReservationId();
         if (id == null) { JOptionPane.showMessageDialog(this, "Select reservation.", "Error", JOptionPane.ERROR_MESSAGE); return; }
-        boolean ok = reservationService.seatReservation(id);
+        boolean ok = commands.call(() -> reservationService.seatReservation(id));
         if (ok) { refreshTable(); JOptionPane.showMessageDialog(this, "Reservation seated."); }
         else JOptionPane.showMessageDialog(this, "Cannot seat reservation (maybe no assigned table).", "Error", JOptionPane.ERROR_MESSAGE);
     }
@@ -127,17 +159,83 @@ public class ReservationsPanel extends JPanel {
     private void onCancel() {
         Integer id = getSelectedReservationId();
         if (id == null) { JOptionPane.showMessageDialog(this, "Select reservation.", "Error", JOptionPane.ERROR_MESSAGE); return; }
-        boolean ok = reservationService.cancelReservation(id);
+        boolean ok = commands.call(() -> reservationService.cancelReservation(id));
         if (ok) { refreshTable(); JOptionPane.showMessageDialog(this, "Reservation cancelled."); }
         else JOptionPane.showMessageDialog(this, "Failed to cancel.", "Error", JOptionPane.ERROR_MESSAGE);
     }
 
+    // Plan every pending/confirmed booking of the selected day at once and apply it after confirmation
+    private void onPlan() {
+        LocalDateTime from = getSelectedDateTime().toLocalDate().atStartOfDay();
+        ReservationPlanner.Plan plan = reservationService.planWindow(from, from.plusDays(1));
+        if (plan.assignments().isEmpty() && plan.unassigned().isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No reservations to plan on " + from.toLocalDate() + ".", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String msg = "Plan for " + from.toLocalDate() + ":\n"
+                + plan.assignments().size() + " reservations get a table (" + plan.seatedGuests() + " guests, "
+                + plan.wastedSeats() + " empty seats)\n"
+                + plan.unassigned().size() + " without table" + (plan.unassigned().isEmpty() ? "" : ": " + plan.unassigned()) + "\n\nApply?";
+        int ans = JOptionPane.showConfirmDialog(this, msg, "Plan Day", JOptionPane.YES_NO_OPTION);
+        if (ans != JOptionPane.YES_OPTION) return;
+        commands.call(() -> reservationService.applyPlan(plan));
+        refreshTable();
+    }
+
+    // CSV (id,customer,guests,when,tableId,status,vip) or .jsonl; runs off the EDT since files can be large
+    private void onImport() {
+        JFileChooser fc = new JFileChooser();
+        if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = fc.getSelectedFile();
+        btnImport.setEnabled(false);
+        new SwingWorker<BulkTransfer.Result, Void>() {
+            @Override protected BulkTransfer.Result doInBackground() throws Exception {
+                return bulk.importReservations(file.toPath(), reservationService, tableService.getMesas());
+            }
+            @Override protected void done() {
+                btnImport.setEnabled(true);
+                refreshTable();
+                try {
+                    BulkTransfer.Result r = get();
+                    String msg = r.imported() + " reservations imported, " + r.rejected() + " rejected (" + r.millis() + " ms)";
+                    if (!r.errors().isEmpty()) msg += "\n\n" + String.join("\n", r.errors().subList(0, Math.min(10, r.errors().size())));
+                    JOptionPane.showMessageDialog(ReservationsPanel.this, msg, "Import", r.rejected() > 0 ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(ReservationsPanel.this, "Import failed: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void onExport() {
+        JFileChooser fc = new JFileChooser();
+        fc.setSelectedFile(new File("reservations.csv"));
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = fc.getSelectedFile();
+        // copy taken under the service lock: the export runs on another thread while bookings keep changing
+        Collection<Reservation> all = reservationService.listAll();
+        new SwingWorker<Long, Void>() {
+            @Override protected Long doInBackground() throws Exception {
+                return bulk.exportReservations(file.toPath(), all);
+            }
+            @Override protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(ReservationsPanel.this, get() + " reservations exported to " + file.getName());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(ReservationsPanel.this, "Export failed: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
     public void refreshTable() {
         tableModel.setRowCount(0);
-        Collection<Reservation> all = reservationService.getAll();
+        Collection<Reservation> all = reservationService.listAll();
         for (Reservation r : all) {
             Object[] row = new Object[] {
-                r.getId(), r.getCustomerName(), r.getGuests(), r.getWhen().format(dtf), r.getTableId() == null ? "-" : r.getTableId(), r.getStatus()
+                r.getId(), r.getCustomerName(), r.getGuests(), r.getWhen().format(dtf), r.getTableId() == null ? "-" : r.getTableId(), r.isVip() ? r.getStatus() + " (VIP)" : r.getStatus()
             };
             tableModel.addRow(row);
         }
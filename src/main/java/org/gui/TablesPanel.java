@@ -1,5 +1,6 @@
 package org.gui;
 
+import org.models.CommandPipeline;
 import org.models.Mesa;
 import org.models.Menu;
 import org.models.Reservation;
@@ -9,6 +10,7 @@ import org.models.OrderItem;
 import org.models.Recipe;
 import org.models.Factura;
 import org.exceptions.TableNotFoundException;
+import org.exceptions.TableUnavailableException;
 import org.exceptions.ReservationNotFoundException;
 
 import javax.swing.*;
@@ -26,6 +28,7 @@ public class TablesPanel extends JPanel {
     private final TableService tableService;
     private final ReservationService reservationService;
     private final Menu menu;
+    private final GuiCommands commands;
      private final DefaultTableModel tableModel;
      private final JTable table;
      private final JButton btnRefresh;
@@ -47,11 +50,13 @@ public class TablesPanel extends JPanel {
     private final JButton btnBillAndClose;
     private final JButton btnViewOrders;
 
-    public TablesPanel(TableService tableService, ReservationService reservationService, Menu menu) {
+    // Changes go through the branch's writer (see GuiCommands); null runs them on the EDT
+    public TablesPanel(TableService tableService, ReservationService reservationService, Menu menu, CommandPipeline writer) {
         super(new BorderLayout());
         this.tableService = tableService;
         this.reservationService = reservationService;
         this.menu = menu;
+        this.commands = new GuiCommands(writer);
 
         String[] cols = {"Table ID", "Capacity", "Status", "Reservation ID", "Customer"};
         tableModel = new DefaultTableModel(cols, 0) { @Override public boolean isCellEditable(int r, int c) { return false; } };
@@ -198,7 +203,7 @@ public class TablesPanel extends JPanel {
         if (chosen == null) return;
         int resId = keyToId.get(chosen);
         try {
-            boolean ok = reservationService.assignTableToReservation(resId, tableId);
+            boolean ok = commands.call(() -> reservationService.assignTableToReservation(resId, tableId));
             if (ok) {
                 JOptionPane.showMessageDialog(this, "Table " + tableId + " assigned to reservation " + resId);
                 refreshTable();
@@ -225,7 +230,7 @@ public class TablesPanel extends JPanel {
                     "Seat Reservation",
                     JOptionPane.YES_NO_OPTION);
             if (res == JOptionPane.YES_OPTION) {
-                boolean ok = reservationService.seatReservation(r.getId());
+                boolean ok = commands.call(() -> reservationService.seatReservation(r.getId()));
                 if (ok) {
                     JOptionPane.showMessageDialog(this, "Reservation seated; table " + m.getId() + " is now occupied.");
                     // Prompt for orders immediately after seating from floor map
@@ -247,13 +252,13 @@ public class TablesPanel extends JPanel {
                     JOptionPane.YES_NO_OPTION);
             if (res == JOptionPane.YES_OPTION) {
                 try {
-                    boolean ok = tableService.occupyTable(m.getId());
+                    boolean ok = commands.call(() -> tableService.claimTable(m.getId()));
                     if (ok) {
                         // Prompt for orders for the walk-in immediately
                         promptAndAddOrders(m.getId());
                         refreshTable();
                     } else {
-                        JOptionPane.showMessageDialog(this, "Failed to mark table as occupied.", "Error", JOptionPane.ERROR_MESSAGE);
+                        JOptionPane.showMessageDialog(this, "Table " + m.getId() + " was just taken or is booked within the next turn.", "Error", JOptionPane.ERROR_MESSAGE);
                     }
                 } catch (org.exceptions.TableNotFoundException tnfe) {
                     JOptionPane.showMessageDialog(this, "Table not found: " + tnfe.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -266,15 +271,17 @@ public class TablesPanel extends JPanel {
         Integer tableId = getSelectedTableId();
         if (tableId == null) { JOptionPane.showMessageDialog(this, "Select a table first.", "Error", JOptionPane.ERROR_MESSAGE); return; }
         try {
-            boolean ok = tableService.releaseTable(tableId);
-            if (ok) {
+            boolean ok = commands.call(() -> {
+                if (!tableService.releaseTable(tableId)) return false;
                 // also clear reservation assignment if any
-                var opt = reservationService.findByTableId(tableId);
-                opt.ifPresent(r -> r.setTableId(null));
+                reservationService.releaseTableBooking(tableId);
                 // cancel any orders for this table (mark cancelled and cancel linked production jobs)
                 try {
                     tableService.cancelOrdersForTable(tableId);
                 } catch (Exception ignored) {}
+                return true;
+            });
+            if (ok) {
                 JOptionPane.showMessageDialog(this, "Table " + tableId + " released and orders cancelled.");
                 refreshTable();
             } else {
@@ -305,13 +312,15 @@ public class TablesPanel extends JPanel {
             return;
         }
         // Create reservation
-        Reservation r = reservationService.createReservation(customer, guests, when);
-        r.setTableId(tableId);
-        r.setStatus(org.models.ReservationStatus.CONFIRMED);
+        Reservation r = commands.call(() -> reservationService.createReservation(customer, guests, when));
         try {
-            tableService.assignTable(tableId);
-        } catch (TableNotFoundException tnfe) {
-            JOptionPane.showMessageDialog(this, "Table not found when assigning: " + tnfe.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            if (!commands.call(() -> reservationService.assignTableToReservation(r.getId(), tableId))) {
+                JOptionPane.showMessageDialog(this, "Table " + tableId + " is already booked at that time; reservation " + r.getId() + " left without table.", "Error", JOptionPane.ERROR_MESSAGE);
+                refreshTable();
+                return;
+            }
+        } catch (ReservationNotFoundException rnfe) {
+            JOptionPane.showMessageDialog(this, "Reservation not found: " + rnfe.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
         JOptionPane.showMessageDialog(this, "Table " + tableId + " reserved for " + customer);
@@ -346,7 +355,7 @@ public class TablesPanel extends JPanel {
         int res = JOptionPane.showConfirmDialog(this, "Clear all orders for table " + tableId + "?", "Confirm", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
         if (res != JOptionPane.OK_OPTION) return;
         try {
-            tableService.clearOrders(tableId);
+            commands.run(() -> tableService.clearOrders(tableId));
             refreshOrdersForSelectedTable();
         } catch (TableNotFoundException tnfe) {
             JOptionPane.showMessageDialog(this, "Table not found: " + tnfe.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -385,7 +394,7 @@ public class TablesPanel extends JPanel {
                 }
             }
 
-            Factura factura = new Factura(tableId, orders, menu);
+            Factura factura = tableService.getBill(tableId);
             StringBuilder fullText = new StringBuilder();
             if (customerName != null && !customerName.isEmpty()) {
                 fullText.append("Customer: ").append(customerName).append('\n');
@@ -400,19 +409,14 @@ public class TablesPanel extends JPanel {
             int res = JOptionPane.showOptionDialog(this, new JScrollPane(ta), "Factura - Table " + tableId,
                     JOptionPane.YES_NO_OPTION, JOptionPane.PLAIN_MESSAGE, null, new String[] {"Close","Settle & Clear"}, "Close");
             if (res == JOptionPane.NO_OPTION) {
-                // Settle: clear orders and release table
+                // Settle: record the sale, clear orders and release table (one step), then drop the booking
                 try {
-                    // Clear orders
-                    tableService.clearOrders(tableId);
-                    // release the mesa and remove reservation assignment if any
-                    try {
-                        boolean ok = tableService.releaseTable(tableId);
-                        if (ok) {
-                            var opt = reservationService.findByTableId(tableId);
-                            opt.ifPresent(r -> r.setTableId(null));
-                        }
-                    } catch (TableNotFoundException ignored) {}
-                } catch (Exception ignored) {}
+                    String cliente = customerName;
+                    commands.run(() -> {
+                        tableService.settleAndRelease(tableId, cliente);
+                        reservationService.releaseTableBooking(tableId);
+                    });
+                } catch (TableNotFoundException ignored) {}
                 refreshTable();
             }
         } catch (TableNotFoundException tnfe) {
@@ -456,7 +460,7 @@ public class TablesPanel extends JPanel {
                 }
             }
 
-            Factura factura = new Factura(tableId, orders, menu);
+            Factura factura = tableService.getBill(tableId);
             StringBuilder fullText = new StringBuilder();
             if (customerName != null && !customerName.isEmpty()) fullText.append("Customer: ").append(customerName).append('\n');
             fullText.append(factura);
@@ -467,16 +471,13 @@ public class TablesPanel extends JPanel {
             ta.setColumns(50);
             JOptionPane.showMessageDialog(this, new JScrollPane(ta), "Factura - Table " + tableId, JOptionPane.PLAIN_MESSAGE);
 
-            // Settle: clear orders and release table and remove reservation assignment if any
-            try {
-                tableService.clearOrders(tableId);
-            } catch (TableNotFoundException ignored) {}
+            // Settle: record the sale, clear orders and release table and remove reservation assignment if any
             try {
-                boolean ok = tableService.releaseTable(tableId);
-                if (ok) {
-                    var opt = reservationService.findByTableId(tableId);
-                    opt.ifPresent(r -> r.setTableId(null));
-                }
+                String cliente = customerName;
+                commands.run(() -> {
+                    tableService.settleAndRelease(tableId, cliente);
+                    reservationService.releaseTableBooking(tableId);
+                });
             } catch (TableNotFoundException ignored) {}
 
             refreshTable();
@@ -545,7 +546,10 @@ public class TablesPanel extends JPanel {
             tableModel.addRow(row);
 
             // Create a visual button for the floor map
-            JButton tb = new JButton("Table " + m.getId());
+            // Live running total from the table's tab (O(1), no re-pricing of every order line)
+            double tabTotal = tableService.getTabTotal(m.getId());
+            String label = tabTotal > 0 ? "<html><center>Table " + m.getId() + "<br>$" + String.format("%.2f", tabTotal) + "</center></html>" : "Table " + m.getId();
+            JButton tb = new JButton(label);
             // let GridLayout size buttons evenly; keep a comfortable margin and tooltip for capacity
             tb.setMargin(new Insets(6,6,6,6));
             tb.setToolTipText("Capacity: " + m.getCapacidad());
@@ -681,7 +685,7 @@ public class TablesPanel extends JPanel {
                 int idx = jlist.getSelectedIndex();
                 if (idx < 0) { JOptionPane.showMessageDialog(dlg, "Select an item to remove.", "Error", JOptionPane.ERROR_MESSAGE); return; }
                 try {
-                    boolean ok = tableService.removeOrderItem(tableId, idx);
+                    boolean ok = commands.call(() -> tableService.removeOrderItem(tableId, idx));
                     if (ok) { model.remove(idx); refreshOrdersForSelectedTable(); }
                 } catch (TableNotFoundException tnfe) { JOptionPane.showMessageDialog(dlg, "Table not found: " + tnfe.getMessage(), "Error", JOptionPane.ERROR_MESSAGE); }
             });
@@ -768,15 +772,17 @@ public class TablesPanel extends JPanel {
         btnConfirm.addActionListener(ae -> {
             if (previewModel.isEmpty()) { dlg.dispose(); return; }
             try {
-                for (int i=0;i<previewModel.size();i++) {
-                    OrderItem oi = previewModel.get(i);
-                    tableService.addOrder(tableId, oi);
-                }
+                java.util.List<OrderItem> nuevos = java.util.Collections.list(previewModel.elements());
+                commands.run(() -> {
+                    for (OrderItem oi : nuevos) tableService.addOrder(tableId, oi);
+                });
                 dlg.dispose();
                 JOptionPane.showMessageDialog(this, "Added " + previewModel.size() + " order(s) to table " + tableId + ".");
                 refreshOrdersForSelectedTable();
             } catch (TableNotFoundException tnfe) {
                 JOptionPane.showMessageDialog(this, "Table not found: " + tnfe.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            } catch (TableUnavailableException tue) {
+                JOptionPane.showMessageDialog(this, tue.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
         });
 
@@ -853,19 +859,23 @@ public class TablesPanel extends JPanel {
 
             btnConfirm.addActionListener(ae -> {
                 try {
-                    // mark existing orders CANCELLED and cancel their production jobs so kitchen updates
-                    tableService.cancelOrdersForTable(tableId);
-                    // then add the new preview items (these will create new production jobs as needed)
-                    for (int i=0;i<previewModel.size();i++) {
-                        OrderItem oi = previewModel.get(i);
-                        // create a fresh OrderItem instance to avoid reusing any cancelled objects
-                        tableService.addOrder(tableId, new OrderItem(oi.getName(), oi.getQuantity(), oi.getRecipeId()));
-                    }
+                    java.util.List<OrderItem> nuevos = java.util.Collections.list(previewModel.elements());
+                    commands.run(() -> {
+                        // mark existing orders CANCELLED and cancel their production jobs so kitchen updates
+                        tableService.cancelOrdersForTable(tableId);
+                        // then add the new preview items (these will create new production jobs as needed)
+                        for (OrderItem oi : nuevos) {
+                            // create a fresh OrderItem instance to avoid reusing any cancelled objects
+                            tableService.addOrder(tableId, new OrderItem(oi.getName(), oi.getQuantity(), oi.getRecipeId()));
+                        }
+                    });
                     dlg.dispose();
                     JOptionPane.showMessageDialog(this, "Updated orders for table " + tableId);
                     refreshOrdersForSelectedTable();
                 } catch (TableNotFoundException tnfe) {
                     JOptionPane.showMessageDialog(this, "Table not found: " + tnfe.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                } catch (TableUnavailableException tue) {
+                    JOptionPane.showMessageDialog(this, tue.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 }
             });
 
@@ -932,8 +942,9 @@ public class TablesPanel extends JPanel {
             case "Create Reservation" -> createAndAssignReservation(m.getId(), m.getCapacidad());
             case "Mark Occupied" -> {
                 try {
-                    boolean ok = tableService.occupyTable(m.getId());
+                    boolean ok = commands.call(() -> tableService.claimTable(m.getId()));
                     if (ok) { promptAndAddOrders(m.getId()); refreshTable(); }
+                    else JOptionPane.showMessageDialog(this, "Table " + m.getId() + " was just taken or is booked within the next turn.", "Error", JOptionPane.ERROR_MESSAGE);
                 } catch (TableNotFoundException tnfe) { JOptionPane.showMessageDialog(this, "Table not found: " + tnfe.getMessage(), "Error", JOptionPane.ERROR_MESSAGE); }
             }
             case "Seat Reservation" -> {
@@ -942,7 +953,7 @@ public class TablesPanel extends JPanel {
                     Reservation r = opt.get();
                     int res = JOptionPane.showConfirmDialog(this, "Seat reservation " + r.getId() + " for " + r.getCustomerName() + " now?", "Seat Reservation", JOptionPane.YES_NO_OPTION);
                     if (res == JOptionPane.YES_OPTION) {
-                        boolean ok = reservationService.seatReservation(r.getId());
+                        boolean ok = commands.call(() -> reservationService.seatReservation(r.getId()));
                         if (ok) { JOptionPane.showMessageDialog(this, "Reservation seated; table " + m.getId() + " is now occupied."); promptAndAddOrders(m.getId()); refreshTable(); }
                         else JOptionPane.showMessageDialog(this, "Failed to seat reservation.", "Error", JOptionPane.ERROR_MESSAGE);
                     }
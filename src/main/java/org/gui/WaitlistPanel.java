@@ -0,0 +1,152 @@
+package org.gui;
+
+import org.models.CommandPipeline;
+import org.models.TableService;
+import org.models.WaitlistService;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.time.format.DateTimeFormatter;
+
+// Walk-in waitlist: quote a wait before adding a party, and seat parties when their table frees up
+public class WaitlistPanel extends JPanel {
+    private final WaitlistService waitlist;
+    private final TableService tableService;
+    private final GuiCommands commands;
+    private final Runnable orderListener = () -> SwingUtilities.invokeLater(this::refreshTable);
+
+    private final DefaultTableModel tableModel;
+    private final JTable table;
+    private final JTextField txtName;
+    private final JSpinner spGuests;
+    private final JButton btnQuote;
+    private final JButton btnAdd;
+    private final JButton btnSeat;
+    private final JButton btnRemove;
+    private final JButton btnRefresh;
+    // quotes move as tables turn over; refresh the list every 30 s
+    private final Timer refreshTimer;
+
+    private static final DateTimeFormatter hhmm = DateTimeFormatter.ofPattern("HH:mm");
+
+    // Changes go through the branch's writer (see GuiCommands); null runs them on the EDT
+    public WaitlistPanel(WaitlistService waitlist, TableService tableService, CommandPipeline writer) {
+        super(new BorderLayout());
+        this.waitlist = waitlist;
+        this.tableService = tableService;
+        this.commands = new GuiCommands(writer);
+
+        String[] cols = {"ID", "Name", "Guests", "Waiting since", "Table", "Ready at", "Wait (min)"};
+        tableModel = new DefaultTableModel(cols, 0) {
+            @Override public boolean isCellEditable(int row, int col) { return false; }
+        };
+        table = new JTable(tableModel);
+
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        txtName = new JTextField(12);
+        spGuests = new JSpinner(new SpinnerNumberModel(2, 1, 20, 1));
+        btnQuote = new JButton("Quote Wait");
+        btnAdd = new JButton("Add to Waitlist");
+        top.add(new JLabel("Name:")); top.add(txtName);
+        top.add(new JLabel("Guests:")); top.add(spGuests);
+        top.add(btnQuote); top.add(btnAdd);
+
+        JPanel actions = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        btnSeat = new JButton("Seat");
+        btnRemove = new JButton("Remove");
+        btnRefresh = new JButton("Refresh");
+        actions.add(btnSeat); actions.add(btnRemove); actions.add(btnRefresh);
+
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(actions, BorderLayout.SOUTH);
+
+        btnQuote.addActionListener(e -> onQuote());
+        btnAdd.addActionListener(e -> onAdd());
+        btnSeat.addActionListener(e -> onSeat());
+        btnRemove.addActionListener(e -> onRemove());
+        btnRefresh.addActionListener(e -> refreshTable());
+
+        refreshTimer = new Timer(30_000, e -> refreshTable());
+
+        refreshTable();
+    }
+
+    private static String describe(WaitlistService.Quote q) {
+        if (q == null || q.mesaId() == null) return "no table is big enough";
+        if (q.waitMinutes() <= 0) return "table " + q.mesaId() + " now";
+        return "about " + q.waitMinutes() + " min (table " + q.mesaId() + " at " + q.readyAt().format(hhmm) + ")";
+    }
+
+    private void onQuote() {
+        int guests = (Integer) spGuests.getValue();
+        WaitlistService.Quote q = waitlist.quote(guests);
+        JOptionPane.showMessageDialog(this, "Party of " + guests + ": " + describe(q), "Quote", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private void onAdd() {
+        String name = txtName.getText().trim();
+        if (name.isEmpty()) { JOptionPane.showMessageDialog(this, "Enter a name.", "Error", JOptionPane.ERROR_MESSAGE); return; }
+        int guests = (Integer) spGuests.getValue();
+        WaitlistService.Party p = commands.call(() -> waitlist.addParty(name, guests));
+        txtName.setText("");
+        refreshTable();
+        JOptionPane.showMessageDialog(this, p.nombre() + " added: " + describe(p.quote()));
+    }
+
+    private Integer getSelectedPartyId() {
+        int row = table.getSelectedRow();
+        if (row < 0) return null;
+        try { return Integer.parseInt(String.valueOf(tableModel.getValueAt(row, 0))); } catch (Exception ex) { return null; }
+    }
+
+    private void onSeat() {
+        Integer id = getSelectedPartyId();
+        if (id == null) { JOptionPane.showMessageDialog(this, "Select a party.", "Error", JOptionPane.ERROR_MESSAGE); return; }
+        try {
+            Integer mesa = commands.call(() -> waitlist.seatParty(id, null));
+            if (mesa != null) {
+                refreshTable();
+                JOptionPane.showMessageDialog(this, "Party seated at table " + mesa + ".");
+            } else {
+                JOptionPane.showMessageDialog(this, "The quoted table is not free yet.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            }
+        } catch (org.exceptions.TableNotFoundException tnfe) {
+            JOptionPane.showMessageDialog(this, "Table not found: " + tnfe.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void onRemove() {
+        Integer id = getSelectedPartyId();
+        if (id == null) { JOptionPane.showMessageDialog(this, "Select a party.", "Error", JOptionPane.ERROR_MESSAGE); return; }
+        if (commands.call(() -> waitlist.removeParty(id))) refreshTable();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        tableService.addOrderListener(orderListener);
+        refreshTimer.start();
+    }
+
+    // Stop listening when the window is disposed (e.g. on logout)
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        tableService.removeOrderListener(orderListener);
+        super.removeNotify();
+    }
+
+    public void refreshTable() {
+        tableModel.setRowCount(0);
+        for (WaitlistService.Party p : waitlist.listParties()) {
+            WaitlistService.Quote q = p.quote();
+            boolean fits = q != null && q.mesaId() != null;
+            tableModel.addRow(new Object[] {
+                p.id(), p.nombre(), p.guests(), p.addedAt().format(hhmm),
+                fits ? q.mesaId() : "-", fits ? q.readyAt().format(hhmm) : "-", fits ? q.waitMinutes() : "-"
+            });
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Ordered stream of compact state changes of production jobs and order lines, for displays outside the
+// JVM. Every change gets the next sequence number and is kept in a fixed-size ring; a reader remembers the
+// last sequence it saw and asks for what came after it, so a reconnecting display only receives what it
+// missed. When the requested sequence is no longer in the ring (or belongs to an earlier run) the batch is
+// flagged as a gap: the reader reloads the full state once and continues from the returned head.
+// Sequences restart at 1 with every run, so each feed also has a random epoch that readers outside the
+// process keep next to the sequence: a position from another epoch is always a gap, even when its number
+// is still below the new head. Order line ids are numbered per process too, so after a gap a display drops
+// the lines it knows and reloads them instead of matching them by id.
+// Appends happen under the Pedido / TableService locks, so this lock is never held while calling out.
+public class ChangeFeed {
+    public enum Kind { JOB, ORDER }
+
+    // Estado reported for an order line that no longer exists
+    public static final String REMOVED = "REMOVED";
+
+    // One change: for JOB, id is the job id and mesaId is -1; for ORDER, id is the line id of the OrderItem
+    public record Change(long seq, Kind kind, long id, int mesaId, String nombre, int quantity, String estado,
+                         Long etaMinutes, Integer jobId, boolean rush) {}
+
+    // Changes after the requested sequence; head is the last sequence assigned when the batch was taken
+    public record Batch(List<Change> changes, boolean gap, long head) {}
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final Change[] ring;
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private long head = 0L; // last sequence assigned (0 = none yet)
+    // ReentrantLock rather than synchronized: readers park in awaitSince on virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    public ChangeFeed() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ChangeFeed(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("La capacidad debe ser mayor que 0");
+        this.ring = new Change[capacity];
+    }
+
+    // Follow every job change of a production service
+    public void attach(Pedido pedido) {
+        pedido.addJobListener(this::job);
+    }
+
+    public void job(ProductionJob j) {
+        String nombre = j.getRecipe() != null ? j.getRecipe().getNombre() : null;
+        append(Kind.JOB, j.getId(), -1, nombre, j.getQuantity(), j.getStatus().name(), null, null, j.isRush());
+    }
+
+    void order(int mesaId, OrderItem oi) {
+        append(Kind.ORDER, oi.getLineId(), mesaId, oi.getName(), oi.getQuantity(), oi.getEstado().name(),
+                oi.getEstimatedMinutes(), oi.getProductionJobId(), false);
+    }
+
+    void orderRemoved(int mesaId, OrderItem oi) {
+        append(Kind.ORDER, oi.getLineId(), mesaId, oi.getName(), oi.getQuantity(), REMOVED, null, null, false);
+    }
+
+    private void append(Kind kind, long id, int mesaId, String nombre, int quantity, String estado,
+                        Long eta, Integer jobId, boolean rush) {
+        lock.lock();
+        try {
+            long seq = ++head;
+            ring[(int) ((seq - 1) % ring.length)] = new Change(seq, kind, id, mesaId, nombre, quantity, estado, eta, jobId, rush);
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Identifies this run of the feed; sequences are only comparable within one epoch
+    public String getEpoch() { return epoch; }
+
+    public long getHead() {
+        lock.lock();
+        try {
+            return head;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Changes with a sequence greater than seq (all of them when seq is 0 and nothing was dropped yet)
+    public Batch since(long seq) {
+        lock.lock();
+        try {
+            return collect(seq);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Position kept by a reader outside the process: a different epoch is a gap
+    public Batch since(String epoch, long seq) {
+        if (!this.epoch.equals(epoch)) return new Batch(List.of(), true, getHead());
+        return since(seq);
+    }
+
+    // Like since(), but waits up to timeout for something new; an empty batch means the time ran out
+    public Batch awaitSince(long seq, long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitSince(epoch, seq, timeout, unit);
+    }
+
+    public Batch awaitSince(String epoch, long seq, long timeout, TimeUnit unit) throws InterruptedException {
+        if (!this.epoch.equals(epoch)) return new Batch(List.of(), true, getHead());
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (seq == head && nanos > 0L) nanos = appended.awaitNanos(nanos);
+            return collect(seq);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Batch collect(long seq) {
+        long oldest = Math.max(1L, head - ring.length + 1);
+        if (seq > head || seq < oldest - 1) return new Batch(List.of(), true, head);
+        List<Change> res = new ArrayList<>((int) (head - seq));
+        for (long s = seq + 1; s <= head; s++) res.add(ring[(int) ((s - 1) % ring.length)]);
+        return new Batch(res, false, head);
+    }
+}
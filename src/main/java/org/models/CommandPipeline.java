@@ -0,0 +1,232 @@
+package org.models;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Single-writer command loop. Any thread may post a mutation; commands are stored in a pre-allocated ring
+// (each slot carries a sequence number, so producers only contend on one counter and never lock) and one
+// writer thread takes them in order and applies them, draining up to batchSize commands per wake-up.
+// A branch posts every change here: API calls, the Swing panels (through GuiCommands), bulk import chunks,
+// production and hold timers and supplier deliveries. So mutations of a branch run on the same thread,
+// services never wait on each other's locks while applying commands, and the order in which terminals,
+// screens, timers and deliveries change the state is the order of the ring. Readers keep using the
+// published snapshots (InventorySnapshot, copies) meanwhile.
+// When the ring is full producers back off until the writer frees a slot; the writer itself never waits
+// on its own ring (it runs the command inline instead). An idle writer parks until a producer unparks it.
+// After close() commands are rejected; one posted in the instant the writer shuts down is either still
+// applied or handed back to its producer as a RejectedExecutionException, never left in the ring.
+public class CommandPipeline implements Executor, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(CommandPipeline.class.getName());
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    private static final int IDLE_SPINS = 200;
+
+    private final Runnable[] commands;
+    // slot i is free for position p when sequences[i] == p, and holds the command of position p when == p + 1
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final int batchSize;
+    private final AtomicLong tail = new AtomicLong(); // next position to claim (producers)
+    private long head = 0L;                           // next position to apply (writer only)
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean sleeping = false;
+    // set by the writer once it stops taking commands (see runLoop)
+    private volatile boolean terminated = false;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public CommandPipeline(String name) {
+        this(name, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    // capacity is rounded up to a power of two
+    public CommandPipeline(String name, int capacity, int batchSize) {
+        if (capacity <= 0 || batchSize <= 0) throw new IllegalArgumentException("Capacidad y lote deben ser mayores que 0");
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.commands = new Runnable[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+        this.mask = size - 1;
+        this.batchSize = batchSize;
+        this.writer = new Thread(this::runLoop, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Post a command; it runs later on the writer thread
+    @Override
+    public void execute(Runnable command) {
+        Objects.requireNonNull(command, "command");
+        boolean onWriter = Thread.currentThread() == writer;
+        int spins = 0;
+        long pos;
+        int idx;
+        while (true) {
+            if (!running) throw new RejectedExecutionException("Pipeline " + writer.getName() + " cerrado");
+            pos = tail.get();
+            idx = (int) (pos & mask);
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+            } else if (diff < 0) {
+                // ring full
+                if (onWriter) {
+                    command.run();
+                    return;
+                }
+                backoff(spins++);
+            }
+            // diff > 0: another producer took this position; retry with the new tail
+        }
+        commands[idx] = command;
+        sequences.set(idx, pos + 1); // publishes the command to the writer
+        // the writer may have finished between our running check and now: whoever moves the slot on first
+        // (the writer to run it, we to take it back) owns the command
+        if (terminated && sequences.compareAndSet(idx, pos + 1, pos + commands.length)) {
+            throw new RejectedExecutionException("Pipeline " + writer.getName() + " cerrado");
+        }
+        // a volatile flag on each side (sleeping / the slot sequence) so either we see the writer asleep or
+        // it sees the command before parking
+        if (sleeping) LockSupport.unpark(writer);
+    }
+
+    // Post a command and get its result (or exception) through a future
+    public <T> CompletableFuture<T> submit(Supplier<T> command) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                f.complete(command.get());
+            } catch (Throwable t) {
+                f.completeExceptionally(t);
+            }
+        });
+        return f;
+    }
+
+    // Run a command on the writer and wait for it; exceptions of the command are rethrown as they are.
+    // Called from the writer thread itself (a command issuing another) it runs inline.
+    public <T> T call(Supplier<T> command) {
+        if (isWriterThread()) return command.get();
+        try {
+            return submit(command).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException re) throw re;
+            if (ex.getCause() instanceof Error err) throw err;
+            throw ex;
+        }
+    }
+
+    public boolean isWriterThread() {
+        return Thread.currentThread() == writer;
+    }
+
+    public long getProcessed() { return processed.get(); }
+    public long getBatches() { return batches.get(); }
+
+    // Commands posted but not applied yet
+    public long getPending() {
+        return Math.max(0L, tail.get() - processed.get());
+    }
+
+    // Stop accepting commands, apply the ones already posted and end the writer thread
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        if (isWriterThread()) return;
+        try {
+            writer.join(5000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        int idle = 0;
+        while (true) {
+            int n = drain();
+            if (n > 0) {
+                idle = 0;
+                continue;
+            }
+            if (!running && !hasCommand()) break;
+            if (idle++ < IDLE_SPINS) {
+                Thread.onSpinWait();
+                continue;
+            }
+            // announce the nap, then look once more so a producer that missed the flag is not left waiting
+            sleeping = true;
+            if (!hasCommand() && running) LockSupport.park(this);
+            sleeping = false;
+        }
+        // Closed: settle every position already claimed. A producer between claiming and publishing either
+        // publishes before it sees 'terminated' (we apply it) or takes the command back itself.
+        terminated = true;
+        while (head < tail.get()) {
+            int idx = (int) (head & mask);
+            long seq = sequences.get(idx);
+            if (seq == head + commands.length) {
+                head++; // taken back by its producer
+            } else if (seq == head + 1) {
+                Runnable c = commands[idx];
+                commands[idx] = null;
+                if (sequences.compareAndSet(idx, head + 1, head + commands.length)) {
+                    apply(c);
+                    processed.incrementAndGet();
+                }
+                head++;
+            } else {
+                Thread.onSpinWait(); // claimed, not published yet
+            }
+        }
+    }
+
+    // Apply up to batchSize commands that are ready, in order
+    private int drain() {
+        int n = 0;
+        while (n < batchSize) {
+            int idx = (int) (head & mask);
+            if (sequences.get(idx) != head + 1) break;
+            Runnable c = commands[idx];
+            commands[idx] = null;
+            sequences.set(idx, head + commands.length); // slot free for the next lap
+            head++;
+            n++;
+            apply(c);
+        }
+        if (n > 0) {
+            processed.addAndGet(n);
+            batches.incrementAndGet();
+        }
+        return n;
+    }
+
+    private void apply(Runnable c) {
+        try {
+            c.run();
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "Comando fallido en {0}: {1}", new Object[]{writer.getName(), t.toString()});
+        }
+    }
+
+    private boolean hasCommand() {
+        return sequences.get((int) (head & mask)) == head + 1;
+    }
+
+    private static void backoff(int spins) {
+        if (spins < 100) Thread.onSpinWait();
+        else if (spins < 200) Thread.yield();
+        else LockSupport.parkNanos(50_000L);
+    }
+}
@@ -0,0 +1,94 @@
+package org.models;
+
+import java.util.function.IntToLongFunction;
+import org.collections.IntObjectMap;
+
+// Streaming estimate of how fast each ingredient is being consumed, fed by StockGeneral SALIDA movements.
+// Each ingredient keeps two time-decayed rates (base units - g, ml, units - per minute): a short one that
+// reacts to the current rush and a long one for the baseline. Each movement updates them in O(1), with no history kept.
+// From the rates it derives a dynamic reorder point (expected use during the supplier's lead time plus a
+// safety margin, never below cantidadMinima) and a stock-out ETA.
+public class ConsumptionForecaster {
+    private static final double SHORT_TAU_MINUTES = 15.0;
+    private static final double LONG_TAU_MINUTES = 120.0;
+    // Safety margin over the expected lead-time consumption
+    private static final double SAFETY_FACTOR = 1.5;
+    // Lead time assumed when no supplier information is available
+    private static final long DEFAULT_LEAD_TIME_MINUTES = 60L;
+    // Rates below this (base units/minute) are treated as "not being consumed"
+    private static final double MIN_RATE = 1e-6;
+
+    private static class Rate {
+        double shortRate;
+        double longRate;
+        long lastMillis;
+    }
+
+    private final IntObjectMap<Rate> rates = new IntObjectMap<>();
+    private volatile IntToLongFunction leadTimes = id -> DEFAULT_LEAD_TIME_MINUTES;
+    private final StockGeneral.MovimientoListener listener = this::onMovimiento;
+
+    // Subscribe to the stock movements and make the stock use the dynamic reorder point
+    public void attach(StockGeneral stock) {
+        stock.addMovimientoListener(listener);
+        stock.setReorderPoint(this::getReorderPoint);
+    }
+
+    public void detach(StockGeneral stock) {
+        stock.removeMovimientoListener(listener);
+        stock.setReorderPoint(null);
+    }
+
+    // Lead time in minutes per ingredient id (e.g. ProcurementService::getLeadTimeMinutes)
+    public void setLeadTimes(IntToLongFunction leadTimes) {
+        this.leadTimes = leadTimes != null ? leadTimes : id -> DEFAULT_LEAD_TIME_MINUTES;
+    }
+
+    private void onMovimiento(DetalleIngrediente s, long cantidad, TipoMovimiento tipo) {
+        if (tipo == TipoMovimiento.SALIDA) record(s.getIngrediente().getId(), cantidad, System.currentTimeMillis());
+    }
+
+    // Fold one consumption event into the decayed rates: rate = rate * e^(-dt/tau) + amount / tau
+    public synchronized void record(int ingredienteId, long cantidadBase, long atMillis) {
+        Rate r = rates.computeIfAbsent(ingredienteId, k -> new Rate());
+        if (r.lastMillis != 0) decay(r, atMillis);
+        r.lastMillis = Math.max(r.lastMillis, atMillis);
+        r.shortRate += cantidadBase / SHORT_TAU_MINUTES;
+        r.longRate += cantidadBase / LONG_TAU_MINUTES;
+    }
+
+    private static void decay(Rate r, long nowMillis) {
+        double dtMinutes = Math.max(0L, nowMillis - r.lastMillis) / 60_000.0;
+        r.shortRate *= Math.exp(-dtMinutes / SHORT_TAU_MINUTES);
+        r.longRate *= Math.exp(-dtMinutes / LONG_TAU_MINUTES);
+    }
+
+    // Current consumption rate (base units per minute); the faster of the two so a rush is noticed early
+    public synchronized double getRatePerMinute(int ingredienteId) {
+        Rate r = rates.get(ingredienteId);
+        if (r == null) return 0.0;
+        double dtMinutes = Math.max(0L, System.currentTimeMillis() - r.lastMillis) / 60_000.0;
+        double s = r.shortRate * Math.exp(-dtMinutes / SHORT_TAU_MINUTES);
+        double l = r.longRate * Math.exp(-dtMinutes / LONG_TAU_MINUTES);
+        return Math.max(s, l);
+    }
+
+    // Quantity (base units) at which the ingredient should be reordered so the delivery arrives before it runs out
+    public long getReorderPoint(DetalleIngrediente s) {
+        int id = s.getIngrediente().getId();
+        double leadTimeDemand = getRatePerMinute(id) * leadTimes.applyAsLong(id) * SAFETY_FACTOR;
+        return Math.max(s.getCantidadMinimaBase(), (long) Math.ceil(leadTimeDemand));
+    }
+
+    // Level (base units) to top up to: the reorder point plus what is expected to be used over coverMinutes
+    public long getTargetLevel(DetalleIngrediente s, long coverMinutes) {
+        return getReorderPoint(s) + (long) Math.ceil(getRatePerMinute(s.getIngrediente().getId()) * coverMinutes);
+    }
+
+    // Minutes until the ingredient runs out at the current rate, or -1 if it is not being consumed
+    public long getStockOutMinutes(DetalleIngrediente s) {
+        double rate = getRatePerMinute(s.getIngrediente().getId());
+        if (rate < MIN_RATE) return -1L;
+        return (long) Math.floor(Math.max(0L, s.getCantidadBase()) / rate);
+    }
+}
@@ -2,31 +2,53 @@ package org.models;
 
 public class DetalleIngrediente {
     private final Ingrediente ingrediente;
-    private double cantidadActual;
+    // Quantities in base units of the ingredient's Magnitud (g, ml, units): exact integer arithmetic
+    private long cantidadBase;
     private final int cantidadMinima; // Cantidad mínima para hacer un pedido
+    private final long cantidadMinimaBase;
 
     public DetalleIngrediente(Ingrediente ingrediente, double cantidadInicial, int cantidadMinima) {
         this.ingrediente = ingrediente;
-        this.cantidadActual = cantidadInicial;
+        this.cantidadBase = ingrediente.getUnidadMedida().toBase(cantidadInicial);
         this.cantidadMinima = cantidadMinima;
+        this.cantidadMinimaBase = ingrediente.getUnidadMedida().toBase(cantidadMinima);
+    }
+
+    // Factory taking the initial quantity already in base units (a constructor overload with long would
+    // silently capture int literals meant as kilograms/liters)
+    public static DetalleIngrediente enBase(Ingrediente ingrediente, long cantidadInicialBase, int cantidadMinima) {
+        DetalleIngrediente d = new DetalleIngrediente(ingrediente, 0.0, cantidadMinima);
+        d.cantidadBase = cantidadInicialBase;
+        return d;
     }
 
     // Métodos para actualizar stock
+    public void registrarEntradaBase(long cantidad) {
+        this.cantidadBase += cantidad;
+    }
+
+    public void registrarSalidaBase(long cantidad) {
+        this.cantidadBase -= cantidad;
+    }
+
     public void registrarEntrada(double cantidad) {
-        this.cantidadActual += cantidad;
+        registrarEntradaBase(ingrediente.getUnidadMedida().toBase(cantidad));
     }
 
     public void registrarSalida(double cantidad) {
-        this.cantidadActual -= cantidad;
+        registrarSalidaBase(ingrediente.getUnidadMedida().toBase(cantidad));
     }
 
     // Getter para verificar si se necesita reordenar
     public boolean necesitaReorden() {
-        return this.cantidadActual <= this.cantidadMinima;
+        return this.cantidadBase <= this.cantidadMinimaBase;
     }
 
     // Getters
     public Ingrediente getIngrediente() { return ingrediente; }
-    public double getCantidadActual() { return cantidadActual; }
+    public long getCantidadBase() { return cantidadBase; }
+    public long getCantidadMinimaBase() { return cantidadMinimaBase; }
+    // In the ingredient's own unit (display)
+    public double getCantidadActual() { return ingrediente.getUnidadMedida().fromBase(cantidadBase); }
     public int getCantidadMinima() { return cantidadMinima; }
-}
\ No newline at end of file
+}
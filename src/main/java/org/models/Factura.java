@@ -1,5 +1,6 @@
 package org.models;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -8,6 +9,8 @@ public class Factura {
     private final List<OrderItem> items;
     private final double subtotal;
     private final double total;
+    private final LocalDateTime issuedAt = LocalDateTime.now();
+    private String customerName;
 
     public Factura(int tableId, List<OrderItem> items, Menu menu) {
         this.tableId = tableId;
@@ -31,10 +34,27 @@ public class Factura {
         this.total = sum; // no taxes by default
     }
 
+    // Build from a subtotal already maintained by TableService (see TableTab); no Menu lookups needed
+    public Factura(int tableId, List<OrderItem> items, double subtotal) {
+        this.tableId = tableId;
+        this.items = new ArrayList<>();
+        if (items != null) {
+            for (OrderItem oi : items) {
+                if (oi.getEstado() == EstadoPedido.CANCELLED) continue;
+                this.items.add(oi);
+            }
+        }
+        this.subtotal = subtotal;
+        this.total = subtotal; // no taxes by default
+    }
+
     public int getTableId() { return tableId; }
     public List<OrderItem> getItems() { return List.copyOf(items); }
     public double getSubtotal() { return subtotal; }
     public double getTotal() { return total; }
+    public LocalDateTime getIssuedAt() { return issuedAt; }
+    public String getCustomerName() { return customerName; }
+    public void setCustomerName(String customerName) { this.customerName = customerName; }
 
     @Override
     public String toString() {
@@ -0,0 +1,102 @@
+package org.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.collections.IntObjectMap;
+
+// Immutable, versioned view of the inventory published by StockGeneral after every change. Readers
+// (UI panels, reports, procurement) get it through a volatile read: no lock, no copy, and the quantities
+// of all items are consistent with each other. The version goes up with every published change, so a
+// reader that saw the same version before can skip its refresh.
+// Items are stored in 32-slot chunks; publishing a change copies only the chunk of the changed item and
+// the chunk index (path copying), so writers pay O(32 + n/32) instead of copying the whole inventory.
+public final class InventorySnapshot {
+    private static final int CHUNK_BITS = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    static final InventorySnapshot EMPTY = new InventorySnapshot(0L, new Item[0][], 0, new IntObjectMap<>());
+
+    // State of one ingredient at the time of the snapshot
+    public static final class Item {
+        private final DetalleIngrediente detalle;
+        private final long cantidadBase;
+        private final boolean bajoUmbral;
+
+        Item(DetalleIngrediente detalle, boolean bajoUmbral) {
+            this.detalle = detalle;
+            this.cantidadBase = detalle.getCantidadBase();
+            this.bajoUmbral = bajoUmbral;
+        }
+
+        // Live stock entry (its quantity may have moved on since the snapshot)
+        public DetalleIngrediente getDetalle() { return detalle; }
+        public Ingrediente getIngrediente() { return detalle.getIngrediente(); }
+        public int getId() { return detalle.getIngrediente().getId(); }
+        public long getCantidadBase() { return cantidadBase; }
+        public long getCantidadMinimaBase() { return detalle.getCantidadMinimaBase(); }
+        public double getCantidadActual() { return detalle.getIngrediente().getUnidadMedida().fromBase(cantidadBase); }
+        public int getCantidadMinima() { return detalle.getCantidadMinima(); }
+        // At or below the reorder point when the snapshot was taken (precomputed by StockGeneral)
+        public boolean isBajoUmbral() { return bajoUmbral; }
+    }
+
+    private final long version;
+    private final Item[][] chunks;
+    private final int size;
+    // ingredient id -> slot; shared between versions and never modified once published
+    private final IntObjectMap<Integer> slots;
+
+    private InventorySnapshot(long version, Item[][] chunks, int size, IntObjectMap<Integer> slots) {
+        this.version = version;
+        this.chunks = chunks;
+        this.size = size;
+        this.slots = slots;
+    }
+
+    public long getVersion() { return version; }
+    public int size() { return size; }
+
+    // Item for the ingredient, or null if it is not in the inventory
+    public Item get(int ingredienteId) {
+        Integer slot = slots.get(ingredienteId);
+        return slot != null ? chunks[slot >>> CHUNK_BITS][slot & CHUNK_MASK] : null;
+    }
+
+    // Items in the order they were added to the inventory
+    public void forEach(Consumer<Item> action) {
+        for (int i = 0; i < size; i++) action.accept(chunks[i >>> CHUNK_BITS][i & CHUNK_MASK]);
+    }
+
+    public List<Item> items() {
+        List<Item> res = new ArrayList<>(size);
+        forEach(res::add);
+        return res;
+    }
+
+    // New version with the current state of the stock entry (added if it is new). Called by StockGeneral
+    // under its lock, so versions are published in order.
+    InventorySnapshot with(DetalleIngrediente stock, boolean bajoUmbral) {
+        int id = stock.getIngrediente().getId();
+        Integer slot = slots.get(id);
+        IntObjectMap<Integer> newSlots = slots;
+        int s;
+        int newSize = size;
+        if (slot == null) {
+            s = size;
+            newSize = size + 1;
+            newSlots = slots.copy();
+            newSlots.put(id, s);
+        } else {
+            s = slot;
+        }
+        int c = s >>> CHUNK_BITS;
+        Item[][] newChunks = c < chunks.length ? chunks.clone() : Arrays.copyOf(chunks, c + 1);
+        Item[] chunk = c < chunks.length ? chunks[c].clone() : new Item[CHUNK_SIZE];
+        chunk[s & CHUNK_MASK] = new Item(stock, bajoUmbral);
+        newChunks[c] = chunk;
+        return new InventorySnapshot(version + 1, newChunks, newSize, newSlots);
+    }
+}
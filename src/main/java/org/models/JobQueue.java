@@ -0,0 +1,129 @@
+package org.models;
+
+import org.collections.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Indexed binary min-heap of production job ids ordered by a priority key (lower = more urgent,
+// ties broken by job id so equal keys stay FIFO). A position index per job id gives O(log n)
+// insert, remove-by-id and re-prioritize, instead of the O(n) ArrayList.remove used before.
+// The index is a hash map keyed by job id, so memory and copies are O(queued jobs), not O(max id).
+// Not thread-safe: Pedido guards it with its own lock.
+public class JobQueue {
+    private int[] heap = new int[16];
+    private long[] keys = new long[16];
+    private int size = 0;
+    // jobId -> {heap index}; only queued jobs have an entry (a mutable cell so swaps don't rehash)
+    private final IntObjectMap<int[]> pos = new IntObjectMap<>();
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean contains(int jobId) {
+        return pos.containsKey(jobId);
+    }
+
+    public void add(int jobId, long key) {
+        if (jobId < 0) throw new IllegalArgumentException("Job id inválido: " + jobId);
+        if (contains(jobId)) {
+            update(jobId, key);
+            return;
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        heap[size] = jobId;
+        keys[size] = key;
+        pos.put(jobId, new int[]{size});
+        size++;
+        siftUp(size - 1);
+    }
+
+    public boolean remove(int jobId) {
+        int[] cell = pos.get(jobId);
+        if (cell == null) return false;
+        int i = cell[0];
+        int last = size - 1;
+        if (i != last) {
+            swap(i, last);
+        }
+        size--;
+        pos.remove(jobId);
+        if (i < size) {
+            siftDown(i);
+            siftUp(i);
+        }
+        return true;
+    }
+
+    // Change the priority key of a queued job; returns false if it is not queued
+    public boolean update(int jobId, long key) {
+        int[] cell = pos.get(jobId);
+        if (cell == null) return false;
+        int i = cell[0];
+        long old = keys[i];
+        keys[i] = key;
+        if (key < old) siftUp(i); else siftDown(i);
+        return true;
+    }
+
+    // Most urgent job id, or -1 when empty
+    public int peek() {
+        return size == 0 ? -1 : heap[0];
+    }
+
+    public int poll() {
+        if (size == 0) return -1;
+        int top = heap[0];
+        remove(top);
+        return top;
+    }
+
+    // Queued job ids in priority order (sorts a copy of the heap slots; O(n log n) in queued jobs)
+    public List<Integer> toSortedList() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> a.equals(b) ? 0 : (less(a, b) ? -1 : 1));
+        List<Integer> res = new ArrayList<>(size);
+        for (Integer i : order) res.add(heap[i]);
+        return res;
+    }
+
+    private boolean less(int a, int b) {
+        if (keys[a] != keys[b]) return keys[a] < keys[b];
+        return heap[a] < heap[b];
+    }
+
+    private void swap(int a, int b) {
+        int ja = heap[a], jb = heap[b];
+        long ka = keys[a];
+        heap[a] = jb; keys[a] = keys[b];
+        heap[b] = ja; keys[b] = ka;
+        pos.get(jb)[0] = a;
+        pos.get(ja)[0] = b;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) break;
+            int r = l + 1;
+            int smallest = (r < size && less(r, l)) ? r : l;
+            if (!less(smallest, i)) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+}
@@ -1,9 +1,32 @@
 package org.models;
 
+// Unit of measure of an ingredient. Stock is kept as a whole number of base units (grams, milliliters or
+// units); factorBase converts one unit of the magnitude into base units.
 public enum Magnitud {
-    KILOGRAMO,
-    LITRO,
-    UNIDAD,
-    GRAMO,
-    MILILITRO
+    KILOGRAMO(1000L, "g"),
+    LITRO(1000L, "ml"),
+    UNIDAD(1L, "u"),
+    GRAMO(1L, "g"),
+    MILILITRO(1L, "ml");
+
+    private final long factorBase;
+    private final String simboloBase;
+
+    Magnitud(long factorBase, String simboloBase) {
+        this.factorBase = factorBase;
+        this.simboloBase = simboloBase;
+    }
+
+    public long getFactorBase() { return factorBase; }
+    public String getSimboloBase() { return simboloBase; }
+
+    // Quantity in this magnitude -> base units (rounded to the nearest base unit)
+    public long toBase(double cantidad) {
+        return Math.round(cantidad * factorBase);
+    }
+
+    // Base units -> quantity in this magnitude (display / legacy double API only)
+    public double fromBase(long base) {
+        return factorBase == 1L ? base : (double) base / factorBase;
+    }
 }
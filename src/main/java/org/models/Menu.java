@@ -1,10 +1,10 @@
 package org.models;
 
-import java.util.HashMap;
 import java.util.Map;
+import org.collections.IntObjectMap;
 
 public class Menu {
-    private final Map<Integer, Recipe> recipes = new HashMap<>();
+    private final IntObjectMap<Recipe> recipes = new IntObjectMap<>();
 
     public void addRecipe(Recipe r) {
         recipes.put(r.getId(), r);
@@ -14,6 +14,7 @@ public class Menu {
         return recipes.get(id);
     }
 
-    public Map<Integer, Recipe> getAll() { return recipes; }
+    // Read-only view; recipes are added through addRecipe
+    public Map<Integer, Recipe> getAll() { return recipes.asMap(); }
 }
 
@@ -1,19 +1,94 @@
 package org.models;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import org.collections.IntList;
+import org.collections.IntObjectMap;
+import org.collections.IntervalTree;
+
 public class Mesa {
     private final int id;
     private final int capacidad;
-    private TableStatus estado;
+    // estado + version, changed by compare-and-set (see VersionedState)
+    private final VersionedState<TableStatus> estado = new VersionedState<>(TableStatus.LIBRE);
+    // Booked slots in epoch minutes, so the same table can take several seatings a night.
+    // Guarded by 'slots'; slotOf maps reservation id -> {start, end} to remove its interval.
+    private final IntervalTree slots = new IntervalTree();
+    private final IntObjectMap<long[]> slotOf = new IntObjectMap<>();
 
     public Mesa(int id, int capacidad) {
         this.id = id;
         this.capacidad = capacidad;
-        this.estado = TableStatus.LIBRE;
     }
 
     public int getId() { return id; }
     public int getCapacidad() { return capacidad; }
-    public TableStatus getEstado() { return estado; }
-    public void setEstado(TableStatus estado) { this.estado = estado; }
+    public TableStatus getEstado() { return estado.get(); }
+    public void setEstado(TableStatus estado) { this.estado.set(estado); }
+    public long getVersion() { return estado.version(); }
+
+    // Atomic transition: only succeeds if the table is still in the expected state
+    public boolean compareAndSetEstado(TableStatus expected, TableStatus next) {
+        return estado.compareAndSet(expected, next);
+    }
+
+    // Atomic transition: only succeeds if the table did not change since the given version was read
+    public boolean compareAndSetEstado(long expectedVersion, TableStatus next) {
+        return estado.compareAndSet(expectedVersion, next);
+    }
+
+    // True if no booking overlaps [start, end)
+    public boolean isFreeBetween(LocalDateTime start, LocalDateTime end) {
+        synchronized (slots) {
+            return !slots.overlaps(minutes(start), minutes(end));
+        }
+    }
+
+    // Book [start, end) for a reservation if nothing else overlaps it (check and insert are atomic).
+    // Booking again with the same reservation id moves its slot.
+    public boolean book(int reservationId, LocalDateTime start, LocalDateTime end) {
+        long s = minutes(start), e = minutes(end);
+        synchronized (slots) {
+            long[] previous = slotOf.remove(reservationId);
+            if (previous != null) slots.remove(previous[0], reservationId);
+            if (slots.overlaps(s, e)) {
+                if (previous != null) {
+                    // put the old slot back; it was ours and cannot collide
+                    slots.add(previous[0], previous[1], reservationId);
+                    slotOf.put(reservationId, previous);
+                }
+                return false;
+            }
+            slots.add(s, e, reservationId);
+            slotOf.put(reservationId, new long[]{s, e});
+            return true;
+        }
+    }
+
+    public boolean unbook(int reservationId) {
+        synchronized (slots) {
+            long[] slot = slotOf.remove(reservationId);
+            return slot != null && slots.remove(slot[0], reservationId);
+        }
+    }
+
+    // Reservation ids whose slot overlaps [start, end), in start order
+    public int[] bookingsBetween(LocalDateTime start, LocalDateTime end) {
+        IntList ids = new IntList();
+        synchronized (slots) {
+            slots.forEachOverlapping(minutes(start), minutes(end), ids::add);
+        }
+        return ids.toArray();
+    }
+
+    public int getBookingCount() {
+        synchronized (slots) {
+            return slots.size();
+        }
+    }
+
+    private static long minutes(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC) / 60L;
+    }
 }
 
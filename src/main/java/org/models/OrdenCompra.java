@@ -0,0 +1,46 @@
+package org.models;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Purchase order to one supplier, grouping every ingredient it has to deliver
+public class OrdenCompra {
+    public enum Estado { ENVIADA, RECIBIDA, CANCELADA }
+
+    private final int id;
+    private final Proveedor proveedor;
+    private final Map<Integer, Long> lineas = new LinkedHashMap<>(); // ingredient id -> quantity in base units
+    private final LocalDateTime createdAt;
+    private final LocalDateTime expectedAt;
+    private LocalDateTime receivedAt;
+    private Estado estado = Estado.ENVIADA;
+
+    public OrdenCompra(int id, Proveedor proveedor, LocalDateTime createdAt) {
+        this.id = id;
+        this.proveedor = proveedor;
+        this.createdAt = createdAt;
+        this.expectedAt = createdAt.plusMinutes(proveedor.getLeadTimeMinutes());
+    }
+
+    void agregarLinea(int ingredienteId, long cantidadBase) {
+        lineas.merge(ingredienteId, cantidadBase, Long::sum);
+    }
+
+    public int getId() { return id; }
+    public Proveedor getProveedor() { return proveedor; }
+    public Map<Integer, Long> getLineas() { return Collections.unmodifiableMap(lineas); }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getExpectedAt() { return expectedAt; }
+    public LocalDateTime getReceivedAt() { return receivedAt; }
+    public Estado getEstado() { return estado; }
+
+    void setEstado(Estado estado) { this.estado = estado; }
+    void setReceivedAt(LocalDateTime receivedAt) { this.receivedAt = receivedAt; }
+
+    @Override
+    public String toString() {
+        return "OC #" + id + " " + proveedor.getNombre() + " " + estado + " " + lineas;
+    }
+}
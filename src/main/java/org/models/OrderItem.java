@@ -1,13 +1,22 @@
 package org.models;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class OrderItem {
+    private static final AtomicLong LINE_IDS = new AtomicLong();
+
+    // identifies this line in the change feed (unique within the running process)
+    private final long lineId = LINE_IDS.incrementAndGet();
     private final String name;
     private final int quantity;
     private final Integer recipeId; // optional link to a Recipe
     private Integer productionJobId; // filled when a production job is created
     // estimated time-to-complete in minutes (nullable)
     private Long estimatedMinutes;
-    private EstadoPedido estado = EstadoPedido.QUEUED;
+    // estado + version, changed by compare-and-set (see VersionedState)
+    private final VersionedState<EstadoPedido> estado = new VersionedState<>(EstadoPedido.QUEUED);
+    // price per unit captured when the order is placed (0 when not linked to a recipe)
+    private double unitPrice;
 
     public OrderItem(String name, int quantity) {
         this(name, quantity, null);
@@ -19,22 +28,39 @@ public class OrderItem {
         this.recipeId = recipeId;
     }
 
+    public long getLineId() { return lineId; }
     public String getName() { return name; }
     public int getQuantity() { return quantity; }
     public Integer getRecipeId() { return recipeId; }
     public Integer getProductionJobId() { return productionJobId; }
-    public void setProductionJobId(Integer id) { this.productionJobId = id; }
+    public void setProductionJobId(Integer id) { this.productionJobId = id; estado.touch(); }
     public Long getEstimatedMinutes() { return estimatedMinutes; }
-    public void setEstimatedMinutes(Long m) { this.estimatedMinutes = m; }
-    public EstadoPedido getEstado() { return estado; }
-    public void setEstado(EstadoPedido estado) { this.estado = estado; }
+    public void setEstimatedMinutes(Long m) {
+        if (java.util.Objects.equals(m, estimatedMinutes)) return;
+        this.estimatedMinutes = m;
+        estado.touch();
+    }
+    public EstadoPedido getEstado() { return estado.get(); }
+    public void setEstado(EstadoPedido estado) { this.estado.set(estado); }
+    public double getUnitPrice() { return unitPrice; }
+    public void setUnitPrice(double unitPrice) { this.unitPrice = unitPrice; estado.touch(); }
+    public long getVersion() { return estado.version(); }
+
+    // Atomic transition: only succeeds if the line is still in the expected state. Line states are changed
+    // by TableService under its own lock (they follow their job and keep the running tab in step), so the
+    // service does not need this; it is for holders of a line outside that lock, which should prefer it
+    // to setEstado. The version is what remote terminals compare to detect a stale view.
+    public boolean compareAndSetEstado(EstadoPedido expected, EstadoPedido next) {
+        return estado.compareAndSet(expected, next);
+    }
 
     @Override
     public String toString() {
         String s = quantity + " x " + name;
         if (productionJobId != null) s += " (job#" + productionJobId + ")";
         if (estimatedMinutes != null) s += " - ETA: " + estimatedMinutes + " min";
-        if (estado != null && estado != EstadoPedido.QUEUED) s += " - " + estado;
+        EstadoPedido e = estado.get();
+        if (e != EstadoPedido.QUEUED) s += " - " + e;
         return s;
     }
 }
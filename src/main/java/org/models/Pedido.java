@@ -7,43 +7,152 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
+import org.collections.IntList;
+import org.collections.IntObjectMap;
 import org.exceptions.InvalidQuantityException;
 import org.exceptions.StockNotFoundException;
 import org.exceptions.InsufficientStockException;
 import org.exceptions.MovementNotSupportedException;
 
 public class Pedido {
-    private final Map<Integer, ProductionJob> jobs = new HashMap<>();
-    private final List<Integer> queue = new ArrayList<>();
+    private final IntObjectMap<ProductionJob> jobs = new IntObjectMap<>();
+    // queued (not yet started) jobs, ordered by priority
+    private final JobQueue queue = new JobQueue();
+    // Queued jobs blocked on stock, parked by the ingredient they are missing. They leave the priority
+    // queue until a replenishment of that ingredient wakes them, so nothing rescans blocked jobs.
+    private final IntObjectMap<IntList> waitingByIngredient = new IntObjectMap<>();
+    private final IntObjectMap<Integer> blockedOn = new IntObjectMap<>(); // jobId -> ingredientId
     private int nextId = 1;
+    // jobs currently IN_PROGRESS, kept on every transition so kitchenIdle() doesn't scan all jobs ever created
+    private int inProgress = 0;
+    // Same-recipe batching (disabled while batchWindowMillis is 0): recipe id -> its open batch job
+    private final IntObjectMap<ProductionJob> openBatches = new IntObjectMap<>();
+    private long batchWindowMillis = 0L;
+    private int batchMaxQuantity = Integer.MAX_VALUE;
     private final StockGeneral stock;
     // simple listeners for job creation/changes
     private final List<Consumer<ProductionJob>> jobListeners = new ArrayList<>();
 
     public Pedido(StockGeneral stock) {
         this.stock = stock;
+        stock.addReplenishListener(this::onStockReplenished);
     }
 
     public synchronized ProductionJob createJob(Recipe recipe, int quantity) {
+        return createJob(recipe, quantity, false, null);
+    }
+
+    // Create a job with scheduling priority: VIP table flag and how long the table has been waiting
+    // (null = since now). Urgent jobs are placed ahead of plain FIFO order.
+    // With batching enabled, an order for a recipe that has an open batch joins it (up to the quantity cap)
+    // and the returned job is the shared batch; otherwise the new job opens a batch and waits for the window,
+    // unless the kitchen is idle: then there is nothing to wait behind and the job starts right away.
+    public synchronized ProductionJob createJob(Recipe recipe, int quantity, boolean vip, LocalDateTime waitingSince) {
+        LocalDateTime now = LocalDateTime.now();
+        ProductionJob batch = findOpenBatch(recipe, quantity, now);
+        if (batch != null) {
+            batch.addToBatch(quantity);
+            if (vip) batch.setVip(true);
+            if (waitingSince != null && waitingSince.isBefore(batch.getWaitingSince())) batch.setWaitingSince(waitingSince);
+            queue.update(batch.getId(), batch.getPriorityKey());
+            for (Consumer<ProductionJob> l : jobListeners) {
+                try { l.accept(batch); } catch (Exception ignored) {}
+            }
+            return batch;
+        }
+
         int id = nextId++;
         ProductionJob job = new ProductionJob(id, recipe, quantity);
+        job.setVip(vip);
+        job.setWaitingSince(waitingSince);
         jobs.put(id, job);
-        queue.add(id);
+        if (batchWindowMillis > 0 && quantity < batchMaxQuantity && !kitchenIdle()) {
+            // open batches stay out of the priority queue until their window closes
+            job.setBatchOpenUntil(now.plusNanos(batchWindowMillis * 1_000_000L));
+            openBatches.put(recipe.getId(), job);
+        } else {
+            queue.add(id, job.getPriorityKey());
+        }
         // notify listeners
         for (Consumer<ProductionJob> l : jobListeners) {
             try { l.accept(job); } catch (Exception ignored) {}
         }
-        // Try to start immediately if stock is available; if not, leave the job queued.
+        // an open batch waits for its window (releaseBatch); anything else tries to start right away
+        if (job.getBatchOpenUntil() == null) startOrPark(id);
+
+        return job;
+    }
+
+    // Nothing cooking and nothing queued (open batches of other recipes do not count)
+    private boolean kitchenIdle() {
+        return queue.isEmpty() && inProgress == 0;
+    }
+
+    // Try to start a queued job now; if stock is short, park it until the missing ingredient arrives
+    private void startOrPark(int jobId) {
+        ProductionJob job = jobs.get(jobId);
         try {
-            if (recipe.canProduce(stock, quantity)) {
+            int missing = job.getRecipe().firstMissingIngredient(stock, job.getQuantity());
+            if (missing < 0) {
                 // startJob will handle deductions and change status to IN_PROGRESS
-                startJob(id);
+                startJob(jobId);
+            } else {
+                park(jobId, missing);
             }
         } catch (Exception ignored) {
             // if start fails, keep job queued or let startJob mark it failed
         }
+    }
 
-        return job;
+    // Same-recipe batching: orders arriving within windowMillis of the first one are merged into a single
+    // job (one stock deduction, one cook) while the batch stays under maxQuantity. 0 disables batching.
+    public synchronized void setBatching(long windowMillis, int maxQuantity) {
+        this.batchWindowMillis = Math.max(0L, windowMillis);
+        this.batchMaxQuantity = Math.max(1, maxQuantity);
+        if (batchWindowMillis == 0) {
+            for (ProductionJob b : new ArrayList<>(openBatches.values())) releaseBatch(b.getId());
+        }
+    }
+
+    public synchronized long getBatchWindowMillis() { return batchWindowMillis; }
+    public synchronized int getBatchMaxQuantity() { return batchMaxQuantity; }
+
+    // Close a batch and send it to the kitchen (called when its window elapses). Returns false if the
+    // job is not an open batch any more (already released, started or cancelled).
+    public synchronized boolean releaseBatch(int jobId) {
+        ProductionJob job = jobs.get(jobId);
+        if (job == null || job.getBatchOpenUntil() == null) return false;
+        closeBatch(job);
+        if (job.getStatus() == ProductionJob.Status.QUEUED) {
+            queue.add(jobId, job.getPriorityKey());
+            startOrPark(jobId);
+        }
+        return true;
+    }
+
+    private void closeBatch(ProductionJob job) {
+        if (job.getBatchOpenUntil() == null) return;
+        job.setBatchOpenUntil(null);
+        openBatches.remove(job.getRecipe().getId(), job);
+    }
+
+    // Open batch of the recipe that can take qty more units; a batch whose window already passed is
+    // released on the way (covers running without a scheduler), and so is one too full to take qty, so
+    // the batch the new job opens never displaces it out of both openBatches and the queue
+    private ProductionJob findOpenBatch(Recipe recipe, int qty, LocalDateTime now) {
+        ProductionJob batch = openBatches.get(recipe.getId());
+        if (batch == null) return null;
+        if (batch.getStatus() != ProductionJob.Status.QUEUED || batch.getBatchOpenUntil() == null) {
+            openBatches.remove(recipe.getId());
+            return null;
+        }
+        if (!now.isBefore(batch.getBatchOpenUntil())) {
+            releaseBatch(batch.getId());
+            return null;
+        }
+        if (batch.getQuantity() + qty <= batchMaxQuantity) return batch;
+        releaseBatch(batch.getId());
+        return null;
     }
 
     // allow listeners to be notified when new jobs are created
@@ -60,21 +169,129 @@ public class Pedido {
         return res;
     }
 
+    // Queued job ids in priority order (including jobs parked waiting for stock and open batches)
     public synchronized List<Integer> getQueue() {
-        return new ArrayList<>(queue);
+        if (blockedOn.isEmpty() && openBatches.isEmpty()) return queue.toSortedList();
+        List<ProductionJob> queued = new ArrayList<>();
+        for (Integer qid : queue.toSortedList()) queued.add(jobs.get(qid));
+        for (int qid : blockedOn.keys()) queued.add(jobs.get(qid));
+        queued.addAll(openBatches.values());
+        queued.sort((a, b) -> {
+            int c = Long.compare(a.getPriorityKey(), b.getPriorityKey());
+            return c != 0 ? c : Integer.compare(a.getId(), b.getId());
+        });
+        List<Integer> res = new ArrayList<>(queued.size());
+        for (ProductionJob j : queued) res.add(j.getId());
+        return res;
+    }
+
+    // Ingredient a queued job is waiting for, or null if it is not blocked on stock
+    public synchronized Integer getBlockingIngredient(int jobId) {
+        return blockedOn.get(jobId);
+    }
+
+    // Move a queued job out of the priority queue into the wait list of the ingredient it lacks
+    private void park(int jobId, int ingredientId) {
+        queue.remove(jobId);
+        unpark(jobId);
+        blockedOn.put(jobId, ingredientId);
+        waitingByIngredient.computeIfAbsent(ingredientId, k -> new IntList(4)).add(jobId);
+    }
+
+    private void unpark(int jobId) {
+        Integer ing = blockedOn.remove(jobId);
+        if (ing == null) return;
+        IntList waiting = waitingByIngredient.get(ing);
+        if (waiting != null) {
+            waiting.removeValue(jobId);
+            if (waiting.isEmpty()) waitingByIngredient.remove(ing);
+        }
+    }
+
+    // Stock of an ingredient went up (ENTRADA, auto-reorder, new stock item): only the jobs parked on that
+    // ingredient are re-checked. StockGeneral calls this outside its own lock. When the replenishment comes
+    // from inside a Pedido operation (e.g. a rollback in startJob), woken jobs are only returned to the queue
+    // and picked up by the next finish/replenishment, to avoid starting jobs re-entrantly.
+    private void onStockReplenished(DetalleIngrediente s) {
+        boolean nested = Thread.holdsLock(this);
+        synchronized (this) {
+            IntList waiting = waitingByIngredient.remove(s.getIngrediente().getId());
+            if (waiting == null) return;
+            List<ProductionJob> woken = new ArrayList<>(waiting.size());
+            for (int i = 0; i < waiting.size(); i++) {
+                int jid = waiting.get(i);
+                blockedOn.remove(jid);
+                ProductionJob j = jobs.get(jid);
+                if (j == null || j.getStatus() != ProductionJob.Status.QUEUED) continue;
+                queue.add(jid, j.getPriorityKey());
+                woken.add(j);
+            }
+            if (nested) return;
+            woken.sort((a, b) -> {
+                int c = Long.compare(a.getPriorityKey(), b.getPriorityKey());
+                return c != 0 ? c : Integer.compare(a.getId(), b.getId());
+            });
+            for (ProductionJob j : woken) {
+                if (!queue.contains(j.getId())) continue;
+                int missing = j.getRecipe().firstMissingIngredient(stock, j.getQuantity());
+                if (missing < 0) startJob(j.getId());
+                else park(j.getId(), missing);
+            }
+        }
+    }
+
+    // Mark/unmark a job as rush; a queued job is re-positioned in O(log n)
+    public synchronized boolean setRush(int jobId, boolean rush) {
+        ProductionJob job = jobs.get(jobId);
+        if (job == null) return false;
+        job.setRush(rush);
+        queue.update(jobId, job.getPriorityKey());
+        for (Consumer<ProductionJob> l : jobListeners) { try { l.accept(job); } catch (Exception ignored) {} }
+        return true;
+    }
+
+    // Cooking time of an in-progress job is up but the kitchen confirms completions by hand:
+    // flag it (or clear the flag when the time is extended) so the kitchen view can highlight it
+    public synchronized boolean setAwaitingConfirmation(int jobId, boolean awaiting) {
+        ProductionJob job = jobs.get(jobId);
+        if (job == null || job.getStatus() != ProductionJob.Status.IN_PROGRESS) return false;
+        if (job.isAwaitingConfirmation() == awaiting) return true;
+        job.setAwaitingConfirmation(awaiting);
+        job.setNote(awaiting ? "Time elapsed, waiting for confirmation" : null);
+        for (Consumer<ProductionJob> l : jobListeners) { try { l.accept(job); } catch (Exception ignored) {} }
+        return true;
+    }
+
+    // Jobs in the order the kitchen will work them: in-progress first (by id), then the queue by priority
+    private List<ProductionJob> jobsInServiceOrder() {
+        List<ProductionJob> res = new ArrayList<>();
+        for (ProductionJob j : listJobs()) {
+            if (j.getStatus() == ProductionJob.Status.IN_PROGRESS) res.add(j);
+        }
+        for (Integer qid : getQueue()) {
+            ProductionJob j = jobs.get(qid);
+            if (j != null && j.getStatus() == ProductionJob.Status.QUEUED) res.add(j);
+        }
+        return res;
     }
 
     // Estimate completion time in minutes from now for a newly created job (without actually adding it).
     // This sums remaining time of the in-progress job and durations of queued jobs, then adds the new job duration.
+    // If the order would join an open batch, the estimate ends with that batch, grown by the extra units.
     public synchronized long estimateCompletionForNewJob(Recipe recipe, int quantity) {
         java.time.LocalDateTime now = java.time.LocalDateTime.now();
         long minutesAhead = 0L;
+        ProductionJob batch = openBatches.get(recipe.getId());
+        if (batch != null && (batch.getBatchOpenUntil() == null || !now.isBefore(batch.getBatchOpenUntil())
+                || batch.getQuantity() + quantity > batchMaxQuantity)) {
+            batch = null;
+        }
 
-        // consider jobs sorted by id
-        List<ProductionJob> existing = listJobs();
+        // consider jobs in service order (in progress, then queue priority)
+        List<ProductionJob> existing = jobsInServiceOrder();
         for (ProductionJob j : existing) {
             if (j.getStatus() == ProductionJob.Status.DONE || j.getStatus() == ProductionJob.Status.FAILED) continue;
-            long dur = (long) j.getRecipe().getTiempoPreparacionMinutos() * (long) j.getQuantity();
+            long dur = j.getDurationMinutes();
             if (j.getStatus() == ProductionJob.Status.IN_PROGRESS) {
                 if (j.getStartedAt() != null) {
                     long elapsed = java.time.Duration.between(j.getStartedAt(), now).toMinutes();
@@ -84,12 +301,13 @@ public class Pedido {
                     minutesAhead += dur; // fallback
                 }
             } else if (j.getStatus() == ProductionJob.Status.QUEUED) {
+                if (j == batch) return minutesAhead + j.getDurationMinutesWith(quantity);
                 minutesAhead += dur;
             }
         }
 
         // add new job duration
-        minutesAhead += (long) recipe.getTiempoPreparacionMinutos() * (long) quantity;
+        minutesAhead += ProductionJob.durationMinutes(recipe, quantity, 0);
 
         return minutesAhead;
     }
@@ -103,11 +321,11 @@ public class Pedido {
         java.time.LocalDateTime now = java.time.LocalDateTime.now();
         long minutesAhead = 0L;
 
-        // consider jobs in order
-        List<ProductionJob> existing = listJobs();
+        // consider jobs in service order (in progress, then queue priority)
+        List<ProductionJob> existing = jobsInServiceOrder();
         for (ProductionJob j : existing) {
             if (j.getStatus() == ProductionJob.Status.DONE || j.getStatus() == ProductionJob.Status.FAILED) continue;
-            int durMinutes = j.getRecipe().getTiempoPreparacionMinutos() * j.getQuantity();
+            long durMinutes = j.getDurationMinutes();
 
             if (j.getStatus() == ProductionJob.Status.IN_PROGRESS) {
                 if (j.getStartedAt() != null) {
@@ -127,18 +345,43 @@ public class Pedido {
         return minutesAhead;
     }
 
+    // Remaining minutes until each pending job would be finished, in one pass over the service order
+    // (estimateRemainingMinutesForJob per job would be quadratic when refreshing every order's ETA)
+    public synchronized Map<Integer, Long> estimateRemainingMinutesForAll() {
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        Map<Integer, Long> res = new HashMap<>();
+        long minutesAhead = 0L;
+        for (ProductionJob j : jobsInServiceOrder()) {
+            long dur = j.getDurationMinutes();
+            if (j.getStatus() == ProductionJob.Status.IN_PROGRESS && j.getStartedAt() != null) {
+                long elapsed = java.time.Duration.between(j.getStartedAt(), now).toMinutes();
+                minutesAhead += Math.max(0L, dur - elapsed);
+            } else {
+                minutesAhead += dur;
+            }
+            res.put(j.getId(), minutesAhead);
+        }
+        return res;
+    }
+
     // Attempt to start a job: will check stock and deduct ingredients atomically (attempt rollback on failure)
     public synchronized boolean startJob(int jobId) {
         ProductionJob job = jobs.get(jobId);
         if (job == null) return false;
         if (job.getStatus() != ProductionJob.Status.QUEUED) return false;
-
+        // a manual start of a parked job takes it off its wait list (or closes its batch)
+        unpark(jobId);
+        closeBatch(job);
+        // The job stays QUEUED until its ingredients are deducted and startedAt is set, and only then turns
+        // IN_PROGRESS, so a reader never sees a started job without a start time or before the stock moved.
+        // Job states only change under this lock; the compare-and-set is what publishes the transition.
         Recipe recipe = job.getRecipe();
         int qty = job.getQuantity();
 
         // Check availability
         if (!recipe.canProduce(stock, qty)) {
-            job.setStatus(ProductionJob.Status.FAILED);
+            job.compareAndSetStatus(ProductionJob.Status.QUEUED, ProductionJob.Status.FAILED);
+            queue.remove(jobId);
             job.setFinishedAt(LocalDateTime.now());
             job.setNote("Insufficient stock when starting");
             // notify listeners of status change
@@ -146,44 +389,24 @@ public class Pedido {
             return false;
         }
 
-        // Deduct ingredients; if any deduction fails, rollback previous deductions
-        Map<Integer, Double> deducted = new HashMap<>();
-        for (RecipeIngredient ri : recipe.getIngredientes()) {
-            int idIng = ri.getIngrediente().getId();
-            double amount = ri.getCantidad() * qty;
-            try {
-                Double remaining = stock.registrarMovimiento(idIng, amount, TipoMovimiento.SALIDA);
-                if (remaining == null) {
-                    // rollback
-                    for (Map.Entry<Integer, Double> d : deducted.entrySet()) {
-                        try { stock.registrarMovimiento(d.getKey(), d.getValue(), TipoMovimiento.ENTRADA); } catch (Exception ignored) {}
-                    }
-                    job.setStatus(ProductionJob.Status.FAILED);
-                    job.setFinishedAt(LocalDateTime.now());
-                    job.setNote("Failed to deduct ingredients");
-                    // notify listeners
-                    for (Consumer<ProductionJob> l : jobListeners) { try { l.accept(job); } catch (Exception ignored) {} }
-                    return false;
-                }
-                deducted.put(idIng, amount);
-            } catch (InsufficientStockException | StockNotFoundException | InvalidQuantityException | MovementNotSupportedException ex) {
-                // rollback
-                for (Map.Entry<Integer, Double> d : deducted.entrySet()) {
-                    try { stock.registrarMovimiento(d.getKey(), d.getValue(), TipoMovimiento.ENTRADA); } catch (Exception ignored) {}
-                }
-                job.setStatus(ProductionJob.Status.FAILED);
-                job.setFinishedAt(LocalDateTime.now());
-                job.setNote("Failed to deduct ingredients: " + ex.getMessage());
-                // notify listeners
-                for (Consumer<ProductionJob> l : jobListeners) { try { l.accept(job); } catch (Exception ignored) {} }
-                return false;
-            }
+        // Deduct ingredients in base units (one SALIDA per ingredient for the whole job / batch);
+        // Recipe.deductIngredients rolls back the ones already applied if any deduction fails
+        try {
+            recipe.deductIngredients(stock, qty);
+        } catch (InsufficientStockException | StockNotFoundException | InvalidQuantityException | MovementNotSupportedException ex) {
+            job.compareAndSetStatus(ProductionJob.Status.QUEUED, ProductionJob.Status.FAILED);
+            queue.remove(jobId);
+            job.setFinishedAt(LocalDateTime.now());
+            job.setNote("Failed to deduct ingredients: " + ex.getMessage());
+            // notify listeners
+            for (Consumer<ProductionJob> l : jobListeners) { try { l.accept(job); } catch (Exception ignored) {} }
+            return false;
         }
 
-        // All deducted OK — mark in progress
-        job.setStatus(ProductionJob.Status.IN_PROGRESS);
+        // All deducted OK — the job is in progress from now
         job.setStartedAt(LocalDateTime.now());
-        queue.remove((Integer) jobId);
+        if (job.compareAndSetStatus(ProductionJob.Status.QUEUED, ProductionJob.Status.IN_PROGRESS)) inProgress++;
+        queue.remove(jobId);
         // notify listeners
         for (Consumer<ProductionJob> l : jobListeners) { try { l.accept(job); } catch (Exception ignored) {} }
         return true;
@@ -192,45 +415,87 @@ public class Pedido {
     public synchronized boolean finishJob(int jobId, boolean success) {
         ProductionJob job = jobs.get(jobId);
         if (job == null) return false;
-        if (job.getStatus() != ProductionJob.Status.IN_PROGRESS) return false;
+        if (!job.compareAndSetStatus(ProductionJob.Status.IN_PROGRESS, success ? ProductionJob.Status.DONE : ProductionJob.Status.FAILED)) return false;
+        inProgress--;
         job.setFinishedAt(LocalDateTime.now());
-        job.setStatus(success ? ProductionJob.Status.DONE : ProductionJob.Status.FAILED);
+        job.setAwaitingConfirmation(false);
         // notify listeners
         for (Consumer<ProductionJob> l : jobListeners) { try { l.accept(job); } catch (Exception ignored) {} }
 
-        // After finishing a job, attempt to start the next queued job that can be produced
-        // (iterate in queue order and start the first one with sufficient stock)
-        for (Integer qid : new ArrayList<>(queue)) {
+        // After finishing a job, start the most urgent queued job that can be produced. Jobs found short
+        // on stock are parked on the missing ingredient, so each blocked job is checked once per replenishment
+        // instead of on every finish.
+        while (!queue.isEmpty()) {
+            int qid = queue.peek();
             ProductionJob next = jobs.get(qid);
-            if (next == null) continue;
-            if (next.getStatus() != ProductionJob.Status.QUEUED) continue;
-            Recipe r = next.getRecipe();
-            int qty = next.getQuantity();
+            if (next == null || next.getStatus() != ProductionJob.Status.QUEUED) {
+                queue.remove(qid);
+                continue;
+            }
             try {
-                if (r.canProduce(stock, qty)) {
-                    // startJob will remove it from the queue and notify listeners
-                    boolean started = startJob(qid);
-                    if (started) break; // only start one job now
+                int missing = next.getRecipe().firstMissingIngredient(stock, next.getQuantity());
+                if (missing >= 0) {
+                    park(qid, missing);
+                    continue;
                 }
+                // startJob will remove it from the queue and notify listeners
+                if (startJob(qid)) break; // only start one job now
             } catch (Exception ignored) {
-                // if check or start fails, try next queued job
+                // leave the job queued; it will be retried on the next finish or replenishment
+                break;
             }
         }
 
         return true;
     }
 
+    // Put back a job rebuilt from persisted state without deducting stock again (its deduction is already
+    // in the restored stock). Queued jobs re-enter the priority queue; call resumeQueued() once all jobs
+    // are back. Listeners are not notified: they pick restored jobs up through listJobs().
+    public synchronized void restoreJob(ProductionJob job) {
+        ProductionJob previous = jobs.put(job.getId(), job);
+        if (previous != null && previous.getStatus() == ProductionJob.Status.IN_PROGRESS) inProgress--;
+        if (job.getStatus() == ProductionJob.Status.IN_PROGRESS) inProgress++;
+        nextId = Math.max(nextId, job.getId() + 1);
+        if (job.getStatus() == ProductionJob.Status.QUEUED) queue.add(job.getId(), job.getPriorityKey());
+    }
+
+    // Try to start every queued job in priority order (parking the ones short on stock), e.g. after a restore
+    public synchronized void resumeQueued() {
+        for (Integer qid : queue.toSortedList()) {
+            if (queue.contains(qid)) startOrPark(qid);
+        }
+    }
+
+    // One order of a batch was cancelled: shrink the batch by its quantity instead of cancelling the job
+    // the other orders share. A job serving a single order is cancelled as with cancelJob. Units of a batch
+    // already cooking are not returned to stock.
+    public synchronized boolean cancelJobQuantity(int jobId, int quantity) {
+        ProductionJob job = jobs.get(jobId);
+        if (job == null) return false;
+        if (job.getStatus() == ProductionJob.Status.DONE || job.getStatus() == ProductionJob.Status.FAILED) return false;
+        if (job.getBatchSize() <= 1 || quantity >= job.getQuantity()) return cancelJob(jobId);
+        job.removeFromBatch(quantity);
+        queue.update(jobId, job.getPriorityKey());
+        for (Consumer<ProductionJob> l : jobListeners) { try { l.accept(job); } catch (Exception ignored) {} }
+        return true;
+    }
+
     // Cancel a job (mark FAILED, set note) and notify listeners.
     public synchronized boolean cancelJob(int jobId) {
         ProductionJob job = jobs.get(jobId);
         if (job == null) return false;
         // if already finished, nothing to do
-        if (job.getStatus() == ProductionJob.Status.DONE || job.getStatus() == ProductionJob.Status.FAILED) return false;
+        ProductionJob.Status current = job.getStatus();
+        if (current == ProductionJob.Status.DONE || current == ProductionJob.Status.FAILED) return false;
+        if (!job.compareAndSetStatus(current, ProductionJob.Status.FAILED)) return false;
+        if (current == ProductionJob.Status.IN_PROGRESS) inProgress--;
         job.setFinishedAt(LocalDateTime.now());
-        job.setStatus(ProductionJob.Status.FAILED);
         job.setNote("Cancelled");
-        // remove from queue if present
-        queue.remove((Integer) jobId);
+        // remove from queue / wait list / open batches if present
+        queue.remove(jobId);
+        unpark(jobId);
+        closeBatch(job);
         for (Consumer<ProductionJob> l : jobListeners) { try { l.accept(job); } catch (Exception ignored) {} }
         return true;
     }
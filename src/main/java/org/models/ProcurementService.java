@@ -0,0 +1,257 @@
+package org.models;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.collections.IntObjectMap;
+
+// Purchasing. StockGeneral only raises a reorder signal when a SALIDA leaves an ingredient at or below its
+// reorder point; the signal is queued and handled here on a background thread, off the stock hot path.
+// Signals arriving within a short window are handled together. Ingredients that already have an open
+// order are skipped, and the remaining ones are grouped into one OrdenCompra per supplier. Stock only
+// goes up (ENTRADA) when the delivery is received: automatically after the supplier's lead time, or
+// earlier by hand with receive().
+public class ProcurementService {
+    private static final Logger logger = Logger.getLogger(ProcurementService.class.getName());
+
+    // Default replenishment target: top up to cantidadMinima x REORDER_MULTIPLIER
+    private static final int REORDER_MULTIPLIER = 5;
+    private static final long DEFAULT_BATCH_WINDOW_MILLIS = 2000L;
+    private static final long COVER_MINUTES = 240L;
+
+    private final StockGeneral stock;
+    private final long batchWindowMillis;
+    // copy-on-write: lead times are read from the stock lock (dynamic reorder point) without taking ours
+    private final List<Proveedor> proveedores = new java.util.concurrent.CopyOnWriteArrayList<>();
+    private final Map<Integer, OrdenCompra> ordenes = new LinkedHashMap<>();
+    // ingredient id -> open order that will deliver it (dedup of reorder signals)
+    private final IntObjectMap<OrdenCompra> abiertasPorIngrediente = new IntObjectMap<>();
+    private final List<Consumer<OrdenCompra>> listeners = new ArrayList<>();
+    private int nextId = 1;
+    // Optional demand forecast: dynamic reorder points and order-up-to levels
+    private volatile ConsumptionForecaster forecaster;
+
+    // Reorder signals (ingredient ids) and received deliveries (order ids, negated) for the worker thread
+    private final LinkedBlockingQueue<Integer> eventos = new LinkedBlockingQueue<>();
+    private final TimingWheel entregas = new TimingWheel(1000L);
+    private final Consumer<DetalleIngrediente> reorderListener = s -> eventos.offer(s.getIngrediente().getId());
+    private Thread worker;
+    private volatile boolean running = false;
+    // Where received deliveries are applied to stock: on the worker by default, or the branch's command pipeline
+    private volatile Executor commands = Runnable::run;
+
+    public ProcurementService(StockGeneral stock) {
+        this(stock, DEFAULT_BATCH_WINDOW_MILLIS);
+    }
+
+    public ProcurementService(StockGeneral stock, long batchWindowMillis) {
+        this.stock = stock;
+        this.batchWindowMillis = Math.max(0L, batchWindowMillis);
+    }
+
+    public void addProveedor(Proveedor p) {
+        if (p != null) proveedores.add(p);
+    }
+
+    public List<Proveedor> getProveedores() {
+        return new ArrayList<>(proveedores);
+    }
+
+    public void setCommandExecutor(Executor commands) {
+        this.commands = commands != null ? commands : Runnable::run;
+    }
+
+    public void setForecaster(ConsumptionForecaster forecaster) {
+        this.forecaster = forecaster;
+    }
+
+    // Lead time of the supplier that would deliver the ingredient (minutes; 0 if nobody supplies it)
+    public long getLeadTimeMinutes(int ingredienteId) {
+        Proveedor p = proveedorPara(ingredienteId);
+        return p != null ? p.getLeadTimeMinutes() : 0L;
+    }
+
+    public synchronized void addOrderListener(Consumer<OrdenCompra> l) {
+        if (l != null) listeners.add(l);
+    }
+
+    public synchronized void removeOrderListener(Consumer<OrdenCompra> l) {
+        listeners.remove(l);
+    }
+
+    public synchronized List<OrdenCompra> getOrdenes() {
+        return new ArrayList<>(ordenes.values());
+    }
+
+    // Open order that will deliver the ingredient, or null
+    public synchronized OrdenCompra getOrdenAbierta(int ingredienteId) {
+        return abiertasPorIngrediente.get(ingredienteId);
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        stock.addReorderListener(reorderListener);
+        entregas.start();
+        worker = new Thread(this::run, "procurement");
+        worker.setDaemon(true);
+        worker.start();
+        // ingredients already below minimum at startup
+        stock.getSnapshot().forEach(item -> {
+            if (stock.necesitaReorden(item)) eventos.offer(item.getId());
+        });
+    }
+
+    public void stop() {
+        Thread w;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            w = worker;
+            worker = null;
+        }
+        stock.removeReorderListener(reorderListener);
+        entregas.stop();
+        if (w != null) w.interrupt();
+    }
+
+    // Signal a reorder by hand (e.g. from the UI); handled like a signal from StockGeneral
+    public void solicitarReposicion(int ingredienteId) {
+        eventos.offer(ingredienteId);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Integer first = eventos.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                // let signals of the same burst accumulate so they end up on the same orders
+                if (first > 0 && batchWindowMillis > 0) Thread.sleep(batchWindowMillis);
+                List<Integer> batch = new ArrayList<>();
+                batch.add(first);
+                eventos.drainTo(batch);
+                Set<Integer> signals = new LinkedHashSet<>();
+                for (Integer e : batch) {
+                    if (e < 0) {
+                        int ordenId = -e;
+                        commands.execute(() -> receive(ordenId));
+                    } else {
+                        signals.add(e);
+                    }
+                }
+                if (!signals.isEmpty()) placeOrders(signals);
+            } catch (InterruptedException e) {
+                if (!running) break;
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Procurement cycle failed: {0}", ex.getMessage());
+            }
+        }
+    }
+
+    // One order per supplier for every signalled ingredient that is still low and not already on order
+    private void placeOrders(Set<Integer> ingredientIds) {
+        List<OrdenCompra> nuevas = new ArrayList<>();
+        synchronized (this) {
+            Map<Proveedor, OrdenCompra> porProveedor = new LinkedHashMap<>();
+            LocalDateTime now = LocalDateTime.now();
+            for (Integer ingId : ingredientIds) {
+                if (abiertasPorIngrediente.containsKey(ingId)) continue;
+                DetalleIngrediente s = stock.obtenerStockPorId(ingId);
+                if (s == null || !stock.necesitaReorden(s)) continue;
+                long needed = targetLevel(s) - s.getCantidadBase();
+                if (needed <= 0) continue;
+                Proveedor p = proveedorPara(ingId);
+                if (p == null) {
+                    logger.log(Level.WARNING, "Sin proveedor para el ingrediente {0}", s.getIngrediente().getNombre());
+                    continue;
+                }
+                OrdenCompra oc = porProveedor.computeIfAbsent(p, k -> new OrdenCompra(nextId++, k, now));
+                oc.agregarLinea(ingId, needed);
+                abiertasPorIngrediente.put(ingId, oc);
+            }
+            for (OrdenCompra oc : porProveedor.values()) {
+                ordenes.put(oc.getId(), oc);
+                nuevas.add(oc);
+            }
+        }
+        for (OrdenCompra oc : nuevas) {
+            logger.log(Level.INFO, "Orden de compra emitida: {0}", oc);
+            int id = oc.getId();
+            entregas.schedule(() -> eventos.offer(-id), oc.getProveedor().getLeadTimeMinutes() * 60_000L);
+            notifyListeners(oc);
+        }
+    }
+
+    // Target level to top an ingredient up to when it is reordered. With a forecast, fast-moving items
+    // are ordered up to their reorder point plus COVER_MINUTES of expected use.
+    protected long targetLevel(DetalleIngrediente s) {
+        long base = s.getCantidadMinimaBase() * REORDER_MULTIPLIER;
+        ConsumptionForecaster f = forecaster;
+        return f != null ? Math.max(base, f.getTargetLevel(s, COVER_MINUTES)) : base;
+    }
+
+    private Proveedor proveedorPara(int ingredienteId) {
+        for (Proveedor p : proveedores) {
+            if (p.suministra(ingredienteId)) return p;
+        }
+        return null;
+    }
+
+    // Receive a delivery: apply one ENTRADA per line and close the order. Returns false if the order is
+    // unknown or not pending any more.
+    public boolean receive(int ordenId) {
+        OrdenCompra oc;
+        synchronized (this) {
+            oc = ordenes.get(ordenId);
+            if (oc == null || oc.getEstado() != OrdenCompra.Estado.ENVIADA) return false;
+            oc.setEstado(OrdenCompra.Estado.RECIBIDA);
+            oc.setReceivedAt(LocalDateTime.now());
+            for (Integer ingId : oc.getLineas().keySet()) abiertasPorIngrediente.remove(ingId, oc);
+        }
+        // ENTRADA outside our lock: it wakes jobs waiting for these ingredients
+        for (Map.Entry<Integer, Long> line : oc.getLineas().entrySet()) {
+            try {
+                stock.modificarStockBase(line.getKey(), line.getValue(), TipoMovimiento.ENTRADA);
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "No se pudo registrar la entrada de {0}: {1}", new Object[]{line.getKey(), ex.getMessage()});
+            }
+            // consumption during the lead time may have left it below minimum again
+            DetalleIngrediente s = stock.obtenerStockPorId(line.getKey());
+            if (s != null && stock.necesitaReorden(s)) eventos.offer(line.getKey());
+        }
+        logger.log(Level.INFO, "Orden de compra recibida: {0}", oc);
+        notifyListeners(oc);
+        return true;
+    }
+
+    // Cancel a pending order; its ingredients may be reordered on the next signal
+    public boolean cancel(int ordenId) {
+        OrdenCompra oc;
+        synchronized (this) {
+            oc = ordenes.get(ordenId);
+            if (oc == null || oc.getEstado() != OrdenCompra.Estado.ENVIADA) return false;
+            oc.setEstado(OrdenCompra.Estado.CANCELADA);
+            for (Integer ingId : oc.getLineas().keySet()) abiertasPorIngrediente.remove(ingId, oc);
+        }
+        notifyListeners(oc);
+        return true;
+    }
+
+    private void notifyListeners(OrdenCompra oc) {
+        List<Consumer<OrdenCompra>> snapshot;
+        synchronized (this) { snapshot = new ArrayList<>(listeners); }
+        for (Consumer<OrdenCompra> l : snapshot) {
+            try { l.accept(oc); } catch (Exception ignored) {}
+        }
+    }
+}
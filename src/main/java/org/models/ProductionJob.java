@@ -7,32 +7,123 @@ public class ProductionJob {
 
     private final int id;
     private final Recipe recipe;
-    private final int quantity;
-    private Status status;
+    private int quantity;
+    // Same-recipe batching: how many orders were merged into this job, the quantity of the first one
+    // (cooked at full time) and until when new orders may still join the batch (null = closed)
+    private int batchSize = 1;
+    private int baseQuantity;
+    private LocalDateTime batchOpenUntil;
+    // status + version, changed by compare-and-set (see VersionedState); every other change bumps the version
+    private final VersionedState<Status> status = new VersionedState<>(Status.QUEUED);
     private final LocalDateTime createdAt;
     private LocalDateTime startedAt;
     private LocalDateTime finishedAt;
     private String note;
+    // Scheduling priority: how long the table has been waiting, VIP reservation, explicit rush
+    private LocalDateTime waitingSince;
+    private boolean vip;
+    private boolean rush;
+    // Cooking time elapsed but the kitchen runs in confirm mode: waiting for someone to press Finish
+    private boolean awaitingConfirmation;
+
+    // Boosts subtracted from the waiting timestamp: a rush jumps ~30 minutes ahead, a VIP table ~15
+    private static final long RUSH_BOOST_MILLIS = 30 * 60 * 1000L;
+    private static final long VIP_BOOST_MILLIS = 15 * 60 * 1000L;
+    // Extra units cooked in the same batch only add this fraction of the per-unit time (shared setup)
+    private static final double BATCH_MARGINAL_FACTOR = 0.5;
 
     public ProductionJob(int id, Recipe recipe, int quantity) {
+        this(id, recipe, quantity, LocalDateTime.now());
+    }
+
+    private ProductionJob(int id, Recipe recipe, int quantity, LocalDateTime createdAt) {
         this.id = id;
         this.recipe = recipe;
         this.quantity = quantity;
-        this.status = Status.QUEUED;
-        this.createdAt = LocalDateTime.now();
+        this.baseQuantity = quantity;
+        this.createdAt = createdAt;
+        this.waitingSince = createdAt;
+    }
+
+    // Rebuild a job from persisted state (e.g. a startup snapshot); the batch is restored closed
+    public static ProductionJob restore(int id, Recipe recipe, int quantity, int baseQuantity, int batchSize,
+                                        LocalDateTime createdAt) {
+        ProductionJob job = new ProductionJob(id, recipe, quantity, createdAt);
+        job.baseQuantity = Math.min(baseQuantity, quantity);
+        job.batchSize = Math.max(1, batchSize);
+        return job;
     }
 
     public int getId() { return id; }
     public Recipe getRecipe() { return recipe; }
     public int getQuantity() { return quantity; }
-    public Status getStatus() { return status; }
-    public void setStatus(Status status) { this.status = status; }
+    public Status getStatus() { return status.get(); }
+    public void setStatus(Status status) { this.status.set(status); }
+    public long getVersion() { return status.version(); }
     public LocalDateTime getCreatedAt() { return createdAt; }
     public LocalDateTime getStartedAt() { return startedAt; }
-    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; status.touch(); }
     public LocalDateTime getFinishedAt() { return finishedAt; }
-    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; status.touch(); }
     public String getNote() { return note; }
-    public void setNote(String note) { this.note = note; }
+    public void setNote(String note) { this.note = note; status.touch(); }
+    public LocalDateTime getWaitingSince() { return waitingSince; }
+    public void setWaitingSince(LocalDateTime waitingSince) { this.waitingSince = waitingSince != null ? waitingSince : createdAt; status.touch(); }
+    public boolean isVip() { return vip; }
+    public void setVip(boolean vip) { this.vip = vip; status.touch(); }
+    public boolean isRush() { return rush; }
+    public void setRush(boolean rush) { this.rush = rush; status.touch(); }
+    public boolean isAwaitingConfirmation() { return awaitingConfirmation; }
+    public void setAwaitingConfirmation(boolean awaitingConfirmation) { this.awaitingConfirmation = awaitingConfirmation; status.touch(); }
+
+    // Atomic transition: only succeeds if the job is still in the expected status
+    public boolean compareAndSetStatus(Status expected, Status next) {
+        return status.compareAndSet(expected, next);
+    }
+
+    public int getBatchSize() { return batchSize; }
+    public int getBaseQuantity() { return baseQuantity; }
+    public LocalDateTime getBatchOpenUntil() { return batchOpenUntil; }
+    public void setBatchOpenUntil(LocalDateTime batchOpenUntil) { this.batchOpenUntil = batchOpenUntil; status.touch(); }
+
+    // Merge another order of the same recipe into this job
+    void addToBatch(int qty) {
+        quantity += qty;
+        batchSize++;
+        status.touch();
+    }
+
+    // An order left the batch; the first order's quantity never exceeds what is left
+    void removeFromBatch(int qty) {
+        quantity = Math.max(0, quantity - qty);
+        batchSize = Math.max(1, batchSize - 1);
+        baseQuantity = Math.min(baseQuantity, quantity);
+        status.touch();
+    }
+
+    // Expected cooking time for the whole job: the first order at full time, units merged into the batch
+    // at a marginal rate. For an unbatched job this is tiempoPreparacionMinutos x quantity as before.
+    public long getDurationMinutes() {
+        return durationMinutes(recipe, baseQuantity, quantity - baseQuantity);
+    }
+
+    // Duration this job would have if extraQty more units joined the batch
+    public long getDurationMinutesWith(int extraQty) {
+        return durationMinutes(recipe, baseQuantity, quantity - baseQuantity + extraQty);
+    }
+
+    // Duration of a batch with baseQty units at full time plus extraQty merged units
+    public static long durationMinutes(Recipe recipe, int baseQty, int extraQty) {
+        long perUnit = recipe.getTiempoPreparacionMinutos();
+        return perUnit * baseQty + (long) Math.ceil(perUnit * extraQty * BATCH_MARGINAL_FACTOR);
+    }
+
+    // Queue ordering key (lower = sooner): the older the wait the sooner, minus VIP/rush boosts
+    public long getPriorityKey() {
+        long key = waitingSince.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (vip) key -= VIP_BOOST_MILLIS;
+        if (rush) key -= RUSH_BOOST_MILLIS;
+        return key;
+    }
 }
 
@@ -0,0 +1,162 @@
+package org.models;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+// Drives production jobs by time instead of waiting for someone to press "Finish". Every job that
+// goes IN_PROGRESS gets a completion timer on a TimingWheel (cancelled when the job is finished or
+// cancelled by hand); when it fires the job is either finished automatically or, in confirm mode,
+// flagged for the kitchen to confirm. Open same-recipe batches are released to the kitchen when their
+// window elapses, and a repeating tick also refreshes the ETAs shown on order items.
+public class ProductionScheduler {
+    private static final long DEFAULT_TICK_MILLIS = 1000L;
+    private static final long DEFAULT_ETA_REFRESH_MILLIS = 60_000L;
+
+    private final Pedido pedido;
+    private final TableService tableService; // optional: ETA refresh target
+    private final TimingWheel wheel;
+    private final long etaRefreshMillis;
+    private final Map<Integer, TimingWheel.Timeout> completionTimers = new ConcurrentHashMap<>();
+    private final Map<Integer, TimingWheel.Timeout> batchTimers = new ConcurrentHashMap<>();
+    private volatile boolean autoComplete;
+    private volatile boolean running = false;
+    // Where timer actions run: on the wheel thread by default, or posted to the branch's command pipeline
+    private volatile Executor commands = Runnable::run;
+
+    public ProductionScheduler(Pedido pedido, TableService tableService, boolean autoComplete) {
+        this(pedido, tableService, autoComplete, DEFAULT_TICK_MILLIS, DEFAULT_ETA_REFRESH_MILLIS);
+    }
+
+    public ProductionScheduler(Pedido pedido, TableService tableService, boolean autoComplete,
+                               long tickMillis, long etaRefreshMillis) {
+        this.pedido = pedido;
+        this.tableService = tableService;
+        this.autoComplete = autoComplete;
+        this.wheel = new TimingWheel(tickMillis);
+        this.etaRefreshMillis = etaRefreshMillis;
+        pedido.addJobListener(this::onJobChanged);
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        // pick up jobs that were already cooking before the scheduler started
+        for (ProductionJob j : pedido.listJobs()) onJobChanged(j);
+        wheel.start();
+        if (tableService != null && etaRefreshMillis > 0) wheel.schedule(this::refreshEtas, etaRefreshMillis);
+    }
+
+    public void stop() {
+        running = false;
+        wheel.stop();
+    }
+
+    public void setCommandExecutor(Executor commands) {
+        this.commands = commands != null ? commands : Runnable::run;
+    }
+
+    // Run a command through the command executor once delayMillis have passed (e.g. a table hold coming due)
+    public TimingWheel.Timeout after(Runnable command, long delayMillis) {
+        return wheel.schedule(() -> commands.execute(command), delayMillis);
+    }
+
+    public boolean isAutoComplete() { return autoComplete; }
+
+    // AUTO: finish jobs when their time is up. CONFIRM: only flag them and wait for the kitchen.
+    public void setAutoComplete(boolean autoComplete) { this.autoComplete = autoComplete; }
+
+    public int getPendingTimers() { return completionTimers.size(); }
+
+    // Jobs whose cooking time has elapsed and wait for confirmation (confirm mode)
+    public List<ProductionJob> getJobsAwaitingConfirmation() {
+        List<ProductionJob> res = new ArrayList<>();
+        for (ProductionJob j : pedido.listJobs()) {
+            if (j.getStatus() == ProductionJob.Status.IN_PROGRESS && j.isAwaitingConfirmation()) res.add(j);
+        }
+        return res;
+    }
+
+    // Override: finish a job now regardless of its timer (also confirms a flagged job)
+    public boolean finishNow(int jobId) {
+        return pedido.finishJob(jobId, true);
+    }
+
+    // Override: the job needs more time; its completion moves to extraMinutes from now
+    public boolean extend(int jobId, long extraMinutes) {
+        ProductionJob job = findJob(jobId);
+        if (job == null || job.getStatus() != ProductionJob.Status.IN_PROGRESS) return false;
+        schedule(jobId, Math.max(1L, extraMinutes) * 60_000L);
+        pedido.setAwaitingConfirmation(jobId, false);
+        return true;
+    }
+
+    // Job listener (runs under the Pedido lock): only touches the wheel, never calls back into Pedido
+    private void onJobChanged(ProductionJob job) {
+        if (!running) return;
+        int id = job.getId();
+        if (job.getStatus() != ProductionJob.Status.QUEUED || job.getBatchOpenUntil() == null) {
+            TimingWheel.Timeout bt = batchTimers.remove(id);
+            if (bt != null) wheel.cancel(bt);
+        }
+        switch (job.getStatus()) {
+            case QUEUED -> {
+                LocalDateTime closes = job.getBatchOpenUntil();
+                if (closes == null || batchTimers.containsKey(id)) return;
+                long delay = Math.max(0L, Duration.between(LocalDateTime.now(), closes).toMillis());
+                batchTimers.put(id, wheel.schedule(() -> {
+                    batchTimers.remove(id);
+                    commands.execute(() -> pedido.releaseBatch(id));
+                }, delay));
+            }
+            case IN_PROGRESS -> {
+                if (completionTimers.containsKey(id) || job.isAwaitingConfirmation()) return;
+                long remaining = job.getDurationMinutes() * 60_000L;
+                if (job.getStartedAt() != null) {
+                    remaining -= Duration.between(job.getStartedAt(), LocalDateTime.now()).toMillis();
+                }
+                schedule(id, Math.max(0L, remaining));
+            }
+            case DONE, FAILED -> {
+                TimingWheel.Timeout t = completionTimers.remove(id);
+                if (t != null) wheel.cancel(t);
+            }
+        }
+    }
+
+    private void schedule(int jobId, long delayMillis) {
+        TimingWheel.Timeout t = wheel.schedule(() -> onTimeUp(jobId), delayMillis);
+        TimingWheel.Timeout old = completionTimers.put(jobId, t);
+        if (old != null) wheel.cancel(old);
+    }
+
+    // Runs on the wheel thread; the change itself goes through the command executor
+    private void onTimeUp(int jobId) {
+        completionTimers.remove(jobId);
+        if (autoComplete) {
+            commands.execute(() -> pedido.finishJob(jobId, true));
+        } else {
+            commands.execute(() -> pedido.setAwaitingConfirmation(jobId, true));
+        }
+    }
+
+    private void refreshEtas() {
+        if (!running) return;
+        try {
+            commands.execute(tableService::refreshEstimates);
+        } finally {
+            wheel.schedule(this::refreshEtas, etaRefreshMillis);
+        }
+    }
+
+    private ProductionJob findJob(int jobId) {
+        for (ProductionJob j : pedido.listJobs()) {
+            if (j.getId() == jobId) return j;
+        }
+        return null;
+    }
+}
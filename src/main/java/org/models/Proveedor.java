@@ -0,0 +1,39 @@
+package org.models;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// Supplier: which ingredients it delivers and how long a delivery takes
+public class Proveedor {
+    private final int id;
+    private final String nombre;
+    private final long leadTimeMinutes;
+    // Ingredient ids it supplies; empty = supplies everything (general distributor)
+    private final Set<Integer> ingredientes = new HashSet<>();
+
+    public Proveedor(int id, String nombre, long leadTimeMinutes) {
+        this.id = id;
+        this.nombre = nombre;
+        this.leadTimeMinutes = Math.max(0L, leadTimeMinutes);
+    }
+
+    public Proveedor agregarIngrediente(int ingredienteId) {
+        ingredientes.add(ingredienteId);
+        return this;
+    }
+
+    public boolean suministra(int ingredienteId) {
+        return ingredientes.isEmpty() || ingredientes.contains(ingredienteId);
+    }
+
+    public int getId() { return id; }
+    public String getNombre() { return nombre; }
+    public long getLeadTimeMinutes() { return leadTimeMinutes; }
+    public Set<Integer> getIngredientes() { return Collections.unmodifiableSet(ingredientes); }
+
+    @Override
+    public String toString() {
+        return nombre;
+    }
+}
@@ -1,8 +1,6 @@
 package org.models;
 
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
 import org.exceptions.InvalidQuantityException;
 import org.exceptions.StockNotFoundException;
 import org.exceptions.InsufficientStockException;
@@ -37,39 +35,52 @@ public class Recipe {
     }
 
     public boolean canProduce(StockGeneral stock, int cantidad) {
+        return firstMissingIngredient(stock, cantidad) < 0;
+    }
+
+    // Id of the first ingredient that is missing or short for the given quantity, or -1 if it can be produced
+    public int firstMissingIngredient(StockGeneral stock, int cantidad) {
         for (RecipeIngredient ri : ingredientes) {
-            DetalleIngrediente s = stock.obtenerStockPorId(ri.getIngrediente().getId());
-            if (s == null) return false;
-            double required = ri.getCantidad() * cantidad;
-            if (s.getCantidadActual() < required) return false;
+            int idIng = ri.getIngrediente().getId();
+            DetalleIngrediente s = stock.obtenerStockPorId(idIng);
+            if (s == null || s.getCantidadBase() < ri.getCantidadBase() * cantidad) return idIng;
         }
-        return true;
+        return -1;
     }
 
     public boolean produce(StockGeneral stock, int cantidad) {
         if (!canProduce(stock, cantidad)) return false;
-        Map<Integer, Double> deducted = new HashMap<>();
-        for (RecipeIngredient ri : ingredientes) {
-            int idIng = ri.getIngrediente().getId();
-            double amount = ri.getCantidad() * cantidad;
-            try {
-                Double remaining = stock.registrarMovimiento(idIng, amount, TipoMovimiento.SALIDA);
-                if (remaining == null) {
-                    // treat as failure and rollback
-                    for (Map.Entry<Integer, Double> d : deducted.entrySet()) {
-                        try { stock.registrarMovimiento(d.getKey(), d.getValue(), TipoMovimiento.ENTRADA); } catch (Exception ignored) {}
-                    }
-                    return false;
-                }
-                deducted.put(idIng, amount);
-            } catch (InsufficientStockException | StockNotFoundException | InvalidQuantityException | MovementNotSupportedException ex) {
-                // rollback previous deductions
-                for (Map.Entry<Integer, Double> d : deducted.entrySet()) {
-                    try { stock.registrarMovimiento(d.getKey(), d.getValue(), TipoMovimiento.ENTRADA); } catch (Exception ignored) {}
-                }
-                return false;
+        try {
+            deductIngredients(stock, cantidad);
+            return true;
+        } catch (InsufficientStockException | StockNotFoundException | InvalidQuantityException | MovementNotSupportedException ex) {
+            return false;
+        }
+    }
+
+    // Deduct every ingredient for the given quantity in base units. If one deduction fails, the ones
+    // already applied are returned to stock and the exception is rethrown. Rollback bookkeeping uses
+    // primitive arrays, so nothing is boxed per ingredient.
+    public void deductIngredients(StockGeneral stock, int cantidad)
+            throws InsufficientStockException, StockNotFoundException, InvalidQuantityException, MovementNotSupportedException {
+        int n = ingredientes.size();
+        int[] ids = new int[n];
+        long[] amounts = new long[n];
+        int done = 0;
+        try {
+            for (RecipeIngredient ri : ingredientes) {
+                int idIng = ri.getIngrediente().getId();
+                long amount = ri.getCantidadBase() * cantidad;
+                stock.modificarStockBase(idIng, amount, TipoMovimiento.SALIDA);
+                ids[done] = idIng;
+                amounts[done] = amount;
+                done++;
+            }
+        } catch (InsufficientStockException | StockNotFoundException | InvalidQuantityException | MovementNotSupportedException ex) {
+            for (int i = 0; i < done; i++) {
+                try { stock.modificarStockBase(ids[i], amounts[i], TipoMovimiento.ENTRADA); } catch (Exception ignored) {}
             }
+            throw ex;
         }
-        return true;
     }
 }
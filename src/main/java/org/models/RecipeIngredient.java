@@ -1,16 +1,27 @@
 package org.models;
 
+import org.exceptions.InvalidQuantityException;
+
 // Small helper linking an Ingrediente with the quantity required in a recipe
 public class RecipeIngredient {
     private final Ingrediente ingrediente;
     private final double cantidad; // in the unidad of the ingrediente
+    private final long cantidadBase; // same quantity in base units, precomputed for stock arithmetic
 
+    // Stock is counted in whole base units, so a quantity has to be at least one of them (1 g, 1 ml or
+    // 1 unit): anything smaller would round to 0 and every deduction for the recipe would be rejected
     public RecipeIngredient(Ingrediente ingrediente, double cantidad) {
+        Magnitud m = ingrediente.getUnidadMedida();
+        long base = m.toBase(cantidad);
+        if (base < 1) {
+            throw new InvalidQuantityException("Cantidad de " + ingrediente.getNombre() + " menor que 1 " + m.getSimboloBase() + ": " + cantidad + " " + m);
+        }
         this.ingrediente = ingrediente;
         this.cantidad = cantidad;
+        this.cantidadBase = base;
     }
 
     public Ingrediente getIngrediente() { return ingrediente; }
     public double getCantidad() { return cantidad; }
+    public long getCantidadBase() { return cantidadBase; }
 }
-
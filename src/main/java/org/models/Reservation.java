@@ -8,14 +8,15 @@ public class Reservation {
     private final int guests;
     private final LocalDateTime when;
     private Integer tableId; // nullable until assigned
-    private ReservationStatus status;
+    // status + version, changed by compare-and-set (see VersionedState)
+    private final VersionedState<ReservationStatus> status = new VersionedState<>(ReservationStatus.PENDING);
+    private boolean vip; // VIP bookings get their kitchen orders prioritized once seated
 
     public Reservation(int id, String customerName, int guests, LocalDateTime when) {
         this.id = id;
         this.customerName = customerName;
         this.guests = guests;
         this.when = when;
-        this.status = ReservationStatus.PENDING;
     }
 
     public int getId() { return id; }
@@ -23,8 +24,16 @@ public class Reservation {
     public int getGuests() { return guests; }
     public LocalDateTime getWhen() { return when; }
     public Integer getTableId() { return tableId; }
-    public void setTableId(Integer tableId) { this.tableId = tableId; }
-    public ReservationStatus getStatus() { return status; }
-    public void setStatus(ReservationStatus status) { this.status = status; }
+    public void setTableId(Integer tableId) { this.tableId = tableId; status.touch(); }
+    public ReservationStatus getStatus() { return status.get(); }
+    public void setStatus(ReservationStatus status) { this.status.set(status); }
+    public boolean isVip() { return vip; }
+    public void setVip(boolean vip) { this.vip = vip; status.touch(); }
+    public long getVersion() { return status.version(); }
+
+    // Atomic transition: only succeeds if the reservation is still in the expected status
+    public boolean compareAndSetStatus(ReservationStatus expected, ReservationStatus next) {
+        return status.compareAndSet(expected, next);
+    }
 }
 
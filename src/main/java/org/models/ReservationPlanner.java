@@ -0,0 +1,322 @@
+package org.models;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+// Assigns a whole service window of reservations to tables at once instead of one booking at a time.
+// Every booking holds its table for diningMinutes from its time (interval scheduling); each one goes to the
+// smallest table that fits and is free for that interval, preferring the table whose previous booking ends
+// closest before it so the evening does not get fragmented (best-fit bin packing). The result depends on the
+// order bookings are placed in, so several orders (by time, largest parties first, VIP first and seeded
+// shuffles) are tried in parallel, each followed by a repair pass that moves one booking to free a table
+// for one that was left out. The best plan seats the most guests, then the most bookings, then wastes
+// the fewest seats.
+public class ReservationPlanner {
+    public static final long DEFAULT_DINING_MINUTES = 120L;
+    private static final int SHUFFLED_CANDIDATES = 60;
+
+    private final long diningMinutes;
+
+    public ReservationPlanner() {
+        this(DEFAULT_DINING_MINUTES);
+    }
+
+    public ReservationPlanner(long diningMinutes) {
+        if (diningMinutes <= 0) throw new IllegalArgumentException("La duración debe ser mayor que 0");
+        this.diningMinutes = diningMinutes;
+    }
+
+    public long getDiningMinutes() { return diningMinutes; }
+
+    // Outcome of planning: reservation id -> table id for the bookings that fit, and the ones that did not,
+    // plus the dining length the plan was computed with (a plan only holds for bookings of that length)
+    public record Plan(Map<Integer, Integer> assignments, List<Integer> unassigned, int seatedGuests,
+                       int wastedSeats, int candidatesTried, long diningMinutes) {}
+
+    // Plan 'toPlace' on 'mesas'. 'fixed' bookings keep the table they already have (e.g. parties seated)
+    // and only block it for their interval.
+    public Plan plan(Collection<Reservation> toPlace, Collection<Reservation> fixed, Collection<Mesa> mesas) {
+        return plan(toPlace, fixed, mesas, Map.of());
+    }
+
+    // Same, with tables taken right now by someone without a booking (walk-ins): table id -> until when it
+    // is expected to stay taken. Such a table takes no booking that starts before then.
+    public Plan plan(Collection<Reservation> toPlace, Collection<Reservation> fixed, Collection<Mesa> mesas,
+                     Map<Integer, LocalDateTime> busyUntil) {
+        Problem p = new Problem(toPlace, fixed, mesas, busyUntil);
+        List<int[]> orders = candidateOrders(p);
+        Candidate best = IntStream.range(0, orders.size()).parallel()
+                .mapToObj(i -> p.solve(orders.get(i)))
+                .reduce((a, b) -> a.betterThan(b) ? a : b)
+                .orElse(null);
+        Map<Integer, Integer> assignments = new LinkedHashMap<>();
+        List<Integer> unassigned = new ArrayList<>();
+        if (best != null) {
+            for (int i = 0; i < p.n; i++) {
+                if (best.table[i] >= 0) assignments.put(p.resId[i], p.mesaId[best.table[i]]);
+                else unassigned.add(p.resId[i]);
+            }
+        }
+        return new Plan(assignments, unassigned, best != null ? best.guests : 0, best != null ? best.waste : 0, orders.size(), diningMinutes);
+    }
+
+    private List<int[]> candidateOrders(Problem p) {
+        Integer[] base = new Integer[p.n];
+        for (int i = 0; i < p.n; i++) base[i] = i;
+        List<int[]> res = new ArrayList<>();
+        Comparator<Integer> byStart = Comparator.comparingLong(i -> p.start[i]);
+        Comparator<Integer> bySizeDesc = Comparator.comparingInt((Integer i) -> -p.guests[i]);
+        Comparator<Integer> vipFirst = Comparator.comparing((Integer i) -> !p.vip[i]);
+        res.add(sorted(base, byStart.thenComparing(bySizeDesc)));
+        res.add(sorted(base, bySizeDesc.thenComparing(byStart)));
+        res.add(sorted(base, vipFirst.thenComparing(byStart).thenComparing(bySizeDesc)));
+        res.add(sorted(base, vipFirst.thenComparing(bySizeDesc).thenComparing(byStart)));
+        // shuffles of the size-first order: parties of similar size trade places
+        int[] bySize = res.get(1);
+        for (int s = 0; s < SHUFFLED_CANDIDATES && p.n > 1; s++) {
+            Random rnd = new Random(31L * s + p.n);
+            int[] o = bySize.clone();
+            for (int k = 0; k < o.length; k++) {
+                int j = Math.min(o.length - 1, k + rnd.nextInt(Math.min(8, o.length)));
+                int t = o[k]; o[k] = o[j]; o[j] = t;
+            }
+            res.add(o);
+        }
+        return res;
+    }
+
+    private static int[] sorted(Integer[] base, Comparator<Integer> cmp) {
+        Integer[] copy = base.clone();
+        Arrays.sort(copy, cmp);
+        int[] res = new int[copy.length];
+        for (int i = 0; i < copy.length; i++) res[i] = copy[i];
+        return res;
+    }
+
+    private static long minutes(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC) / 60L;
+    }
+
+    // Immutable input shared by all candidates (bookings and tables as parallel arrays)
+    private final class Problem {
+        final int n;
+        final int[] resId, guests;
+        final long[] start, end;
+        final boolean[] vip;
+        final int[] mesaId, capacidad; // tables sorted by capacity, then id
+        final List<List<long[]>> fixedBusy = new ArrayList<>();
+
+        Problem(Collection<Reservation> toPlace, Collection<Reservation> fixed, Collection<Mesa> mesas,
+                Map<Integer, LocalDateTime> busyUntil) {
+            List<Reservation> rs = new ArrayList<>();
+            for (Reservation r : toPlace) if (r.getWhen() != null) rs.add(r);
+            n = rs.size();
+            resId = new int[n]; guests = new int[n]; start = new long[n]; end = new long[n]; vip = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                Reservation r = rs.get(i);
+                resId[i] = r.getId();
+                guests[i] = r.getGuests();
+                start[i] = minutes(r.getWhen());
+                end[i] = start[i] + diningMinutes;
+                vip[i] = r.isVip();
+            }
+            List<Mesa> ms = new ArrayList<>(mesas);
+            ms.sort(Comparator.comparingInt(Mesa::getCapacidad).thenComparingInt(Mesa::getId));
+            mesaId = new int[ms.size()];
+            capacidad = new int[ms.size()];
+            Map<Integer, Integer> index = new java.util.HashMap<>();
+            for (int t = 0; t < ms.size(); t++) {
+                mesaId[t] = ms.get(t).getId();
+                capacidad[t] = ms.get(t).getCapacidad();
+                index.put(mesaId[t], t);
+                fixedBusy.add(new ArrayList<>());
+            }
+            if (fixed != null) {
+                for (Reservation r : fixed) {
+                    Integer t = r.getTableId() != null ? index.get(r.getTableId()) : null;
+                    if (t == null || r.getWhen() == null) continue;
+                    long s = minutes(r.getWhen());
+                    fixedBusy.get(t).add(new long[]{s, s + diningMinutes});
+                }
+            }
+            busyUntil.forEach((id, until) -> {
+                Integer t = index.get(id);
+                // open start: bookings already due are blocked too
+                if (t != null && until != null) fixedBusy.get(t).add(new long[]{Long.MIN_VALUE / 4, minutes(until)});
+            });
+            // candidates look only at the nearest interval before a start, so fixed ones must not overlap
+            for (int t = 0; t < fixedBusy.size(); t++) fixedBusy.set(t, merged(fixedBusy.get(t)));
+        }
+
+        private static List<long[]> merged(List<long[]> ivs) {
+            if (ivs.size() < 2) return ivs;
+            ivs.sort(Comparator.comparingLong(iv -> iv[0]));
+            List<long[]> res = new ArrayList<>();
+            long[] cur = ivs.get(0).clone();
+            for (int i = 1; i < ivs.size(); i++) {
+                long[] iv = ivs.get(i);
+                if (iv[0] < cur[1]) {
+                    cur[1] = Math.max(cur[1], iv[1]);
+                } else {
+                    res.add(cur);
+                    cur = iv.clone();
+                }
+            }
+            res.add(cur);
+            return res;
+        }
+
+        // First table index whose capacity fits the party
+        int firstFitting(int g) {
+            int lo = 0, hi = capacidad.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (capacidad[mid] < g) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        Candidate solve(int[] order) {
+            Candidate c = new Candidate(this);
+            for (int i : order) c.place(i);
+            c.repair();
+            return c;
+        }
+    }
+
+    // One plan under construction: per table, its bookings by start time (start -> booking index, -1 = fixed)
+    private static final class Candidate {
+        final Problem p;
+        final int[] table;
+        final List<TreeMap<Long, long[]>> busy = new ArrayList<>(); // start -> {end, booking index}
+        int guests, seated, waste;
+
+        Candidate(Problem p) {
+            this.p = p;
+            this.table = new int[p.n];
+            Arrays.fill(table, -1);
+            for (List<long[]> fixed : p.fixedBusy) {
+                TreeMap<Long, long[]> m = new TreeMap<>();
+                for (long[] iv : fixed) m.put(iv[0], new long[]{iv[1], -1});
+                busy.add(m);
+            }
+        }
+
+        boolean isFree(int t, long s, long e) {
+            TreeMap<Long, long[]> m = busy.get(t);
+            Map.Entry<Long, long[]> before = m.floorEntry(s);
+            if (before != null && before.getValue()[0] > s) return false;
+            Map.Entry<Long, long[]> after = m.ceilingEntry(s);
+            return after == null || after.getKey() >= e;
+        }
+
+        // Minutes the table stays idle right before this booking (smaller = tighter packing)
+        long gapBefore(int t, long s) {
+            Map.Entry<Long, long[]> before = busy.get(t).floorEntry(s);
+            return before == null ? Long.MAX_VALUE / 4 : s - before.getValue()[0];
+        }
+
+        // Best-fit: smallest capacity tier with a free table, the tightest table within the tier
+        void place(int i) {
+            int t = bestTable(i, -1);
+            if (t >= 0) assign(i, t);
+        }
+
+        int bestTable(int i, int exclude) {
+            int from = p.firstFitting(p.guests[i]);
+            int best = -1;
+            long bestGap = Long.MAX_VALUE;
+            for (int t = from; t < p.capacidad.length; t++) {
+                if (best >= 0 && p.capacidad[t] != p.capacidad[best]) break;
+                if (t == exclude || !isFree(t, p.start[i], p.end[i])) continue;
+                long gap = gapBefore(t, p.start[i]);
+                if (best < 0 || gap < bestGap) { best = t; bestGap = gap; }
+            }
+            return best;
+        }
+
+        void assign(int i, int t) {
+            busy.get(t).put(p.start[i], new long[]{p.end[i], i});
+            table[i] = t;
+            guests += p.guests[i];
+            seated++;
+            waste += p.capacidad[t] - p.guests[i];
+        }
+
+        void unassign(int i) {
+            int t = table[i];
+            busy.get(t).remove(p.start[i]);
+            table[i] = -1;
+            guests -= p.guests[i];
+            seated--;
+            waste -= p.capacidad[t] - p.guests[i];
+        }
+
+        // For each booking left out: find a table where a single movable booking is in the way and
+        // move that booking to another table that is free for it
+        void repair() {
+            for (int i = 0; i < p.n; i++) {
+                if (table[i] >= 0) continue;
+                for (int t = p.firstFitting(p.guests[i]); t < p.capacidad.length && table[i] < 0; t++) {
+                    int blocker = singleBlocker(t, p.start[i], p.end[i]);
+                    if (blocker < 0) continue;
+                    unassign(blocker);
+                    int other = bestTable(blocker, t);
+                    if (other >= 0) {
+                        assign(blocker, other);
+                        assign(i, t);
+                    } else {
+                        assign(blocker, t);
+                    }
+                }
+            }
+        }
+
+        // The only booking overlapping [s, e) on table t, if there is exactly one and it is not fixed
+        int singleBlocker(int t, long s, long e) {
+            TreeMap<Long, long[]> m = busy.get(t);
+            List<long[]> overlapping = new ArrayList<>(2);
+            Map.Entry<Long, long[]> before = m.floorEntry(s);
+            if (before != null && before.getValue()[0] > s) overlapping.add(before.getValue());
+            for (long[] v : m.subMap(s, false, e, false).values()) {
+                overlapping.add(v);
+                if (overlapping.size() > 1) return -1;
+            }
+            if (overlapping.size() != 1) return -1;
+            return (int) overlapping.get(0)[1]; // -1 when the blocker is fixed
+        }
+
+        boolean betterThan(Candidate o) {
+            if (guests != o.guests) return guests > o.guests;
+            if (seated != o.seated) return seated > o.seated;
+            return waste < o.waste;
+        }
+    }
+
+    // Reservations of a window that the planner may (re)place: pending or confirmed ones starting in [from, to)
+    public static List<Reservation> placeable(Collection<Reservation> all, LocalDateTime from, LocalDateTime to) {
+        List<Reservation> res = new ArrayList<>();
+        for (Reservation r : all) {
+            if (r.getWhen() == null || r.getWhen().isBefore(from) || !r.getWhen().isBefore(to)) continue;
+            if (r.getStatus() == ReservationStatus.PENDING || r.getStatus() == ReservationStatus.CONFIRMED) res.add(r);
+        }
+        return res;
+    }
+
+    // Seated parties block their table; they are never moved
+    public static List<Reservation> seated(Collection<Reservation> all) {
+        List<Reservation> res = new ArrayList<>();
+        for (Reservation r : all) if (r.getStatus() == ReservationStatus.SEATED && r.getTableId() != null) res.add(r);
+        return res;
+    }
+}
@@ -1,24 +1,71 @@
 package org.models;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Collection;
 import java.util.Optional;
+import org.collections.IntObjectMap;
 import org.exceptions.ReservationNotFoundException;
 import org.exceptions.TableNotFoundException;
 
 public class ReservationService {
-    private final Map<Integer, Reservation> reservations = new HashMap<>();
+    private final IntObjectMap<Reservation> reservations = new IntObjectMap<>();
     private int nextId = 1;
     private final TableService tableService;
+    // How long a booking holds its table from the reserved time
+    private long turnMinutes = ReservationPlanner.DEFAULT_DINING_MINUTES;
+    // Runs a task after a delay in millis (the branch's timing wheel); null: holds only change on requests
+    private volatile java.util.function.ObjLongConsumer<Runnable> holdTimer = null;
 
     public ReservationService(TableService tableService) {
         this.tableService = tableService;
+        tableService.setTurnMinutes(turnMinutes);
+    }
+
+    public synchronized long getTurnMinutes() { return turnMinutes; }
+
+    public synchronized void setTurnMinutes(long turnMinutes) {
+        if (turnMinutes <= 0) throw new IllegalArgumentException("La duración debe ser mayor que 0");
+        this.turnMinutes = turnMinutes;
+        tableService.setTurnMinutes(turnMinutes);
+    }
+
+    // Timer used to put a table on hold when its booking comes within a turn and to lift the hold once the
+    // slot is over, without waiting for someone to touch the reservation
+    public void setHoldTimer(java.util.function.ObjLongConsumer<Runnable> holdTimer) {
+        this.holdTimer = holdTimer;
+    }
+
+    private java.time.LocalDateTime endOf(Reservation r) {
+        return r.getWhen().plusMinutes(turnMinutes);
+    }
+
+    private static boolean holdsSlot(Reservation r) {
+        ReservationStatus st = r.getStatus();
+        return st == ReservationStatus.PENDING || st == ReservationStatus.CONFIRMED || st == ReservationStatus.SEATED;
+    }
+
+    // Status changes are compare-and-set from the status they were decided on, so a booking cancelled or
+    // seated in the meantime (or restored/imported outside this lock) is not silently overwritten
+    private static boolean moveTo(Reservation r, ReservationStatus next, ReservationStatus... from) {
+        ReservationStatus cur = r.getStatus();
+        for (ReservationStatus f : from) {
+            if (f == cur) return r.compareAndSetStatus(cur, next);
+        }
+        return false;
+    }
+
+    private static boolean assignable(Reservation r) {
+        ReservationStatus st = r.getStatus();
+        return st == ReservationStatus.PENDING || st == ReservationStatus.CONFIRMED;
     }
 
     public synchronized Reservation createReservation(String customer, int guests, java.time.LocalDateTime when) {
+        return createReservation(customer, guests, when, false);
+    }
+
+    public synchronized Reservation createReservation(String customer, int guests, java.time.LocalDateTime when, boolean vip) {
         int id = nextId++;
         Reservation r = new Reservation(id, customer, guests, when);
+        r.setVip(vip);
         reservations.put(id, r);
         return r;
     }
@@ -27,80 +74,309 @@ public class ReservationService {
         return reservations.values();
     }
 
+    // Copy taken under the lock, safe to iterate from another thread
+    public synchronized java.util.List<Reservation> listAll() {
+        return new java.util.ArrayList<>(reservations.values());
+    }
+
+    // Take the next reservation id for a booking built elsewhere (e.g. an imported one without id)
+    public synchronized int allocateId() {
+        return nextId++;
+    }
+
+    // Put back a reservation rebuilt from persisted state
+    public synchronized void restoreReservation(Reservation r) {
+        reservations.put(r.getId(), r);
+        nextId = Math.max(nextId, r.getId() + 1);
+        if (r.getTableId() != null && r.getWhen() != null && holdsSlot(r)) {
+            try {
+                if (!tableService.bookTable(r.getTableId(), r.getId(), r.getWhen(), endOf(r))) r.setTableId(null);
+            } catch (TableNotFoundException tnfe) {
+                r.setTableId(null);
+            }
+            if (r.getTableId() != null && assignable(r)) track(r, r.getTableId());
+        }
+    }
+
+    // Free tables for a party during [start, start + turn), smallest first
+    public java.util.List<Mesa> findFreeTables(java.time.LocalDateTime start, int guests) {
+        return tableService.findFreeTables(start, start.plusMinutes(getTurnMinutes()), guests);
+    }
+
     public synchronized Optional<Reservation> findById(int id) {
         return Optional.ofNullable(reservations.get(id));
     }
 
-    // Try to assign an available table to the reservation; returns assigned table id or null
+    // Try to assign a table that is free during the reservation's slot; returns assigned table id or null.
+    // The table is only blocked for [when, when + turn), so it can take other seatings that night.
     public synchronized Integer assignTableForReservation(int reservationId) {
         Reservation r = reservations.get(reservationId);
         if (r == null) return null;
         if (r.getTableId() != null) return r.getTableId();
-        Optional<Mesa> opt = tableService.findAvailableTable(r.getGuests());
-        if (opt.isPresent()) {
-            Mesa m = opt.get();
+        if (r.getWhen() == null || !assignable(r)) return null;
+        for (Mesa m : tableService.findFreeTables(r.getWhen(), endOf(r), r.getGuests())) {
             try {
-                boolean ok = tableService.assignTable(m.getId());
-                if (ok) {
-                    r.setTableId(m.getId());
-                    r.setStatus(ReservationStatus.CONFIRMED);
-                    return m.getId();
-                }
+                // another terminal may book the same slot between the query and here
+                if (!tableService.bookTable(m.getId(), r.getId(), r.getWhen(), endOf(r))) continue;
             } catch (TableNotFoundException tnfe) {
-                // Should not happen: table came from tableService; log or ignore
+                continue;
+            }
+            if (!moveTo(r, ReservationStatus.CONFIRMED, ReservationStatus.PENDING, ReservationStatus.CONFIRMED)) {
+                tableService.releaseBooking(m.getId(), r.getId());
                 return null;
             }
+            r.setTableId(m.getId());
+            track(r, m.getId());
+            return m.getId();
         }
         return null;
     }
 
+    // A booking was placed on the table: update its hold now and schedule the hold to start when the booking
+    // comes within a turn and to be re-checked when its slot ends. Slots are kept in whole minutes, so the
+    // hold starts on the first whole minute after when - turn. Timers are not cancelled when the booking
+    // moves or is cancelled; refreshHold looks at the table as it is then, so a stale one is harmless.
+    private void track(Reservation r, int mesaId) {
+        refreshHold(mesaId);
+        java.util.function.ObjLongConsumer<Runnable> timer = holdTimer;
+        if (timer == null) return;
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        java.time.LocalDateTime due = r.getWhen().minusMinutes(turnMinutes).truncatedTo(java.time.temporal.ChronoUnit.MINUTES).plusMinutes(1);
+        for (java.time.LocalDateTime at : new java.time.LocalDateTime[]{due, endOf(r)}) {
+            if (at.isAfter(now)) {
+                timer.accept(() -> { synchronized (this) { refreshHold(mesaId); } }, java.time.Duration.between(now, at).toMillis());
+            }
+        }
+    }
+
+    // Re-check every table and schedule the holds of every booking (e.g. after a warm start or once the
+    // timer is wired)
+    public synchronized void refreshHolds() {
+        for (Reservation r : reservations.values()) {
+            if (r.getTableId() != null && r.getWhen() != null && assignable(r)) track(r, r.getTableId());
+        }
+        for (int mesaId : tableService.getMesas().keySet()) refreshHold(mesaId);
+    }
+
+    // Drop the reservation's slot and table; a RESERVADA table goes back to LIBRE if no other booking is due
+    private void detach(Reservation r) {
+        Integer mesaId = r.getTableId();
+        if (mesaId == null) return;
+        tableService.releaseBooking(mesaId, r.getId());
+        r.setTableId(null);
+        refreshHold(mesaId);
+    }
+
     public synchronized boolean cancelReservation(int reservationId) {
         Reservation r = reservations.get(reservationId);
         if (r == null) return false;
-        r.setStatus(ReservationStatus.CANCELLED);
+        boolean seated = r.getStatus() == ReservationStatus.SEATED;
+        if (!moveTo(r, ReservationStatus.CANCELLED, ReservationStatus.PENDING, ReservationStatus.CONFIRMED, ReservationStatus.SEATED)) {
+            return false;
+        }
         if (r.getTableId() != null) {
-            try { tableService.releaseTable(r.getTableId()); } catch (TableNotFoundException ignored) {}
-            r.setTableId(null);
+            int mesaId = r.getTableId();
+            detach(r);
+            if (seated) {
+                try { tableService.releaseTable(mesaId); } catch (TableNotFoundException ignored) {}
+            }
         }
         return true;
     }
 
+    // The table was released (party left or table cleared): end the booking that was using it. A booking
+    // that has not started yet keeps its table; the table is held again when it comes due.
+    public synchronized void releaseTableBooking(int tableId) {
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        findByTableId(tableId)
+                .filter(r -> r.getStatus() == ReservationStatus.SEATED || !r.getWhen().isAfter(now))
+                .ifPresent(this::detach);
+    }
+
     public synchronized boolean seatReservation(int reservationId) {
         Reservation r = reservations.get(reservationId);
         if (r == null) return false;
-        if (r.getTableId() == null) return false;
+        if (r.getTableId() == null || !assignable(r)) return false;
+        // the previous seating of that table has to leave first
+        Optional<Reservation> current = findByTableId(r.getTableId());
+        if (current.isPresent() && current.get() != r && current.get().getStatus() == ReservationStatus.SEATED) return false;
+        ReservationStatus before = r.getStatus();
+        if (!r.compareAndSetStatus(before, ReservationStatus.SEATED)) return false;
         try {
-            boolean ok = tableService.occupyTable(r.getTableId());
-            if (ok) {
-                r.setStatus(ReservationStatus.SEATED);
+            if (tableService.occupyTable(r.getTableId(), r.getId())) {
+                // orders from a VIP party jump ahead in the production queue
+                tableService.setVipTable(r.getTableId(), r.isVip());
                 return true;
             }
-            return false;
+        } catch (TableNotFoundException ignored) {
+            // falls through to undo the status change
+        }
+        r.compareAndSetStatus(ReservationStatus.SEATED, before);
+        return false;
+    }
+
+    // Best table plan for the pending and confirmed bookings starting in [from, to) with this service's turn
+    // length, the only plan applyPlan accepts; nothing is changed
+    public ReservationPlanner.Plan planWindow(java.time.LocalDateTime from, java.time.LocalDateTime to) {
+        return planWindow(from, to, new ReservationPlanner(getTurnMinutes()));
+    }
+
+    // Same with any planner, e.g. to see what a different dining length would give
+    public ReservationPlanner.Plan planWindow(java.time.LocalDateTime from, java.time.LocalDateTime to, ReservationPlanner planner) {
+        java.util.List<Reservation> all = listAll();
+        java.util.List<Reservation> toPlace = ReservationPlanner.placeable(all, from, to);
+        // bookings outside the window keep their table and block it like seated parties
+        java.util.Set<Integer> placing = new java.util.HashSet<>();
+        for (Reservation r : toPlace) placing.add(r.getId());
+        java.util.List<Reservation> fixed = new java.util.ArrayList<>();
+        for (Reservation r : all) {
+            if (r.getTableId() != null && holdsSlot(r) && !placing.contains(r.getId())) fixed.add(r);
+        }
+        // a table in use now is taken for (at least) one more turn, whoever sits there
+        java.util.Map<Integer, java.time.LocalDateTime> busy = new java.util.HashMap<>();
+        java.time.LocalDateTime freeAt = java.time.LocalDateTime.now().plusMinutes(getTurnMinutes());
+        for (Mesa m : tableService.getMesas().values()) {
+            if (m.getEstado() == TableStatus.OCUPADA) busy.put(m.getId(), freeAt);
+        }
+        return planner.plan(toPlace, fixed, tableService.getMesas().values(), busy);
+    }
+
+    // Apply a plan: planned bookings get their table and are CONFIRMED; bookings the plan left out go back
+    // to PENDING without a table. Every table whose bookings changed gets its RESERVADA hold updated at the
+    // end (held if a booking is now due within a turn, released if not). Returns how many bookings got a table.
+    // The plan must have been made with the turn length bookings are held for here: a plan for another length
+    // does not fit the slots it would be booked into, so it is rejected instead of silently dropping bookings.
+    // A planned booking whose table can't be booked after all keeps the slot it had before the plan.
+    public synchronized int applyPlan(ReservationPlanner.Plan plan) {
+        if (plan.diningMinutes() != turnMinutes) {
+            throw new IllegalArgumentException("El plan usa turnos de " + plan.diningMinutes()
+                    + " minutos y las reservas se sostienen " + turnMinutes);
+        }
+        java.util.Set<Integer> touched = new java.util.HashSet<>();
+        // table each planned booking had before, to give it back if its planned table can't be booked
+        java.util.Map<Integer, Integer> previous = new java.util.HashMap<>();
+        // free every slot the plan covers first, so bookings can swap tables
+        java.util.List<Reservation> planned = new java.util.ArrayList<>();
+        for (Integer id : plan.assignments().keySet()) {
+            Reservation r = reservations.get(id);
+            if (r == null || r.getWhen() == null) continue;
+            ReservationStatus st = r.getStatus();
+            if (st != ReservationStatus.PENDING && st != ReservationStatus.CONFIRMED) continue;
+            if (r.getTableId() != null) {
+                tableService.releaseBooking(r.getTableId(), r.getId());
+                touched.add(r.getTableId());
+                previous.put(r.getId(), r.getTableId());
+            }
+            planned.add(r);
+        }
+        for (Integer id : plan.unassigned()) {
+            Reservation r = reservations.get(id);
+            if (r == null) continue;
+            ReservationStatus st = r.getStatus();
+            if (st != ReservationStatus.PENDING && st != ReservationStatus.CONFIRMED) continue;
+            if (r.getTableId() != null) touched.add(r.getTableId());
+            if (r.compareAndSetStatus(st, ReservationStatus.PENDING)) detach(r);
+        }
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        int applied = 0;
+        for (Reservation r : planned) {
+            int mesaId = plan.assignments().get(r.getId());
+            Mesa mesa = tableService.getMesas().get(mesaId);
+            boolean booked;
+            if (mesa == null || (mesa.getEstado() == TableStatus.OCUPADA && r.getWhen().isBefore(now.plusMinutes(turnMinutes)))) {
+                // the table got taken by a walk-in since the plan was made
+                booked = false;
+            } else {
+                try {
+                    booked = tableService.bookTable(mesaId, r.getId(), r.getWhen(), endOf(r));
+                } catch (TableNotFoundException tnfe) {
+                    booked = false;
+                }
+            }
+            if (!booked) {
+                // a booking outside the planned window holds that slot (or a walk-in took the table):
+                // go back to the previous table if it is still free, else wait without one
+                Integer prev = previous.get(r.getId());
+                if (prev != null && rebook(r, prev)) continue;
+                r.setTableId(null);
+                r.compareAndSetStatus(r.getStatus(), ReservationStatus.PENDING);
+                continue;
+            }
+            if (!moveTo(r, ReservationStatus.CONFIRMED, ReservationStatus.PENDING, ReservationStatus.CONFIRMED)) {
+                tableService.releaseBooking(mesaId, r.getId());
+                r.setTableId(null);
+                continue;
+            }
+            r.setTableId(mesaId);
+            touched.add(mesaId);
+            track(r, mesaId);
+            applied++;
+        }
+        for (int mesaId : touched) refreshHold(mesaId);
+        return applied;
+    }
+
+    // Put a booking back on the table it had; false if that slot has been taken meanwhile
+    private boolean rebook(Reservation r, int mesaId) {
+        try {
+            if (!tableService.bookTable(mesaId, r.getId(), r.getWhen(), endOf(r))) return false;
         } catch (TableNotFoundException tnfe) {
             return false;
         }
+        r.setTableId(mesaId);
+        track(r, mesaId);
+        return true;
+    }
+
+    // RESERVADA while some booking of the table starts within one turn from now, LIBRE otherwise; tables
+    // in use are left alone
+    private void refreshHold(int mesaId) {
+        Mesa m = tableService.getMesas().get(mesaId);
+        if (m == null) return;
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        boolean due = !m.isFreeBetween(now, now.plusMinutes(turnMinutes));
+        try {
+            if (due && m.getEstado() == TableStatus.LIBRE) tableService.assignTable(mesaId);
+            else if (!due && m.getEstado() == TableStatus.RESERVADA) tableService.releaseHold(mesaId);
+        } catch (TableNotFoundException ignored) {
+            // table removed meanwhile
+        }
     }
 
-    // Find a reservation that has the given tableId assigned
+    // The reservation currently using the table: the party seated there, otherwise the next booking that
+    // has not finished yet (a table can hold several bookings a night)
     public synchronized java.util.Optional<Reservation> findByTableId(int tableId) {
-        return reservations.values().stream().filter(r -> r.getTableId() != null && r.getTableId() == tableId).findFirst();
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        Reservation next = null;
+        for (Reservation r : reservations.values()) {
+            if (r.getTableId() == null || r.getTableId() != tableId) continue;
+            if (r.getStatus() == ReservationStatus.SEATED) return Optional.of(r);
+            if (!holdsSlot(r) || r.getWhen() == null) continue;
+            if (!endOf(r).isAfter(now)) continue;
+            if (next == null || r.getWhen().isBefore(next.getWhen())) next = r;
+        }
+        return Optional.ofNullable(next);
     }
 
-    // Assign a specific table to a reservation (if table is free). Returns true if assigned.
+    // Assign a specific table to a reservation if it fits the party and is free for its slot. Returns true if assigned.
     public synchronized boolean assignTableToReservation(int reservationId, int tableId) throws ReservationNotFoundException {
         Reservation r = reservations.get(reservationId);
         if (r == null) throw new ReservationNotFoundException("Reservation ID " + reservationId + " not found");
         Mesa m = tableService.getMesas().get(tableId);
-        if (m == null) return false;
-        if (m.getEstado() != TableStatus.LIBRE) return false;
+        if (m == null || r.getWhen() == null || !assignable(r)) return false;
+        if (m.getCapacidad() < r.getGuests()) return false;
         try {
-            boolean ok = tableService.assignTable(tableId);
-            if (!ok) return false;
-            r.setTableId(tableId);
-            r.setStatus(ReservationStatus.CONFIRMED);
-            return true;
+            if (!tableService.bookTable(tableId, r.getId(), r.getWhen(), endOf(r))) return false;
         } catch (TableNotFoundException tnfe) {
             return false;
         }
+        if (!moveTo(r, ReservationStatus.CONFIRMED, ReservationStatus.PENDING, ReservationStatus.CONFIRMED)) {
+            if (!Integer.valueOf(tableId).equals(r.getTableId())) tableService.releaseBooking(tableId, r.getId());
+            return false;
+        }
+        if (r.getTableId() != null && r.getTableId() != tableId) tableService.releaseBooking(r.getTableId(), r.getId());
+        r.setTableId(tableId);
+        track(r, tableId);
+        return true;
     }
 }
@@ -0,0 +1,136 @@
+package org.models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Mergeable partial aggregate of sales. Each worker builds one for its slice of history
+// (typically one day) and the slices are combined with merge(), so a report can be computed
+// in parallel and the result does not depend on how the work was split.
+public class SalesSummary {
+    private double revenue;
+    private int tickets;
+    private long items;
+    private final double[] revenueByHour = new double[24];
+    private final Map<Integer, DishTotals> dishes = new HashMap<>();
+    private final Map<Integer, Integer> ticketsPerTable = new HashMap<>();
+    private final Set<LocalDate> days = new HashSet<>();
+
+    // Per-recipe totals (recipe id 0 groups lines not linked to a recipe)
+    public static class DishTotals {
+        private final int recipeId;
+        private String nombre;
+        private long quantity;
+        private double revenue;
+
+        DishTotals(int recipeId, String nombre) {
+            this.recipeId = recipeId;
+            this.nombre = nombre;
+        }
+
+        public int getRecipeId() { return recipeId; }
+        public String getNombre() { return nombre; }
+        public long getQuantity() { return quantity; }
+        public double getRevenue() { return revenue; }
+    }
+
+    // Record one ticket (invoice header)
+    public void addTicket(LocalDate day, int hour, int tableId, double total) {
+        tickets++;
+        revenue += total;
+        if (hour >= 0 && hour < 24) revenueByHour[hour] += total;
+        ticketsPerTable.merge(tableId, 1, Integer::sum);
+        days.add(day);
+    }
+
+    // Record one invoice line
+    public void addLine(int recipeId, String nombre, int quantity, double lineTotal) {
+        items += quantity;
+        DishTotals d = dishes.computeIfAbsent(recipeId, k -> new DishTotals(recipeId, nombre));
+        if (d.nombre == null) d.nombre = nombre;
+        d.quantity += quantity;
+        d.revenue += lineTotal;
+    }
+
+    // Fold a whole Factura (in-memory history)
+    public static SalesSummary of(Factura f) {
+        SalesSummary s = new SalesSummary();
+        s.addTicket(f.getIssuedAt().toLocalDate(), f.getIssuedAt().getHour(), f.getTableId(), f.getTotal());
+        for (OrderItem oi : f.getItems()) {
+            int rid = oi.getRecipeId() != null ? oi.getRecipeId() : 0;
+            s.addLine(rid, oi.getName(), oi.getQuantity(), oi.getUnitPrice() * oi.getQuantity());
+        }
+        return s;
+    }
+
+    // Combine another partial aggregate into this one and return this
+    public SalesSummary merge(SalesSummary other) {
+        if (other == null || other == this) return this;
+        revenue += other.revenue;
+        tickets += other.tickets;
+        items += other.items;
+        for (int h = 0; h < 24; h++) revenueByHour[h] += other.revenueByHour[h];
+        for (DishTotals od : other.dishes.values()) {
+            DishTotals d = dishes.computeIfAbsent(od.recipeId, k -> new DishTotals(od.recipeId, od.nombre));
+            if (d.nombre == null) d.nombre = od.nombre;
+            d.quantity += od.quantity;
+            d.revenue += od.revenue;
+        }
+        other.ticketsPerTable.forEach((table, n) -> ticketsPerTable.merge(table, n, Integer::sum));
+        days.addAll(other.days);
+        return this;
+    }
+
+    public double getRevenue() { return revenue; }
+    public int getTickets() { return tickets; }
+    public long getItems() { return items; }
+    public int getDays() { return days.size(); }
+
+    public double getAverageTicket() {
+        return tickets == 0 ? 0.0 : revenue / tickets;
+    }
+
+    public double[] getRevenueByHour() {
+        return revenueByHour.clone();
+    }
+
+    // Dishes ordered by quantity sold (ties by revenue)
+    public List<DishTotals> getTopDishes(int limit) {
+        List<DishTotals> list = new ArrayList<>(dishes.values());
+        list.sort((a, b) -> {
+            int c = Long.compare(b.quantity, a.quantity);
+            return c != 0 ? c : Double.compare(b.revenue, a.revenue);
+        });
+        return list.size() > limit ? new ArrayList<>(list.subList(0, limit)) : list;
+    }
+
+    public Map<Integer, Integer> getTicketsPerTable() {
+        return Collections.unmodifiableMap(ticketsPerTable);
+    }
+
+    // Average number of seatings (tickets) per table per trading day
+    public double getTableTurnover() {
+        if (ticketsPerTable.isEmpty() || days.isEmpty()) return 0.0;
+        return (double) tickets / (ticketsPerTable.size() * (double) days.size());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Ventas: ").append(String.format("%.2f", revenue))
+          .append(" | Tickets: ").append(tickets)
+          .append(" | Ticket promedio: ").append(String.format("%.2f", getAverageTicket()))
+          .append(" | Rotación mesas/día: ").append(String.format("%.2f", getTableTurnover()))
+          .append('\n');
+        for (DishTotals d : getTopDishes(5)) {
+            sb.append("  ").append(d.nombre).append(": ").append(d.quantity)
+              .append(" (").append(String.format("%.2f", d.revenue)).append(")\n");
+        }
+        return sb.toString();
+    }
+}
@@ -8,18 +8,38 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.function.Consumer;
+import org.collections.IntObjectMap;
+import org.collections.IntSet;
 import org.exceptions.InvalidQuantityException;
 import org.exceptions.StockNotFoundException;
 import org.exceptions.InsufficientStockException;
 import org.exceptions.MovementNotSupportedException;
 
 public class StockGeneral {
-    private final HashMap<Integer, DetalleIngrediente> inventario;
+    private final IntObjectMap<DetalleIngrediente> inventario;
     private final List<Consumer<DetalleIngrediente>> listeners = new ArrayList<>();
+    // Notified (outside the stock lock) when an ingredient's quantity goes up, so blocked consumers can retry
+    private final List<Consumer<DetalleIngrediente>> replenishListeners = new ArrayList<>();
+    // Notified (outside the stock lock) when a SALIDA leaves an ingredient at or below its minimum.
+    // Replenishment is a purchase order handled elsewhere (ProcurementService), not an inline top-up.
+    private final List<Consumer<DetalleIngrediente>> reorderListeners = new ArrayList<>();
+    // Every applied ENTRADA/SALIDA, outside the lock (e.g. consumption forecasting)
+    private final List<MovimientoListener> movimientoListeners = new ArrayList<>();
+    // Quantity (base units) at or below which an ingredient needs reordering; null = its fixed cantidadMinima
+    private volatile java.util.function.ToLongFunction<DetalleIngrediente> reorderPoint = null;
+    // Immutable view republished after every change; read without the lock (see InventorySnapshot)
+    private volatile InventorySnapshot snapshot = InventorySnapshot.EMPTY;
+    // Ingredients currently at or below their reorder point, kept up to date on every change so low-stock
+    // views cost O(low items) instead of a scan of the catalog
+    private final IntSet bajoUmbral = new IntSet();
+    // Notified (outside the lock) only when an ingredient crosses its reorder point, in either direction
+    private final List<UmbralListener> umbralListeners = new ArrayList<>();
+    // True while a batch change (see aplicarConteo) notifies the stock listeners; guarded by the lock
+    private boolean enLote = false;
     private static final Logger logger = Logger.getLogger(StockGeneral.class.getName());
 
     public StockGeneral() {
-        this.inventario = new HashMap<>();
+        this.inventario = new IntObjectMap<>();
     }
 
     // Listener registration so external UI or services can react to stock changes
@@ -31,25 +51,271 @@ public class StockGeneral {
         listeners.remove(listener);
     }
 
+    // Asked by stock listeners: the change belongs to a batch whose records the caller saves in one
+    // transaction, so per-change persistence can skip it
+    public synchronized boolean isEnLote() {
+        return enLote;
+    }
+
     private synchronized void notifyListeners(DetalleIngrediente stock) {
         for (Consumer<DetalleIngrediente> l : new ArrayList<>(listeners)) {
             try { l.accept(stock); } catch (Exception ignored) {}
         }
     }
 
-    public synchronized void agregarStock(DetalleIngrediente stock) {
+    public synchronized void addReplenishListener(Consumer<DetalleIngrediente> listener) {
+        if (listener != null) replenishListeners.add(listener);
+    }
+
+    public synchronized void removeReplenishListener(Consumer<DetalleIngrediente> listener) {
+        replenishListeners.remove(listener);
+    }
+
+    // Called without holding this lock so listeners may take their own locks (e.g. Pedido) safely
+    private void notifyReplenished(DetalleIngrediente stock) {
+        List<Consumer<DetalleIngrediente>> snapshot;
+        synchronized (this) { snapshot = new ArrayList<>(replenishListeners); }
+        for (Consumer<DetalleIngrediente> l : snapshot) {
+            try { l.accept(stock); } catch (Exception ignored) {}
+        }
+    }
+
+    public synchronized void addReorderListener(Consumer<DetalleIngrediente> listener) {
+        if (listener != null) reorderListeners.add(listener);
+    }
+
+    public synchronized void removeReorderListener(Consumer<DetalleIngrediente> listener) {
+        reorderListeners.remove(listener);
+    }
+
+    // Reorder signal, also raised without holding this lock
+    private void notifyReorder(DetalleIngrediente stock) {
+        List<Consumer<DetalleIngrediente>> snapshot;
+        synchronized (this) { snapshot = new ArrayList<>(reorderListeners); }
+        for (Consumer<DetalleIngrediente> l : snapshot) {
+            try { l.accept(stock); } catch (Exception ignored) {}
+        }
+    }
+
+    @FunctionalInterface
+    public interface MovimientoListener {
+        // cantidadBase in base units of the ingredient (g, ml, units)
+        void onMovimiento(DetalleIngrediente stock, long cantidadBase, TipoMovimiento tipo);
+    }
+
+    public synchronized void addMovimientoListener(MovimientoListener listener) {
+        if (listener != null) movimientoListeners.add(listener);
+    }
+
+    public synchronized void removeMovimientoListener(MovimientoListener listener) {
+        movimientoListeners.remove(listener);
+    }
+
+    private void notifyMovimiento(DetalleIngrediente stock, long cantidad, TipoMovimiento tipo) {
+        List<MovimientoListener> snapshot;
+        synchronized (this) { snapshot = new ArrayList<>(movimientoListeners); }
+        for (MovimientoListener l : snapshot) {
+            try { l.onMovimiento(stock, cantidad, tipo); } catch (Exception ignored) {}
+        }
+    }
+
+    public interface UmbralListener {
+        // The ingredient went down to or below its reorder point
+        void onBajoUmbral(DetalleIngrediente stock);
+        // The ingredient is back above its reorder point
+        void onRecuperado(DetalleIngrediente stock);
+    }
+
+    public synchronized void addUmbralListener(UmbralListener listener) {
+        if (listener != null) umbralListeners.add(listener);
+    }
+
+    public synchronized void removeUmbralListener(UmbralListener listener) {
+        umbralListeners.remove(listener);
+    }
+
+    private void notifyUmbral(DetalleIngrediente stock, boolean bajo) {
+        List<UmbralListener> snapshot;
+        synchronized (this) { snapshot = new ArrayList<>(umbralListeners); }
+        for (UmbralListener l : snapshot) {
+            try {
+                if (bajo) l.onBajoUmbral(stock); else l.onRecuperado(stock);
+            } catch (Exception ignored) {}
+        }
+    }
+
+    // Replace the fixed minimum with a dynamic reorder point (null restores cantidadMinima). The low-stock
+    // set is re-evaluated once for the whole inventory.
+    public void setReorderPoint(java.util.function.ToLongFunction<DetalleIngrediente> reorderPoint) {
+        List<DetalleIngrediente> bajaron = new ArrayList<>();
+        List<DetalleIngrediente> recuperados = new ArrayList<>();
+        synchronized (this) {
+            this.reorderPoint = reorderPoint;
+            for (DetalleIngrediente s : inventario.values()) {
+                int cruce = publicar(s);
+                if ((cruce & CRUZO_UMBRAL) != 0) bajaron.add(s);
+                else if ((cruce & RECUPERADO) != 0) recuperados.add(s);
+            }
+        }
+        for (DetalleIngrediente s : bajaron) notifyUmbral(s, true);
+        for (DetalleIngrediente s : recuperados) notifyUmbral(s, false);
+    }
+
+    // Reorder point in base units (lock-free: the function is volatile and the forecaster has its own lock)
+    public long getReorderPoint(DetalleIngrediente stock) {
+        return reorderPoint != null ? reorderPoint.applyAsLong(stock) : stock.getCantidadMinimaBase();
+    }
+
+    // True when the ingredient is at or below its (possibly dynamic) reorder point
+    public synchronized boolean necesitaReorden(DetalleIngrediente stock) {
+        return stock.getCantidadBase() <= getReorderPoint(stock);
+    }
+
+    // Same check against a snapshot item, without taking the lock
+    public boolean necesitaReorden(InventorySnapshot.Item item) {
+        return item.getCantidadBase() <= getReorderPoint(item.getDetalle());
+    }
+
+    // Latest published inventory view: no locking or copying for the reader
+    public InventorySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // Ids of the ingredients at or below their reorder point (as of their last change)
+    public synchronized int[] getBajoUmbral() {
+        return bajoUmbral.toArray();
+    }
+
+    // Side effects of a change that must be signalled once the lock is released (bit flags)
+    private static final int REPUESTO = 1;
+    private static final int BAJO_MINIMO = 2;
+    private static final int CRUZO_UMBRAL = 4;
+    private static final int RECUPERADO = 8;
+
+    // Under the lock: update the low-stock set and publish the new snapshot. Returns CRUZO_UMBRAL or
+    // RECUPERADO when the ingredient crossed its reorder point, 0 otherwise.
+    private int publicar(DetalleIngrediente stock) {
         int id = stock.getIngrediente().getId();
-        inventario.put(id, stock);
-        logger.log(Level.INFO, "Agregado al inventario: {0}", stock.getIngrediente().getNombre());
-        notifyListeners(stock);
+        boolean bajo = necesitaReorden(stock);
+        snapshot = snapshot.with(stock, bajo);
+        if (bajo) return bajoUmbral.add(id) ? CRUZO_UMBRAL : 0;
+        return bajoUmbral.remove(id) ? RECUPERADO : 0;
+    }
+
+    public void agregarStock(DetalleIngrediente stock) {
+        int cruce;
+        synchronized (this) {
+            int id = stock.getIngrediente().getId();
+            inventario.put(id, stock);
+            cruce = publicar(stock);
+            logger.log(Level.INFO, "Agregado al inventario: {0}", stock.getIngrediente().getNombre());
+            notifyListeners(stock);
+        }
+        if (cruce != 0) notifyUmbral(stock, cruce == CRUZO_UMBRAL);
+        notifyReplenished(stock);
     }
 
     public synchronized DetalleIngrediente obtenerStockPorId(int ingredienteId) {
         return inventario.get(ingredienteId);
     }
 
-    // Throws exceptions on error conditions
-    public synchronized void modificarStock(int ingredienteId, double cantidad, TipoMovimiento tipo)
+    // Throws exceptions on error conditions. cantidad is in the ingredient's own unit and is converted to
+    // base units once; prefer modificarStockBase on hot paths.
+    public void modificarStock(int ingredienteId, double cantidad, TipoMovimiento tipo)
+            throws InvalidQuantityException, StockNotFoundException, InsufficientStockException, MovementNotSupportedException {
+        modificarStockBase(ingredienteId, toBase(ingredienteId, cantidad), tipo);
+    }
+
+    // Same as modificarStock with the quantity already in base units (g, ml, units)
+    public void modificarStockBase(int ingredienteId, long cantidadBase, TipoMovimiento tipo)
+            throws InvalidQuantityException, StockNotFoundException, InsufficientStockException, MovementNotSupportedException {
+        moverBase(ingredienteId, cantidadBase, tipo);
+    }
+
+    // Applies the movement and signals it; the result carries the quantity left by this movement
+    private Movimiento moverBase(int ingredienteId, long cantidadBase, TipoMovimiento tipo) {
+        Movimiento m = aplicarMovimiento(ingredienteId, cantidadBase, tipo);
+        senalar(m.stock(), cantidadBase, tipo, m.efecto());
+        return m;
+    }
+
+    // Signals of an applied movement, sent once the lock is released
+    private void senalar(DetalleIngrediente stock, long cantidadBase, TipoMovimiento tipo, int efecto) {
+        notifyMovimiento(stock, cantidadBase, tipo);
+        if ((efecto & CRUZO_UMBRAL) != 0) notifyUmbral(stock, true);
+        else if ((efecto & RECUPERADO) != 0) notifyUmbral(stock, false);
+        if ((efecto & REPUESTO) != 0) notifyReplenished(stock);
+        else if ((efecto & BAJO_MINIMO) != 0) notifyReorder(stock);
+    }
+
+    private record Ajuste(DetalleIngrediente stock, long delta, int efecto) {}
+
+    // Outcome of aplicarMovimiento: base quantity right after the movement plus the signals to send
+    private record Movimiento(DetalleIngrediente stock, long restanteBase, int efecto) {}
+
+    // Physical count: each ingredient (id -> counted quantity in base units) is set to what was counted, all
+    // under one lock hold, as an ENTRADA or SALIDA of the difference. Everything is checked before anything
+    // changes, so a bad entry leaves the inventory as it was. Stock listeners see the changes with isEnLote()
+    // true; the caller saves the returned records (the ones that changed) in one batch.
+    public List<DetalleIngrediente> aplicarConteo(Map<Integer, Long> conteosBase)
+            throws InvalidQuantityException, StockNotFoundException {
+        List<Ajuste> ajustes = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Integer, Long> e : conteosBase.entrySet()) {
+                if (e.getValue() == null || e.getValue() < 0) {
+                    throw new InvalidQuantityException("Cantidad inválida para ID " + e.getKey() + ": " + e.getValue());
+                }
+                if (inventario.get(e.getKey()) == null) {
+                    throw new StockNotFoundException("Ingrediente ID " + e.getKey() + " no existe en el inventario.");
+                }
+            }
+            enLote = true;
+            try {
+                for (Map.Entry<Integer, Long> e : conteosBase.entrySet()) {
+                    DetalleIngrediente stock = inventario.get(e.getKey());
+                    long delta = e.getValue() - stock.getCantidadBase();
+                    if (delta == 0) continue;
+                    int efecto;
+                    if (delta > 0) {
+                        stock.registrarEntradaBase(delta);
+                        efecto = REPUESTO | publicar(stock);
+                    } else {
+                        stock.registrarSalidaBase(-delta);
+                        int cruce = publicar(stock);
+                        efecto = (bajoUmbral.contains(e.getKey()) ? BAJO_MINIMO : 0) | cruce;
+                    }
+                    ajustes.add(new Ajuste(stock, delta, efecto));
+                    notifyListeners(stock);
+                }
+            } finally {
+                enLote = false;
+            }
+            logger.log(Level.INFO, "Conteo aplicado: {0} de {1} ingredientes ajustados", new Object[]{ajustes.size(), conteosBase.size()});
+        }
+        List<DetalleIngrediente> cambiados = new ArrayList<>(ajustes.size());
+        for (Ajuste a : ajustes) {
+            senalar(a.stock(), Math.abs(a.delta()), a.delta() > 0 ? TipoMovimiento.ENTRADA : TipoMovimiento.SALIDA, a.efecto());
+            cambiados.add(a.stock());
+        }
+        return cambiados;
+    }
+
+    private long toBase(int ingredienteId, double cantidad) throws InvalidQuantityException, StockNotFoundException {
+        if (cantidad <= 0) {
+            logger.log(Level.WARNING, "Cantidad inválida: {0}", cantidad);
+            throw new InvalidQuantityException("Cantidad inválida: " + cantidad);
+        }
+        DetalleIngrediente stock = obtenerStockPorId(ingredienteId);
+        if (stock == null) {
+            logger.log(Level.WARNING, "Ingrediente ID {0} no existe en el inventario.", ingredienteId);
+            throw new StockNotFoundException("Ingrediente ID " + ingredienteId + " no existe en el inventario.");
+        }
+        return stock.getIngrediente().getUnidadMedida().toBase(cantidad);
+    }
+
+    // Applies the movement under the lock and reports what has to be signalled afterwards, together with
+    // the resulting quantity read while still holding the lock
+    private synchronized Movimiento aplicarMovimiento(int ingredienteId, long cantidad, TipoMovimiento tipo)
             throws InvalidQuantityException, StockNotFoundException, InsufficientStockException, MovementNotSupportedException {
         if (cantidad <= 0) {
             logger.log(Level.WARNING, "Cantidad inválida: {0}", cantidad);
@@ -60,34 +326,29 @@ public class StockGeneral {
             logger.log(Level.WARNING, "Ingrediente ID {0} no existe en el inventario.", ingredienteId);
             throw new StockNotFoundException("Ingrediente ID " + ingredienteId + " no existe en el inventario.");
         }
+        String unidad = stock.getIngrediente().getUnidadMedida().getSimboloBase();
 
         switch (tipo) {
             case ENTRADA:
-                stock.registrarEntrada(cantidad);
-                logger.log(Level.INFO, "ENTRADA {0} {1}", new Object[]{cantidad, stock.getIngrediente().getUnidadMedida()});
+                stock.registrarEntradaBase(cantidad);
+                int cruceEntrada = publicar(stock);
+                logger.log(Level.INFO, "ENTRADA {0} {1}", new Object[]{cantidad, unidad});
                 notifyListeners(stock);
-                return;
+                return new Movimiento(stock, stock.getCantidadBase(), REPUESTO | cruceEntrada);
             case SALIDA:
-                if (stock.getCantidadActual() >= cantidad) {
-                    stock.registrarSalida(cantidad);
-                    logger.log(Level.INFO, "SALIDA {0} {1}", new Object[]{cantidad, stock.getIngrediente().getUnidadMedida()});
-
-                    // Automatic reorder: if after the salida the stock is at or below minimum, place a replenishment
-                    if (stock.necesitaReorden()) {
-                        try {
-                            autoReorder(stock);
-                        } catch (Exception ex) {
-                            logger.log(Level.SEVERE, "Auto-reorder failed for {0}: {1}", new Object[]{stock.getIngrediente().getNombre(), ex.getMessage()});
-                        }
-                    }
-
-                    // Notify listeners after any change (including auto-reorder that may have happened)
+                if (stock.getCantidadBase() >= cantidad) {
+                    stock.registrarSalidaBase(cantidad);
+                    int cruceSalida = publicar(stock);
+                    logger.log(Level.INFO, "SALIDA {0} {1}", new Object[]{cantidad, unidad});
                     notifyListeners(stock);
 
-                    return;
+                    // At or below the reorder point: signal a reorder once the lock is released
+                    return new Movimiento(stock, stock.getCantidadBase(),
+                            (bajoUmbral.contains(ingredienteId) ? BAJO_MINIMO : 0) | cruceSalida);
                 } else {
-                    logger.log(Level.WARNING, "Stock insuficiente para ID {0}: falta {1}", new Object[]{ingredienteId, (cantidad - stock.getCantidadActual())});
-                    throw new InsufficientStockException("Stock insuficiente para ID " + ingredienteId + ": falta " + (cantidad - stock.getCantidadActual()));
+                    long falta = cantidad - stock.getCantidadBase();
+                    logger.log(Level.WARNING, "Stock insuficiente para ID {0}: falta {1} {2}", new Object[]{ingredienteId, falta, unidad});
+                    throw new InsufficientStockException("Stock insuficiente para ID " + ingredienteId + ": falta " + falta + " " + unidad);
                 }
             default:
                 logger.log(Level.WARNING, "Tipo de movimiento no soportado: {0}", tipo);
@@ -95,36 +356,24 @@ public class StockGeneral {
         }
     }
 
-    // Simple auto-reorder implementation: top up to (cantidad_minima * REORDER_MULTIPLIER)
-    private static final int REORDER_MULTIPLIER = 5;
-
-    private void autoReorder(DetalleIngrediente stock) {
-        int min = stock.getCantidadMinima();
-        double current = stock.getCantidadActual();
-        double target = min * REORDER_MULTIPLIER;
-        double needed = target - current;
-        if (needed <= 0) {
-            // Nothing to do
-            logger.log(Level.INFO, "Auto-reorder not needed for {0}. current={1}, target={2}", new Object[]{stock.getIngrediente().getNombre(), current, target});
-            return;
-        }
-
-        // In a real system this would create a purchase order; here we simulate immediate replenishment
-        stock.registrarEntrada(needed);
-        logger.log(Level.INFO, "AUTO-REORDER: Replenished {0} by {1} {2} (new qty={3})",
-                new Object[]{stock.getIngrediente().getNombre(), needed, stock.getIngrediente().getUnidadMedida(), stock.getCantidadActual()});
-        // notify after simulated replenishment
-        notifyListeners(stock);
+    // Not synchronized as a whole so replenishment listeners run outside the lock (see modificarStock)
+    public Double registrarMovimiento(int ingredienteId, double cantidad, TipoMovimiento tipo)
+            throws InvalidQuantityException, StockNotFoundException, InsufficientStockException, MovementNotSupportedException {
+        Movimiento m = moverBase(ingredienteId, toBase(ingredienteId, cantidad), tipo);
+        return m.stock().getIngrediente().getUnidadMedida().fromBase(m.restanteBase());
     }
 
-    public synchronized Double registrarMovimiento(int ingredienteId, double cantidad, TipoMovimiento tipo)
+    // Base-unit variant: returns the remaining quantity in base units as left by this movement (not re-read
+    // after the lock, so a concurrent movement can't leak into the result)
+    public long registrarMovimientoBase(int ingredienteId, long cantidadBase, TipoMovimiento tipo)
             throws InvalidQuantityException, StockNotFoundException, InsufficientStockException, MovementNotSupportedException {
-        modificarStock(ingredienteId, cantidad, tipo);
-        DetalleIngrediente s = obtenerStockPorId(ingredienteId);
-        return s != null ? s.getCantidadActual() : null;
+        return moverBase(ingredienteId, cantidadBase, tipo).restanteBase();
     }
 
-    public synchronized Map<Integer, DetalleIngrediente> getInventario() {
-        return Collections.unmodifiableMap(new HashMap<>(inventario));
+    // Copy of the inventory map; readers that only look should prefer getSnapshot()
+    public Map<Integer, DetalleIngrediente> getInventario() {
+        Map<Integer, DetalleIngrediente> res = new HashMap<>();
+        snapshot.forEach(item -> res.put(item.getId(), item.getDetalle()));
+        return Collections.unmodifiableMap(res);
     }
 }
\ No newline at end of file
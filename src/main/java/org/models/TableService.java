@@ -1,137 +1,318 @@
 package org.models;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
+import org.collections.IntObjectMap;
+import org.collections.IntSet;
 import org.exceptions.TableNotFoundException;
+import org.exceptions.TableUnavailableException;
 
 public class TableService {
-    private final Map<Integer, Mesa> mesas = new HashMap<>();
+    private final IntObjectMap<Mesa> mesas = new IntObjectMap<>();
     // Orders per table
-    private final Map<Integer, List<OrderItem>> orders = new HashMap<>();
+    private final IntObjectMap<List<OrderItem>> orders = new IntObjectMap<>();
+    // When each table started waiting (first order since it was last cleared) and which tables seat VIPs;
+    // both feed the production queue priority
+    private final IntObjectMap<java.time.LocalDateTime> waitingSince = new IntObjectMap<>();
+    private final IntSet vipTables = new IntSet();
+    // Running tab per table, maintained incrementally alongside orders
+    private final IntObjectMap<TableTab> tabs = new IntObjectMap<>();
 
     // Simple listeners notified when orders change
     private final List<Runnable> orderListeners = new ArrayList<>();
+    // Listeners told which table's orders changed
+    private final List<java.util.function.IntConsumer> tableOrderListeners = new ArrayList<>();
+    // Listeners notified after a table changes state (seated, reserved, released)
+    private final List<java.util.function.Consumer<Mesa>> tableListeners = new ArrayList<>();
+    // Listeners notified when a bill is settled (e.g. to persist the sale)
+    private final List<java.util.function.Consumer<Factura>> settleListeners = new ArrayList<>();
 
     // Optional production integration
     private Pedido productionService = null;
     private Menu menu = null;
+    // Optional stream of order line changes for remote displays
+    private ChangeFeed changeFeed = null;
+    // How long a party seated now keeps the table; a booking starting within it keeps walk-ins off
+    // (set by ReservationService so both use the same turn)
+    private volatile long turnMinutes = ReservationPlanner.DEFAULT_DINING_MINUTES;
 
-    public synchronized void setProductionIntegration(Pedido productionService, Menu menu) {
-        this.productionService = productionService;
-        this.menu = menu;
+    public void setProductionIntegration(Pedido productionService, Menu menu) {
+        synchronized (this) {
+            this.productionService = productionService;
+            this.menu = menu;
+        }
 
         // register a listener so when jobs update we refresh order ETAs
         productionService.addJobListener(job -> {
             // update matching order items for this job
+            IntSet changed = new IntSet();
             synchronized (this) {
                 java.time.LocalDateTime now = java.time.LocalDateTime.now();
-                for (List<OrderItem> list : orders.values()) {
-                    for (OrderItem oi : list) {
+                orders.forEach((mesaId, items) -> {
+                    TableTab tab = tabs.get(mesaId);
+                    for (OrderItem oi : items) {
                         Integer pid = oi.getProductionJobId();
                         if (pid != null && pid.equals(job.getId())) {
+                            EstadoPedido estadoAntes = oi.getEstado();
+                            Long etaAntes = oi.getEstimatedMinutes();
                             switch (job.getStatus()) {
                                 case IN_PROGRESS -> {
                                     if (job.getStartedAt() != null) {
-                                        long dur = (long) job.getRecipe().getTiempoPreparacionMinutos() * (long) job.getQuantity();
+                                        long dur = job.getDurationMinutes();
                                         long elapsed = java.time.Duration.between(job.getStartedAt(), now).toMinutes();
                                         long remaining = Math.max(0L, dur - elapsed);
                                         oi.setEstimatedMinutes(remaining);
                                     }
-                                    oi.setEstado(EstadoPedido.IN_PROGRESS);
+                                    setEstado(tab, oi, EstadoPedido.IN_PROGRESS);
                                 }
                                 case DONE -> {
                                     oi.setEstimatedMinutes(0L);
-                                    oi.setEstado(EstadoPedido.DONE);
+                                    setEstado(tab, oi, EstadoPedido.DONE);
                                 }
                                 case QUEUED -> {
                                     // queued -> mark as queued
-                                    oi.setEstado(EstadoPedido.QUEUED);
+                                    setEstado(tab, oi, EstadoPedido.QUEUED);
                                 }
                                 case FAILED -> {
                                     // map failed jobs to CANCELLED for orders (cancellations and failures)
                                     oi.setEstimatedMinutes(null);
-                                    oi.setEstado(EstadoPedido.CANCELLED);
+                                    setEstado(tab, oi, EstadoPedido.CANCELLED);
                                 }
                             }
+                            if (oi.getEstado() != estadoAntes || !java.util.Objects.equals(etaAntes, oi.getEstimatedMinutes())) {
+                                publish(mesaId, oi);
+                                changed.add(mesaId);
+                            }
                         }
                     }
-                }
+                });
             }
-            notifyOrderListeners();
+            notifyOrderListeners(changed.toArray());
         });
     }
 
+    public synchronized void setChangeFeed(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    public long getTurnMinutes() { return turnMinutes; }
+
+    public void setTurnMinutes(long turnMinutes) {
+        if (turnMinutes <= 0) throw new IllegalArgumentException("La duración debe ser mayor que 0");
+        this.turnMinutes = turnMinutes;
+    }
+
     public void addMesa(Mesa m) {
         mesas.put(m.getId(), m);
     }
 
+    // A free table for a walk-in: LIBRE now and not booked for the next turn
     public Optional<Mesa> findAvailableTable(int guests) {
         return mesas.values().stream()
-                .filter(m -> m.getEstado() == TableStatus.LIBRE && m.getCapacidad() >= guests)
+                .filter(m -> m.getEstado() == TableStatus.LIBRE && m.getCapacidad() >= guests && freeForTurn(m, -1))
                 .findFirst();
     }
 
+    // True if no booking other than reservationId's overlaps [now, now + turn)
+    private boolean freeForTurn(Mesa m, int reservationId) {
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        for (int id : m.bookingsBetween(now, now.plusMinutes(turnMinutes))) {
+            if (id != reservationId) return false;
+        }
+        return true;
+    }
+
+    // State a table goes back to when its party leaves: RESERVADA if a booking is due within a turn
+    private TableStatus idleState(Mesa m) {
+        return freeForTurn(m, -1) ? TableStatus.LIBRE : TableStatus.RESERVADA;
+    }
+
+    // Tables with room for 'guests' and no booking overlapping [start, end), smallest capacity first.
+    // The estado is not looked at: it describes the table right now, not at that time.
+    public List<Mesa> findFreeTables(java.time.LocalDateTime start, java.time.LocalDateTime end, int guests) {
+        List<Mesa> res = new ArrayList<>();
+        for (Mesa m : mesas.values()) {
+            if (m.getCapacidad() >= guests && m.isFreeBetween(start, end)) res.add(m);
+        }
+        res.sort(java.util.Comparator.comparingInt(Mesa::getCapacidad).thenComparingInt(Mesa::getId));
+        return res;
+    }
+
+    // Book the table for [start, end) on behalf of a reservation; false if another booking overlaps
+    public boolean bookTable(int mesaId, int reservationId, java.time.LocalDateTime start, java.time.LocalDateTime end) throws TableNotFoundException {
+        Mesa m = mesas.get(mesaId);
+        if (m == null) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+        return m.book(reservationId, start, end);
+    }
+
+    public void releaseBooking(int mesaId, int reservationId) {
+        Mesa m = mesas.get(mesaId);
+        if (m != null) m.unbook(reservationId);
+    }
+
     // Throws TableNotFoundException if the mesaId is unknown
     public boolean assignTable(int mesaId) throws TableNotFoundException {
         Mesa m = mesas.get(mesaId);
         if (m == null) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
-        if (m.getEstado() != TableStatus.LIBRE) return false;
-        m.setEstado(TableStatus.RESERVADA);
-        return true;
+        // compare-and-set: of two terminals grabbing the same free table only one wins, without a lock
+        boolean ok = m.compareAndSetEstado(TableStatus.LIBRE, TableStatus.RESERVADA);
+        if (ok) notifyTableListeners(m);
+        return ok;
     }
 
+    // Same, but only if the table has not changed since the caller read expectedVersion (e.g. a terminal
+    // acting on what it last displayed). The version is checked before the state is read, so a successful
+    // compare-and-set proves the table was LIBRE at that very version.
+    public boolean assignTable(int mesaId, long expectedVersion) throws TableNotFoundException {
+        Mesa m = mesas.get(mesaId);
+        if (m == null) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+        if (m.getVersion() != expectedVersion || m.getEstado() != TableStatus.LIBRE) return false;
+        boolean ok = m.compareAndSetEstado(expectedVersion, TableStatus.RESERVADA);
+        if (ok) notifyTableListeners(m);
+        return ok;
+    }
+
+    // End a RESERVADA hold; a table in any other state is left as it is
+    public boolean releaseHold(int mesaId) throws TableNotFoundException {
+        Mesa m = mesas.get(mesaId);
+        if (m == null) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+        boolean ok = m.compareAndSetEstado(TableStatus.RESERVADA, TableStatus.LIBRE);
+        if (ok) notifyTableListeners(m);
+        return ok;
+    }
+
+    // Seat a walk-in. False if a booking starts within the next turn (the table is kept for it)
     public boolean occupyTable(int mesaId) throws TableNotFoundException {
+        return occupyTable(mesaId, -1);
+    }
+
+    // Seat the party of a reservation: only its own booking may fall within the next turn
+    public boolean occupyTable(int mesaId, int reservationId) throws TableNotFoundException {
         Mesa m = mesas.get(mesaId);
         if (m == null) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
-        m.setEstado(TableStatus.OCUPADA);
+        if (m.getEstado() == TableStatus.OCUPADA) return true;
+        if (!freeForTurn(m, reservationId)) return false;
+        if (moveTo(m, TableStatus.OCUPADA)) notifyTableListeners(m);
         return true;
     }
 
+    // Seat a walk-in only if nobody sits there yet: unlike occupyTable, false when the table is already
+    // OCUPADA. Decided by compare-and-set, so of two hosts seating parties at the same table only one wins.
+    public boolean claimTable(int mesaId) throws TableNotFoundException {
+        Mesa m = mesas.get(mesaId);
+        if (m == null) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+        TableStatus cur = m.getEstado();
+        if (cur == TableStatus.OCUPADA || !freeForTurn(m, -1)) return false;
+        if (!m.compareAndSetEstado(cur, TableStatus.OCUPADA)) return false;
+        notifyTableListeners(m);
+        return true;
+    }
+
+    // The party left: LIBRE, or RESERVADA when the next booking is already due
     public boolean releaseTable(int mesaId) throws TableNotFoundException {
         Mesa m = mesas.get(mesaId);
         if (m == null) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
-        m.setEstado(TableStatus.LIBRE);
+        boolean changed = moveTo(m, idleState(m));
+        synchronized (this) { vipTables.remove(mesaId); }
+        if (changed) notifyTableListeners(m);
         return true;
     }
 
-    public Map<Integer, Mesa> getMesas() { return mesas; }
+    // Table states change by compare-and-set like assignTable, so a transition never overwrites one it
+    // did not see (e.g. a terminal's version-checked assign). False when the table already was in 'next'.
+    private static boolean moveTo(Mesa m, TableStatus next) {
+        while (true) {
+            TableStatus cur = m.getEstado();
+            if (cur == next) return false;
+            if (m.compareAndSetEstado(cur, next)) return true;
+        }
+    }
+
+    public synchronized void setVipTable(int mesaId, boolean vip) {
+        if (vip) vipTables.add(mesaId); else vipTables.remove(mesaId);
+    }
+
+    public synchronized boolean isVipTable(int mesaId) {
+        return vipTables.contains(mesaId);
+    }
+
+    // Read-only view; tables are added through addMesa
+    public Map<Integer, Mesa> getMesas() { return mesas.asMap(); }
 
     // Orders API
-    public synchronized void addOrder(int mesaId, OrderItem item) throws TableNotFoundException {
-        if (!mesas.containsKey(mesaId)) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
-        // mark table as occupied when someone places an order (they are sitting)
-        Mesa m = mesas.get(mesaId);
-        if (m != null && m.getEstado() != TableStatus.OCUPADA) {
-            m.setEstado(TableStatus.OCUPADA);
-        }
-        // Treat this OrderItem as a new order: ensure its state is QUEUED and clear any previous job linkage
-        item.setEstado(EstadoPedido.QUEUED);
-        item.setEstimatedMinutes(null);
-        item.setProductionJobId(null);
+    // Production jobs are created and cancelled after our lock is released: Pedido calls back into this
+    // service (job listener) while holding its own lock, so Pedido -> TableService is the only lock order.
+    public void addOrder(int mesaId, OrderItem item) throws TableNotFoundException {
+        Recipe linked;
+        Pedido ps;
+        boolean vip;
+        java.time.LocalDateTime since;
+        Mesa seated = null;
+        synchronized (this) {
+            if (!mesas.containsKey(mesaId)) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+            // mark table as occupied when someone places an order (they are sitting); like a walk-in,
+            // that is refused while the table is kept for a booking due within the turn
+            Mesa m = mesas.get(mesaId);
+            if (m.getEstado() != TableStatus.OCUPADA && !freeForTurn(m, -1)) {
+                throw new TableUnavailableException("Mesa ID " + mesaId + " reservada dentro del próximo turno");
+            }
+            if (moveTo(m, TableStatus.OCUPADA)) seated = m;
+            // Treat this OrderItem as a new order: ensure its state is QUEUED and clear any previous job linkage
+            item.setEstado(EstadoPedido.QUEUED);
+            item.setEstimatedMinutes(null);
+            item.setProductionJobId(null);
+
+            orders.computeIfAbsent(mesaId, k -> new ArrayList<>()).add(item);
+            waitingSince.putIfAbsent(mesaId, java.time.LocalDateTime.now());
 
-        orders.computeIfAbsent(mesaId, k -> new ArrayList<>()).add(item);
+            linked = (menu != null && item.getRecipeId() != null) ? menu.getRecipeById(item.getRecipeId()) : null;
+            if (linked != null) item.setUnitPrice(linked.getPrecio());
+            tabs.computeIfAbsent(mesaId, TableTab::new).add(item);
+
+            ps = productionService;
+            vip = vipTables.contains(mesaId);
+            since = waitingSince.get(mesaId);
+            if (ps == null || linked == null) {
+                publish(mesaId, item);
+            }
+        }
+        if (seated != null) notifyTableListeners(seated);
+        if (ps == null || linked == null) {
+            notifyOrderListeners(mesaId);
+            return;
+        }
 
         // If integrated with production and item links to a recipe, create a production job automatically
-        if (productionService != null && menu != null && item.getRecipeId() != null) {
-            Recipe r = menu.getRecipeById(item.getRecipeId());
-            if (r != null) {
-                // Estimate ETA in minutes before creating the job
-                long etaMinutes = productionService.estimateCompletionForNewJob(r, item.getQuantity());
-                ProductionJob job = productionService.createJob(r, item.getQuantity());
-                if (job != null) {
-                    // Link the created job to the order item and set ETA. Note: createJob notifies production listeners
-                    // immediately, so we update the order item state here to reflect the new queued job.
-                    item.setProductionJobId(job.getId());
-                    item.setEstimatedMinutes(etaMinutes);
-                    item.setEstado(EstadoPedido.QUEUED);
+        // Estimate ETA in minutes before creating the job
+        long etaMinutes = ps.estimateCompletionForNewJob(linked, item.getQuantity());
+        ProductionJob job = ps.createJob(linked, item.getQuantity(), vip, since);
+        boolean orphan = false;
+        synchronized (this) {
+            List<OrderItem> list = orders.get(mesaId);
+            if (job != null && (list == null || !list.contains(item))) {
+                // the line was removed or the table cleared while the job was being created
+                orphan = true;
+            } else if (job != null) {
+                // Link the created job to the order item and set ETA. Note: createJob notifies production listeners
+                // before the link exists (and the job may have moved on since), so mirror its current state here.
+                item.setProductionJobId(job.getId());
+                TableTab tab = tabs.get(mesaId);
+                switch (job.getStatus()) {
+                    case IN_PROGRESS -> { item.setEstimatedMinutes(etaMinutes); setEstado(tab, item, EstadoPedido.IN_PROGRESS); }
+                    case DONE -> { item.setEstimatedMinutes(0L); setEstado(tab, item, EstadoPedido.DONE); }
+                    case FAILED -> setEstado(tab, item, EstadoPedido.CANCELLED);
+                    default -> { item.setEstimatedMinutes(etaMinutes); setEstado(tab, item, EstadoPedido.QUEUED); }
                 }
+                publish(mesaId, item);
             }
         }
-        notifyOrderListeners();
+        if (orphan) {
+            try { ps.cancelJobQuantity(job.getId(), item.getQuantity()); } catch (Exception ignored) {}
+        }
+        notifyOrderListeners(mesaId);
     }
 
     public synchronized List<OrderItem> getOrders(int mesaId) throws TableNotFoundException {
@@ -139,60 +320,230 @@ public class TableService {
         return Collections.unmodifiableList(orders.getOrDefault(mesaId, new ArrayList<>()));
     }
 
-    public synchronized void clearOrders(int mesaId) throws TableNotFoundException {
-        if (!mesas.containsKey(mesaId)) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
-        // If integrated with production, cancel any linked production jobs before removing orders
-        List<OrderItem> list = orders.get(mesaId);
-        if (list != null && !list.isEmpty()) {
-            for (OrderItem oi : list) {
-                // mark cancelled locally
-                oi.setEstado(EstadoPedido.CANCELLED);
-                Integer pid = oi.getProductionJobId();
-                if (pid != null && productionService != null) {
-                    try { productionService.cancelJob(pid); } catch (Exception ignored) {}
+    public void clearOrders(int mesaId) throws TableNotFoundException {
+        List<int[]> cancels = new ArrayList<>();
+        Pedido ps;
+        synchronized (this) {
+            if (!mesas.containsKey(mesaId)) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+            ps = productionService;
+            // If integrated with production, cancel any linked production jobs before removing orders
+            List<OrderItem> list = orders.get(mesaId);
+            if (list != null && !list.isEmpty()) {
+                for (OrderItem oi : list) {
+                    // mark cancelled locally
+                    oi.setEstado(EstadoPedido.CANCELLED);
+                    // unlink first: a shared batch keeps running for the other orders and notifies them
+                    unlinkJob(oi, cancels);
+                    if (changeFeed != null) changeFeed.orderRemoved(mesaId, oi);
                 }
             }
+            // remove orders entry
+            orders.remove(mesaId);
+            tabs.remove(mesaId);
+            waitingSince.remove(mesaId);
         }
-        // remove orders entry
-        orders.remove(mesaId);
-        notifyOrderListeners();
+        cancelJobs(ps, cancels);
+        notifyOrderListeners(mesaId);
     }
 
     // Mark all orders for a table as CANCELLED and cancel their production jobs if present
-    public synchronized void cancelOrdersForTable(int mesaId) throws TableNotFoundException {
-        if (!mesas.containsKey(mesaId)) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
-        List<OrderItem> list = orders.get(mesaId);
-        if (list == null || list.isEmpty()) return;
-        for (OrderItem oi : list) {
-            oi.setEstado(EstadoPedido.CANCELLED);
-            Integer pid = oi.getProductionJobId();
-            if (pid != null && productionService != null) {
-                try {
-                    productionService.cancelJob(pid);
-                } catch (Exception ignored) {}
+    public void cancelOrdersForTable(int mesaId) throws TableNotFoundException {
+        List<int[]> cancels = new ArrayList<>();
+        Pedido ps;
+        synchronized (this) {
+            if (!mesas.containsKey(mesaId)) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+            ps = productionService;
+            List<OrderItem> list = orders.get(mesaId);
+            if (list == null || list.isEmpty()) return;
+            TableTab tab = tabs.get(mesaId);
+            for (OrderItem oi : list) {
+                setEstado(tab, oi, EstadoPedido.CANCELLED);
+                unlinkJob(oi, cancels);
+                publish(mesaId, oi);
             }
         }
+        cancelJobs(ps, cancels);
         // keep the orders in the map but marked cancelled so UI shows them as cancelled
-        notifyOrderListeners();
+        notifyOrderListeners(mesaId);
     }
 
     // Remove a single order item by index for the given table. Cancels linked production job if present.
-    public synchronized boolean removeOrderItem(int mesaId, int index) throws TableNotFoundException {
-        if (!mesas.containsKey(mesaId)) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
-        List<OrderItem> list = orders.get(mesaId);
-        if (list == null || list.isEmpty()) return false;
-        if (index < 0 || index >= list.size()) return false;
-        OrderItem oi = list.remove(index);
-        Integer pid = oi.getProductionJobId();
-        if (pid != null && productionService != null) {
-            try { productionService.cancelJob(pid); } catch (Exception ignored) {}
+    public boolean removeOrderItem(int mesaId, int index) throws TableNotFoundException {
+        List<int[]> cancels = new ArrayList<>();
+        Pedido ps;
+        synchronized (this) {
+            if (!mesas.containsKey(mesaId)) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+            ps = productionService;
+            List<OrderItem> list = orders.get(mesaId);
+            if (list == null || list.isEmpty()) return false;
+            if (index < 0 || index >= list.size()) return false;
+            OrderItem oi = list.remove(index);
+            TableTab tab = tabs.get(mesaId);
+            if (tab != null) tab.remove(oi);
+            unlinkJob(oi, cancels);
+            if (changeFeed != null) changeFeed.orderRemoved(mesaId, oi);
+            // if list becomes empty, keep empty list or remove the entry to match clearOrders behaviour
+            if (list.isEmpty()) {
+                orders.remove(mesaId);
+                tabs.remove(mesaId);
+                waitingSince.remove(mesaId);
+            }
         }
-        // if list becomes empty, keep empty list or remove the entry to match clearOrders behaviour
-        if (list.isEmpty()) orders.remove(mesaId);
-        notifyOrderListeners();
+        cancelJobs(ps, cancels);
+        notifyOrderListeners(mesaId);
         return true;
     }
 
+    // Detach a line from its production job and remember {jobId, quantity} to cancel once the lock is released
+    private void unlinkJob(OrderItem oi, List<int[]> cancels) {
+        Integer pid = oi.getProductionJobId();
+        if (pid == null || productionService == null) return;
+        oi.setProductionJobId(null);
+        cancels.add(new int[]{pid, oi.getQuantity()});
+    }
+
+    // Runs without our lock (see addOrder)
+    private static void cancelJobs(Pedido ps, List<int[]> cancels) {
+        if (ps == null) return;
+        for (int[] c : cancels) {
+            try { ps.cancelJobQuantity(c[0], c[1]); } catch (Exception ignored) {}
+        }
+    }
+
+    // Recompute the remaining minutes of every pending order item from the production queue.
+    // Called periodically by the ProductionScheduler so ETAs count down between job events.
+    public void refreshEstimates() {
+        Pedido ps;
+        synchronized (this) { ps = productionService; }
+        if (ps == null) return;
+        // taken before our own lock: the production lock is never requested while holding it here
+        Map<Integer, Long> remaining = ps.estimateRemainingMinutesForAll();
+        IntSet changed = new IntSet();
+        synchronized (this) {
+            for (int mesaId : orders.keys()) {
+                for (OrderItem oi : orders.get(mesaId)) {
+                    Integer pid = oi.getProductionJobId();
+                    if (pid == null) continue;
+                    if (oi.getEstado() != EstadoPedido.QUEUED && oi.getEstado() != EstadoPedido.IN_PROGRESS) continue;
+                    Long eta = remaining.get(pid);
+                    if (eta != null && !eta.equals(oi.getEstimatedMinutes())) {
+                        oi.setEstimatedMinutes(eta);
+                        publish(mesaId, oi);
+                        changed.add(mesaId);
+                    }
+                }
+            }
+        }
+        if (!changed.isEmpty()) notifyOrderListeners(changed.toArray());
+    }
+
+    // Report a line's current state to the change feed (caller holds the lock)
+    private void publish(int mesaId, OrderItem oi) {
+        if (changeFeed != null) changeFeed.order(mesaId, oi);
+    }
+
+    // Change an item's state keeping the table's running tab in sync
+    private void setEstado(TableTab tab, OrderItem oi, EstadoPedido estado) {
+        if (tab != null) tab.changeEstado(oi, estado);
+        else oi.setEstado(estado);
+    }
+
+    // Current billed subtotal for a table (0 when it has no orders); O(1)
+    public synchronized double getTabTotal(int mesaId) {
+        TableTab tab = tabs.get(mesaId);
+        return tab != null ? tab.getSubtotal() : 0.0;
+    }
+
+    public synchronized Optional<TableTab> getTab(int mesaId) {
+        return Optional.ofNullable(tabs.get(mesaId));
+    }
+
+    // Copy of every table's order lines taken under the lock (e.g. for a state snapshot written off-thread)
+    public synchronized Map<Integer, List<OrderItem>> copyOrders() {
+        Map<Integer, List<OrderItem>> res = new java.util.LinkedHashMap<>();
+        orders.forEach((mesaId, items) -> res.put(mesaId, new ArrayList<>(items)));
+        return res;
+    }
+
+    // Copy of one table's order lines taken under the lock (safe to read from another thread)
+    public synchronized List<OrderItem> copyOrders(int mesaId) throws TableNotFoundException {
+        if (!mesas.containsKey(mesaId)) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+        return new ArrayList<>(orders.getOrDefault(mesaId, Collections.emptyList()));
+    }
+
+    // When the table started waiting for its current orders, or null
+    public synchronized java.time.LocalDateTime getWaitingSince(int mesaId) {
+        return waitingSince.get(mesaId);
+    }
+
+    // Put back a table's order lines from persisted state (no production jobs are created; the jobs are
+    // restored separately) and rebuild its running tab
+    public synchronized void restoreOrders(int mesaId, List<OrderItem> items, java.time.LocalDateTime since) {
+        List<OrderItem> list = new ArrayList<>(items);
+        TableTab tab = new TableTab(mesaId);
+        for (OrderItem oi : list) tab.add(oi);
+        orders.put(mesaId, list);
+        tabs.put(mesaId, tab);
+        if (since != null) waitingSince.put(mesaId, since);
+    }
+
+    // Bill built from the running tab instead of re-pricing every line against the Menu
+    public synchronized Factura getBill(int mesaId) throws TableNotFoundException {
+        if (!mesas.containsKey(mesaId)) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+        List<OrderItem> list = orders.getOrDefault(mesaId, Collections.emptyList());
+        return new Factura(mesaId, list, getTabTotal(mesaId));
+    }
+
+    // Settle a table in one step: bill its current lines, clear them and free the table under one lock hold,
+    // so a line added in between cannot be dropped unbilled or end up on the next party's tab. Jobs still
+    // linked to the lines are cancelled and settle listeners get the bill once the lock is released.
+    public Factura settleAndRelease(int mesaId, String customerName) throws TableNotFoundException {
+        List<int[]> cancels = new ArrayList<>();
+        Pedido ps;
+        Factura factura;
+        Mesa m;
+        synchronized (this) {
+            m = mesas.get(mesaId);
+            if (m == null) throw new TableNotFoundException("Mesa ID " + mesaId + " no encontrada");
+            ps = productionService;
+            List<OrderItem> list = orders.getOrDefault(mesaId, Collections.emptyList());
+            factura = new Factura(mesaId, list, getTabTotal(mesaId));
+            factura.setCustomerName(customerName);
+            for (OrderItem oi : list) {
+                unlinkJob(oi, cancels);
+                if (changeFeed != null) changeFeed.orderRemoved(mesaId, oi);
+            }
+            orders.remove(mesaId);
+            tabs.remove(mesaId);
+            waitingSince.remove(mesaId);
+            moveTo(m, idleState(m));
+            vipTables.remove(mesaId);
+        }
+        cancelJobs(ps, cancels);
+        settleBill(factura);
+        notifyOrderListeners(mesaId);
+        notifyTableListeners(m);
+        return factura;
+    }
+
+    // Record that a bill was paid; listeners (invoice store) receive it before the table is cleared
+    public void settleBill(Factura factura) {
+        if (factura == null) return;
+        List<java.util.function.Consumer<Factura>> snapshot;
+        synchronized (this) { snapshot = new ArrayList<>(settleListeners); }
+        for (java.util.function.Consumer<Factura> l : snapshot) {
+            try { l.accept(factura); } catch (Exception ignored) {}
+        }
+    }
+
+    public synchronized void addSettleListener(java.util.function.Consumer<Factura> l) {
+        if (l != null) settleListeners.add(l);
+    }
+
+    public synchronized void removeSettleListener(java.util.function.Consumer<Factura> l) {
+        settleListeners.remove(l);
+    }
+
     public synchronized void addOrderListener(Runnable l) {
         orderListeners.add(l);
     }
@@ -201,9 +552,43 @@ public class TableService {
         orderListeners.remove(l);
     }
 
-    private void notifyOrderListeners() {
+    public synchronized void addTableOrderListener(java.util.function.IntConsumer l) {
+        if (l != null) tableOrderListeners.add(l);
+    }
+
+    public synchronized void removeTableOrderListener(java.util.function.IntConsumer l) {
+        tableOrderListeners.remove(l);
+    }
+
+    public synchronized void addTableListener(java.util.function.Consumer<Mesa> l) {
+        if (l != null) tableListeners.add(l);
+    }
+
+    public synchronized void removeTableListener(java.util.function.Consumer<Mesa> l) {
+        tableListeners.remove(l);
+    }
+
+    // Called without our lock held
+    private void notifyTableListeners(Mesa m) {
+        List<java.util.function.Consumer<Mesa>> ls;
+        synchronized (this) { ls = new ArrayList<>(tableListeners); }
+        for (java.util.function.Consumer<Mesa> l : ls) {
+            try { l.accept(m); } catch (Exception ignored) {}
+        }
+    }
+
+    // Called without our lock held, with the tables whose orders changed
+    private void notifyOrderListeners(int... mesaIds) {
         for (Runnable r : new ArrayList<>(orderListeners)) {
             try { r.run(); } catch (Exception ignored) {}
         }
+        if (mesaIds.length == 0) return;
+        List<java.util.function.IntConsumer> ls;
+        synchronized (this) { ls = new ArrayList<>(tableOrderListeners); }
+        for (java.util.function.IntConsumer l : ls) {
+            for (int mesaId : mesaIds) {
+                try { l.accept(mesaId); } catch (Exception ignored) {}
+            }
+        }
     }
 }
@@ -0,0 +1,61 @@
+package org.models;
+
+// Running bill for one table, kept up to date by TableService as orders change
+// so a bill (or a live floor-map total) does not need to walk every OrderItem again.
+public class TableTab {
+    private final int tableId;
+    private double subtotal;
+    private int itemCount;      // units billed (sum of quantities of non-cancelled lines)
+    private int lineCount;      // non-cancelled lines
+    private int cancelledLines; // lines kept on the table but excluded from the bill
+
+    public TableTab(int tableId) {
+        this.tableId = tableId;
+    }
+
+    private static double lineTotal(OrderItem oi) {
+        return oi.getUnitPrice() * oi.getQuantity();
+    }
+
+    // A line enters the tab; cancelled lines are tracked but not billed
+    void add(OrderItem oi) {
+        if (oi.getEstado() == EstadoPedido.CANCELLED) {
+            cancelledLines++;
+            return;
+        }
+        subtotal += lineTotal(oi);
+        itemCount += oi.getQuantity();
+        lineCount++;
+    }
+
+    // A line leaves the tab entirely (removed from the table)
+    void remove(OrderItem oi) {
+        if (oi.getEstado() == EstadoPedido.CANCELLED) {
+            cancelledLines--;
+            return;
+        }
+        subtotal -= lineTotal(oi);
+        itemCount -= oi.getQuantity();
+        lineCount--;
+        if (lineCount == 0) subtotal = 0.0; // avoid carrying floating point residue on an empty tab
+    }
+
+    // Change a line's state; the tab only moves when the line becomes cancelled (or the reverse)
+    void changeEstado(OrderItem oi, EstadoPedido nuevo) {
+        boolean wasCancelled = oi.getEstado() == EstadoPedido.CANCELLED;
+        boolean isCancelled = nuevo == EstadoPedido.CANCELLED;
+        if (wasCancelled == isCancelled) {
+            oi.setEstado(nuevo);
+            return;
+        }
+        remove(oi);
+        oi.setEstado(nuevo);
+        add(oi);
+    }
+
+    public int getTableId() { return tableId; }
+    public double getSubtotal() { return subtotal; }
+    public int getItemCount() { return itemCount; }
+    public int getLineCount() { return lineCount; }
+    public int getCancelledLines() { return cancelledLines; }
+}
@@ -0,0 +1,192 @@
+package org.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Hierarchical timing wheel (4 levels x 64 slots). Scheduling and cancelling a timer are O(1);
+// each tick only touches the current slot, and timers far in the future are cascaded down a level
+// at a time, so tens of thousands of pending timers cost almost nothing while they wait.
+// Expired tasks run on the wheel thread and must be short (hand heavy work to another thread).
+public class TimingWheel {
+    private static final Logger logger = Logger.getLogger(TimingWheel.class.getName());
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS; // 64
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_TICKS = 1L << (SLOT_BITS * LEVELS); // horizon; longer delays are re-cascaded
+
+    // A scheduled task; kept in an intrusive doubly-linked list per slot so cancel is O(1)
+    public static class Timeout {
+        private final Runnable task;
+        private long expireTick;
+        private Timeout prev, next;
+        private Bucket bucket;
+        private boolean cancelled;
+
+        private Timeout(Runnable task, long expireTick) {
+            this.task = task;
+            this.expireTick = expireTick;
+        }
+
+        public boolean isCancelled() { return cancelled; }
+    }
+
+    private static class Bucket {
+        Timeout head;
+
+        void add(Timeout t) {
+            t.bucket = this;
+            t.prev = null;
+            t.next = head;
+            if (head != null) head.prev = t;
+            head = t;
+        }
+
+        void remove(Timeout t) {
+            if (t.prev != null) t.prev.next = t.next; else head = t.next;
+            if (t.next != null) t.next.prev = t.prev;
+            t.prev = t.next = null;
+            t.bucket = null;
+        }
+
+        // Detach every timeout in the bucket and return the first one (linked via next)
+        Timeout clear() {
+            Timeout h = head;
+            head = null;
+            return h;
+        }
+    }
+
+    private final long tickMillis;
+    private final Bucket[][] wheels = new Bucket[LEVELS][SLOTS];
+    private long currentTick = 0;
+    private long startMillis;
+    private int pending = 0;
+    private Thread worker;
+    private volatile boolean running = false;
+
+    public TimingWheel(long tickMillis) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis debe ser positivo");
+        this.tickMillis = tickMillis;
+        for (int l = 0; l < LEVELS; l++) {
+            for (int s = 0; s < SLOTS; s++) wheels[l][s] = new Bucket();
+        }
+    }
+
+    public long getTickMillis() { return tickMillis; }
+
+    public synchronized int getPendingCount() { return pending; }
+
+    // Schedule a task to run once after delayMillis (rounded up to whole ticks, at least one).
+    // The deadline is taken from the wall clock, not from the last processed tick, so a wheel thread
+    // that is a little behind never makes a timer fire early.
+    public synchronized Timeout schedule(Runnable task, long delayMillis) {
+        long elapsed = running ? System.currentTimeMillis() - startMillis : currentTick * tickMillis;
+        long expireTick = (elapsed + Math.max(0L, delayMillis) + tickMillis - 1) / tickMillis;
+        Timeout t = new Timeout(task, Math.max(currentTick + 1, expireTick));
+        place(t);
+        pending++;
+        return t;
+    }
+
+    // Cancel a pending task; returns false if it already ran or was cancelled
+    public synchronized boolean cancel(Timeout t) {
+        if (t == null || t.cancelled || t.bucket == null) return false;
+        t.cancelled = true;
+        t.bucket.remove(t);
+        pending--;
+        return true;
+    }
+
+    private void place(Timeout t) {
+        long delta = t.expireTick - currentTick;
+        long target = delta >= MAX_TICKS ? currentTick + MAX_TICKS - 1 : Math.max(t.expireTick, currentTick);
+        delta = target - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) level++;
+        int slot = (int) ((target >>> (SLOT_BITS * level)) & SLOT_MASK);
+        wheels[level][slot].add(t);
+    }
+
+    // Move every timeout of a higher-level slot down to where it now belongs; returns that slot index
+    private int cascade(int level) {
+        int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Timeout t = wheels[level][slot].clear();
+        while (t != null) {
+            Timeout next = t.next;
+            t.prev = t.next = null;
+            t.bucket = null;
+            place(t);
+            t = next;
+        }
+        return slot;
+    }
+
+    // Advance the wheel by one tick and collect the tasks that expired
+    private void tick(List<Runnable> expired) {
+        currentTick++;
+        if ((currentTick & SLOT_MASK) == 0) {
+            for (int level = 1; level < LEVELS; level++) {
+                if (cascade(level) != 0) break;
+            }
+        }
+        Bucket b = wheels[0][(int) (currentTick & SLOT_MASK)];
+        Timeout t = b.head;
+        while (t != null) {
+            Timeout next = t.next;
+            if (t.expireTick <= currentTick) {
+                b.remove(t);
+                pending--;
+                expired.add(t.task);
+            }
+            t = next;
+        }
+    }
+
+    // Advance as many ticks as wall-clock time requires and run what expired (wheel thread)
+    private void advanceTo(long nowMillis) {
+        List<Runnable> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = (nowMillis - startMillis) / tickMillis;
+            while (currentTick < targetTick) tick(expired);
+        }
+        for (Runnable r : expired) {
+            try {
+                r.run();
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Timer task failed: {0}", ex.getMessage());
+            }
+        }
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        startMillis = System.currentTimeMillis() - currentTick * tickMillis;
+        worker = new Thread(() -> {
+            while (running) {
+                try {
+                    Thread.sleep(tickMillis);
+                } catch (InterruptedException e) {
+                    if (!running) break;
+                }
+                advanceTo(System.currentTimeMillis());
+            }
+        }, "timing-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() {
+        Thread w;
+        synchronized (this) {
+            running = false;
+            w = worker;
+            worker = null;
+        }
+        if (w != null) w.interrupt();
+    }
+}
@@ -0,0 +1,63 @@
+package org.models;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// State of an entity (an enum) and its version packed in one AtomicLong: the low 8 bits hold the state
+// ordinal, the rest a counter that grows on every change. A transition is a single compare-and-set of the
+// whole word, so two terminals racing on the same table or job cannot both win, and readers get state and
+// version from one consistent read. Changes to other fields of the entity only bump the version (touch),
+// so a view can skip a row whose version it already rendered.
+final class VersionedState<E extends Enum<E>> {
+    private static final int STATE_BITS = 8;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+
+    private final E[] values;
+    private final AtomicLong word;
+
+    VersionedState(E initial) {
+        this.values = initial.getDeclaringClass().getEnumConstants();
+        this.word = new AtomicLong(initial.ordinal());
+    }
+
+    E get() {
+        return values[(int) (word.get() & STATE_MASK)];
+    }
+
+    long version() {
+        return word.get() >>> STATE_BITS;
+    }
+
+    // Move to 'update' only if the current state is 'expect'
+    boolean compareAndSet(E expect, E update) {
+        while (true) {
+            long w = word.get();
+            if ((w & STATE_MASK) != expect.ordinal()) return false;
+            if (word.compareAndSet(w, pack((w >>> STATE_BITS) + 1, update))) return true;
+        }
+    }
+
+    // Move to 'update' only if nothing changed since 'expectedVersion' was read
+    boolean compareAndSet(long expectedVersion, E update) {
+        long w = word.get();
+        if ((w >>> STATE_BITS) != expectedVersion) return false;
+        return word.compareAndSet(w, pack(expectedVersion + 1, update));
+    }
+
+    // Unconditional change (restores, administrative overrides); setting the current state is not a change
+    void set(E update) {
+        long w;
+        do {
+            w = word.get();
+            if ((w & STATE_MASK) == update.ordinal()) return;
+        } while (!word.compareAndSet(w, pack((w >>> STATE_BITS) + 1, update)));
+    }
+
+    // Some other field of the entity changed
+    void touch() {
+        word.addAndGet(1L << STATE_BITS);
+    }
+
+    private static long pack(long version, Enum<?> state) {
+        return (version << STATE_BITS) | state.ordinal();
+    }
+}
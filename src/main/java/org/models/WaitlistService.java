@@ -0,0 +1,400 @@
+package org.models;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.collections.IntList;
+import org.collections.IntObjectMap;
+import org.collections.IntSet;
+import org.exceptions.TableNotFoundException;
+
+// Walk-in waitlist with quoted waits. For every table it predicts when it can take a walk-in:
+//  - a free table now, an occupied one when its party is expected to leave: seatedAt plus the usual turn
+//    (a moving average of past seat-to-release times for tables of that size), pushed later while dishes
+//    are still in the kitchen (the longest order ETA plus time to eat it);
+//  - never inside a booked slot (see Mesa.book): like any walk-in (TableService.occupyTable), the party
+//    needs the table free of bookings for a whole reservation turn.
+// The predictions sit in a min-tree over the tables sorted by capacity, so "earliest table for N guests"
+// is a range minimum over the tables that fit: O(log n). Parties already waiting claim their table in
+// order, so a new party is quoted behind them. A table or order change only marks that table: on the next
+// read its leaf is recomputed and the claims replayed; everything is rebuilt when the turn averages move,
+// a table appears, or the predictions get old. Each released turn is handed to the turn listeners so it
+// can be stored, and recordTurn() seeds the averages from that history on the next start.
+public class WaitlistService {
+    // Weight of the newest turn in the moving average
+    private static final double TURN_ALPHA = 0.2;
+    // Turn assumed until some tables have been released
+    public static final long DEFAULT_TURN_MINUTES = 75L;
+    // Time to eat after the last dish leaves the kitchen
+    private static final long AFTER_LAST_DISH_MINUTES = 25L;
+    // An occupied table past its usual turn with nothing in the kitchen still needs a few minutes
+    private static final long MIN_REMAINING_MINUTES = 5L;
+    // Predictions older than this are rebuilt even without changes (the clock moves)
+    private static final long MAX_PREDICTION_AGE_SECONDS = 60L;
+    private static final int MAX_BOOKING_HOPS = 32;
+
+    // Where and when a party can be seated; mesaId is null if no table is big enough
+    public record Quote(Integer mesaId, LocalDateTime readyAt, long waitMinutes) {}
+
+    public record Party(int id, String nombre, int guests, LocalDateTime addedAt, Quote quote) {}
+
+    // One seat-to-release of a table, as folded into the averages
+    public record Turn(int capacidad, double minutes, LocalDateTime releasedAt) {}
+
+    private static final class Waiting {
+        final int id;
+        final String nombre;
+        final int guests;
+        final LocalDateTime addedAt;
+        Quote quote;
+
+        Waiting(int id, String nombre, int guests, LocalDateTime addedAt) {
+            this.id = id;
+            this.nombre = nombre;
+            this.guests = guests;
+            this.addedAt = addedAt;
+        }
+    }
+
+    private final TableService tableService;
+    private final ReservationService reservationService;
+
+    private final List<Waiting> queue = new ArrayList<>();
+    private int nextId = 1;
+
+    // Turn history. Guarded by 'turns' only: table listeners run under other services' locks
+    private final Object turns = new Object();
+    private final IntObjectMap<Long> seatedAt = new IntObjectMap<>(); // mesa id -> epoch second seated
+    private final IntObjectMap<double[]> turnByCapacity = new IntObjectMap<>(); // capacity -> {avg minutes}
+    private double turnAll = -1.0;
+    // Told about every released turn (e.g. to persist it); called outside the 'turns' lock
+    private final List<Consumer<Turn>> turnListeners = new CopyOnWriteArrayList<>();
+
+    // Predictions, rebuilt by rebuild(); 'dirty' asks for a full rebuild, 'changed' for single tables
+    private volatile boolean dirty = true;
+    private final IntSet changed = new IntSet(); // mesa ids, guarded by itself (filled from listeners)
+    private boolean requeue = false; // the queue changed: replay the claims
+    private long builtAt = Long.MIN_VALUE;
+    private Mesa[] tables = new Mesa[0];
+    private final IntObjectMap<Integer> posOf = new IntObjectMap<>(); // mesa id -> position in tables
+    private int[] capacidad = new int[0];
+    private long[] base = new long[0]; // epoch seconds each table can take a walk-in, before any claim
+    private final IntList claimed = new IntList(); // positions the waiting parties claimed
+    private MinTree tree = new MinTree(new long[0]);
+
+    public WaitlistService(TableService tableService, ReservationService reservationService) {
+        this.tableService = tableService;
+        this.reservationService = reservationService;
+        long now = seconds(LocalDateTime.now());
+        for (Mesa m : tableService.getMesas().values()) {
+            if (m.getEstado() == TableStatus.OCUPADA) seatedAt.put(m.getId(), now);
+        }
+        tableService.addTableListener(this::onTableChanged);
+        tableService.addTableOrderListener(this::markChanged);
+    }
+
+    private void onTableChanged(Mesa m) {
+        LocalDateTime at = LocalDateTime.now();
+        long now = seconds(at);
+        Turn recorded = null;
+        synchronized (turns) {
+            Long since = seatedAt.get(m.getId());
+            if (m.getEstado() == TableStatus.OCUPADA) {
+                if (since == null) seatedAt.put(m.getId(), now);
+            } else if (since != null) {
+                seatedAt.remove(m.getId());
+                double minutes = (now - since) / 60.0;
+                if (m.getEstado() == TableStatus.LIBRE && minutes > 0) {
+                    recordTurnLocked(m.getCapacidad(), minutes);
+                    recorded = new Turn(m.getCapacidad(), minutes, at);
+                }
+            }
+        }
+        // a new turn average moves every table of that size; otherwise only this table's leaf
+        if (recorded == null) {
+            markChanged(m.getId());
+            return;
+        }
+        dirty = true;
+        for (Consumer<Turn> l : turnListeners) {
+            try { l.accept(recorded); } catch (Exception ignored) {}
+        }
+    }
+
+    public void addTurnListener(Consumer<Turn> listener) {
+        turnListeners.add(listener);
+    }
+
+    // Listener side: never takes the waitlist lock (listeners run under other services' locks)
+    private void markChanged(int mesaId) {
+        synchronized (changed) {
+            changed.add(mesaId);
+        }
+    }
+
+    // Fold one seat-to-release duration into the averages (also used to seed them from history)
+    public void recordTurn(int capacidad, double minutes) {
+        synchronized (turns) {
+            recordTurnLocked(capacidad, minutes);
+        }
+        dirty = true;
+    }
+
+    private void recordTurnLocked(int capacidad, double minutes) {
+        if (minutes <= 0) return;
+        double[] avg = turnByCapacity.get(capacidad);
+        if (avg == null) turnByCapacity.put(capacidad, new double[]{minutes});
+        else avg[0] += TURN_ALPHA * (minutes - avg[0]);
+        turnAll = turnAll < 0 ? minutes : turnAll + TURN_ALPHA * (minutes - turnAll);
+    }
+
+    // Usual seat-to-release time for a table of this size, in minutes
+    public long getTurnMinutes(int capacidad) {
+        synchronized (turns) {
+            double[] avg = turnByCapacity.get(capacidad);
+            if (avg != null) return Math.max(1L, Math.round(avg[0]));
+            return turnAll > 0 ? Math.max(1L, Math.round(turnAll)) : DEFAULT_TURN_MINUTES;
+        }
+    }
+
+    // Add a walk-in party to the end of the waitlist; it is quoted behind the parties already waiting
+    public synchronized Party addParty(String nombre, int guests) {
+        if (nombre == null || nombre.isBlank()) throw new IllegalArgumentException("El nombre es obligatorio");
+        if (guests <= 0) throw new IllegalArgumentException("La cantidad de personas debe ser mayor que 0");
+        Waiting w = new Waiting(nextId++, nombre.trim(), guests, LocalDateTime.now());
+        queue.add(w);
+        requeue = true;
+        refresh();
+        return toParty(w);
+    }
+
+    public synchronized boolean removeParty(int id) {
+        boolean removed = queue.removeIf(w -> w.id == id);
+        if (removed) requeue = true;
+        return removed;
+    }
+
+    public synchronized List<Party> listParties() {
+        refresh();
+        List<Party> res = new ArrayList<>(queue.size());
+        for (Waiting w : queue) res.add(toParty(w));
+        return res;
+    }
+
+    public synchronized Optional<Party> findParty(int id) {
+        refresh();
+        for (Waiting w : queue) if (w.id == id) return Optional.of(toParty(w));
+        return Optional.empty();
+    }
+
+    // Wait a new party of 'guests' would be quoted right now, behind everyone already waiting
+    public synchronized Quote quote(int guests) {
+        if (guests <= 0) throw new IllegalArgumentException("La cantidad de personas debe ser mayor que 0");
+        refresh();
+        int t = tree.argMin(firstFitting(guests), tables.length);
+        long now = seconds(LocalDateTime.now());
+        return t < 0 ? new Quote(null, null, -1L) : quoteFor(t, now);
+    }
+
+    // Seat a waiting party at a table that is free now and not booked for the next turn (the quoted table
+    // when mesaId is null). Returns the table used, or null if it cannot be seated yet. The table is taken
+    // with TableService.claimTable, so a host seating someone else there at the same moment wins or loses
+    // cleanly instead of both parties getting it.
+    public synchronized Integer seatParty(int id, Integer mesaId) throws TableNotFoundException {
+        Waiting w = null;
+        for (Waiting x : queue) if (x.id == id) { w = x; break; }
+        if (w == null) return null;
+        refresh();
+        Integer target = mesaId != null ? mesaId : (w.quote != null ? w.quote.mesaId() : null);
+        if (target == null) return null;
+        Mesa m = tableService.getMesas().get(target);
+        if (m == null) throw new TableNotFoundException("Mesa ID " + target + " no encontrada");
+        if (m.getCapacidad() < w.guests || m.getEstado() != TableStatus.LIBRE) return null;
+        if (!tableService.claimTable(target)) return null;
+        queue.remove(w);
+        requeue = true;
+        return target;
+    }
+
+    private Party toParty(Waiting w) {
+        return new Party(w.id, w.nombre, w.guests, w.addedAt, w.quote);
+    }
+
+    private Quote quoteFor(int t, long now) {
+        long ready = Math.max(now, tree.get(t));
+        return new Quote(tables[t].getId(), LocalDateTime.ofEpochSecond(ready, 0, ZoneOffset.UTC),
+                (ready - now + 59) / 60);
+    }
+
+    private void refresh() {
+        long now = seconds(LocalDateTime.now());
+        if (dirty || now - builtAt > MAX_PREDICTION_AGE_SECONDS) {
+            rebuild(now);
+            return;
+        }
+        int[] ids;
+        synchronized (changed) {
+            ids = changed.toArray();
+            changed.clear();
+        }
+        if (ids.length == 0 && !requeue) return;
+        // take back the claims, recompute the changed leaves, claim again: O((parties + changes) log n)
+        for (int i = 0; i < claimed.size(); i++) tree.update(claimed.get(i), base[claimed.get(i)]);
+        for (int id : ids) {
+            Integer t = posOf.get(id);
+            if (t == null) {
+                // a table added since the last rebuild
+                rebuild(now);
+                return;
+            }
+            base[t] = nextWalkInStart(tables[t], predictFree(tables[t], now));
+            tree.update(t, base[t]);
+        }
+        claim(now);
+    }
+
+    // Recompute every table's prediction, then let the waiting parties claim tables in order
+    private void rebuild(long now) {
+        dirty = false;
+        synchronized (changed) {
+            changed.clear();
+        }
+        builtAt = now;
+        List<Mesa> ms = new ArrayList<>(tableService.getMesas().values());
+        ms.sort(Comparator.comparingInt(Mesa::getCapacidad).thenComparingInt(Mesa::getId));
+        tables = ms.toArray(new Mesa[0]);
+        posOf.clear();
+        capacidad = new int[tables.length];
+        base = new long[tables.length];
+        for (int t = 0; t < tables.length; t++) {
+            posOf.put(tables[t].getId(), t);
+            capacidad[t] = tables[t].getCapacidad();
+            base[t] = nextWalkInStart(tables[t], predictFree(tables[t], now));
+        }
+        tree = new MinTree(Arrays.copyOf(base, base.length));
+        claim(now);
+    }
+
+    // Waiting parties claim the earliest fitting table in order. The claims stay in the tree, so a new party
+    // is quoted behind the queue; 'claimed' remembers them to be taken back on the next refresh.
+    private void claim(long now) {
+        requeue = false;
+        claimed.clear();
+        for (Waiting w : queue) {
+            int t = tree.argMin(firstFitting(w.guests), tables.length);
+            if (t < 0) {
+                w.quote = new Quote(null, null, -1L);
+                continue;
+            }
+            w.quote = quoteFor(t, now);
+            long next = Math.max(now, tree.get(t)) + getTurnMinutes(capacidad[t]) * 60L;
+            tree.update(t, nextWalkInStart(tables[t], next));
+            claimed.add(t);
+        }
+    }
+
+    // When the party now at the table is expected to leave (epoch seconds)
+    private long predictFree(Mesa m, long now) {
+        if (m.getEstado() != TableStatus.OCUPADA) return now;
+        Long since;
+        synchronized (turns) {
+            since = seatedAt.get(m.getId());
+        }
+        long base = (since != null ? since : now) + getTurnMinutes(m.getCapacidad()) * 60L;
+        long kitchen = -1L;
+        try {
+            for (OrderItem oi : tableService.copyOrders(m.getId())) {
+                EstadoPedido e = oi.getEstado();
+                if (e != EstadoPedido.QUEUED && e != EstadoPedido.IN_PROGRESS) continue;
+                Long eta = oi.getEstimatedMinutes();
+                kitchen = Math.max(kitchen, eta != null ? eta : 0L);
+            }
+        } catch (TableNotFoundException ignored) {
+        }
+        if (kitchen >= 0) return Math.max(base, now + (kitchen + AFTER_LAST_DISH_MINUTES) * 60L);
+        return Math.max(base, now + MIN_REMAINING_MINUTES * 60L);
+    }
+
+    // First time from 'from' on when the table is not booked for a whole turn (the rule occupyTable applies)
+    private long nextWalkInStart(Mesa m, long from) {
+        long turn = tableService.getTurnMinutes() * 60L;
+        long t = from;
+        for (int hop = 0; hop < MAX_BOOKING_HOPS; hop++) {
+            int[] ids = m.bookingsBetween(LocalDateTime.ofEpochSecond(t, 0, ZoneOffset.UTC),
+                    LocalDateTime.ofEpochSecond(t + turn, 0, ZoneOffset.UTC));
+            if (ids.length == 0) return t;
+            long next = t + turn;
+            for (int id : ids) {
+                Optional<Reservation> r = reservationService.findById(id);
+                if (r.isPresent() && r.get().getWhen() != null) {
+                    next = Math.max(next, seconds(r.get().getWhen()) + reservationService.getTurnMinutes() * 60L);
+                }
+            }
+            t = next;
+        }
+        return t;
+    }
+
+    private int firstFitting(int guests) {
+        int lo = 0, hi = capacidad.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (capacidad[mid] < guests) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static long seconds(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    // Segment tree of positions ordered by value (earliest first, lowest position on ties)
+    private static final class MinTree {
+        private final long[] val;
+        private final int[] best; // per node: position of the minimum of its range, -1 if empty
+        private final int size;
+
+        MinTree(long[] values) {
+            this.val = values;
+            int s = 1;
+            while (s < Math.max(1, values.length)) s <<= 1;
+            this.size = s;
+            this.best = new int[2 * s];
+            Arrays.fill(best, -1);
+            for (int i = 0; i < values.length; i++) best[s + i] = i;
+            for (int i = s - 1; i > 0; i--) best[i] = pick(best[2 * i], best[2 * i + 1]);
+        }
+
+        private int pick(int a, int b) {
+            if (a < 0) return b;
+            if (b < 0) return a;
+            if (val[a] != val[b]) return val[b] < val[a] ? b : a;
+            return Math.min(a, b);
+        }
+
+        long get(int pos) {
+            return val[pos];
+        }
+
+        void update(int pos, long v) {
+            val[pos] = v;
+            for (int i = (pos + size) >> 1; i > 0; i >>= 1) best[i] = pick(best[2 * i], best[2 * i + 1]);
+        }
+
+        // Position of the minimum in [lo, hi), or -1 if the range is empty
+        int argMin(int lo, int hi) {
+            int res = -1;
+            for (int l = lo + size, r = hi + size; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) res = pick(res, best[l++]);
+                if ((r & 1) == 1) res = pick(res, best[--r]);
+            }
+            return res;
+        }
+    }
+}